@@ -1,42 +1,184 @@
 package com.ecomptaia.config;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.boot.actuate.metrics.cache.CacheMeterBinderProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 @Configuration
 @EnableCaching
 public class CacheConfig {
 
-    // ==================== CONFIGURATION DU CACHE SIMPLE ====================
+    // ==================== CONFIGURATION DU CACHE BORNÉ ====================
 
+    /**
+     * Caches déclarés ; TTL et taille maximale de chacun dans app.cache.caches (application.yml)
+     */
+    public static final List<String> CACHE_NAMES = Arrays.asList(
+        "configurations",    // Cache des configurations (TTL court car données critiques)
+        "users",            // Cache des utilisateurs (TTL moyen)
+        "companies",        // Cache des entreprises (TTL long car données stables)
+        "ecritures",        // Cache des écritures comptables (TTL court car données fréquemment modifiées)
+        "accounts",         // Cache des comptes (TTL long car données stables)
+        "chartIndex",       // Index des plans de comptes (invalidés à chaque modification de compte)
+        "thirdParties",     // Cache des tiers (TTL moyen)
+        "documents",        // Cache des documents (TTL court)
+        "notifications",    // Cache des notifications (TTL très court)
+        "dashboards",       // Cache des dashboards (TTL court car données dynamiques)
+        "search",           // Cache des recherches (TTL court)
+        "reports",          // Cache des rapports (TTL moyen)
+        "taxDeclarations",  // Cumuls fiscaux des mois clos (invalidés par les écritures tardives)
+        "metrics",          // Cache des métriques (TTL court)
+        "exchangeRates",    // Cache des taux de change (TTL court)
+        "subscriptionPrices", // Cache des prix d'abonnement (TTL moyen)
+        "currencyRates"     // Cache des taux de devise (TTL court)
+    );
+
+    /**
+     * Caches Caffeine (éviction W-TinyLFU) bornés en taille, avec expiration et statistiques.
+     * Les statistiques sont exportées vers Micrometer/Prometheus (cache.gets, cache.evictions...)
+     * par l'auto-configuration Actuator pour les caches déclarés ci-dessus.
+     */
     @Bean
-    public CacheManager cacheManager() {
-        ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager();
-        
-        // Définir les noms des caches
-        cacheManager.setCacheNames(Arrays.asList(
-            "configurations",    // Cache des configurations (TTL court car données critiques)
-            "users",            // Cache des utilisateurs (TTL moyen)
-            "companies",        // Cache des entreprises (TTL long car données stables)
-            "ecritures",        // Cache des écritures comptables (TTL court car données fréquemment modifiées)
-            "accounts",         // Cache des comptes (TTL long car données stables)
-            "thirdParties",     // Cache des tiers (TTL moyen)
-            "documents",        // Cache des documents (TTL court)
-            "notifications",    // Cache des notifications (TTL très court)
-            "dashboards",       // Cache des dashboards (TTL court car données dynamiques)
-            "search",           // Cache des recherches (TTL court)
-            "reports",          // Cache des rapports (TTL moyen)
-            "metrics",          // Cache des métriques (TTL court)
-            "exchangeRates",    // Cache des taux de change (TTL court)
-            "subscriptionPrices", // Cache des prix d'abonnement (TTL moyen)
-            "currencyRates"     // Cache des taux de devise (TTL court)
-        ));
-        
+    @ConditionalOnProperty(name = "app.cache.redis.enabled", havingValue = "false", matchIfMissing = true)
+    public CacheManager cacheManager(CachePolicyProperties policies) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+
+        // Caches créés à la demande (noms non déclarés) : politique par défaut
+        cacheManager.setCaffeine(caffeineBuilder(policies.getDefaultTtl(), policies.getDefaultMaximumSize()));
+
+        for (String cacheName : CACHE_NAMES) {
+            cacheManager.registerCustomCache(cacheName,
+                caffeineBuilder(policies.ttlOf(cacheName), policies.maximumSizeOf(cacheName)).build());
+        }
+        for (String cacheName : policies.getCaches().keySet()) {
+            if (!CACHE_NAMES.contains(cacheName)) {
+                cacheManager.registerCustomCache(cacheName,
+                    caffeineBuilder(policies.ttlOf(cacheName), policies.maximumSizeOf(cacheName)).build());
+            }
+        }
+
         return cacheManager;
     }
+
+    // ==================== CACHE À DEUX NIVEAUX (L1 LOCAL + L2 REDIS) ====================
+
+    /**
+     * Plusieurs instances du backend : L1 Caffeine devant un L2 Redis partagé, avec
+     * invalidation des L1 des autres nœuds par Redis pub/sub à chaque écriture
+     */
+    @Configuration
+    @ConditionalOnProperty(name = "app.cache.redis.enabled", havingValue = "true")
+    static class TwoTierCacheConfig {
+
+        @Bean
+        public RedisMessageListenerContainer cacheInvalidationListenerContainer(RedisConnectionFactory connectionFactory) {
+            RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+            container.setConnectionFactory(connectionFactory);
+            return container;
+        }
+
+        @Bean
+        public CacheInvalidationBus cacheInvalidationBus(StringRedisTemplate redisTemplate,
+                                                         RedisMessageListenerContainer cacheInvalidationListenerContainer,
+                                                         CachePolicyProperties policies) {
+            return new RedisCacheInvalidationBus(redisTemplate, cacheInvalidationListenerContainer,
+                policies.getRedis().getChannel());
+        }
+
+        @Bean
+        public CacheManager cacheManager(RedisConnectionFactory connectionFactory, CacheInvalidationBus cacheInvalidationBus,
+                                         CachePolicyProperties policies) {
+            Set<String> cacheNames = new LinkedHashSet<>(CACHE_NAMES);
+            cacheNames.addAll(policies.getCaches().keySet());
+
+            RedisCacheConfiguration defaults = RedisCacheConfiguration.defaultCacheConfig()
+                .prefixCacheNameWith(policies.getRedis().getKeyPrefix())
+                .entryTtl(policies.getDefaultTtl());
+            RedisCacheManager.RedisCacheManagerBuilder redisBuilder = RedisCacheManager.builder(connectionFactory)
+                .cacheDefaults(defaults);
+            for (String cacheName : cacheNames) {
+                redisBuilder.withCacheConfiguration(cacheName, defaults.entryTtl(policies.ttlOf(cacheName)));
+            }
+            RedisCacheManager redisCacheManager = redisBuilder.build();
+            redisCacheManager.initializeCaches();
+
+            return new TwoTierCacheManager(cacheNames,
+                name -> localCache(name, policies),
+                redisCacheManager::getCache,
+                cacheInvalidationBus);
+        }
+
+        /**
+         * Statistiques Micrometer des caches à deux niveaux (celles du L1)
+         */
+        @Bean
+        public CacheMeterBinderProvider<TwoTierCache> twoTierCacheMeterBinderProvider() {
+            return (cache, tags) -> new CaffeineCacheMetrics<>(cache.getLocalCache().getNativeCache(), cache.getName(), tags);
+        }
+    }
+
+    /**
+     * Cache L1 d'un nom donné selon sa politique
+     */
+    public static CaffeineCache localCache(String cacheName, CachePolicyProperties policies) {
+        return new CaffeineCache(cacheName,
+            caffeineBuilder(policies.ttlOf(cacheName), policies.maximumSizeOf(cacheName)).build());
+    }
+
+    /**
+     * Builder commun : taille maximale, statistiques et expiration variable
+     * (TTL du cache par défaut, TTL par entrée possible via CacheService)
+     */
+    public static Caffeine<Object, Object> caffeineBuilder(Duration ttl, long maximumSize) {
+        return Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfter(new DefaultTtlExpiry(ttl))
+            .recordStats();
+    }
+
+    /**
+     * Expiration au TTL du cache à la création et à chaque mise à jour ;
+     * une lecture ne prolonge pas la durée de vie
+     */
+    static class DefaultTtlExpiry implements Expiry<Object, Object> {
+        private final long ttlNanos;
+
+        DefaultTtlExpiry(Duration ttl) {
+            this.ttlNanos = ttl.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(Object key, Object value, long currentTime) {
+            return ttlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(Object key, Object value, long currentTime, long currentDuration) {
+            return ttlNanos;
+        }
+
+        @Override
+        public long expireAfterRead(Object key, Object value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
 }
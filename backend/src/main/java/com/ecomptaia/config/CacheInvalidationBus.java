@@ -0,0 +1,65 @@
+package com.ecomptaia.config;
+
+import java.util.function.Consumer;
+
+/**
+ * Diffusion des invalidations de cache entre les instances du backend.
+ * Chaque écriture (put / evict / clear) sur un nœud est publiée pour que les autres
+ * nœuds retirent l'entrée de leur cache local (L1).
+ */
+public interface CacheInvalidationBus {
+
+    /**
+     * Publier une invalidation ; key == null signifie « vider tout le cache »
+     */
+    void publish(String nodeId, String cacheName, String key);
+
+    /**
+     * S'abonner aux invalidations publiées par tous les nœuds (y compris celui-ci)
+     */
+    void subscribe(Consumer<Invalidation> listener);
+
+    /**
+     * Message d'invalidation
+     */
+    class Invalidation {
+        private static final char SEPARATOR = '|';
+        private static final String ALL = "*";
+
+        private final String nodeId;
+        private final String cacheName;
+        private final String key;
+
+        public Invalidation(String nodeId, String cacheName, String key) {
+            this.nodeId = nodeId;
+            this.cacheName = cacheName;
+            this.key = key;
+        }
+
+        public String getNodeId() { return nodeId; }
+        public String getCacheName() { return cacheName; }
+        public String getKey() { return key; }
+
+        public boolean isClearAll() {
+            return key == null;
+        }
+
+        /**
+         * Format texte : nodeId|cacheName|*  ou  nodeId|cacheName|=clé
+         */
+        public String encode() {
+            return nodeId + SEPARATOR + cacheName + SEPARATOR + (key == null ? ALL : "=" + key);
+        }
+
+        public static Invalidation decode(String message) {
+            int first = message.indexOf(SEPARATOR);
+            int second = message.indexOf(SEPARATOR, first + 1);
+            if (first < 0 || second < 0) {
+                throw new IllegalArgumentException("Message d'invalidation invalide: " + message);
+            }
+            String keyPart = message.substring(second + 1);
+            return new Invalidation(message.substring(0, first), message.substring(first + 1, second),
+                ALL.equals(keyPart) ? null : keyPart.substring(1));
+        }
+    }
+}
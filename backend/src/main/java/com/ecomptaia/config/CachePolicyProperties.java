@@ -0,0 +1,79 @@
+package com.ecomptaia.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Politique des caches applicatifs (app.cache.*) : TTL et taille maximale par cache
+ */
+@Component
+@ConfigurationProperties(prefix = "app.cache")
+public class CachePolicyProperties {
+    
+    private Duration defaultTtl = Duration.ofMinutes(10);
+    private long defaultMaximumSize = 1000;
+    private Map<String, Policy> caches = new LinkedHashMap<>();
+    private Redis redis = new Redis();
+    
+    public static class Policy {
+        private Duration ttl;
+        private Long maximumSize;
+        
+        public Policy() {}
+        
+        public Policy(Duration ttl, Long maximumSize) {
+            this.ttl = ttl;
+            this.maximumSize = maximumSize;
+        }
+        
+        public Duration getTtl() { return ttl; }
+        public void setTtl(Duration ttl) { this.ttl = ttl; }
+        public Long getMaximumSize() { return maximumSize; }
+        public void setMaximumSize(Long maximumSize) { this.maximumSize = maximumSize; }
+    }
+    
+    /**
+     * Cache à deux niveaux (L1 local + L2 Redis) pour les déploiements multi-instances
+     */
+    public static class Redis {
+        private boolean enabled = false;
+        private String channel = "ecomptaia:cache:invalidation";
+        private String keyPrefix = "ecomptaia:cache:";
+        
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        public String getChannel() { return channel; }
+        public void setChannel(String channel) { this.channel = channel; }
+        public String getKeyPrefix() { return keyPrefix; }
+        public void setKeyPrefix(String keyPrefix) { this.keyPrefix = keyPrefix; }
+    }
+    
+    /**
+     * TTL effectif d'un cache (TTL du cache ou TTL par défaut)
+     */
+    public Duration ttlOf(String cacheName) {
+        Policy policy = caches.get(cacheName);
+        return policy != null && policy.getTtl() != null ? policy.getTtl() : defaultTtl;
+    }
+    
+    /**
+     * Taille maximale effective d'un cache
+     */
+    public long maximumSizeOf(String cacheName) {
+        Policy policy = caches.get(cacheName);
+        return policy != null && policy.getMaximumSize() != null ? policy.getMaximumSize() : defaultMaximumSize;
+    }
+    
+    public Duration getDefaultTtl() { return defaultTtl; }
+    public void setDefaultTtl(Duration defaultTtl) { this.defaultTtl = defaultTtl; }
+    public long getDefaultMaximumSize() { return defaultMaximumSize; }
+    public void setDefaultMaximumSize(long defaultMaximumSize) { this.defaultMaximumSize = defaultMaximumSize; }
+    public Map<String, Policy> getCaches() { return caches; }
+    public void setCaches(Map<String, Policy> caches) { this.caches = caches; }
+    public Redis getRedis() { return redis; }
+    public void setRedis(Redis redis) { this.redis = redis; }
+}
@@ -0,0 +1,90 @@
+package com.ecomptaia.config;
+
+import com.ecomptaia.accounting.entity.Account;
+import com.ecomptaia.service.PlanComptableIndexService;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Écouteurs Hibernate enregistrés au démarrage, sans annotation sur les entités (les entités ne dépendent
+ * pas des services).
+ *
+ * Toute création, modification ou suppression d'un compte (Account), quel que soit le chemin d'écriture,
+ * invalide l'index du plan de comptes de son entreprise.
+ */
+@Configuration
+public class HibernateListenerConfig {
+
+    @Autowired(required = false)
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ObjectProvider<PlanComptableIndexService> planComptableIndexService;
+
+    @PostConstruct
+    public void enregistrerEcouteurs() {
+        if (entityManagerFactory == null) {
+            return;
+        }
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+            .getServiceRegistry().getService(EventListenerRegistry.class);
+        ComptesListener comptes = new ComptesListener(planComptableIndexService);
+        registry.appendListeners(EventType.POST_INSERT, comptes);
+        registry.appendListeners(EventType.POST_UPDATE, comptes);
+        registry.appendListeners(EventType.POST_DELETE, comptes);
+    }
+
+    /**
+     * Invalide l'index du plan de comptes de l'entreprise d'un compte écrit
+     */
+    static class ComptesListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+        private final ObjectProvider<PlanComptableIndexService> indexService;
+
+        ComptesListener(ObjectProvider<PlanComptableIndexService> indexService) {
+            this.indexService = indexService;
+        }
+
+        @Override
+        public void onPostInsert(PostInsertEvent event) {
+            compteModifie(event.getEntity());
+        }
+
+        @Override
+        public void onPostUpdate(PostUpdateEvent event) {
+            compteModifie(event.getEntity());
+        }
+
+        @Override
+        public void onPostDelete(PostDeleteEvent event) {
+            compteModifie(event.getEntity());
+        }
+
+        @Override
+        public boolean requiresPostCommitHandling(EntityPersister persister) {
+            return false;
+        }
+
+        private void compteModifie(Object entite) {
+            if (entite instanceof Account compte) {
+                PlanComptableIndexService service = indexService.getIfAvailable();
+                if (service != null) {
+                    service.invaliderEntreprise(compte.getCompany());
+                }
+            }
+        }
+    }
+}
@@ -3,16 +3,95 @@ package com.ecomptaia.config;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 @Component
 @ConfigurationProperties(prefix = "rate.limit")
 public class RateLimitConfig {
-    
+
     private int requestsPerMinute = 100;
     private int burstCapacity = 200;
-    
+
+    // Seaux inutilisés et pleins depuis cette durée oubliés par le balayage périodique
+    private long idleTimeoutMs = 300000;
+
+    // Limites par utilisateur authentifié et par entreprise de cet utilisateur (jamais l'en-tête X-Company-Id) ; 0 = désactivée
+    private Limit user = new Limit();
+    private Limit tenant = new Limit();
+
+    // Limites par adresse IP propres à certaines routes (motifs Ant, première correspondance retenue)
+    private List<Route> routes = new ArrayList<>();
+
+    // Limites appliquées à l'échelle du cluster (compteurs Redis)
+    private Distributed distributed = new Distributed();
+
+    // Quotas mensuels par code de plan d'abonnement puis par type de ressource (ex. STARTER.API_CALLS: 10000)
+    private Map<String, Map<String, Long>> quotas = new LinkedHashMap<>();
+
+    public static class Limit {
+        private int requestsPerMinute;
+        private int burstCapacity;
+
+        public int getRequestsPerMinute() { return requestsPerMinute; }
+        public void setRequestsPerMinute(int requestsPerMinute) { this.requestsPerMinute = requestsPerMinute; }
+        public int getBurstCapacity() { return burstCapacity; }
+        public void setBurstCapacity(int burstCapacity) { this.burstCapacity = burstCapacity; }
+    }
+
+    public static class Route extends Limit {
+        private String pattern;
+
+        public String getPattern() { return pattern; }
+        public void setPattern(String pattern) { this.pattern = pattern; }
+    }
+
+    public static class Distributed {
+        private boolean enabled = false;
+        // Nombre d'instances attendu : limite locale approchée (limite / replicas) si Redis est indisponible
+        private int replicas = 2;
+        private long flushIntervalMs = 100;
+        // Relecture des totaux des compteurs inchangés sur ce nœud (seuls les compteurs modifiés sont envoyés)
+        private long refreshIntervalMs = 1000;
+        // Partitions des clés Redis (étiquettes de hachage {rl:n}) réparties sur les nœuds du cluster
+        private int shards = 16;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        public int getReplicas() { return replicas; }
+        public void setReplicas(int replicas) { this.replicas = replicas; }
+        public long getFlushIntervalMs() { return flushIntervalMs; }
+        public void setFlushIntervalMs(long flushIntervalMs) { this.flushIntervalMs = flushIntervalMs; }
+        public long getRefreshIntervalMs() { return refreshIntervalMs; }
+        public void setRefreshIntervalMs(long refreshIntervalMs) { this.refreshIntervalMs = refreshIntervalMs; }
+        public int getShards() { return shards; }
+        public void setShards(int shards) { this.shards = shards; }
+    }
+
+    /**
+     * Quota mensuel d'une ressource pour un plan, null si non limité
+     */
+    public Long quotaOf(String planCode, String resourceType) {
+        Map<String, Long> plan = planCode != null ? quotas.get(planCode.toUpperCase()) : null;
+        return plan != null && resourceType != null ? plan.get(resourceType.toUpperCase()) : null;
+    }
+
     public int getRequestsPerMinute() { return requestsPerMinute; }
     public void setRequestsPerMinute(int requestsPerMinute) { this.requestsPerMinute = requestsPerMinute; }
     public int getBurstCapacity() { return burstCapacity; }
     public void setBurstCapacity(int burstCapacity) { this.burstCapacity = burstCapacity; }
+    public long getIdleTimeoutMs() { return idleTimeoutMs; }
+    public void setIdleTimeoutMs(long idleTimeoutMs) { this.idleTimeoutMs = idleTimeoutMs; }
+    public Limit getUser() { return user; }
+    public void setUser(Limit user) { this.user = user; }
+    public Limit getTenant() { return tenant; }
+    public void setTenant(Limit tenant) { this.tenant = tenant; }
+    public List<Route> getRoutes() { return routes; }
+    public void setRoutes(List<Route> routes) { this.routes = routes; }
+    public Distributed getDistributed() { return distributed; }
+    public void setDistributed(Distributed distributed) { this.distributed = distributed; }
+    public Map<String, Map<String, Long>> getQuotas() { return quotas; }
+    public void setQuotas(Map<String, Map<String, Long>> quotas) { this.quotas = quotas; }
 }
-
@@ -0,0 +1,50 @@
+package com.ecomptaia.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Invalidations de cache diffusées par Redis pub/sub
+ */
+public class RedisCacheInvalidationBus implements CacheInvalidationBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisCacheInvalidationBus.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ChannelTopic topic;
+
+    public RedisCacheInvalidationBus(StringRedisTemplate redisTemplate, RedisMessageListenerContainer listenerContainer,
+                                     String channel) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.topic = new ChannelTopic(channel);
+    }
+
+    @Override
+    public void publish(String nodeId, String cacheName, String key) {
+        try {
+            redisTemplate.convertAndSend(topic.getTopic(), new Invalidation(nodeId, cacheName, key).encode());
+        } catch (Exception e) {
+            // Redis indisponible : les autres nœuds garderont leur L1 jusqu'à expiration du TTL
+            logger.warn("Publication de l'invalidation {}:{} impossible : {}", cacheName, key, e.getMessage());
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<Invalidation> listener) {
+        listenerContainer.addMessageListener((message, pattern) -> {
+            try {
+                listener.accept(Invalidation.decode(new String(message.getBody(), StandardCharsets.UTF_8)));
+            } catch (Exception e) {
+                logger.warn("Message d'invalidation ignoré : {}", e.getMessage());
+            }
+        }, topic);
+    }
+}
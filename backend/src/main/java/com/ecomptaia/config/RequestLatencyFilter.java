@@ -0,0 +1,65 @@
+package com.ecomptaia.config;
+
+import com.ecomptaia.service.PerformanceService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+/**
+ * Mesure la durée de chaque requête HTTP (filtres de sécurité compris) et l'enregistre dans
+ * PerformanceService, par endpoint et par entreprise (en-tête X-Company-Id).
+ *
+ * L'endpoint est le motif de la route Spring MVC (ex. GET /api/ecritures/{id}) afin de borner
+ * le nombre de séries ; à défaut, les segments numériques ou UUID du chemin sont remplacés par {id}.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestLatencyFilter extends OncePerRequestFilter {
+
+    private static final Pattern SEGMENT_IDENTIFIANT = Pattern.compile(
+        "/(\\d+|[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12})(?=/|$)");
+
+    @Autowired
+    private PerformanceService performanceService;
+
+    @Value("${app.performance.filter.enabled:true}")
+    private boolean actif = true;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !actif || request.getRequestURI().startsWith(request.getContextPath() + "/actuator");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        long debut = System.nanoTime();
+        boolean exception = true;
+        try {
+            filterChain.doFilter(request, response);
+            exception = false;
+        } finally {
+            performanceService.enregistrer(endpoint(request), request.getHeader("X-Company-Id"),
+                System.nanoTime() - debut, exception || response.getStatus() >= 500);
+        }
+    }
+
+    static String endpoint(HttpServletRequest request) {
+        Object motif = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String chemin = motif != null
+            ? motif.toString()
+            : SEGMENT_IDENTIFIANT.matcher(request.getRequestURI()).replaceAll("/{id}");
+        return request.getMethod() + " " + chemin;
+    }
+}
@@ -0,0 +1,180 @@
+package com.ecomptaia.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCache;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+/**
+ * Cache à deux niveaux : L1 local (Caffeine, borné) devant un L2 partagé (Redis).
+ *
+ * Lecture : L1 puis L2 (l'entrée trouvée en L2 est recopiée en L1).
+ * Écriture : L2 puis L1, puis publication d'une invalidation pour que les autres nœuds
+ * retirent l'entrée de leur L1 et relisent la valeur à jour en L2.
+ *
+ * Les clés sont normalisées en chaîne afin qu'une invalidation reçue d'un autre nœud
+ * désigne la même entrée L1. Une panne Redis dégrade le cache en L1 seul.
+ */
+public class TwoTierCache implements Cache {
+
+    private static final Logger logger = LoggerFactory.getLogger(TwoTierCache.class);
+
+    private final String name;
+    private final CaffeineCache local;
+    private final Cache remote;
+    private final CacheInvalidationBus invalidationBus;
+    private final String nodeId;
+
+    public TwoTierCache(String name, CaffeineCache local, Cache remote, CacheInvalidationBus invalidationBus, String nodeId) {
+        this.name = name;
+        this.local = local;
+        this.remote = remote;
+        this.invalidationBus = invalidationBus;
+        this.nodeId = nodeId;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return this;
+    }
+
+    public CaffeineCache getLocalCache() {
+        return local;
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String cacheKey = normalize(key);
+        ValueWrapper wrapper = local.get(cacheKey);
+        if (wrapper != null) {
+            return wrapper;
+        }
+        wrapper = remoteGet(cacheKey);
+        if (wrapper != null) {
+            local.put(cacheKey, wrapper.get());
+        }
+        return wrapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Valeur en cache de type inattendu pour " + name + ":" + key);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        String cacheKey = normalize(key);
+        return local.get(cacheKey, () -> {
+            ValueWrapper wrapper = remoteGet(cacheKey);
+            if (wrapper != null) {
+                return (T) wrapper.get();
+            }
+            T value = valueLoader.call();
+            remotePut(cacheKey, value);
+            return value;
+        });
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        String cacheKey = normalize(key);
+        remotePut(cacheKey, value);
+        local.put(cacheKey, value);
+        invalidationBus.publish(nodeId, name, cacheKey);
+    }
+
+    /**
+     * Mise en cache avec un TTL propre à l'entrée : l'entrée reste locale à ce nœud
+     * (le L2 garde le TTL du cache), l'éventuelle valeur partagée est retirée
+     */
+    public void putLocal(Object key, Object value, Duration ttl) {
+        String cacheKey = normalize(key);
+        remoteEvict(cacheKey);
+        local.getNativeCache().policy().expireVariably()
+            .ifPresentOrElse(expiration -> expiration.put(cacheKey, value, ttl), () -> local.put(cacheKey, value));
+        invalidationBus.publish(nodeId, name, cacheKey);
+    }
+
+    @Override
+    public void evict(Object key) {
+        String cacheKey = normalize(key);
+        remoteEvict(cacheKey);
+        local.evict(cacheKey);
+        invalidationBus.publish(nodeId, name, cacheKey);
+    }
+
+    @Override
+    public void clear() {
+        try {
+            remote.clear();
+        } catch (RuntimeException e) {
+            logger.warn("Vidage L2 du cache {} impossible : {}", name, e.getMessage());
+        }
+        local.clear();
+        invalidationBus.publish(nodeId, name, null);
+    }
+
+    /**
+     * Invalidation reçue d'un autre nœud : seul le L1 est concerné
+     */
+    public void onRemoteInvalidation(CacheInvalidationBus.Invalidation invalidation) {
+        if (nodeId.equals(invalidation.getNodeId())) {
+            return;
+        }
+        if (invalidation.isClearAll()) {
+            local.clear();
+        } else {
+            local.evict(invalidation.getKey());
+        }
+    }
+
+    static String normalize(Object key) {
+        return String.valueOf(key);
+    }
+
+    private ValueWrapper remoteGet(String cacheKey) {
+        try {
+            return remote.get(cacheKey);
+        } catch (RuntimeException e) {
+            logger.warn("Lecture L2 du cache {} impossible : {}", name, e.getMessage());
+            return null;
+        }
+    }
+
+    private void remotePut(String cacheKey, Object value) {
+        // Seules les valeurs sérialisables sont partagées ; les autres restent en L1
+        if (value != null && !(value instanceof Serializable)) {
+            remoteEvict(cacheKey);
+            return;
+        }
+        try {
+            remote.put(cacheKey, value);
+        } catch (RuntimeException e) {
+            logger.warn("Écriture L2 du cache {} impossible : {}", name, e.getMessage());
+        }
+    }
+
+    private void remoteEvict(String cacheKey) {
+        try {
+            remote.evict(cacheKey);
+        } catch (RuntimeException e) {
+            logger.warn("Suppression L2 du cache {} impossible : {}", name, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.ecomptaia.config;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.transaction.AbstractTransactionSupportingCacheManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Gestionnaire des caches à deux niveaux (L1 Caffeine + L2 partagé).
+ *
+ * Les écritures sont différées après commit lorsqu'une transaction est active, afin qu'un
+ * autre nœud ne recharge pas l'ancienne valeur entre l'invalidation et le commit.
+ */
+public class TwoTierCacheManager extends AbstractTransactionSupportingCacheManager {
+
+    private final Collection<String> cacheNames;
+    private final Function<String, CaffeineCache> localFactory;
+    private final Function<String, Cache> remoteFactory;
+    private final CacheInvalidationBus invalidationBus;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public TwoTierCacheManager(Collection<String> cacheNames, Function<String, CaffeineCache> localFactory,
+                               Function<String, Cache> remoteFactory, CacheInvalidationBus invalidationBus) {
+        this.cacheNames = cacheNames;
+        this.localFactory = localFactory;
+        this.remoteFactory = remoteFactory;
+        this.invalidationBus = invalidationBus;
+        setTransactionAware(true);
+        invalidationBus.subscribe(this::onInvalidation);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    protected Collection<? extends Cache> loadCaches() {
+        List<Cache> caches = new ArrayList<>();
+        for (String cacheName : cacheNames) {
+            caches.add(createCache(cacheName));
+        }
+        return caches;
+    }
+
+    @Override
+    protected Cache getMissingCache(String name) {
+        return createCache(name);
+    }
+
+    private TwoTierCache createCache(String name) {
+        return new TwoTierCache(name, localFactory.apply(name), remoteFactory.apply(name), invalidationBus, nodeId);
+    }
+
+    /**
+     * Appliquer au L1 une invalidation publiée par un autre nœud
+     */
+    private void onInvalidation(CacheInvalidationBus.Invalidation invalidation) {
+        if (nodeId.equals(invalidation.getNodeId())) {
+            return;
+        }
+        TwoTierCache cache = unwrap(lookupCache(invalidation.getCacheName()));
+        if (cache != null) {
+            cache.onRemoteInvalidation(invalidation);
+        }
+    }
+
+    /**
+     * Retrouver le cache à deux niveaux derrière un éventuel décorateur transactionnel
+     */
+    public static TwoTierCache unwrap(Cache cache) {
+        if (cache instanceof org.springframework.cache.transaction.TransactionAwareCacheDecorator decorator) {
+            cache = decorator.getTargetCache();
+        }
+        return cache instanceof TwoTierCache twoTierCache ? twoTierCache : null;
+    }
+}
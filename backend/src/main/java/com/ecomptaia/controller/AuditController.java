@@ -133,6 +133,22 @@ public class AuditController {
         return ResponseEntity.ok(auditService.getAuditStatistics());
     }
 
+    /**
+     * Obtenir l'état de l'écriture asynchrone (file, lots, débordement)
+     */
+    @GetMapping("/statistics/writer")
+    public ResponseEntity<Map<String, Object>> getWriterStatistics() {
+        return ResponseEntity.ok(auditService.getStatistiquesEcriture());
+    }
+
+    /**
+     * Vérifier l'intégrité des archives d'audit (segments chaînés)
+     */
+    @GetMapping("/archives/verify")
+    public ResponseEntity<Map<String, Object>> verifyArchives() {
+        return ResponseEntity.ok(auditService.verifierArchives());
+    }
+
     // === ENDPOINTS SPÉCIALISÉS ===
 
     /**
@@ -2,6 +2,7 @@ package com.ecomptaia.controller;
 
 import com.ecomptaia.dto.JwtResponse;
 import com.ecomptaia.dto.LoginRequest;
+import com.ecomptaia.security.JwtAuthenticationCache;
 import com.ecomptaia.security.JwtTokenProvider;
 import com.ecomptaia.security.UserPrincipal;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,6 +13,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import java.util.HashMap;
 import java.util.Map;
@@ -30,6 +32,9 @@ public class AuthController {
     @Autowired
     private JwtTokenProvider tokenProvider;
 
+    @Autowired
+    private JwtAuthenticationCache authenticationCache;
+
     /**
      * Endpoint de connexion
      */
@@ -76,7 +81,12 @@ public class AuthController {
      * Endpoint de déconnexion
      */
     @PostMapping("/logout")
-    public ResponseEntity<?> logoutUser() {
+    public ResponseEntity<?> logoutUser(HttpServletRequest request) {
+        // Le jeton présenté n'est plus accepté jusqu'à son expiration
+        String bearerToken = request.getHeader("Authorization");
+        if (bearerToken != null && bearerToken.startsWith("Bearer ")) {
+            authenticationCache.revoquer(bearerToken.substring(7));
+        }
         SecurityContextHolder.clearContext();
         Map<String, String> response = new HashMap<>();
         response.put("message", "Déconnexion réussie");
@@ -8,6 +8,8 @@ import com.ecomptaia.entity.LigneEcriture;
 import com.ecomptaia.entity.TemplateEcriture;
 import com.ecomptaia.service.EcritureComptableService;
 import com.ecomptaia.service.EcritureComptableAIService;
+import com.ecomptaia.service.EcritureComptableBatchService;
+import com.ecomptaia.service.ReevaluationChangeService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -36,6 +38,12 @@ public class EcritureComptableController {
     @Autowired
     private EcritureComptableAIService aiService;
     
+    @Autowired
+    private EcritureComptableBatchService batchService;
+    
+    @Autowired
+    private ReevaluationChangeService reevaluationService;
+    
     @Autowired
     private TemplateEcritureRepository templateRepository;
     
@@ -72,6 +80,49 @@ public class EcritureComptableController {
         }
     }
     
+    /**
+     * Créer des écritures en masse (imports) : erreurs rapportées écriture par écriture
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<Map<String, Object>> createEcrituresEnMasse(@RequestBody List<EcritureComptable> ecritures) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            Map<String, Object> resultat = batchService.createEcrituresEnMasse(ecritures);
+            response.put("success", (Integer) resultat.get("ecrituresRejetees") == 0);
+            response.put("message", resultat.get("ecrituresCreees") + " écriture(s) créée(s), "
+                + resultat.get("ecrituresRejetees") + " rejetée(s)");
+            response.put("data", resultat);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "Erreur lors de la création en masse : " + e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+    
+    /**
+     * Réévaluer à la clôture les créances et dettes en devises des entreprises actives (écarts 476/477)
+     */
+    @PostMapping("/reevaluation")
+    public ResponseEntity<Map<String, Object>> reevaluerDevises(
+            @RequestParam String dateCloture,
+            @RequestParam Long utilisateurId,
+            @RequestParam(defaultValue = "true") boolean contrepasser) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            Map<String, Object> resultat = reevaluationService.reevaluer(LocalDate.parse(dateCloture), utilisateurId, contrepasser);
+            response.put("success", true);
+            response.put("message", resultat.get("ecrituresCreees") + " écriture(s) d'écart de conversion créée(s) pour "
+                + resultat.get("entreprises") + " entreprise(s)");
+            response.put("data", resultat);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "Erreur lors de la réévaluation : " + e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+    
     /**
      * Initialiser les données de base pour les tests
      */
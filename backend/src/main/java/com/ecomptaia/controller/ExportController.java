@@ -1,9 +1,13 @@
 package com.ecomptaia.controller;
 
 import com.ecomptaia.service.ExportService;
+import com.ecomptaia.service.GeneralLedgerStreamWriter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.util.Map;
@@ -68,6 +72,31 @@ public class ExportController {
         }
     }
 
+    /**
+     * Export du grand livre en flux (ndjson, csv ou pdf), sans charger le grand livre en mémoire
+     */
+    @GetMapping("/ledger-stream")
+    public ResponseEntity<StreamingResponseBody> streamLedger(
+            @RequestParam("companyId") Long companyId,
+            @RequestParam("startDate") String startDate,
+            @RequestParam("endDate") String endDate,
+            @RequestParam(value = "format", defaultValue = "ndjson") String format) {
+        
+        if (!GeneralLedgerStreamWriter.isSupportedFormat(format)) {
+            return ResponseEntity.badRequest().build();
+        }
+        LocalDate start = LocalDate.parse(startDate);
+        LocalDate end = LocalDate.parse(endDate);
+        String fileName = "grand_livre_" + companyId + "_" + startDate + "_" + endDate + "." + format.toLowerCase();
+        
+        StreamingResponseBody body = out -> exportService.streamGeneralLedger(companyId, start, end, format, out);
+        
+        return ResponseEntity.ok()
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+            .contentType(MediaType.parseMediaType(GeneralLedgerStreamWriter.contentType(format)))
+            .body(body);
+    }
+
     /**
      * Export de la balance en PDF
      */
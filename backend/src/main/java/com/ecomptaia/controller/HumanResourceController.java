@@ -4,6 +4,7 @@ import com.ecomptaia.entity.Employee;
 import com.ecomptaia.entity.Payroll;
 import com.ecomptaia.entity.Leave;
 import com.ecomptaia.service.HumanResourceService;
+import com.ecomptaia.service.PayrollService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -21,6 +22,9 @@ public class HumanResourceController {
     @Autowired
     private HumanResourceService humanResourceService;
 
+    @Autowired
+    private PayrollService payrollService;
+
     // ==================== ENDPOINTS DE TEST ====================
 
     @GetMapping("/test/base")
@@ -236,6 +240,26 @@ public class HumanResourceController {
         }
     }
 
+    @PostMapping("/payrolls/run")
+    public ResponseEntity<Map<String, Object>> runPayroll(@RequestBody Map<String, Object> request) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            Map<String, Object> run = payrollService.runPayroll(
+                Long.valueOf(request.get("companyId").toString()),
+                Integer.valueOf(request.get("month").toString()),
+                Integer.valueOf(request.get("year").toString())
+            );
+            response.put("status", "success");
+            response.put("message", "Campagne de paie exécutée");
+            response.put("run", run);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            response.put("status", "error");
+            response.put("message", "Erreur lors de la campagne de paie: " + e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
     @PostMapping("/payrolls/{payrollId}/calculate")
     public ResponseEntity<Map<String, Object>> calculatePayroll(@PathVariable Long payrollId) {
         Map<String, Object> response = new HashMap<>();
@@ -1,6 +1,7 @@
 package com.ecomptaia.controller;
 
 import com.ecomptaia.entity.Reconciliation;
+import com.ecomptaia.service.BankStatementImportService;
 import com.ecomptaia.service.ReconciliationService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -19,6 +20,9 @@ public class ReconciliationController {
     @Autowired
     private ReconciliationService reconciliationService;
 
+    @Autowired
+    private BankStatementImportService bankStatementImportService;
+
     /**
      * Créer un nouveau rapprochement
      */
@@ -365,4 +369,50 @@ public class ReconciliationController {
             return ResponseEntity.badRequest().body(error);
         }
     }
+
+    /**
+     * Importer un relevé bancaire (CSV, MT940 ou CAMT.053) du répertoire d'import, en arrière-plan
+     */
+    @PostMapping("/bank-statements/import")
+    public ResponseEntity<?> importBankStatement(@RequestBody Map<String, Object> request) {
+        try {
+            String fichier = (String) request.get("fichier");
+            String format = (String) request.get("format");
+            Long bankAccountId = Long.valueOf(request.get("bankAccountId").toString());
+            Map<String, Object> progression = bankStatementImportService.demarrerImport(fichier, format, bankAccountId);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Import du relevé démarré");
+            response.put("import", progression);
+            response.put("status", "SUCCESS");
+
+            return ResponseEntity.accepted().body(response);
+
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("message", "Erreur lors de l'import du relevé: " + e.getMessage());
+            error.put("status", "ERROR");
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    /**
+     * Avancement d'un import de relevé bancaire
+     */
+    @GetMapping("/bank-statements/import/{importId}")
+    public ResponseEntity<?> getBankStatementImport(@PathVariable String importId) {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("import", bankStatementImportService.getProgression(importId));
+            response.put("status", "SUCCESS");
+
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("message", "Erreur lors de la récupération: " + e.getMessage());
+            error.put("status", "ERROR");
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package com.ecomptaia.controller;
 
+import com.ecomptaia.service.AccountBalanceService;
 import com.ecomptaia.service.ReportingService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -23,6 +24,9 @@ public class ReportingController {
     @Autowired
     private JournalEntryRepository journalEntryRepository;
 
+    @Autowired
+    private AccountBalanceService accountBalanceService;
+
     /**
      * Générer le Grand Livre
      * GET /api/reporting/general-ledger?companyId=1&asOfDate=2024-12-31
@@ -230,4 +234,46 @@ public class ReportingController {
             return ResponseEntity.badRequest().body(error);
         }
     }
+
+    /**
+     * Reconstruire les cumuls mensuels de soldes depuis les lignes d'écriture
+     * POST /api/reporting/account-balances/rebuild?companyId=1&ledger=JOURNAL
+     */
+    @PostMapping("/account-balances/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildAccountBalances(
+            @RequestParam Long companyId,
+            @RequestParam(defaultValue = AccountBalanceService.LEDGER_JOURNAL) String ledger) {
+        
+        try {
+            return ResponseEntity.ok(accountBalanceService.rebuild(companyId, ledger));
+        } catch (Exception e) {
+            Map<String, Object> error = Map.of(
+                "error", "Erreur lors de la reconstruction des cumuls de soldes",
+                "message", e.getMessage(),
+                "status", "ERROR"
+            );
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    /**
+     * Contrôler les cumuls mensuels de soldes et lister les écarts
+     * GET /api/reporting/account-balances/verify?companyId=1&ledger=JOURNAL
+     */
+    @GetMapping("/account-balances/verify")
+    public ResponseEntity<Map<String, Object>> verifyAccountBalances(
+            @RequestParam Long companyId,
+            @RequestParam(defaultValue = AccountBalanceService.LEDGER_JOURNAL) String ledger) {
+        
+        try {
+            return ResponseEntity.ok(accountBalanceService.verify(companyId, ledger));
+        } catch (Exception e) {
+            Map<String, Object> error = Map.of(
+                "error", "Erreur lors du contrôle des cumuls de soldes",
+                "message", e.getMessage(),
+                "status", "ERROR"
+            );
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
 }
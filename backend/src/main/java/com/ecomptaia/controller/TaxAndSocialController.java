@@ -1,6 +1,7 @@
 package com.ecomptaia.controller;
 
 import com.ecomptaia.service.TaxAndSocialService;
+import com.ecomptaia.service.TaxDeclarationAggregationService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -8,6 +9,7 @@ import org.springframework.web.bind.annotation.*;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.YearMonth;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -21,6 +23,9 @@ public class TaxAndSocialController {
     @Autowired
     private TaxAndSocialService taxAndSocialService;
 
+    @Autowired
+    private TaxDeclarationAggregationService taxDeclarationAggregationService;
+
     /**
      * Calcul des taxes sur les salaires
      */
@@ -116,6 +121,52 @@ public class TaxAndSocialController {
         return ResponseEntity.ok(result);
     }
 
+    /**
+     * Bases déclaratives (TVA collectée et déductible, retenues, charges sociales) agrégées depuis le grand livre
+     */
+    @GetMapping("/declarations/aggregate")
+    public ResponseEntity<Map<String, Object>> aggregateDeclaration(
+            @RequestParam Long companyId,
+            @RequestParam String period,
+            @RequestParam(required = false) String endPeriod) {
+
+        YearMonth debut = YearMonth.parse(period);
+        YearMonth fin = endPeriod != null ? YearMonth.parse(endPeriod) : debut;
+
+        return ResponseEntity.ok(taxDeclarationAggregationService.agreger(companyId, debut, fin));
+    }
+
+    /**
+     * Agrégation des déclarations d'une période pour plusieurs entreprises (toutes les entreprises actives par défaut)
+     */
+    @PostMapping("/declarations/batch")
+    public ResponseEntity<Map<String, Object>> aggregateDeclarations(
+            @RequestParam String period,
+            @RequestParam(required = false) String endPeriod,
+            @RequestBody(required = false) List<Long> companyIds) {
+
+        YearMonth debut = YearMonth.parse(period);
+        YearMonth fin = endPeriod != null ? YearMonth.parse(endPeriod) : debut;
+
+        if (companyIds == null || companyIds.isEmpty()) {
+            return ResponseEntity.ok(taxDeclarationAggregationService.agregerEntreprises(debut, fin));
+        }
+        return ResponseEntity.ok(taxDeclarationAggregationService.agregerEntreprises(companyIds, debut, fin));
+    }
+
+    /**
+     * Rechargement des règles fiscales et sociales (barèmes, taux) depuis le fichier configuré
+     */
+    @PostMapping("/rules/reload")
+    public ResponseEntity<Map<String, Object>> reloadTaxRules() {
+        Map<String, Object> result = taxAndSocialService.reloadTaxRules();
+
+        if ("ERROR".equals(result.get("status"))) {
+            return ResponseEntity.badRequest().body(result);
+        }
+        return ResponseEntity.ok(result);
+    }
+
     /**
      * Endpoint de test pour les taxes sur salaires
      */
@@ -45,6 +45,29 @@ public class ThirdPartyReportingController {
         }
     }
 
+    /**
+     * Générer les Grands Livres de tous les tiers de l'entreprise
+     * GET /api/third-party-reporting/ledgers?companyId=1&startDate=2024-01-01&endDate=2024-12-31
+     */
+    @GetMapping("/ledgers")
+    public ResponseEntity<Map<String, Object>> generateThirdPartyLedgers(
+            @RequestParam Long companyId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        
+        try {
+            Map<String, Object> ledgers = thirdPartyReportingService.generateThirdPartyLedgers(companyId, startDate, endDate);
+            return ResponseEntity.ok(ledgers);
+        } catch (Exception e) {
+            Map<String, Object> error = Map.of(
+                "error", "Erreur lors de la génération des Grands Livres des tiers",
+                "message", e.getMessage(),
+                "status", "ERROR"
+            );
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
     /**
      * Générer la Balance des Tiers (Balance Âgée)
      * GET /api/third-party-reporting/balance?companyId=1&asOfDate=2024-12-31
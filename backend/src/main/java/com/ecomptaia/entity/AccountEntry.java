@@ -5,7 +5,9 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "account_entries")
+@Table(name = "account_entries", indexes = {
+    @Index(name = "idx_account_entries_tiers", columnList = "company_id, account_number, journal_entry_id")
+})
 public class AccountEntry {
 
     @Id
@@ -0,0 +1,107 @@
+package com.ecomptaia.entity;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Cumul mensuel des mouvements comptabilisés par compte (entreprise × compte × mois).
+ * Mis à jour à chaque validation / annulation d'écriture afin que les soldes à date
+ * soient obtenus sans relire tout le grand livre.
+ */
+@Entity
+@Table(name = "account_period_balances",
+       uniqueConstraints = @UniqueConstraint(
+           name = "uk_account_period_balance",
+           columnNames = {"company_id", "ledger", "account_number", "period_year", "period_month"}),
+       indexes = @Index(name = "idx_account_period_balance_lookup",
+           columnList = "company_id, ledger, period_year, period_month"))
+public class AccountPeriodBalance {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "company_id", nullable = false)
+    private Long companyId;
+
+    @Column(name = "ledger", nullable = false, length = 20)
+    private String ledger; // ECRITURE (ecritures_comptables) ou JOURNAL (journal_entries)
+
+    @Column(name = "account_number", nullable = false, length = 20)
+    private String accountNumber;
+
+    @Column(name = "account_name")
+    private String accountName;
+
+    @Column(name = "period_year", nullable = false)
+    private Integer periodYear;
+
+    @Column(name = "period_month", nullable = false)
+    private Integer periodMonth;
+
+    @Column(name = "total_debit", precision = 19, scale = 2, nullable = false)
+    private BigDecimal totalDebit = BigDecimal.ZERO;
+
+    @Column(name = "total_credit", precision = 19, scale = 2, nullable = false)
+    private BigDecimal totalCredit = BigDecimal.ZERO;
+
+    @Column(name = "entry_count", nullable = false)
+    private Long entryCount = 0L;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    // Constructeurs
+    public AccountPeriodBalance() {}
+
+    public AccountPeriodBalance(Long companyId, String ledger, String accountNumber, String accountName,
+                                Integer periodYear, Integer periodMonth) {
+        this.companyId = companyId;
+        this.ledger = ledger;
+        this.accountNumber = accountNumber;
+        this.accountName = accountName;
+        this.periodYear = periodYear;
+        this.periodMonth = periodMonth;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    // Getters et Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getCompanyId() { return companyId; }
+    public void setCompanyId(Long companyId) { this.companyId = companyId; }
+
+    public String getLedger() { return ledger; }
+    public void setLedger(String ledger) { this.ledger = ledger; }
+
+    public String getAccountNumber() { return accountNumber; }
+    public void setAccountNumber(String accountNumber) { this.accountNumber = accountNumber; }
+
+    public String getAccountName() { return accountName; }
+    public void setAccountName(String accountName) { this.accountName = accountName; }
+
+    public Integer getPeriodYear() { return periodYear; }
+    public void setPeriodYear(Integer periodYear) { this.periodYear = periodYear; }
+
+    public Integer getPeriodMonth() { return periodMonth; }
+    public void setPeriodMonth(Integer periodMonth) { this.periodMonth = periodMonth; }
+
+    public BigDecimal getTotalDebit() { return totalDebit; }
+    public void setTotalDebit(BigDecimal totalDebit) { this.totalDebit = totalDebit; }
+
+    public BigDecimal getTotalCredit() { return totalCredit; }
+    public void setTotalCredit(BigDecimal totalCredit) { this.totalCredit = totalCredit; }
+
+    public Long getEntryCount() { return entryCount; }
+    public void setEntryCount(Long entryCount) { this.entryCount = entryCount; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+
+    // Méthodes utilitaires
+    public BigDecimal getSolde() {
+        return totalDebit.subtract(totalCredit);
+    }
+}
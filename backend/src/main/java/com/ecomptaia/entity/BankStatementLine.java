@@ -0,0 +1,124 @@
+package com.ecomptaia.entity;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Ligne de relevé bancaire, à rapprocher des lignes comptables du compte de trésorerie
+ */
+@Entity
+@Table(name = "bank_statement_lines", indexes = {
+    @Index(name = "idx_bank_statement_lines_compte", columnList = "bank_account_id, is_reconciled, transaction_date"),
+    @Index(name = "idx_bank_statement_lines_reference", columnList = "bank_account_id, bank_reference", unique = true)
+})
+public class BankStatementLine {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "company_id", nullable = false)
+    private Long companyId; // ID de l'entreprise
+
+    @Column(name = "bank_account_id", nullable = false)
+    private Long bankAccountId; // ID du compte bancaire
+
+    @Column(name = "bank_reference", nullable = false, length = 100)
+    private String bankReference; // Référence unique de l'opération attribuée par la banque
+
+    @Column(name = "transaction_date", nullable = false)
+    private LocalDate transactionDate; // Date d'opération
+
+    @Column(name = "value_date")
+    private LocalDate valueDate; // Date de valeur
+
+    @Column(precision = 15, scale = 2, nullable = false)
+    private BigDecimal amount; // Montant signé : positif au crédit du compte (encaissement), négatif au débit
+
+    @Column(nullable = false, length = 3)
+    private String currency; // Devise
+
+    @Column(length = 500)
+    private String description; // Libellé de l'opération
+
+    @Column(length = 255)
+    private String counterparty; // Donneur d'ordre ou bénéficiaire
+
+    @Column(name = "is_reconciled", nullable = false)
+    private Boolean isReconciled = false; // Si la ligne est rapprochée
+
+    @Column(name = "reconciliation_id")
+    private Long reconciliationId; // Rapprochement ayant apparié la ligne
+
+    @Column(name = "reconciliation_reference", length = 100)
+    private String reconciliationReference; // Référence commune aux lignes comptables appariées
+
+    @Column(name = "match_type", length = 20)
+    private String matchType; // EXACT, TOLERANCE, REFERENCE, COMBINAISON
+
+    @Column(name = "reconciled_at")
+    private LocalDateTime reconciledAt; // Date de rapprochement
+
+    @Column(name = "source_file")
+    private String sourceFile; // Fichier de relevé importé
+
+    @Column(name = "imported_at")
+    private LocalDateTime importedAt; // Date d'import
+
+    // Constructeurs
+    public BankStatementLine() {}
+
+    // Getters et Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getCompanyId() { return companyId; }
+    public void setCompanyId(Long companyId) { this.companyId = companyId; }
+
+    public Long getBankAccountId() { return bankAccountId; }
+    public void setBankAccountId(Long bankAccountId) { this.bankAccountId = bankAccountId; }
+
+    public String getBankReference() { return bankReference; }
+    public void setBankReference(String bankReference) { this.bankReference = bankReference; }
+
+    public LocalDate getTransactionDate() { return transactionDate; }
+    public void setTransactionDate(LocalDate transactionDate) { this.transactionDate = transactionDate; }
+
+    public LocalDate getValueDate() { return valueDate; }
+    public void setValueDate(LocalDate valueDate) { this.valueDate = valueDate; }
+
+    public BigDecimal getAmount() { return amount; }
+    public void setAmount(BigDecimal amount) { this.amount = amount; }
+
+    public String getCurrency() { return currency; }
+    public void setCurrency(String currency) { this.currency = currency; }
+
+    public String getDescription() { return description; }
+    public void setDescription(String description) { this.description = description; }
+
+    public String getCounterparty() { return counterparty; }
+    public void setCounterparty(String counterparty) { this.counterparty = counterparty; }
+
+    public Boolean getIsReconciled() { return isReconciled; }
+    public void setIsReconciled(Boolean isReconciled) { this.isReconciled = isReconciled; }
+
+    public Long getReconciliationId() { return reconciliationId; }
+    public void setReconciliationId(Long reconciliationId) { this.reconciliationId = reconciliationId; }
+
+    public String getReconciliationReference() { return reconciliationReference; }
+    public void setReconciliationReference(String reconciliationReference) { this.reconciliationReference = reconciliationReference; }
+
+    public String getMatchType() { return matchType; }
+    public void setMatchType(String matchType) { this.matchType = matchType; }
+
+    public LocalDateTime getReconciledAt() { return reconciledAt; }
+    public void setReconciledAt(LocalDateTime reconciledAt) { this.reconciledAt = reconciledAt; }
+
+    public String getSourceFile() { return sourceFile; }
+    public void setSourceFile(String sourceFile) { this.sourceFile = sourceFile; }
+
+    public LocalDateTime getImportedAt() { return importedAt; }
+    public void setImportedAt(LocalDateTime importedAt) { this.importedAt = importedAt; }
+}
@@ -14,7 +14,8 @@ import com.ecomptaia.security.entity.User;
 public class EcritureComptable {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ecritures_comptables_seq")
+    @SequenceGenerator(name = "ecritures_comptables_seq", sequenceName = "ecritures_comptables_seq", allocationSize = 50)
     private Long id;
     
     @Column(name = "numero_piece", nullable = false, unique = true)
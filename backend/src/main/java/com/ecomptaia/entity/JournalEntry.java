@@ -6,7 +6,9 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "journal_entries")
+@Table(name = "journal_entries", indexes = {
+    @Index(name = "idx_journal_entries_company_date", columnList = "company_id, entry_date")
+})
 public class JournalEntry {
 
     @Id
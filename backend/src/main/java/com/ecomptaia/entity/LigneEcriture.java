@@ -14,7 +14,8 @@ import com.ecomptaia.entity.ThirdParty;
 public class LigneEcriture {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "lignes_ecritures_seq")
+    @SequenceGenerator(name = "lignes_ecritures_seq", sequenceName = "lignes_ecritures_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
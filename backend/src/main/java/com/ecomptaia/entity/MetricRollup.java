@@ -0,0 +1,180 @@
+package com.ecomptaia.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Agrégat d'une série de métriques sur une période (minute, heure ou jour) : nombre d'échantillons,
+ * min/max/moyenne/p95 et nombre d'échantillons en avertissement ou critiques, calculé par une instance du backend
+ * sur ses propres échantillons (une ligne par instance, série, résolution et période)
+ */
+@Entity
+@Table(name = "metric_rollups", indexes = {
+    @Index(name = "idx_metric_rollups_serie", columnList = "metric_name, resolution, bucket_start")
+})
+public class MetricRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "node_id", nullable = false)
+    private String nodeId;
+
+    @Column(name = "metric_name", nullable = false)
+    private String metricName;
+
+    @Column(name = "entreprise_id")
+    private Long entrepriseId;
+
+    @Column(name = "category", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private Metric.MetricCategory category;
+
+    @Column(name = "resolution", nullable = false, length = 10)
+    @Enumerated(EnumType.STRING)
+    private Resolution resolution;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(name = "sample_count", nullable = false)
+    private Long sampleCount;
+
+    @Column(name = "min_value", nullable = false)
+    private Double minValue;
+
+    @Column(name = "max_value", nullable = false)
+    private Double maxValue;
+
+    @Column(name = "avg_value", nullable = false)
+    private Double avgValue;
+
+    @Column(name = "p95_value", nullable = false)
+    private Double p95Value;
+
+    @Column(name = "warning_count", nullable = false)
+    private Long warningCount;
+
+    @Column(name = "critical_count", nullable = false)
+    private Long criticalCount;
+
+    public enum Resolution {
+        MINUTE, HOUR, DAY
+    }
+
+    public MetricRollup() {
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public String getMetricName() {
+        return metricName;
+    }
+
+    public void setMetricName(String metricName) {
+        this.metricName = metricName;
+    }
+
+    public Long getEntrepriseId() {
+        return entrepriseId;
+    }
+
+    public void setEntrepriseId(Long entrepriseId) {
+        this.entrepriseId = entrepriseId;
+    }
+
+    public Metric.MetricCategory getCategory() {
+        return category;
+    }
+
+    public void setCategory(Metric.MetricCategory category) {
+        this.category = category;
+    }
+
+    public Resolution getResolution() {
+        return resolution;
+    }
+
+    public void setResolution(Resolution resolution) {
+        this.resolution = resolution;
+    }
+
+    public LocalDateTime getBucketStart() {
+        return bucketStart;
+    }
+
+    public void setBucketStart(LocalDateTime bucketStart) {
+        this.bucketStart = bucketStart;
+    }
+
+    public Long getSampleCount() {
+        return sampleCount;
+    }
+
+    public void setSampleCount(Long sampleCount) {
+        this.sampleCount = sampleCount;
+    }
+
+    public Double getMinValue() {
+        return minValue;
+    }
+
+    public void setMinValue(Double minValue) {
+        this.minValue = minValue;
+    }
+
+    public Double getMaxValue() {
+        return maxValue;
+    }
+
+    public void setMaxValue(Double maxValue) {
+        this.maxValue = maxValue;
+    }
+
+    public Double getAvgValue() {
+        return avgValue;
+    }
+
+    public void setAvgValue(Double avgValue) {
+        this.avgValue = avgValue;
+    }
+
+    public Double getP95Value() {
+        return p95Value;
+    }
+
+    public void setP95Value(Double p95Value) {
+        this.p95Value = p95Value;
+    }
+
+    public Long getWarningCount() {
+        return warningCount;
+    }
+
+    public void setWarningCount(Long warningCount) {
+        this.warningCount = warningCount;
+    }
+
+    public Long getCriticalCount() {
+        return criticalCount;
+    }
+
+    public void setCriticalCount(Long criticalCount) {
+        this.criticalCount = criticalCount;
+    }
+}
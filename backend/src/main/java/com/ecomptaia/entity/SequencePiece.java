@@ -0,0 +1,72 @@
+package com.ecomptaia.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Compteur de numéros de pièce par entreprise × journal × mois.
+ * La ligne est incrémentée par une mise à jour atomique : deux allocations concurrentes
+ * sur la même clé sont sérialisées par le verrou de ligne, les autres clés ne sont pas bloquées.
+ */
+@Entity
+@Table(name = "sequences_pieces",
+       uniqueConstraints = @UniqueConstraint(
+           name = "uk_sequence_piece",
+           columnNames = {"entreprise_id", "journal", "annee", "mois"}))
+public class SequencePiece {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "entreprise_id", nullable = false)
+    private Long entrepriseId;
+
+    @Column(name = "journal", nullable = false, length = 20)
+    private String journal;
+
+    @Column(name = "annee", nullable = false)
+    private Integer annee;
+
+    @Column(name = "mois", nullable = false)
+    private Integer mois;
+
+    @Column(name = "dernier_numero", nullable = false)
+    private Long dernierNumero = 0L;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    // Constructeurs
+    public SequencePiece() {}
+
+    public SequencePiece(Long entrepriseId, String journal, Integer annee, Integer mois) {
+        this.entrepriseId = entrepriseId;
+        this.journal = journal;
+        this.annee = annee;
+        this.mois = mois;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    // Getters et Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getEntrepriseId() { return entrepriseId; }
+    public void setEntrepriseId(Long entrepriseId) { this.entrepriseId = entrepriseId; }
+
+    public String getJournal() { return journal; }
+    public void setJournal(String journal) { this.journal = journal; }
+
+    public Integer getAnnee() { return annee; }
+    public void setAnnee(Integer annee) { this.annee = annee; }
+
+    public Integer getMois() { return mois; }
+    public void setMois(Integer mois) { this.mois = mois; }
+
+    public Long getDernierNumero() { return dernierNumero; }
+    public void setDernierNumero(Long dernierNumero) { this.dernierNumero = dernierNumero; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
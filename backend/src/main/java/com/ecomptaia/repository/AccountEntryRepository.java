@@ -1,12 +1,17 @@
 package com.ecomptaia.repository;
 
 import com.ecomptaia.entity.AccountEntry;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface AccountEntryRepository extends JpaRepository<AccountEntry, Long> {
@@ -31,4 +36,134 @@ public interface AccountEntryRepository extends JpaRepository<AccountEntry, Long
 
     @Query("SELECT ae FROM AccountEntry ae WHERE ae.companyId = :companyId AND ae.isReconciled = true")
     List<AccountEntry> findReconciledEntriesByCompany(@Param("companyId") Long companyId);
+
+    /**
+     * Cumuls débit/crédit des lignes validées par compte et par mois (reconstruction des cumuls mensuels)
+     */
+    @Query("SELECT ae.accountNumber, MAX(ae.accountName), YEAR(je.entryDate), MONTH(je.entryDate), " +
+           "SUM(CASE WHEN ae.accountType = 'DEBIT' THEN ae.amount ELSE 0 END), " +
+           "SUM(CASE WHEN ae.accountType = 'CREDIT' THEN ae.amount ELSE 0 END), COUNT(ae) " +
+           "FROM AccountEntry ae JOIN JournalEntry je ON je.id = ae.journalEntryId " +
+           "WHERE je.companyId = :companyId AND je.status = 'VALIDÉ' " +
+           "GROUP BY ae.accountNumber, YEAR(je.entryDate), MONTH(je.entryDate)")
+    List<Object[]> sumValidatedByAccountAndMonth(@Param("companyId") Long companyId);
+
+    /**
+     * Cumuls débit/crédit des lignes validées par compte sur une période
+     */
+    @Query("SELECT ae.accountNumber, MAX(ae.accountName), " +
+           "SUM(CASE WHEN ae.accountType = 'DEBIT' THEN ae.amount ELSE 0 END), " +
+           "SUM(CASE WHEN ae.accountType = 'CREDIT' THEN ae.amount ELSE 0 END), COUNT(ae) " +
+           "FROM AccountEntry ae JOIN JournalEntry je ON je.id = ae.journalEntryId " +
+           "WHERE je.companyId = :companyId AND je.status = 'VALIDÉ' " +
+           "AND je.entryDate >= :startDate AND je.entryDate <= :endDate " +
+           "GROUP BY ae.accountNumber")
+    List<Object[]> sumValidatedByAccountBetween(@Param("companyId") Long companyId,
+                                                @Param("startDate") LocalDate startDate,
+                                                @Param("endDate") LocalDate endDate);
+
+    /**
+     * Cumuls des lignes validées des comptes fiscaux et sociaux (43, 44, 66, 70) par compte et par mois
+     */
+    @Query("SELECT ae.accountNumber, YEAR(je.entryDate), MONTH(je.entryDate), " +
+           "SUM(CASE WHEN ae.accountType = 'DEBIT' THEN ae.amount ELSE 0 END), " +
+           "SUM(CASE WHEN ae.accountType = 'CREDIT' THEN ae.amount ELSE 0 END), COUNT(ae) " +
+           "FROM AccountEntry ae JOIN JournalEntry je ON je.id = ae.journalEntryId " +
+           "WHERE je.companyId = :companyId AND je.status = 'VALIDÉ' " +
+           "AND je.entryDate >= :startDate AND je.entryDate <= :endDate " +
+           "AND (ae.accountNumber LIKE '43%' OR ae.accountNumber LIKE '44%' " +
+           "OR ae.accountNumber LIKE '66%' OR ae.accountNumber LIKE '70%') " +
+           "GROUP BY ae.accountNumber, YEAR(je.entryDate), MONTH(je.entryDate)")
+    List<Object[]> sumValidatedTaxAccountsByMonth(@Param("companyId") Long companyId,
+                                                  @Param("startDate") LocalDate startDate,
+                                                  @Param("endDate") LocalDate endDate);
+
+    /**
+     * Lignes des écritures validées d'une période en une seule requête, triées par compte puis par date
+     * (lecture du grand livre sans requête par écriture)
+     */
+    @Query("SELECT ae FROM AccountEntry ae JOIN JournalEntry je ON je.id = ae.journalEntryId " +
+           "WHERE je.companyId = :companyId AND je.status = 'VALIDÉ' " +
+           "AND je.entryDate >= :startDate AND je.entryDate <= :endDate " +
+           "ORDER BY ae.accountNumber, je.entryDate, ae.id")
+    List<AccountEntry> findValidatedLinesByDateRange(@Param("companyId") Long companyId,
+                                                     @Param("startDate") LocalDate startDate,
+                                                     @Param("endDate") LocalDate endDate);
+
+    /**
+     * Lignes validées d'une période lues en flux (curseur), sans entités managées :
+     * [compte, libellé compte, date, n° pièce, journal, libellé, sens, montant].
+     * À consommer dans une transaction et à fermer après usage.
+     */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT ae.accountNumber, ae.accountName, je.entryDate, je.entryNumber, je.journalType, " +
+           "COALESCE(ae.description, je.description), ae.accountType, ae.amount " +
+           "FROM AccountEntry ae JOIN JournalEntry je ON je.id = ae.journalEntryId " +
+           "WHERE je.companyId = :companyId AND je.status = 'VALIDÉ' " +
+           "AND je.entryDate >= :startDate AND je.entryDate <= :endDate " +
+           "ORDER BY ae.accountNumber, je.entryDate, ae.id")
+    Stream<Object[]> streamValidatedLinesByDateRange(@Param("companyId") Long companyId,
+                                                     @Param("startDate") LocalDate startDate,
+                                                     @Param("endDate") LocalDate endDate);
+
+    /**
+     * Lignes non rapprochées d'une période lues en flux, sans entités managées (rapprochement bancaire) :
+     * [id, compte, sens, montant, date, référence, n° document, libellé].
+     * À consommer dans une transaction et à fermer après usage.
+     */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT ae.id, ae.accountNumber, ae.accountType, ae.amount, je.entryDate, ae.reference, " +
+           "COALESCE(ae.documentNumber, je.documentNumber), COALESCE(ae.description, je.description) " +
+           "FROM AccountEntry ae JOIN JournalEntry je ON je.id = ae.journalEntryId " +
+           "WHERE ae.companyId = :companyId AND (ae.isReconciled = false OR ae.isReconciled IS NULL) " +
+           "AND je.status <> 'ANNULE' AND je.entryDate >= :startDate AND je.entryDate <= :endDate")
+    Stream<Object[]> streamUnreconciledLinesByDateRange(@Param("companyId") Long companyId,
+                                                        @Param("startDate") LocalDate startDate,
+                                                        @Param("endDate") LocalDate endDate);
+
+    /**
+     * Lignes validées des comptes de tiers d'une racine (401, 411...) jusqu'à une date, lues en flux et triées
+     * par compte puis par date (grands livres auxiliaires et balance âgée en un parcours) :
+     * [compte, id, date, sens, montant, référence, libellé, id écriture, n° écriture, code de lettrage].
+     * À consommer dans une transaction et à fermer après usage.
+     */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT ae.accountNumber, ae.id, je.entryDate, ae.accountType, ae.amount, " +
+           "COALESCE(ae.reference, je.reference), COALESCE(ae.description, je.description), je.id, je.entryNumber, " +
+           "ae.reconciliationReference " +
+           "FROM AccountEntry ae JOIN JournalEntry je ON je.id = ae.journalEntryId " +
+           "WHERE ae.companyId = :companyId AND ae.accountNumber LIKE CONCAT(:racine, '%') " +
+           "AND je.status = 'VALIDÉ' AND je.entryDate <= :endDate " +
+           "ORDER BY ae.accountNumber, je.entryDate, ae.id")
+    Stream<Object[]> streamValidatedThirdPartyLines(@Param("companyId") Long companyId,
+                                                    @Param("racine") String racine,
+                                                    @Param("endDate") LocalDate endDate);
+
+    /**
+     * Lignes validées d'un seul compte de tiers jusqu'à une date, par l'index (entreprise, compte) :
+     * mêmes colonnes que streamValidatedThirdPartyLines
+     */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT ae.accountNumber, ae.id, je.entryDate, ae.accountType, ae.amount, " +
+           "COALESCE(ae.reference, je.reference), COALESCE(ae.description, je.description), je.id, je.entryNumber, " +
+           "ae.reconciliationReference " +
+           "FROM AccountEntry ae JOIN JournalEntry je ON je.id = ae.journalEntryId " +
+           "WHERE ae.companyId = :companyId AND ae.accountNumber = :accountNumber " +
+           "AND je.status = 'VALIDÉ' AND je.entryDate <= :endDate " +
+           "ORDER BY je.entryDate, ae.id")
+    Stream<Object[]> streamValidatedLinesByAccount(@Param("companyId") Long companyId,
+                                                   @Param("accountNumber") String accountNumber,
+                                                   @Param("endDate") LocalDate endDate);
 }
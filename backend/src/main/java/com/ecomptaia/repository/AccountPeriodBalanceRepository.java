@@ -0,0 +1,55 @@
+package com.ecomptaia.repository;
+
+import com.ecomptaia.entity.AccountPeriodBalance;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface AccountPeriodBalanceRepository extends JpaRepository<AccountPeriodBalance, Long> {
+
+    List<AccountPeriodBalance> findByCompanyIdAndLedger(Long companyId, String ledger);
+
+    @Query("SELECT DISTINCT b.companyId FROM AccountPeriodBalance b WHERE b.ledger = :ledger")
+    List<Long> findDistinctCompanyIdsByLedger(@Param("ledger") String ledger);
+
+    /**
+     * Incrément atomique d'un cumul mensuel ; retourne 0 si le cumul n'existe pas encore
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE AccountPeriodBalance b SET b.totalDebit = b.totalDebit + :debit, " +
+           "b.totalCredit = b.totalCredit + :credit, b.entryCount = b.entryCount + :count, b.updatedAt = :now " +
+           "WHERE b.companyId = :companyId AND b.ledger = :ledger AND b.accountNumber = :accountNumber " +
+           "AND b.periodYear = :year AND b.periodMonth = :month")
+    int increment(@Param("companyId") Long companyId,
+                  @Param("ledger") String ledger,
+                  @Param("accountNumber") String accountNumber,
+                  @Param("year") Integer year,
+                  @Param("month") Integer month,
+                  @Param("debit") BigDecimal debit,
+                  @Param("credit") BigDecimal credit,
+                  @Param("count") Long count,
+                  @Param("now") LocalDateTime now);
+
+    /**
+     * Cumuls par compte de tous les mois strictement antérieurs au mois donné
+     */
+    @Query("SELECT b.accountNumber, MAX(b.accountName), SUM(b.totalDebit), SUM(b.totalCredit), SUM(b.entryCount) " +
+           "FROM AccountPeriodBalance b WHERE b.companyId = :companyId AND b.ledger = :ledger " +
+           "AND (b.periodYear < :year OR (b.periodYear = :year AND b.periodMonth < :month)) " +
+           "GROUP BY b.accountNumber")
+    List<Object[]> sumByAccountBeforeMonth(@Param("companyId") Long companyId,
+                                           @Param("ledger") String ledger,
+                                           @Param("year") Integer year,
+                                           @Param("month") Integer month);
+
+    @Modifying
+    @Query("DELETE FROM AccountPeriodBalance b WHERE b.companyId = :companyId AND b.ledger = :ledger")
+    void deleteByCompanyIdAndLedger(@Param("companyId") Long companyId, @Param("ledger") String ledger);
+}
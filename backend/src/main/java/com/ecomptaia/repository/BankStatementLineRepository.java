@@ -0,0 +1,36 @@
+package com.ecomptaia.repository;
+
+import com.ecomptaia.entity.BankStatementLine;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Repository
+public interface BankStatementLineRepository extends JpaRepository<BankStatementLine, Long> {
+
+    List<BankStatementLine> findByBankAccountIdAndIsReconciledFalseOrderByTransactionDate(Long bankAccountId);
+
+    /**
+     * Lignes non rapprochées d'un compte bancaire lues en flux, sans entités managées :
+     * [id, montant, date d'opération, référence bancaire, libellé, contrepartie].
+     * À consommer dans une transaction et à fermer après usage.
+     */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT l.id, l.amount, l.transactionDate, l.bankReference, l.description, l.counterparty " +
+           "FROM BankStatementLine l WHERE l.bankAccountId = :bankAccountId AND l.isReconciled = false " +
+           "AND l.transactionDate >= :startDate AND l.transactionDate <= :endDate")
+    Stream<Object[]> streamUnreconciled(@Param("bankAccountId") Long bankAccountId,
+                                        @Param("startDate") LocalDate startDate,
+                                        @Param("endDate") LocalDate endDate);
+}
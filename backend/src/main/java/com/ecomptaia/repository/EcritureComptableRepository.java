@@ -9,6 +9,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.domain.Pageable;
@@ -41,9 +42,17 @@ public interface EcritureComptableRepository extends JpaRepository<EcritureCompt
     // Recherche par numéro de pièce
     Optional<EcritureComptable> findByNumeroPiece(String numeroPiece);
     
+    // Numéros de pièce déjà utilisés parmi une liste (contrôle des imports en masse)
+    @Query("SELECT e.numeroPiece FROM EcritureComptable e WHERE e.numeroPiece IN :numeros")
+    List<String> findNumerosPieceExistants(@Param("numeros") Collection<String> numeros);
+    
     // Recherche par référence
     List<EcritureComptable> findByReferenceContainingIgnoreCaseOrderByDateEcritureDesc(String reference);
     
+    // Écritures d'une entreprise portant une référence, hors statut donné (traitements à ne pas rejouer)
+    boolean existsByEntrepriseIdAndReferenceAndStatutNot(Long entrepriseId, String reference,
+                                                         EcritureComptable.StatutEcriture statut);
+    
     // Recherche par libellé
     List<EcritureComptable> findByLibelleContainingIgnoreCaseOrderByDateEcritureDesc(String libelle);
     
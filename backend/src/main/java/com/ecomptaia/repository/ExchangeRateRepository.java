@@ -28,6 +28,8 @@ public interface ExchangeRateRepository extends JpaRepository<ExchangeRate, Long
     
     List<ExchangeRate> findByDateAndIsActiveTrue(LocalDate date);
     
+    List<ExchangeRate> findByDateGreaterThanEqualAndIsActiveTrue(LocalDate date);
+    
     List<ExchangeRate> findByFromCurrencyAndIsActiveTrue(String fromCurrency);
     
     List<ExchangeRate> findByToCurrencyAndIsActiveTrue(String toCurrency);
@@ -41,6 +41,9 @@ public interface JournalEntryRepository extends JpaRepository<JournalEntry, Long
     @Query("SELECT je FROM JournalEntry je WHERE je.companyId = :companyId AND je.entryDate >= :startDate AND je.entryDate <= :endDate AND je.status = 'VALIDÉ' ORDER BY je.entryDate DESC")
     List<JournalEntry> findValidatedEntriesByDateRange(@Param("companyId") Long companyId, @Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
 
+    @Query("SELECT COUNT(je) FROM JournalEntry je WHERE je.companyId = :companyId AND je.entryDate >= :startDate AND je.entryDate <= :endDate AND je.status = 'VALIDÉ'")
+    long countValidatedEntriesByDateRange(@Param("companyId") Long companyId, @Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+
     @Query("SELECT DISTINCT je.journalType FROM JournalEntry je WHERE je.companyId = :companyId")
     List<String> findDistinctJournalTypesByCompany(@Param("companyId") Long companyId);
 
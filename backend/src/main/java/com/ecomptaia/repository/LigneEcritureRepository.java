@@ -4,13 +4,18 @@ import com.ecomptaia.entity.LigneEcriture;
 import com.ecomptaia.entity.EcritureComptable;
 import com.ecomptaia.accounting.entity.Account;
 import com.ecomptaia.entity.ThirdParty;
+import com.ecomptaia.entity.Company;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface LigneEcritureRepository extends JpaRepository<LigneEcriture, Long> {
@@ -165,6 +170,82 @@ public interface LigneEcritureRepository extends JpaRepository<LigneEcriture, Lo
     @Query("SELECT l FROM LigneEcriture l WHERE l.compteNumero LIKE :sousClasseCompte + '%' ORDER BY l.ecriture.dateEcriture DESC")
     List<LigneEcriture> findBySousClasseCompte(@Param("sousClasseCompte") String sousClasseCompte);
     
+    // Cumuls débit/crédit par compte avant une date (soldes d'ouverture de la balance)
+    @Query("SELECT l.compte.id, COALESCE(SUM(l.debit), 0), COALESCE(SUM(l.credit), 0) " +
+           "FROM LigneEcriture l WHERE l.ecriture.entreprise = :entreprise " +
+           "AND l.ecriture.dateEcriture < :dateDebut " +
+           "GROUP BY l.compte.id")
+    List<Object[]> sumDebitCreditByCompteAvantDate(
+        @Param("entreprise") Company entreprise,
+        @Param("dateDebut") java.time.LocalDate dateDebut
+    );
+    
+    // Mouvements par compte sur une période : débit, crédit, nombre de lignes, date du dernier mouvement
+    @Query("SELECT l.compte.id, COALESCE(SUM(l.debit), 0), COALESCE(SUM(l.credit), 0), COUNT(l), MAX(l.ecriture.dateEcriture) " +
+           "FROM LigneEcriture l WHERE l.ecriture.entreprise = :entreprise " +
+           "AND l.ecriture.dateEcriture BETWEEN :dateDebut AND :dateFin " +
+           "GROUP BY l.compte.id")
+    List<Object[]> sumMouvementsByCompteEtPeriode(
+        @Param("entreprise") Company entreprise,
+        @Param("dateDebut") java.time.LocalDate dateDebut,
+        @Param("dateFin") java.time.LocalDate dateFin
+    );
+    
+    // Cumuls des lignes comptabilisées par compte et par mois (reconstruction des cumuls mensuels)
+    @Query("SELECT l.compteNumero, MAX(l.compteLibelle), YEAR(l.ecriture.dateEcriture), MONTH(l.ecriture.dateEcriture), " +
+           "COALESCE(SUM(l.debit), 0), COALESCE(SUM(l.credit), 0), COUNT(l) " +
+           "FROM LigneEcriture l WHERE l.ecriture.entreprise.id = :entrepriseId AND l.ecriture.statut IN :statuts " +
+           "GROUP BY l.compteNumero, YEAR(l.ecriture.dateEcriture), MONTH(l.ecriture.dateEcriture)")
+    List<Object[]> sumComptabiliseesByCompteEtMois(
+        @Param("entrepriseId") Long entrepriseId,
+        @Param("statuts") java.util.Collection<EcritureComptable.StatutEcriture> statuts
+    );
+    
+    // Solde (débit - crédit) par numéro de compte à une date d'arrêté (états SYCEBNL)
+    @Query("SELECT l.compteNumero, COALESCE(SUM(l.debit), 0) - COALESCE(SUM(l.credit), 0) " +
+           "FROM LigneEcriture l WHERE l.ecriture.dateEcriture <= :dateArrete " +
+           "GROUP BY l.compteNumero")
+    List<Object[]> sumSoldesByCompteNumeroAuDate(@Param("dateArrete") java.time.LocalDate dateArrete);
+    
+    // Solde (débit - crédit) d'un numéro de compte à une date d'arrêté
+    @Query("SELECT COALESCE(SUM(l.debit), 0) - COALESCE(SUM(l.credit), 0) " +
+           "FROM LigneEcriture l WHERE l.compteNumero = :compteNumero AND l.ecriture.dateEcriture <= :dateArrete")
+    BigDecimal sumSoldeByCompteNumeroAuDate(
+        @Param("compteNumero") String compteNumero,
+        @Param("dateArrete") java.time.LocalDate dateArrete
+    );
+    
+    // Cumuls des lignes comptabilisées par compte sur une période
+    @Query("SELECT l.compteNumero, MAX(l.compteLibelle), COALESCE(SUM(l.debit), 0), COALESCE(SUM(l.credit), 0), COUNT(l) " +
+           "FROM LigneEcriture l WHERE l.ecriture.entreprise.id = :entrepriseId AND l.ecriture.statut IN :statuts " +
+           "AND l.ecriture.dateEcriture BETWEEN :dateDebut AND :dateFin " +
+           "GROUP BY l.compteNumero")
+    List<Object[]> sumComptabiliseesByCompteEtPeriode(
+        @Param("entrepriseId") Long entrepriseId,
+        @Param("statuts") java.util.Collection<EcritureComptable.StatutEcriture> statuts,
+        @Param("dateDebut") java.time.LocalDate dateDebut,
+        @Param("dateFin") java.time.LocalDate dateFin
+    );
+    
+    // Lignes en devise étrangère d'une entreprise jusqu'à une date (réévaluation de clôture), lues par curseur :
+    // compte id, numéro, libellé, tiers id, devise, débit, crédit, taux de change, date de l'écriture.
+    // À consommer dans une transaction et à fermer après usage.
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT l.compte.id, l.compteNumero, l.compteLibelle, t.id, e.devise, l.debit, l.credit, e.tauxChange, e.dateEcriture " +
+           "FROM LigneEcriture l JOIN l.ecriture e LEFT JOIN l.tiers t " +
+           "WHERE e.entreprise.id = :entrepriseId AND e.statut IN :statuts " +
+           "AND e.devise IS NOT NULL AND e.devise <> :deviseEntreprise " +
+           "AND e.dateEcriture <= :dateCloture")
+    Stream<Object[]> streamLignesEnDeviseAuDate(
+        @Param("entrepriseId") Long entrepriseId,
+        @Param("statuts") java.util.Collection<EcritureComptable.StatutEcriture> statuts,
+        @Param("deviseEntreprise") String deviseEntreprise,
+        @Param("dateCloture") java.time.LocalDate dateCloture
+    );
+    
     // Supprimer toutes les lignes d'une écriture
     void deleteByEcriture(EcritureComptable ecriture);
     
@@ -2,6 +2,7 @@ package com.ecomptaia.repository;
 
 import com.ecomptaia.entity.Metric;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -12,6 +13,12 @@ import java.util.List;
 @Repository
 public interface MetricRepository extends JpaRepository<Metric, Long> {
 
+    // ==================== SUPPRESSION ====================
+
+    @Modifying
+    @Query("DELETE FROM Metric m WHERE m.timestamp < :cutoffDate")
+    int deleteByTimestampBefore(@Param("cutoffDate") LocalDateTime cutoffDate);
+
     // ==================== RECHERCHE PAR CATÉGORIE ====================
 
     List<Metric> findByCategoryOrderByTimestampDesc(Metric.MetricCategory category);
@@ -0,0 +1,30 @@
+package com.ecomptaia.repository;
+
+import com.ecomptaia.entity.MetricRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface MetricRollupRepository extends JpaRepository<MetricRollup, Long> {
+
+    @Query("SELECT r FROM MetricRollup r WHERE r.resolution = :resolution " +
+           "AND r.bucketStart >= :startDate AND r.bucketStart < :endDate ORDER BY r.bucketStart")
+    List<MetricRollup> findByResolutionAndPeriod(
+            @Param("resolution") MetricRollup.Resolution resolution,
+            @Param("startDate") LocalDateTime startDate,
+            @Param("endDate") LocalDateTime endDate);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM MetricRollup r WHERE r.resolution = :resolution AND r.bucketStart < :cutoffDate")
+    int deleteByResolutionBefore(
+            @Param("resolution") MetricRollup.Resolution resolution,
+            @Param("cutoffDate") LocalDateTime cutoffDate);
+}
@@ -2,6 +2,8 @@ package com.ecomptaia.repository;
 
 import com.ecomptaia.entity.Payroll;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -31,4 +33,12 @@ public interface PayrollRepository extends JpaRepository<Payroll, Long> {
      * Trouver les paies par statut
      */
     List<Payroll> findByStatusOrderByCreatedAtDesc(String status);
-}
\ No newline at end of file
+    
+    /**
+     * Salariés ayant déjà une paie pour la période (reprise d'une campagne de paie)
+     */
+    @Query("SELECT p.employeeId FROM Payroll p WHERE p.companyId = :companyId AND p.year = :year AND p.month = :month")
+    List<Long> findEmployeeIdsByCompanyAndPeriod(@Param("companyId") Long companyId,
+                                                 @Param("year") Integer year,
+                                                 @Param("month") Integer month);
+}
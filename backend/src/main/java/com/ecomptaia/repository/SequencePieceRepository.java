@@ -0,0 +1,36 @@
+package com.ecomptaia.repository;
+
+import com.ecomptaia.entity.SequencePiece;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface SequencePieceRepository extends JpaRepository<SequencePiece, Long> {
+
+    /**
+     * Avancer le compteur de n numéros ; retourne 0 si le compteur n'existe pas encore.
+     * Le verrou de ligne est conservé jusqu'à la fin de la transaction appelante.
+     */
+    @Modifying
+    @Query("UPDATE SequencePiece s SET s.dernierNumero = s.dernierNumero + :n, s.updatedAt = :now " +
+           "WHERE s.entrepriseId = :entrepriseId AND s.journal = :journal AND s.annee = :annee AND s.mois = :mois")
+    int avancer(@Param("entrepriseId") Long entrepriseId,
+                @Param("journal") String journal,
+                @Param("annee") Integer annee,
+                @Param("mois") Integer mois,
+                @Param("n") Long n,
+                @Param("now") LocalDateTime now);
+
+    @Query("SELECT s.dernierNumero FROM SequencePiece s " +
+           "WHERE s.entrepriseId = :entrepriseId AND s.journal = :journal AND s.annee = :annee AND s.mois = :mois")
+    Optional<Long> findDernierNumero(@Param("entrepriseId") Long entrepriseId,
+                                     @Param("journal") String journal,
+                                     @Param("annee") Integer annee,
+                                     @Param("mois") Integer mois);
+}
@@ -0,0 +1,257 @@
+package com.ecomptaia.security;
+
+import com.ecomptaia.config.RateLimitConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Compteurs à fenêtre fixe partagés entre les instances (limites par minute, quotas mensuels).
+ *
+ * Une vérification ne fait pas d'aller-retour réseau (sauf la lecture du total partagé à la création
+ * du compteur sur ce nœud) : elle compare la limite au dernier total partagé connu augmenté des incréments
+ * locaux non encore envoyés. Seuls les compteurs modifiés envoient leurs incréments, par lots, au magasin
+ * partagé (Redis) toutes les rate.limit.distributed.flush-interval-ms, ce qui rafraîchit leurs totaux ;
+ * les compteurs inchangés sont seulement relus, au plus toutes les rate.limit.distributed.refresh-interval-ms.
+ * Le dépassement possible est borné par ce que les autres nœuds admettent pendant l'intervalle de relecture.
+ * Magasin indisponible : chaque nœud applique limite / rate.limit.distributed.replicas à ses seuls compteurs,
+ * et les incréments sont conservés jusqu'au retour du magasin. Sans magasin (une seule instance),
+ * les compteurs sont locaux et exacts.
+ */
+@Service
+public class DistributedRateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(DistributedRateLimiter.class);
+
+    private static final long MINUTE_MS = 60_000;
+
+    private static final long RELECTURE_PAR_DEFAUT_MS = 1_000;
+
+    @Autowired(required = false)
+    private RateLimitCounterStore store;
+
+    @Autowired(required = false)
+    private RateLimitConfig rateLimitConfig;
+
+    private LongSupplier horloge = System::currentTimeMillis;
+
+    private final ConcurrentHashMap<String, Compteur> compteurs = new ConcurrentHashMap<>();
+    private volatile boolean disponible = true;
+
+    /**
+     * Consommer quantite sur le compteur cle, s'il reste de quoi sous la limite
+     *
+     * @param ttlMs durée de vie du compteur (fin de sa fenêtre)
+     */
+    public boolean essayer(String cle, long limite, long quantite, long ttlMs) {
+        long maintenant = horloge.getAsLong();
+        Compteur compteur = compteurs.get(cle);
+        if (compteur == null) {
+            Compteur nouveau = new Compteur(maintenant + ttlMs);
+            compteur = compteurs.putIfAbsent(cle, nouveau);
+            if (compteur == null) {
+                compteur = nouveau;
+                initialiser(cle, nouveau);
+            }
+        }
+
+        if (store == null) {
+            while (true) {
+                long local = compteur.local.get();
+                if (local + quantite > limite) {
+                    return false;
+                }
+                if (compteur.local.compareAndSet(local, local + quantite)) {
+                    return true;
+                }
+            }
+        }
+
+        boolean partage = disponible;
+        long plafond = partage ? limite : Math.max(1, limite / replicas());
+        while (true) {
+            long enAttente = compteur.enAttente.get();
+            long utilise = partage ? compteur.partage + compteur.enVol.get() + enAttente : compteur.local.get();
+            if (utilise + quantite > plafond) {
+                return false;
+            }
+            if (compteur.enAttente.compareAndSet(enAttente, enAttente + quantite)) {
+                compteur.local.addAndGet(quantite);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Limite par minute calendaire (fenêtre fixe) : cle suffixée de l'index de la minute
+     */
+    public boolean essayerParMinute(String cle, long limite) {
+        long maintenant = horloge.getAsLong();
+        long minute = maintenant / MINUTE_MS;
+        return essayer(cle + ":" + minute, limite, 1, (minute + 1) * MINUTE_MS - maintenant + MINUTE_MS);
+    }
+
+    /**
+     * Utilisation estimée d'un compteur (total partagé connu et incréments locaux non encore envoyés)
+     */
+    public long getUtilisation(String cle) {
+        Compteur compteur = compteurs.get(cle);
+        if (compteur == null) {
+            return 0;
+        }
+        if (store == null || !disponible) {
+            return compteur.local.get();
+        }
+        return compteur.partage + compteur.enVol.get() + compteur.enAttente.get();
+    }
+
+    /**
+     * Envoyer en un lot les incréments des compteurs modifiés, relire les totaux des compteurs inchangés
+     * non relus depuis l'intervalle de relecture ; oublier les compteurs dont la fenêtre est close
+     *
+     * @return nombre de compteurs synchronisés (envoyés ou relus)
+     */
+    @Scheduled(fixedDelayString = "${rate.limit.distributed.flush-interval-ms:100}")
+    public int synchroniser() {
+        long maintenant = horloge.getAsLong();
+        long relecture = relecture();
+        Map<String, Long> increments = new LinkedHashMap<>();
+        Map<String, Long> ttl = new LinkedHashMap<>();
+        List<Compteur> envoyes = new ArrayList<>();
+        Map<String, Compteur> aRelire = new LinkedHashMap<>();
+
+        Iterator<Map.Entry<String, Compteur>> iterator = compteurs.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Compteur> entry = iterator.next();
+            Compteur compteur = entry.getValue();
+            if (compteur.expireLe <= maintenant) {
+                iterator.remove();
+                continue;
+            }
+            if (store == null) {
+                continue;
+            }
+            long increment = compteur.enAttente.getAndSet(0);
+            if (increment == 0) {
+                if (maintenant - compteur.reluLe >= relecture) {
+                    aRelire.put(entry.getKey(), compteur);
+                }
+                continue;
+            }
+            compteur.enVol.addAndGet(increment);
+            increments.put(entry.getKey(), increment);
+            ttl.put(entry.getKey(), compteur.expireLe - maintenant);
+            envoyes.add(compteur);
+        }
+        if (increments.isEmpty() && aRelire.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            if (!increments.isEmpty()) {
+                Map<String, Long> totaux = store.incrementer(increments, ttl);
+                int i = 0;
+                for (Map.Entry<String, Long> increment : increments.entrySet()) {
+                    Compteur compteur = envoyes.get(i++);
+                    Long total = totaux.get(increment.getKey());
+                    if (total != null) {
+                        compteur.partage = total;
+                    }
+                    compteur.reluLe = maintenant;
+                    compteur.enVol.addAndGet(-increment.getValue());
+                }
+                increments.clear();
+            }
+            if (!aRelire.isEmpty()) {
+                Map<String, Long> totaux = store.lire(aRelire.keySet());
+                for (Map.Entry<String, Compteur> relu : aRelire.entrySet()) {
+                    Long total = totaux.get(relu.getKey());
+                    if (total != null) {
+                        relu.getValue().partage = Math.max(relu.getValue().partage, total);
+                    }
+                    relu.getValue().reluLe = maintenant;
+                }
+            }
+            if (!disponible) {
+                logger.info("Compteurs de limitation partagés de nouveau disponibles");
+            }
+            disponible = true;
+        } catch (Exception e) {
+            int i = 0;
+            for (Long increment : increments.values()) {
+                Compteur compteur = envoyes.get(i++);
+                compteur.enAttente.addAndGet(increment);
+                compteur.enVol.addAndGet(-increment);
+            }
+            if (disponible) {
+                logger.warn("Compteurs de limitation partagés indisponibles, limites locales approchées : {}", e.getMessage());
+            }
+            disponible = false;
+        }
+        return envoyes.size() + aRelire.size();
+    }
+
+    /**
+     * Lire le total partagé d'un compteur créé sur ce nœud : l'utilisation par les autres nœuds
+     * est connue dès la première requête
+     */
+    private void initialiser(String cle, Compteur compteur) {
+        if (store == null || !disponible) {
+            return;
+        }
+        try {
+            Long total = store.lire(List.of(cle)).get(cle);
+            if (total != null) {
+                compteur.partage = Math.max(compteur.partage, total);
+            }
+            compteur.reluLe = horloge.getAsLong();
+        } catch (Exception e) {
+            logger.warn("Compteurs de limitation partagés indisponibles, limites locales approchées : {}", e.getMessage());
+            disponible = false;
+        }
+    }
+
+    public boolean isPartage() {
+        return store != null && disponible;
+    }
+
+    public int getNombreCompteurs() {
+        return compteurs.size();
+    }
+
+    private long relecture() {
+        return rateLimitConfig != null ? rateLimitConfig.getDistributed().getRefreshIntervalMs() : RELECTURE_PAR_DEFAUT_MS;
+    }
+
+    private int replicas() {
+        return rateLimitConfig != null ? Math.max(1, rateLimitConfig.getDistributed().getReplicas()) : 1;
+    }
+
+    /**
+     * Compteur d'une fenêtre : total partagé connu et date de sa dernière lecture, incréments en cours
+     * d'envoi et en attente, et utilisation par ce seul nœud (mode dégradé)
+     */
+    private static final class Compteur {
+        private final long expireLe;
+        private final AtomicLong enAttente = new AtomicLong();
+        private final AtomicLong enVol = new AtomicLong();
+        private final AtomicLong local = new AtomicLong();
+        private volatile long partage;
+        private volatile long reluLe;
+
+        private Compteur(long expireLe) {
+            this.expireLe = expireLe;
+        }
+    }
+}
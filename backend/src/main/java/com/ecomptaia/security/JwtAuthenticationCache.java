@@ -0,0 +1,232 @@
+package com.ecomptaia.security;
+
+import com.ecomptaia.config.CacheInvalidationBus;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.security.SignatureException;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Caches de l'authentification JWT : jetons déjà vérifiés (empreinte SHA-256 du jeton → identifiant
+ * utilisateur, jusqu'à l'expiration du jeton au plus) et principaux (TTL court).
+ * Une requête authentifiée ne coûte plus qu'une empreinte et deux recherches ; la signature n'est vérifiée
+ * qu'à la première présentation du jeton.
+ *
+ * La déconnexion révoque le jeton jusqu'à son expiration ; les services qui modifient ou suppriment un
+ * utilisateur retirent son principal (tous les principaux pour un rôle). Les caches sont locaux à chaque
+ * instance : révocations et invalidations sont diffusées aux autres nœuds par le canal d'invalidation
+ * des caches (CacheInvalidationBus, Redis pub/sub) lorsqu'il est configuré.
+ */
+@Component
+public class JwtAuthenticationCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(JwtAuthenticationCache.class);
+
+    static final String CANAL_PRINCIPAUX = "jwt-principals";
+    static final String CANAL_REVOCATIONS = "jwt-revocations";
+
+    @Autowired(required = false)
+    private CacheInvalidationBus invalidationBus;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final JwtTokenProvider tokenProvider;
+    private final Cache<String, JetonVerifie> jetons;
+    private final Cache<String, Long> revoques;
+    private final Cache<Long, UserDetails> principaux;
+
+    public JwtAuthenticationCache(JwtTokenProvider tokenProvider,
+                                  @Value("${app.security.jwt-cache.maximum-size:10000}") long tailleMaximale,
+                                  @Value("${app.security.jwt-cache.principal-ttl:60s}") Duration dureePrincipal) {
+        this.tokenProvider = tokenProvider;
+        this.jetons = Caffeine.newBuilder()
+            .maximumSize(tailleMaximale)
+            .expireAfter(new JusquAExpiration<JetonVerifie>(jeton -> jeton.expiration))
+            .build();
+        // Non borné en taille : un jeton révoqué évincé redeviendrait valide
+        this.revoques = Caffeine.newBuilder()
+            .expireAfter(new JusquAExpiration<Long>(expiration -> expiration))
+            .build();
+        this.principaux = Caffeine.newBuilder()
+            .maximumSize(tailleMaximale)
+            .expireAfterWrite(dureePrincipal)
+            .build();
+    }
+
+    @PostConstruct
+    public void abonner() {
+        if (invalidationBus != null) {
+            invalidationBus.subscribe(this::recevoir);
+        }
+    }
+
+    /**
+     * Identifiant de l'utilisateur d'un jeton valide et non révoqué, null sinon
+     */
+    public Long verifier(String jeton) {
+        String cle = empreinte(jeton);
+        if (revoques.getIfPresent(cle) != null) {
+            return null;
+        }
+        JetonVerifie verifie = jetons.getIfPresent(cle);
+        if (verifie != null) {
+            return verifie.userId;
+        }
+
+        Claims claims = lire(jeton);
+        if (claims == null || claims.getExpiration() == null) {
+            return null;
+        }
+        verifie = new JetonVerifie(Long.parseLong(claims.getSubject()), claims.getExpiration().getTime());
+        jetons.put(cle, verifie);
+        return verifie.userId;
+    }
+
+    /**
+     * Principal d'un utilisateur, chargé au plus une fois par TTL
+     */
+    public UserDetails principal(Long userId, Function<Long, UserDetails> chargement) {
+        return principaux.get(userId, chargement);
+    }
+
+    /**
+     * Révoquer un jeton (déconnexion) jusqu'à son expiration
+     */
+    public void revoquer(String jeton) {
+        Claims claims = lire(jeton);
+        if (claims == null || claims.getExpiration() == null) {
+            return;
+        }
+        String cle = empreinte(jeton);
+        long expiration = claims.getExpiration().getTime();
+        revoquerEmpreinte(cle, expiration);
+        publier(CANAL_REVOCATIONS, cle + ":" + expiration);
+    }
+
+    public void invaliderUtilisateur(Long userId) {
+        if (userId != null) {
+            principaux.invalidate(userId);
+            publier(CANAL_PRINCIPAUX, userId.toString());
+        }
+    }
+
+    public void invaliderTousLesUtilisateurs() {
+        principaux.invalidateAll();
+        publier(CANAL_PRINCIPAUX, null);
+    }
+
+    public long getNombreJetons() {
+        return jetons.estimatedSize();
+    }
+
+    private void revoquerEmpreinte(String cle, long expiration) {
+        revoques.put(cle, expiration);
+        jetons.invalidate(cle);
+    }
+
+    private void publier(String canal, String cle) {
+        if (invalidationBus != null) {
+            invalidationBus.publish(nodeId, canal, cle);
+        }
+    }
+
+    /**
+     * Appliquer une révocation ou une invalidation publiée par un autre nœud
+     */
+    void recevoir(CacheInvalidationBus.Invalidation invalidation) {
+        if (nodeId.equals(invalidation.getNodeId())) {
+            return;
+        }
+        if (CANAL_PRINCIPAUX.equals(invalidation.getCacheName())) {
+            if (invalidation.isClearAll()) {
+                principaux.invalidateAll();
+            } else {
+                principaux.invalidate(Long.valueOf(invalidation.getKey()));
+            }
+        } else if (CANAL_REVOCATIONS.equals(invalidation.getCacheName()) && !invalidation.isClearAll()) {
+            int separateur = invalidation.getKey().lastIndexOf(':');
+            revoquerEmpreinte(invalidation.getKey().substring(0, separateur),
+                Long.parseLong(invalidation.getKey().substring(separateur + 1)));
+        }
+    }
+
+    private Claims lire(String jeton) {
+        try {
+            return tokenProvider.parseClaims(jeton);
+        } catch (SignatureException ex) {
+            logger.error("Signature JWT invalide");
+        } catch (ExpiredJwtException ex) {
+            logger.error("Token JWT expiré");
+        } catch (JwtException | IllegalArgumentException ex) {
+            logger.error("Token JWT invalide");
+        }
+        return null;
+    }
+
+    static String empreinte(String jeton) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(jeton.getBytes(StandardCharsets.UTF_8));
+            char[] hex = new char[hash.length * 2];
+            for (int i = 0; i < hash.length; i++) {
+                hex[2 * i] = Character.forDigit((hash[i] >> 4) & 0xF, 16);
+                hex[2 * i + 1] = Character.forDigit(hash[i] & 0xF, 16);
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+
+    private static final class JetonVerifie {
+        private final Long userId;
+        private final long expiration;
+
+        private JetonVerifie(Long userId, long expiration) {
+            this.userId = userId;
+            this.expiration = expiration;
+        }
+    }
+
+    /**
+     * Entrée conservée jusqu'à l'instant d'expiration (epoch ms) de la valeur
+     */
+    private static final class JusquAExpiration<V> implements Expiry<String, V> {
+        private final Function<V, Long> expiration;
+
+        private JusquAExpiration(Function<V, Long> expiration) {
+            this.expiration = expiration;
+        }
+
+        @Override
+        public long expireAfterCreate(String cle, V valeur, long currentTime) {
+            return Math.max(0, Duration.ofMillis(expiration.apply(valeur) - System.currentTimeMillis()).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String cle, V valeur, long currentTime, long currentDuration) {
+            return expireAfterCreate(cle, valeur, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String cle, V valeur, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -5,6 +5,7 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -24,10 +25,13 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private static final Logger logger = LoggerFactory.getLogger(JwtAuthenticationFilter.class);
 
     @Autowired
-    private JwtTokenProvider tokenProvider;
+    private UserDetailsServiceImpl userDetailsService;
 
     @Autowired
-    private UserDetailsServiceImpl userDetailsService;
+    private JwtAuthenticationCache authenticationCache;
+
+    @Autowired(required = false)
+    private RateLimitingService rateLimitingService;
 
     @Override
     protected boolean shouldNotFilter(@NonNull HttpServletRequest request) throws ServletException {
@@ -49,15 +53,25 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String jwt = getJwtFromRequest(request);
 
-            if (StringUtils.hasText(jwt) && tokenProvider.validateToken(jwt)) {
-                Long userId = tokenProvider.getUserIdFromJWT(jwt);
-
-                UserDetails userDetails = userDetailsService.loadUserById(userId);
+            // Jeton vérifié une fois puis servi par le cache (révocation et expiration comprises)
+            Long userId = StringUtils.hasText(jwt) ? authenticationCache.verifier(jwt) : null;
+            if (userId != null) {
+                UserDetails userDetails = authenticationCache.principal(userId, userDetailsService::loadUserById);
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
                         userDetails, null, userDetails.getAuthorities());
                 authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
                 SecurityContextHolder.getContext().setAuthentication(authentication);
+
+                // Limites par utilisateur authentifié puis par son entreprise (si configurées)
+                if (limiteAtteinte(RateLimitingService.Dimension.UTILISATEUR, String.valueOf(userId), response)) {
+                    return;
+                }
+                Long companyId = userDetails instanceof UserPrincipal principal ? principal.getCompanyId() : null;
+                if (companyId != null
+                        && limiteAtteinte(RateLimitingService.Dimension.ENTREPRISE, String.valueOf(companyId), response)) {
+                    return;
+                }
             }
         } catch (Exception ex) {
             logger.error("Could not set user authentication in security context", ex);
@@ -67,6 +81,24 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * Consommer un jeton de la limite ; si elle est atteinte, répondre 429
+     */
+    private boolean limiteAtteinte(RateLimitingService.Dimension dimension, String cle, HttpServletResponse response)
+            throws IOException {
+        if (rateLimitingService == null) {
+            return false;
+        }
+        RateLimitingService.Decision decision = rateLimitingService.verifier(dimension, cle, null);
+        if (decision == null || decision.autorisee()) {
+            return false;
+        }
+        SecurityFilter.addRateLimitHeaders(response, decision);
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.getWriter().write("{\"error\":\"Rate limit exceeded\"}");
+        return true;
+    }
+
     private String getJwtFromRequest(HttpServletRequest request) {
         String bearerToken = request.getHeader("Authorization");
         if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
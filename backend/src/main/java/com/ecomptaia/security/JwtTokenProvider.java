@@ -52,13 +52,18 @@ public class JwtTokenProvider {
      * Extrait l'ID utilisateur depuis le token JWT
      */
     public Long getUserIdFromJWT(String token) {
-        Claims claims = Jwts.parserBuilder()
+        return Long.parseLong(parseClaims(token).getSubject());
+    }
+
+    /**
+     * Vérifie la signature et l'expiration d'un token JWT et en retourne les claims (une seule analyse)
+     */
+    public Claims parseClaims(String token) {
+        return Jwts.parserBuilder()
                 .setSigningKey(jwtSecret.getBytes())
                 .build()
                 .parseClaimsJws(token)
                 .getBody();
-
-        return Long.parseLong(claims.getSubject());
     }
 
     /**
@@ -66,7 +71,7 @@ public class JwtTokenProvider {
      */
     public boolean validateToken(String authToken) {
         try {
-            Jwts.parserBuilder().setSigningKey(jwtSecret.getBytes()).build().parseClaimsJws(authToken);
+            parseClaims(authToken);
             return true;
         } catch (io.jsonwebtoken.security.SignatureException ex) {
             logger.error("Signature JWT invalide");
@@ -0,0 +1,27 @@
+package com.ecomptaia.security;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Compteurs partagés entre les instances du backend (limitation de taux et quotas à l'échelle du cluster).
+ * Les incréments accumulés localement sont envoyés par lots : un aller-retour pour toutes les clés.
+ */
+public interface RateLimitCounterStore {
+
+    /**
+     * Ajouter les incréments ; chaque clé créée expire après la durée donnée.
+     *
+     * @param increments clé → incrément
+     * @param ttlMs      clé → durée de vie en millisecondes
+     * @return clé → total partagé après incrément
+     */
+    Map<String, Long> incrementer(Map<String, Long> increments, Map<String, Long> ttlMs);
+
+    /**
+     * Lire les totaux partagés sans les modifier
+     *
+     * @return clé → total partagé (0 si le compteur n'existe pas)
+     */
+    Map<String, Long> lire(Collection<String> cles);
+}
@@ -1,45 +1,114 @@
 package com.ecomptaia.security;
 
+import com.ecomptaia.config.RateLimitConfig;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.util.AntPathMatcher;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 
 /**
  * Service de limitation de taux pour E-COMPTA-IA INTERNATIONAL
  * Protège contre les attaques par déni de service et les abus
+ *
+ * Un seau à jetons sans verrou (TokenBucket) par clé : adresse IP (limite globale ou propre à la route),
+ * utilisateur authentifié, entreprise. Une vérification coûte une recherche dans une ConcurrentHashMap
+ * et un compare-and-set ; les seaux inactifs sont oubliés par un balayage périodique, hors du chemin des requêtes.
+ * Avec rate.limit.distributed.enabled, le débit par minute de chaque règle est en outre appliqué
+ * à l'échelle du cluster (DistributedRateLimiter), les seaux locaux bornant toujours les rafales.
  */
 @Service
 public class RateLimitingService {
 
+    public enum Dimension { IP, UTILISATEUR, ENTREPRISE }
+
+    /**
+     * Résultat d'une vérification : de quoi renseigner les en-têtes X-RateLimit-*
+     */
+    public record Decision(boolean autorisee, int limite, long restantes, long reinitialisation) {
+    }
+
     @Value("${app.security.rate-limit-requests-per-minute:100}")
     private int requestsPerMinute;
 
     @Value("${app.security.rate-limit-burst-capacity:200}")
     private int burstCapacity;
 
-    // Cache des requêtes par IP
-    private final ConcurrentHashMap<String, RateLimitInfo> rateLimitCache = new ConcurrentHashMap<>();
+    @Autowired(required = false)
+    private RateLimitConfig rateLimitConfig;
+
+    @Autowired(required = false)
+    private DistributedRateLimiter distributedRateLimiter;
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private LongSupplier horloge = System::currentTimeMillis;
+    private long origine;
+
+    private Regle regleIp;
+    private List<Regle> reglesRoutes = List.of();
+    private Regle regleUtilisateur;
+    private Regle regleEntreprise;
+    private long dureeInactivite = 300000;
+    private boolean distribue;
+
+    @PostConstruct
+    public void init() {
+        origine = horloge.getAsLong() - 1;
+        regleIp = new Regle("ip", null, burstCapacity, requestsPerMinute);
+        if (rateLimitConfig == null) {
+            return;
+        }
+        List<Regle> routes = new ArrayList<>();
+        for (RateLimitConfig.Route route : rateLimitConfig.getRoutes()) {
+            routes.add(new Regle("route:" + route.getPattern(), route.getPattern(), route.getBurstCapacity(),
+                route.getRequestsPerMinute()));
+        }
+        reglesRoutes = List.copyOf(routes);
+        regleUtilisateur = regle("utilisateur", rateLimitConfig.getUser());
+        regleEntreprise = regle("entreprise", rateLimitConfig.getTenant());
+        dureeInactivite = rateLimitConfig.getIdleTimeoutMs();
+        distribue = rateLimitConfig.getDistributed().isEnabled() && distributedRateLimiter != null;
+    }
 
     /**
-     * Vérifie si une requête est autorisée pour une IP donnée
+     * Vérifier et consommer un jeton pour une clé ; route = URI de la requête (limites propres aux routes, IP seulement).
+     * Sans limite configurée pour la dimension, la requête est autorisée (null).
      */
-    public boolean isRequestAllowed(String clientIp) {
-        if (clientIp == null || clientIp.isEmpty()) {
-            return false;
+    public Decision verifier(Dimension dimension, String cle, String route) {
+        Regle regle = regle(dimension, route);
+        if (regle == null) {
+            return null;
         }
+        if (cle == null || cle.isEmpty()) {
+            return new Decision(false, regle.capacite, 0, horloge.getAsLong());
+        }
+        long maintenant = maintenant();
+        TokenBucket seau = regle.seaux.get(cle);
+        if (seau == null) {
+            seau = regle.seaux.computeIfAbsent(cle, k -> new TokenBucket(regle.capacite, regle.parMinute, maintenant));
+        }
+        long resultat = seau.tryConsume(maintenant);
+        if (resultat < 0) {
+            return new Decision(false, regle.capacite, 0, origine + maintenant - resultat);
+        }
+        if (distribue && !distributedRateLimiter.essayerParMinute(regle.nom + ":" + cle, regle.parMinute)) {
+            // Débit du cluster atteint : réinitialisation à la minute suivante
+            return new Decision(false, regle.capacite, 0, ((origine + maintenant) / 60_000 + 1) * 60_000);
+        }
+        return new Decision(true, regle.capacite, resultat, origine + maintenant + seau.delaiRemplissage(maintenant));
+    }
 
-        long currentTime = System.currentTimeMillis();
-        RateLimitInfo rateLimitInfo = rateLimitCache.computeIfAbsent(clientIp, 
-            k -> new RateLimitInfo());
-
-        // Nettoyer les anciennes entrées
-        cleanupExpiredEntries(currentTime);
-
-        // Vérifier le rate limiting
-        return rateLimitInfo.isRequestAllowed(currentTime, requestsPerMinute, burstCapacity);
+    /**
+     * Vérifie si une requête est autorisée pour une IP donnée
+     */
+    public boolean isRequestAllowed(String clientIp) {
+        return verifier(Dimension.IP, clientIp, null).autorisee();
     }
 
     /**
@@ -49,92 +118,99 @@ public class RateLimitingService {
         if (clientIp == null || clientIp.isEmpty()) {
             return 0;
         }
-
-        RateLimitInfo rateLimitInfo = rateLimitCache.get(clientIp);
-        if (rateLimitInfo == null) {
-            return requestsPerMinute;
-        }
-
-        long currentTime = System.currentTimeMillis();
-        return rateLimitInfo.getRemainingRequests(currentTime, requestsPerMinute);
+        TokenBucket seau = regleIp.seaux.get(clientIp);
+        return seau == null ? regleIp.capacite : (int) seau.disponibles(maintenant());
     }
 
     /**
-     * Obtient le temps de réinitialisation pour une IP
+     * Obtient le temps de réinitialisation (seau de nouveau plein) pour une IP
      */
     public long getResetTime(String clientIp) {
         if (clientIp == null || clientIp.isEmpty()) {
             return 0;
         }
-
-        RateLimitInfo rateLimitInfo = rateLimitCache.get(clientIp);
-        if (rateLimitInfo == null) {
-            return System.currentTimeMillis() + 60000; // 1 minute
-        }
-
-        return rateLimitInfo.getResetTime();
+        TokenBucket seau = regleIp.seaux.get(clientIp);
+        long maintenant = maintenant();
+        return origine + maintenant + (seau == null ? 0 : seau.delaiRemplissage(maintenant));
     }
 
     /**
-     * Nettoie les entrées expirées du cache
+     * Oublier les seaux inactifs et pleins. Un seau retiré pendant qu'une requête l'utilise était plein :
+     * au pire cette requête n'est pas décomptée.
      */
-    private void cleanupExpiredEntries(long currentTime) {
-        rateLimitCache.entrySet().removeIf(entry -> 
-            entry.getValue().isExpired(currentTime));
+    @Scheduled(fixedDelayString = "${rate.limit.sweep-interval-ms:60000}")
+    public void purgerSeauxInactifs() {
+        long maintenant = maintenant();
+        for (Regle regle : regles()) {
+            regle.seaux.values().removeIf(seau -> seau.inactif(maintenant, dureeInactivite));
+        }
     }
 
     /**
-     * Classe interne pour stocker les informations de rate limiting
+     * Nombre de seaux en mémoire, toutes règles confondues
      */
-    private static class RateLimitInfo {
-        private final AtomicInteger requestCount = new AtomicInteger(0);
-        private final AtomicLong windowStart = new AtomicLong(System.currentTimeMillis());
-        private final AtomicLong lastRequestTime = new AtomicLong(System.currentTimeMillis());
-
-        public boolean isRequestAllowed(long currentTime, int requestsPerMinute, int burstCapacity) {
-            long windowStartTime = windowStart.get();
-            
-            // Si la fenêtre de temps est expirée, réinitialiser
-            if (currentTime - windowStartTime > 60000) { // 1 minute
-                windowStart.set(currentTime);
-                requestCount.set(0);
-            }
-
-            // Vérifier le burst capacity
-            if (currentTime - lastRequestTime.get() < 1000) { // Moins d'1 seconde
-                if (requestCount.get() >= burstCapacity) {
-                    return false;
-                }
-            }
-
-            // Vérifier le rate limit par minute
-            if (requestCount.get() >= requestsPerMinute) {
-                return false;
-            }
+    public int getNombreSeaux() {
+        return regles().stream().mapToInt(regle -> regle.seaux.size()).sum();
+    }
 
-            // Autoriser la requête
-            requestCount.incrementAndGet();
-            lastRequestTime.set(currentTime);
-            return true;
+    // ==================== RÈGLES ====================
+
+    private Regle regle(Dimension dimension, String route) {
+        switch (dimension) {
+            case UTILISATEUR:
+                return regleUtilisateur;
+            case ENTREPRISE:
+                return regleEntreprise;
+            default:
+                if (route != null) {
+                    for (Regle regle : reglesRoutes) {
+                        if (pathMatcher.match(regle.motif, route)) {
+                            return regle;
+                        }
+                    }
+                }
+                return regleIp;
         }
+    }
 
-        public int getRemainingRequests(long currentTime, int requestsPerMinute) {
-            long windowStartTime = windowStart.get();
-            
-            // Si la fenêtre de temps est expirée, réinitialiser
-            if (currentTime - windowStartTime > 60000) {
-                return requestsPerMinute;
-            }
-
-            return Math.max(0, requestsPerMinute - requestCount.get());
+    private List<Regle> regles() {
+        List<Regle> regles = new ArrayList<>(reglesRoutes);
+        regles.add(regleIp);
+        if (regleUtilisateur != null) {
+            regles.add(regleUtilisateur);
         }
+        if (regleEntreprise != null) {
+            regles.add(regleEntreprise);
+        }
+        return regles;
+    }
 
-        public long getResetTime() {
-            return windowStart.get() + 60000; // 1 minute
+    private static Regle regle(String nom, RateLimitConfig.Limit limite) {
+        if (limite == null || limite.getRequestsPerMinute() <= 0) {
+            return null;
         }
+        return new Regle(nom, null, limite.getBurstCapacity(), limite.getRequestsPerMinute());
+    }
+
+    private long maintenant() {
+        return Math.max(0, horloge.getAsLong() - origine);
+    }
 
-        public boolean isExpired(long currentTime) {
-            return currentTime - windowStart.get() > 300000; // 5 minutes
+    /**
+     * Limite et seaux associés ; capacité par défaut égale au débit par minute
+     */
+    private static final class Regle {
+        private final String nom;
+        private final String motif;
+        private final int capacite;
+        private final int parMinute;
+        private final ConcurrentHashMap<String, TokenBucket> seaux = new ConcurrentHashMap<>();
+
+        private Regle(String nom, String motif, int capacite, int parMinute) {
+            this.nom = nom;
+            this.motif = motif;
+            this.parMinute = parMinute;
+            this.capacite = Math.min(TokenBucket.CAPACITE_MAX, capacite > 0 ? capacite : parMinute);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,104 @@
+package com.ecomptaia.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compteurs de limitation de taux dans Redis : un script Lua atomique par partition du lot (INCRBY puis
+ * PEXPIRE à la création de la clé). Chaque clé porte l'étiquette de hachage {rl:n} de sa partition
+ * (rate.limit.distributed.shards partitions, selon le hachage de la clé) : en Redis Cluster, les compteurs
+ * sont répartis sur les nœuds et chaque script ne touche que des clés d'un même slot.
+ */
+@Component
+@ConditionalOnProperty(name = "rate.limit.distributed.enabled", havingValue = "true")
+public class RedisRateLimitCounterStore implements RateLimitCounterStore {
+
+    static final String SCRIPT =
+        "local totaux = {}\n" +
+        "for i, cle in ipairs(KEYS) do\n" +
+        "  local total = redis.call('INCRBY', cle, ARGV[2 * i - 1])\n" +
+        "  if redis.call('PTTL', cle) < 0 then redis.call('PEXPIRE', cle, ARGV[2 * i]) end\n" +
+        "  totaux[i] = total\n" +
+        "end\n" +
+        "return totaux";
+
+    private static final String PREFIXE = "ecomptaia:{rl:";
+
+    @SuppressWarnings("rawtypes")
+    private final DefaultRedisScript<List> script = new DefaultRedisScript<>(SCRIPT, List.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Value("${rate.limit.distributed.shards:16}")
+    private int partitions = 16;
+
+    public RedisRateLimitCounterStore(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public Map<String, Long> incrementer(Map<String, Long> increments, Map<String, Long> ttlMs) {
+        Map<Integer, List<String>> parPartition = new LinkedHashMap<>();
+        for (String cle : increments.keySet()) {
+            parPartition.computeIfAbsent(partition(cle), p -> new ArrayList<>()).add(cle);
+        }
+
+        Map<String, Long> resultat = new LinkedHashMap<>();
+        for (Map.Entry<Integer, List<String>> lot : parPartition.entrySet()) {
+            List<String> cles = new ArrayList<>(lot.getValue().size());
+            Object[] arguments = new Object[lot.getValue().size() * 2];
+            int i = 0;
+            for (String cle : lot.getValue()) {
+                cles.add(cleRedis(lot.getKey(), cle));
+                arguments[i++] = String.valueOf(increments.get(cle));
+                arguments[i++] = String.valueOf(ttlMs.getOrDefault(cle, 60_000L));
+            }
+
+            List<?> totaux = redisTemplate.execute(script, cles, arguments);
+            if (totaux == null || totaux.size() != cles.size()) {
+                throw new IllegalStateException("Réponse Redis inattendue pour " + cles.size() + " compteurs");
+            }
+            i = 0;
+            for (String cle : lot.getValue()) {
+                resultat.put(cle, ((Number) totaux.get(i++)).longValue());
+            }
+        }
+        return resultat;
+    }
+
+    @Override
+    public Map<String, Long> lire(Collection<String> cles) {
+        List<String> clesRedis = new ArrayList<>(cles.size());
+        for (String cle : cles) {
+            clesRedis.add(cleRedis(partition(cle), cle));
+        }
+        List<String> valeurs = redisTemplate.opsForValue().multiGet(clesRedis);
+        if (valeurs == null || valeurs.size() != clesRedis.size()) {
+            throw new IllegalStateException("Réponse Redis inattendue pour " + clesRedis.size() + " compteurs");
+        }
+        Map<String, Long> resultat = new LinkedHashMap<>();
+        int i = 0;
+        for (String cle : cles) {
+            String valeur = valeurs.get(i++);
+            resultat.put(cle, valeur != null ? Long.parseLong(valeur) : 0L);
+        }
+        return resultat;
+    }
+
+    int partition(String cle) {
+        return Math.floorMod(cle.hashCode(), Math.max(1, partitions));
+    }
+
+    private static String cleRedis(int partition, String cle) {
+        return PREFIXE + partition + "}:" + cle;
+    }
+}
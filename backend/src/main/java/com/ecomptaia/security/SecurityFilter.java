@@ -33,21 +33,17 @@ public class SecurityFilter extends OncePerRequestFilter {
         // Ajouter les headers de sécurité
         addSecurityHeaders(response);
 
-        // Vérifier le rate limiting
-        if (!rateLimitingService.isRequestAllowed(clientIp)) {
+        // Vérifier le rate limiting par IP ; les limites par utilisateur et par entreprise s'appliquent
+        // après authentification (JwtAuthenticationFilter), jamais sur un en-tête fourni par le client
+        RateLimitingService.Decision decision = rateLimitingService.verifier(
+            RateLimitingService.Dimension.IP, clientIp, request.getRequestURI());
+        addRateLimitHeaders(response, decision);
+        if (!decision.autorisee()) {
             response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
-            response.setHeader("X-RateLimit-Limit", String.valueOf(100));
-            response.setHeader("X-RateLimit-Remaining", "0");
-            response.setHeader("X-RateLimit-Reset", String.valueOf(rateLimitingService.getResetTime(clientIp)));
             response.getWriter().write("{\"error\":\"Rate limit exceeded\"}");
             return;
         }
 
-        // Ajouter les headers de rate limiting
-        response.setHeader("X-RateLimit-Limit", "100");
-        response.setHeader("X-RateLimit-Remaining", String.valueOf(rateLimitingService.getRemainingRequests(clientIp)));
-        response.setHeader("X-RateLimit-Reset", String.valueOf(rateLimitingService.getResetTime(clientIp)));
-
         // Vérifier les paramètres de requête pour les injections
         if (hasDangerousParameters(request)) {
             response.setStatus(HttpStatus.BAD_REQUEST.value());
@@ -76,6 +72,15 @@ public class SecurityFilter extends OncePerRequestFilter {
         return request.getRemoteAddr();
     }
 
+    /**
+     * Ajoute les headers de rate limiting
+     */
+    static void addRateLimitHeaders(HttpServletResponse response, RateLimitingService.Decision decision) {
+        response.setHeader("X-RateLimit-Limit", String.valueOf(decision.limite()));
+        response.setHeader("X-RateLimit-Remaining", String.valueOf(decision.restantes()));
+        response.setHeader("X-RateLimit-Reset", String.valueOf(decision.reinitialisation()));
+    }
+
     /**
      * Ajoute les headers de sécurité
      */
@@ -0,0 +1,121 @@
+package com.ecomptaia.security;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Seau à jetons sans verrou : l'état (jetons et instant du dernier remplissage) tient dans un seul long,
+ * modifié par compare-and-set. Une consommation ne fait ni allocation ni synchronisation.
+ *
+ * Bits 40-63 : jetons en 1/256 de jeton (capacité maximale 65 535) ;
+ * bits 0-39 : instant du dernier remplissage, en millisecondes depuis l'origine de l'horloge du service.
+ */
+public final class TokenBucket {
+
+    static final int CAPACITE_MAX = 65_535;
+
+    private static final int BITS_TEMPS = 40;
+    private static final long MASQUE_TEMPS = (1L << BITS_TEMPS) - 1;
+    private static final long UNITE = 256;
+    private static final long MINUTE_MS = 60_000;
+
+    private final long capacite;
+    private final long parMinute;
+    private final long dureeRemplissage;
+    private final AtomicLong etat;
+
+    /**
+     * Seau plein à l'instant donné
+     */
+    public TokenBucket(int capacite, int parMinute, long maintenant) {
+        if (capacite <= 0 || capacite > CAPACITE_MAX || parMinute <= 0) {
+            throw new IllegalArgumentException("Limite invalide : capacité " + capacite + ", " + parMinute + "/min");
+        }
+        this.capacite = capacite * UNITE;
+        this.parMinute = parMinute;
+        this.dureeRemplissage = (capacite * MINUTE_MS + parMinute - 1) / parMinute;
+        this.etat = new AtomicLong(pack(this.capacite, maintenant));
+    }
+
+    /**
+     * Consommer un jeton.
+     *
+     * @return jetons restants (>= 0) si la requête est autorisée, sinon -(délai en ms avant le prochain jeton)
+     */
+    public long tryConsume(long maintenant) {
+        while (true) {
+            long courant = etat.get();
+            long jetons = jetons(courant);
+            long instant = instant(courant);
+            long ajout = ajout(instant, maintenant);
+            if (ajout > 0) {
+                jetons = Math.min(capacite, jetons + ajout);
+                instant = maintenant;
+            }
+            if (jetons < UNITE) {
+                long manque = UNITE - jetons;
+                return -Math.max(1, (manque * MINUTE_MS + parMinute * UNITE - 1) / (parMinute * UNITE));
+            }
+            if (etat.compareAndSet(courant, pack(jetons - UNITE, instant))) {
+                return (jetons - UNITE) / UNITE;
+            }
+        }
+    }
+
+    /**
+     * Jetons disponibles, sans consommer
+     */
+    public long disponibles(long maintenant) {
+        long courant = etat.get();
+        return Math.min(capacite, jetons(courant) + ajout(instant(courant), maintenant)) / UNITE;
+    }
+
+    /**
+     * Délai en ms avant que le seau soit de nouveau plein
+     */
+    public long delaiRemplissage(long maintenant) {
+        long courant = etat.get();
+        long manque = capacite - Math.min(capacite, jetons(courant) + ajout(instant(courant), maintenant));
+        return (manque * MINUTE_MS + parMinute * UNITE - 1) / (parMinute * UNITE);
+    }
+
+    /**
+     * Seau inutilisé depuis au moins la durée donnée et de nouveau plein : il peut être oublié
+     */
+    public boolean inactif(long maintenant, long duree) {
+        long courant = etat.get();
+        return maintenant - instant(courant) >= duree
+            && jetons(courant) + ajout(instant(courant), maintenant) >= capacite;
+    }
+
+    public int getCapacite() {
+        return (int) (capacite / UNITE);
+    }
+
+    public int getParMinute() {
+        return (int) parMinute;
+    }
+
+    /**
+     * Jetons regagnés depuis le dernier remplissage (en 1/256). Les fractions non encore acquises restent
+     * dues tant que l'instant n'avance pas ; durée bornée au remplissage complet pour éviter tout débordement.
+     */
+    private long ajout(long instant, long maintenant) {
+        long ecoule = maintenant - instant;
+        if (ecoule <= 0) {
+            return 0;
+        }
+        return Math.min(ecoule, dureeRemplissage) * parMinute * UNITE / MINUTE_MS;
+    }
+
+    private static long pack(long jetons, long instant) {
+        return (jetons << BITS_TEMPS) | (instant & MASQUE_TEMPS);
+    }
+
+    private static long jetons(long etat) {
+        return etat >>> BITS_TEMPS;
+    }
+
+    private static long instant(long etat) {
+        return etat & MASQUE_TEMPS;
+    }
+}
@@ -23,6 +23,7 @@ public class UserPrincipal implements UserDetails {
     private String firstName;
     private String lastName;
     private String email;
+    private Long companyId;
     
     @JsonIgnore
     private String password;
@@ -49,7 +50,9 @@ public class UserPrincipal implements UserDetails {
         
         List<GrantedAuthority> authorities = List.of(new SimpleGrantedAuthority(role));
         
-        return new UserPrincipal(userId, username, firstName, lastName, email, "N/A", authorities);
+        UserPrincipal principal = new UserPrincipal(userId, username, firstName, lastName, email, "N/A", authorities);
+        principal.companyId = (Long) userMap.get("companyId");
+        return principal;
     }
     
     public Long getId() {
@@ -64,6 +67,13 @@ public class UserPrincipal implements UserDetails {
         return lastName;
     }
     
+    /**
+     * Entreprise de l'utilisateur authentifié (null si inconnue)
+     */
+    public Long getCompanyId() {
+        return companyId;
+    }
+    
     public String getEmail() {
         return email;
     }
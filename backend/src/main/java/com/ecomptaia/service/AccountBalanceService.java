@@ -0,0 +1,360 @@
+package com.ecomptaia.service;
+
+import com.ecomptaia.entity.AccountEntry;
+import com.ecomptaia.entity.AccountPeriodBalance;
+import com.ecomptaia.entity.EcritureComptable;
+import com.ecomptaia.entity.JournalEntry;
+import com.ecomptaia.entity.LigneEcriture;
+import com.ecomptaia.repository.AccountEntryRepository;
+import com.ecomptaia.repository.AccountPeriodBalanceRepository;
+import com.ecomptaia.repository.LigneEcritureRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Soldes de comptes maintenus de façon incrémentale.
+ *
+ * Chaque validation (ou annulation de validation) d'écriture met à jour, dans la même
+ * transaction, un cumul mensuel par entreprise × compte. Un solde à date est alors la
+ * somme des cumuls des mois clos plus les lignes du mois en cours, au lieu d'un
+ * parcours complet du grand livre.
+ *
+ * Deux grands livres coexistent : les écritures comptables (ecritures_comptables /
+ * lignes_ecritures) et les écritures de journal (journal_entries / account_entries).
+ * Leurs cumuls sont distingués par la colonne ledger.
+ */
+@Service
+@Transactional
+public class AccountBalanceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccountBalanceService.class);
+
+    public static final String LEDGER_ECRITURE = "ECRITURE";
+    public static final String LEDGER_JOURNAL = "JOURNAL";
+
+    /** Statuts des écritures comptables prises en compte dans les soldes */
+    public static final Set<EcritureComptable.StatutEcriture> STATUTS_COMPTABILISES = Collections.unmodifiableSet(
+        EnumSet.of(EcritureComptable.StatutEcriture.VALIDEE, EcritureComptable.StatutEcriture.CLOTUREE));
+
+    @Autowired
+    private AccountPeriodBalanceRepository balanceRepository;
+
+    @Autowired
+    private LigneEcritureRepository ligneRepository;
+
+    @Autowired
+    private AccountEntryRepository accountEntryRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired(required = false)
+    private TaxDeclarationAggregationService taxDeclarationAggregationService;
+
+    // ==================== MISE À JOUR À LA COMPTABILISATION ====================
+
+    /**
+     * Ajouter les lignes d'une écriture comptable aux cumuls (validation)
+     */
+    public void comptabiliserEcriture(EcritureComptable ecriture) {
+        appliquerEcriture(ecriture, ecriture.getLignes(), 1);
+    }
+
+    /**
+     * Retirer les lignes d'une écriture comptable des cumuls (annulation de validation)
+     */
+    public void extournerEcriture(EcritureComptable ecriture) {
+        appliquerEcriture(ecriture, ecriture.getLignes(), -1);
+    }
+
+    /**
+     * Ajouter des lignes données (nouvelles lignes d'une écriture validée mise à jour)
+     */
+    public void comptabiliserLignes(EcritureComptable ecriture, List<LigneEcriture> lignes) {
+        appliquerEcriture(ecriture, lignes, 1);
+    }
+
+    /**
+     * Retirer des lignes données (lignes remplacées lors d'une mise à jour d'écriture validée)
+     */
+    public void extournerLignes(EcritureComptable ecriture, List<LigneEcriture> lignes) {
+        appliquerEcriture(ecriture, lignes, -1);
+    }
+
+    /**
+     * Ajouter les lignes d'une écriture de journal aux cumuls (validation)
+     */
+    public void postJournalEntry(JournalEntry entry) {
+        appliquerJournal(entry, accountEntryRepository.findByJournalEntryId(entry.getId()), 1);
+    }
+
+    /**
+     * Retirer les lignes d'une écriture de journal des cumuls
+     */
+    public void unpostJournalEntry(JournalEntry entry) {
+        appliquerJournal(entry, accountEntryRepository.findByJournalEntryId(entry.getId()), -1);
+    }
+
+    private void appliquerEcriture(EcritureComptable ecriture, List<LigneEcriture> lignes, int signe) {
+        if (lignes == null || lignes.isEmpty()) {
+            return;
+        }
+        Map<String, AccountTotals> deltas = new LinkedHashMap<>();
+        for (LigneEcriture ligne : lignes) {
+            deltas.computeIfAbsent(ligne.getCompteNumero(), k -> new AccountTotals(k, ligne.getCompteLibelle()))
+                .add(ligne.getDebit(), ligne.getCredit(), 1);
+        }
+        appliquer(ecriture.getEntreprise().getId(), LEDGER_ECRITURE, ecriture.getDateEcriture(), deltas, signe);
+    }
+
+    private void appliquerJournal(JournalEntry entry, List<AccountEntry> lignes, int signe) {
+        if (lignes == null || lignes.isEmpty()) {
+            return;
+        }
+        Map<String, AccountTotals> deltas = new LinkedHashMap<>();
+        for (AccountEntry ligne : lignes) {
+            AccountTotals totals = deltas.computeIfAbsent(ligne.getAccountNumber(),
+                k -> new AccountTotals(k, ligne.getAccountName()));
+            if ("DEBIT".equals(ligne.getAccountType())) {
+                totals.add(ligne.getAmount(), null, 1);
+            } else if ("CREDIT".equals(ligne.getAccountType())) {
+                totals.add(null, ligne.getAmount(), 1);
+            }
+        }
+        appliquer(entry.getCompanyId(), LEDGER_JOURNAL, entry.getEntryDate(), deltas, signe);
+        // Écriture tardive sur un mois clos : ses cumuls fiscaux sont à relire
+        if (taxDeclarationAggregationService != null) {
+            taxDeclarationAggregationService.invaliderMois(entry.getCompanyId(), entry.getEntryDate());
+        }
+    }
+
+    private void appliquer(Long companyId, String ledger, LocalDate date, Map<String, AccountTotals> deltas, int signe) {
+        BigDecimal facteur = BigDecimal.valueOf(signe);
+        LocalDateTime now = LocalDateTime.now();
+        for (AccountTotals delta : deltas.values()) {
+            BigDecimal debit = delta.getDebit().multiply(facteur);
+            BigDecimal credit = delta.getCredit().multiply(facteur);
+            long count = delta.getCount() * signe;
+            int updated = balanceRepository.increment(companyId, ledger, delta.getAccountNumber(),
+                date.getYear(), date.getMonthValue(), debit, credit, count, now);
+            if (updated == 0) {
+                creerCumul(companyId, ledger, delta, date);
+                updated = balanceRepository.increment(companyId, ledger, delta.getAccountNumber(),
+                    date.getYear(), date.getMonthValue(), debit, credit, count, now);
+                if (updated == 0) {
+                    throw new RuntimeException("Cumul mensuel introuvable : " + ledger + " " + delta.getAccountNumber()
+                        + " " + date.getYear() + "/" + date.getMonthValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Créer le cumul à zéro du mois dans une transaction indépendante ; si une autre transaction
+     * l'a créé en même temps, la contrainte d'unicité fait échouer celle-ci et le cumul existant est incrémenté
+     */
+    private void creerCumul(Long companyId, String ledger, AccountTotals delta, LocalDate date) {
+        AccountPeriodBalance bucket = new AccountPeriodBalance(companyId, ledger, delta.getAccountNumber(),
+            delta.getAccountName(), date.getYear(), date.getMonthValue());
+        try {
+            TransactionTemplate template = new TransactionTemplate(transactionManager);
+            template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            template.executeWithoutResult(status -> balanceRepository.saveAndFlush(bucket));
+        } catch (DataIntegrityViolationException e) {
+            // Cumul déjà créé par une transaction concurrente
+        }
+    }
+
+    // ==================== SOLDES À DATE ====================
+
+    /**
+     * Soldes de tous les comptes à une date : cumuls des mois antérieurs + lignes du mois de la date
+     */
+    @Transactional(readOnly = true)
+    public Map<String, AccountTotals> getBalancesAsOf(Long companyId, String ledger, LocalDate asOfDate) {
+        Map<String, AccountTotals> soldes = new HashMap<>();
+        for (Object[] row : balanceRepository.sumByAccountBeforeMonth(
+                companyId, ledger, asOfDate.getYear(), asOfDate.getMonthValue())) {
+            cumuler(soldes, row);
+        }
+        for (Object[] row : sommerLignesBrutes(companyId, ledger, asOfDate.withDayOfMonth(1), asOfDate)) {
+            cumuler(soldes, row);
+        }
+        return soldes;
+    }
+
+    /**
+     * Solde d'un compte à une date
+     */
+    @Transactional(readOnly = true)
+    public BigDecimal getBalanceAsOf(Long companyId, String ledger, String accountNumber, LocalDate asOfDate) {
+        AccountTotals totals = getBalancesAsOf(companyId, ledger, asOfDate).get(accountNumber);
+        return totals != null ? totals.getSolde() : BigDecimal.ZERO;
+    }
+
+    private List<Object[]> sommerLignesBrutes(Long companyId, String ledger, LocalDate debut, LocalDate fin) {
+        if (LEDGER_ECRITURE.equals(ledger)) {
+            return ligneRepository.sumComptabiliseesByCompteEtPeriode(companyId, STATUTS_COMPTABILISES, debut, fin);
+        }
+        return accountEntryRepository.sumValidatedByAccountBetween(companyId, debut, fin);
+    }
+
+    private void cumuler(Map<String, AccountTotals> soldes, Object[] row) {
+        String accountNumber = (String) row[0];
+        soldes.computeIfAbsent(accountNumber, k -> new AccountTotals(k, (String) row[1]))
+            .add((BigDecimal) row[2], (BigDecimal) row[3], ((Number) row[4]).longValue());
+    }
+
+    // ==================== RECONSTRUCTION / CONTRÔLE ====================
+
+    /**
+     * Recalculer les cumuls mensuels d'une entreprise à partir des lignes d'écriture
+     */
+    public Map<String, Object> rebuild(Long companyId, String ledger) {
+        Map<String, AccountPeriodBalance> attendus = calculerCumulsAttendus(companyId, ledger);
+        balanceRepository.deleteByCompanyIdAndLedger(companyId, ledger);
+        balanceRepository.flush();
+        balanceRepository.saveAll(attendus.values());
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("companyId", companyId);
+        result.put("ledger", ledger);
+        result.put("buckets", attendus.size());
+        result.put("rebuiltAt", LocalDateTime.now());
+        return result;
+    }
+
+    /**
+     * Comparer les cumuls stockés avec ceux recalculés depuis les lignes et signaler les écarts
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> verify(Long companyId, String ledger) {
+        Map<String, AccountPeriodBalance> attendus = calculerCumulsAttendus(companyId, ledger);
+        Map<String, AccountPeriodBalance> stockes = new HashMap<>();
+        for (AccountPeriodBalance bucket : balanceRepository.findByCompanyIdAndLedger(companyId, ledger)) {
+            stockes.put(cle(bucket.getAccountNumber(), bucket.getPeriodYear(), bucket.getPeriodMonth()), bucket);
+        }
+
+        List<Map<String, Object>> ecarts = new ArrayList<>();
+        Set<String> cles = new TreeSet<>(attendus.keySet());
+        cles.addAll(stockes.keySet());
+        for (String cle : cles) {
+            AccountPeriodBalance attendu = attendus.get(cle);
+            AccountPeriodBalance stocke = stockes.get(cle);
+            BigDecimal debitAttendu = attendu != null ? attendu.getTotalDebit() : BigDecimal.ZERO;
+            BigDecimal creditAttendu = attendu != null ? attendu.getTotalCredit() : BigDecimal.ZERO;
+            BigDecimal debitStocke = stocke != null ? stocke.getTotalDebit() : BigDecimal.ZERO;
+            BigDecimal creditStocke = stocke != null ? stocke.getTotalCredit() : BigDecimal.ZERO;
+            if (debitAttendu.compareTo(debitStocke) != 0 || creditAttendu.compareTo(creditStocke) != 0) {
+                AccountPeriodBalance ref = attendu != null ? attendu : stocke;
+                Map<String, Object> ecart = new HashMap<>();
+                ecart.put("accountNumber", ref.getAccountNumber());
+                ecart.put("year", ref.getPeriodYear());
+                ecart.put("month", ref.getPeriodMonth());
+                ecart.put("expectedDebit", debitAttendu);
+                ecart.put("expectedCredit", creditAttendu);
+                ecart.put("storedDebit", debitStocke);
+                ecart.put("storedCredit", creditStocke);
+                ecarts.add(ecart);
+            }
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("companyId", companyId);
+        result.put("ledger", ledger);
+        result.put("bucketsChecked", cles.size());
+        result.put("drifts", ecarts);
+        result.put("consistent", ecarts.isEmpty());
+        result.put("verifiedAt", LocalDateTime.now());
+        return result;
+    }
+
+    /**
+     * Contrôle nocturne de cohérence des cumuls de toutes les entreprises
+     */
+    @Scheduled(cron = "0 30 3 * * ?")
+    @Transactional(readOnly = true)
+    public void verifyAllCompanies() {
+        for (String ledger : List.of(LEDGER_ECRITURE, LEDGER_JOURNAL)) {
+            for (Long companyId : balanceRepository.findDistinctCompanyIdsByLedger(ledger)) {
+                Map<String, Object> result = verify(companyId, ledger);
+                if (!Boolean.TRUE.equals(result.get("consistent"))) {
+                    logger.warn("Écarts de cumuls détectés pour l'entreprise {} ({}) : {}",
+                        companyId, ledger, result.get("drifts"));
+                }
+            }
+        }
+    }
+
+    private Map<String, AccountPeriodBalance> calculerCumulsAttendus(Long companyId, String ledger) {
+        List<Object[]> rows = LEDGER_ECRITURE.equals(ledger)
+            ? ligneRepository.sumComptabiliseesByCompteEtMois(companyId, STATUTS_COMPTABILISES)
+            : accountEntryRepository.sumValidatedByAccountAndMonth(companyId);
+        Map<String, AccountPeriodBalance> attendus = new HashMap<>();
+        for (Object[] row : rows) {
+            String accountNumber = (String) row[0];
+            Integer year = ((Number) row[2]).intValue();
+            Integer month = ((Number) row[3]).intValue();
+            AccountPeriodBalance bucket = new AccountPeriodBalance(companyId, ledger, accountNumber,
+                (String) row[1], year, month);
+            bucket.setTotalDebit((BigDecimal) row[4]);
+            bucket.setTotalCredit((BigDecimal) row[5]);
+            bucket.setEntryCount(((Number) row[6]).longValue());
+            attendus.put(cle(accountNumber, year, month), bucket);
+        }
+        return attendus;
+    }
+
+    private String cle(String accountNumber, Integer year, Integer month) {
+        return accountNumber + '|' + year + '|' + month;
+    }
+
+    /**
+     * Totaux débit / crédit d'un compte
+     */
+    public static class AccountTotals {
+        private final String accountNumber;
+        private final String accountName;
+        private BigDecimal debit = BigDecimal.ZERO;
+        private BigDecimal credit = BigDecimal.ZERO;
+        private long count;
+
+        public AccountTotals(String accountNumber, String accountName) {
+            this.accountNumber = accountNumber;
+            this.accountName = accountName;
+        }
+
+        public void add(BigDecimal debit, BigDecimal credit, long count) {
+            if (debit != null) {
+                this.debit = this.debit.add(debit);
+            }
+            if (credit != null) {
+                this.credit = this.credit.add(credit);
+            }
+            this.count += count;
+        }
+
+        public String getAccountNumber() { return accountNumber; }
+        public String getAccountName() { return accountName; }
+        public BigDecimal getDebit() { return debit; }
+        public BigDecimal getCredit() { return credit; }
+        public long getCount() { return count; }
+
+        public BigDecimal getSolde() {
+            return debit.subtract(credit);
+        }
+    }
+}
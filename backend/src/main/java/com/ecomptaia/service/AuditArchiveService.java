@@ -0,0 +1,585 @@
+package com.ecomptaia.service;
+
+import com.ecomptaia.entity.AuditLog;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Archivage du journal d'audit en segments immuables chaînés.
+ *
+ * Les événements plus anciens que app.audit.archive.hot-days quittent la table audit_logs par segments
+ * d'au plus app.audit.archive.segment-size lignes : un fichier JSON compressé (gzip) en lecture seule par segment,
+ * et une ligne par segment ajoutée au fichier d'index (segments.idx). Chaque ligne d'index porte les bornes
+ * temporelles et d'identifiants du segment, l'empreinte SHA-256 de son fichier et le hash chaîné
+ * SHA-256(hash précédent | métadonnées | empreinte) : modifier, supprimer ou réordonner un segment rompt la chaîne.
+ * Elle porte aussi le sommaire du segment (utilisateurs, entreprises, types d'action et d'entité présents), pour
+ * qu'une recherche par critère écarte sans les lire les segments qui ne peuvent pas contenir l'événement.
+ *
+ * Une recherche par période ne lit que les segments dont l'intervalle [début, fin] la recoupe, après avoir
+ * vérifié la chaîne de l'index et l'empreinte de chacun de ces fichiers. L'index est relu dès que sa taille ou sa
+ * date de modification change, pour que chaque instance voie les segments écrits par celle qui archive. Les lignes d'un segment ne sont supprimées
+ * de la table, par identifiant, qu'une fois le segment et son index écrits sur disque ; la suppression est rejouée
+ * au passage suivant si elle a été interrompue.
+ *
+ * L'archivage est désactivé par défaut. Activé, il exige un répertoire durable et partagé par les instances
+ * (app.audit.archive.directory, jamais sous le répertoire temporaire du système) et ne s'exécute que sur
+ * l'instance qui tient le verrou planifié audit-archive.
+ */
+@Service
+public class AuditArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditArchiveService.class);
+
+    static final String INDEX = "segments.idx";
+    static final String GENESE = "0".repeat(64);
+
+    static final String VERROU = "audit-archive";
+    private static final int SUPPRESSION_PAR_REQUETE = 1000;
+    // Au-delà, une liste du sommaire est omise et le segment reste candidat pour ce critère
+    static final int VALEURS_SOMMAIRE_MAX = 1000;
+
+    private static final String COLONNES = "id, timestamp, user_id, username, company_id, action_type, entity_type, "
+        + "entity_id, description, ip_address, user_agent, session_id, old_values, new_values, status, error_message";
+
+    @Autowired(required = false)
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired(required = false)
+    private SchedulerLockService schedulerLockService;
+
+    @Value("${app.audit.archive.enabled:false}")
+    private boolean actif = false;
+
+    @Value("${app.audit.archive.directory:}")
+    private String repertoire = "";
+
+    @Value("${app.audit.archive.lock-minutes:120}")
+    private int minutesVerrou = 120;
+
+    @Value("${app.audit.archive.hot-days:90}")
+    private int joursChauds = 90;
+
+    @Value("${app.audit.archive.segment-size:50000}")
+    private int tailleSegment = 50000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules()
+        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+        .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    // Index en mémoire, remplacé d'un bloc : une recherche concurrente voit l'ancien ou le nouvel index
+    private volatile List<Segment> segments = List.of();
+    // Taille et date de modification de l'index au dernier chargement (-1 : pas d'index)
+    private volatile long tailleIndex = -1;
+    private volatile long modificationIndex = -1;
+    private final AtomicLong segmentsLus = new AtomicLong();
+
+    @PostConstruct
+    public void charger() {
+        if (repertoire == null || repertoire.isBlank()) {
+            if (actif) {
+                throw new RuntimeException("Archivage de l'audit activé sans répertoire (app.audit.archive.directory)");
+            }
+            return;
+        }
+        if (actif && sousRepertoireTemporaire(Paths.get(repertoire))) {
+            throw new RuntimeException("Répertoire des archives d'audit sous le répertoire temporaire du système refusé: "
+                + repertoire);
+        }
+        Path index = Paths.get(repertoire, INDEX);
+        // Relevé avant lecture : une ligne ajoutée pendant la lecture provoquera un nouveau chargement
+        long[] etat = etatIndex(index);
+        tailleIndex = etat[0];
+        modificationIndex = etat[1];
+        if (etat[0] < 0) {
+            segments = List.of();
+            return;
+        }
+        List<Segment> lus = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(index, StandardCharsets.UTF_8)) {
+            String ligne;
+            while ((ligne = reader.readLine()) != null) {
+                if (ligne.isBlank()) {
+                    continue;
+                }
+                try {
+                    lus.add(objectMapper.readValue(ligne, Segment.class));
+                } catch (IOException e) {
+                    // Dernière ligne tronquée par un arrêt brutal : le segment sera refait au prochain passage
+                    logger.warn("Ligne d'index d'archive d'audit illisible ignorée : {}", e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Lecture de l'index des archives d'audit impossible: " + e.getMessage(), e);
+        }
+        segments = List.copyOf(lus);
+    }
+
+    /**
+     * Recharger l'index s'il a changé depuis le dernier chargement (segments écrits par une autre instance)
+     */
+    void rafraichir() {
+        if (repertoire == null || repertoire.isBlank()) {
+            return;
+        }
+        long[] etat = etatIndex(Paths.get(repertoire, INDEX));
+        if (etat[0] != tailleIndex || etat[1] != modificationIndex) {
+            charger();
+        }
+    }
+
+    private static long[] etatIndex(Path index) {
+        try {
+            return new long[] {Files.size(index), Files.getLastModifiedTime(index).toMillis()};
+        } catch (IOException e) {
+            return new long[] {-1, -1};
+        }
+    }
+
+    /**
+     * Archiver les événements antérieurs à la fenêtre chaude
+     *
+     * @return nombre d'événements archivés
+     */
+    @Scheduled(cron = "${app.audit.archive.cron:0 30 2 * * ?}")
+    public long archiver() {
+        if (!actif || jdbcTemplate == null) {
+            return 0;
+        }
+        return archiver(LocalDateTime.now().minusDays(joursChauds));
+    }
+
+    /**
+     * Archiver les événements antérieurs à seuil, segment par segment, sur la seule instance qui tient le verrou
+     */
+    public synchronized long archiver(LocalDateTime seuil) {
+        if (!actif || jdbcTemplate == null) {
+            return 0;
+        }
+        if (schedulerLockService == null || !schedulerLockService.acquerir(VERROU, Duration.ofMinutes(minutesVerrou))) {
+            logger.debug("Archivage de l'audit ignoré : verrou {} tenu par une autre instance", VERROU);
+            return 0;
+        }
+        try {
+            // Segments éventuellement écrits par une autre instance depuis le démarrage
+            charger();
+            Segment dernier = dernierSegment();
+            if (dernier != null) {
+                supprimerLignes(identifiants(lireSegment(dernier)));
+            }
+            long total = 0;
+            while (true) {
+                // Les lignes archivées sont supprimées : il ne reste sous le seuil que des lignes à archiver,
+                // y compris celles validées tardivement avec un identifiant déjà dépassé
+                List<AuditLog> lignes = jdbcTemplate.query(
+                    "SELECT " + COLONNES + " FROM audit_logs WHERE timestamp < ? ORDER BY id LIMIT ?",
+                    (rs, i) -> lire(rs), Timestamp.valueOf(seuil), tailleSegment);
+                if (lignes.isEmpty()) {
+                    break;
+                }
+                dernier = ecrireSegment(lignes, seuil, dernier);
+                supprimerLignes(identifiants(lignes));
+                total += lignes.size();
+                if (lignes.size() < tailleSegment) {
+                    break;
+                }
+            }
+            if (total > 0) {
+                logger.info("{} événements d'audit archivés (antérieurs au {}), {} segments", total, seuil, segments.size());
+            }
+            return total;
+        } finally {
+            schedulerLockService.liberer(VERROU);
+        }
+    }
+
+    /**
+     * Événements archivés de la période, du plus récent au plus ancien ; seuls les segments qui recoupent
+     * la période sont lus, et leur intégrité est vérifiée
+     */
+    public List<AuditLog> rechercher(LocalDateTime debut, LocalDateTime fin) {
+        return rechercher(debut, fin, log -> true);
+    }
+
+    /**
+     * Événements archivés de la période retenus par le filtre, du plus récent au plus ancien
+     */
+    public List<AuditLog> rechercher(LocalDateTime debut, LocalDateTime fin, Predicate<AuditLog> filtre) {
+        return rechercher(debut, fin, segment -> true, filtre);
+    }
+
+    /**
+     * Événements archivés de la période retenus par le filtre ; seuls les segments de la période acceptés par
+     * candidats (d'après leur sommaire) sont lus
+     */
+    public List<AuditLog> rechercher(LocalDateTime debut, LocalDateTime fin, Predicate<Segment> candidats,
+                                     Predicate<AuditLog> filtre) {
+        rafraichir();
+        List<AuditLog> resultat = new ArrayList<>();
+        List<Segment> chaine = verifierChaine();
+        for (Segment segment : chaine) {
+            if (segment.fin().isBefore(debut) || segment.debut().isAfter(fin) || !candidats.test(segment)) {
+                continue;
+            }
+            for (AuditLog log : lireSegment(segment)) {
+                if (!log.getTimestamp().isBefore(debut) && !log.getTimestamp().isAfter(fin) && filtre.test(log)) {
+                    resultat.add(log);
+                }
+            }
+        }
+        resultat.sort((a, b) -> b.getTimestamp().compareTo(a.getTimestamp()));
+        return resultat;
+    }
+
+    /**
+     * Les archives recoupent-elles la période (évite toute lecture sinon)
+     */
+    public boolean couvre(LocalDateTime debut, LocalDateTime fin) {
+        rafraichir();
+        for (Segment segment : segments) {
+            if (!segment.fin().isBefore(debut) && !segment.debut().isAfter(fin)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Vérifier toute la chaîne : hash de chaque ligne d'index et empreinte de chaque fichier de segment
+     */
+    public Map<String, Object> verifierIntegrite() {
+        rafraichir();
+        List<Segment> segments = this.segments;
+        Map<String, Object> rapport = new HashMap<>();
+        List<String> erreurs = new ArrayList<>();
+        String precedent = GENESE;
+        long evenements = 0;
+        for (Segment segment : segments) {
+            if (!precedent.equals(segment.hashPrecedent()) || !segment.hash().equals(hasher(segment))) {
+                erreurs.add("Segment " + segment.numero() + " : chaînage rompu");
+            } else {
+                try {
+                    String empreinte = empreinteFichier(Paths.get(repertoire, segment.fichier()));
+                    if (!empreinte.equals(segment.empreinte())) {
+                        erreurs.add("Segment " + segment.numero() + " : contenu modifié");
+                    }
+                } catch (IOException e) {
+                    erreurs.add("Segment " + segment.numero() + " : fichier illisible (" + e.getMessage() + ")");
+                }
+            }
+            precedent = segment.hash();
+            evenements += segment.nombre();
+        }
+        rapport.put("valide", erreurs.isEmpty());
+        rapport.put("segments", segments.size());
+        rapport.put("evenementsArchives", evenements);
+        rapport.put("dernierHash", precedent);
+        rapport.put("erreurs", erreurs);
+        return rapport;
+    }
+
+    public Map<String, Object> getStatistiques() {
+        rafraichir();
+        List<Segment> segments = this.segments;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("segments", segments.size());
+        stats.put("evenementsArchives", segments.stream().mapToLong(Segment::nombre).sum());
+        stats.put("segmentsLus", segmentsLus.get());
+        if (!segments.isEmpty()) {
+            stats.put("debutArchives", segments.stream().map(Segment::debut).min(LocalDateTime::compareTo).orElse(null));
+            stats.put("finArchives", segments.stream().map(Segment::fin).max(LocalDateTime::compareTo).orElse(null));
+        }
+        return stats;
+    }
+
+    public List<Segment> getSegments() {
+        rafraichir();
+        return List.copyOf(segments);
+    }
+
+    public long getNombreSegmentsLus() {
+        return segmentsLus.get();
+    }
+
+    private Segment dernierSegment() {
+        return segments.isEmpty() ? null : segments.get(segments.size() - 1);
+    }
+
+    private Segment ecrireSegment(List<AuditLog> lignes, LocalDateTime seuil, Segment precedent) {
+        int numero = precedent != null ? precedent.numero() + 1 : 1;
+        String nom = String.format("segment-%06d.jsonl.gz", numero);
+        Path dossier = Paths.get(repertoire);
+        Path fichier = dossier.resolve(nom);
+        Path temporaire = dossier.resolve(nom + ".tmp");
+        LocalDateTime debut = lignes.get(0).getTimestamp();
+        LocalDateTime fin = debut;
+        Set<Long> utilisateurs = new TreeSet<>();
+        Set<Long> entreprises = new TreeSet<>();
+        Set<String> actions = new TreeSet<>();
+        Set<String> entites = new TreeSet<>();
+        try {
+            Files.createDirectories(dossier);
+            MessageDigest digest = sha256();
+            try (FileOutputStream sortie = new FileOutputStream(temporaire.toFile())) {
+                GZIPOutputStream gzip = new GZIPOutputStream(new DigestOutputStream(sortie, digest), 64 * 1024);
+                Writer writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8));
+                for (AuditLog log : lignes) {
+                    writer.write(objectMapper.writeValueAsString(log));
+                    writer.write('\n');
+                    if (log.getTimestamp().isBefore(debut)) {
+                        debut = log.getTimestamp();
+                    }
+                    if (log.getTimestamp().isAfter(fin)) {
+                        fin = log.getTimestamp();
+                    }
+                    ajouter(utilisateurs, log.getUserId());
+                    ajouter(entreprises, log.getCompanyId());
+                    ajouter(actions, log.getActionType() != null ? log.getActionType().name() : null);
+                    ajouter(entites, log.getEntityType());
+                }
+                writer.flush();
+                gzip.finish();
+                sortie.getFD().sync();
+            }
+            Files.move(temporaire, fichier, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            fichier.toFile().setReadOnly();
+            synchroniserDossier(dossier);
+
+            Segment segment = new Segment(numero, nom, debut, fin, seuil, lignes.size(),
+                lignes.get(0).getId(), lignes.get(lignes.size() - 1).getId(), hex(digest.digest()),
+                precedent != null ? precedent.hash() : GENESE,
+                new Sommaire(liste(utilisateurs), liste(entreprises), liste(actions), liste(entites)), null);
+            segment = segment.avecHash(hasher(segment));
+
+            try (FileOutputStream index = new FileOutputStream(dossier.resolve(INDEX).toFile(), true)) {
+                index.write((objectMapper.writeValueAsString(segment) + "\n").getBytes(StandardCharsets.UTF_8));
+                index.getFD().sync();
+            }
+            List<Segment> suite = new ArrayList<>(segments);
+            suite.add(segment);
+            segments = List.copyOf(suite);
+            return segment;
+        } catch (IOException e) {
+            throw new RuntimeException("Écriture du segment d'archive d'audit " + nom + " impossible: " + e.getMessage(), e);
+        }
+    }
+
+    private static <T> void ajouter(Set<T> valeurs, T valeur) {
+        if (valeur != null && valeurs.size() <= VALEURS_SOMMAIRE_MAX) {
+            valeurs.add(valeur);
+        }
+    }
+
+    private static <T> List<T> liste(Set<T> valeurs) {
+        return valeurs.size() > VALEURS_SOMMAIRE_MAX ? null : List.copyOf(valeurs);
+    }
+
+    /**
+     * Supprimer de la table exactement les lignes écrites dans un segment
+     */
+    private void supprimerLignes(List<Long> ids) {
+        for (int debut = 0; debut < ids.size(); debut += SUPPRESSION_PAR_REQUETE) {
+            List<Long> lot = ids.subList(debut, Math.min(debut + SUPPRESSION_PAR_REQUETE, ids.size()));
+            jdbcTemplate.update("DELETE FROM audit_logs WHERE id IN (" + String.join(",", Collections.nCopies(lot.size(), "?"))
+                + ")", lot.toArray());
+        }
+    }
+
+    private static List<Long> identifiants(List<AuditLog> logs) {
+        List<Long> ids = new ArrayList<>(logs.size());
+        logs.forEach(log -> ids.add(log.getId()));
+        return ids;
+    }
+
+    /**
+     * Rendre durable le renommage du segment (entrée de répertoire), quand le système le permet
+     */
+    private static void synchroniserDossier(Path dossier) {
+        try (FileChannel canal = FileChannel.open(dossier, StandardOpenOption.READ)) {
+            canal.force(true);
+        } catch (IOException e) {
+            logger.debug("Synchronisation du répertoire {} impossible : {}", dossier, e.getMessage());
+        }
+    }
+
+    private static boolean sousRepertoireTemporaire(Path dossier) {
+        Path temporaire = Paths.get(System.getProperty("java.io.tmpdir")).toAbsolutePath().normalize();
+        return dossier.toAbsolutePath().normalize().startsWith(temporaire);
+    }
+
+    /**
+     * Index vérifié de bout en bout (quelques centaines de lignes en mémoire, sans lecture de segment)
+     */
+    private List<Segment> verifierChaine() {
+        List<Segment> chaine = List.copyOf(segments);
+        String precedent = GENESE;
+        for (Segment segment : chaine) {
+            if (!precedent.equals(segment.hashPrecedent()) || !segment.hash().equals(hasher(segment))) {
+                throw new RuntimeException("Chaîne des archives d'audit rompue au segment " + segment.numero());
+            }
+            precedent = segment.hash();
+        }
+        return chaine;
+    }
+
+    private List<AuditLog> lireSegment(Segment segment) {
+        segmentsLus.incrementAndGet();
+        Path fichier = Paths.get(repertoire, segment.fichier());
+        MessageDigest digest = sha256();
+        List<AuditLog> logs = new ArrayList<>();
+        try (InputStream entree = new DigestInputStream(Files.newInputStream(fichier), digest);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(entree), StandardCharsets.UTF_8))) {
+            String ligne;
+            while ((ligne = reader.readLine()) != null) {
+                logs.add(objectMapper.readValue(ligne, AuditLog.class));
+            }
+            // Consommer la fin éventuelle du fichier pour que l'empreinte porte sur tout le contenu
+            entree.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException e) {
+            throw new RuntimeException("Segment d'archive d'audit " + segment.numero() + " illisible: " + e.getMessage(), e);
+        }
+        if (!hex(digest.digest()).equals(segment.empreinte())) {
+            throw new RuntimeException("Segment d'archive d'audit " + segment.numero() + " altéré");
+        }
+        return logs;
+    }
+
+    private static AuditLog lire(ResultSet rs) throws SQLException {
+        AuditLog log = new AuditLog();
+        log.setId(rs.getLong("id"));
+        log.setTimestamp(rs.getTimestamp("timestamp").toLocalDateTime());
+        log.setUserId(rs.getObject("user_id", Long.class));
+        log.setUsername(rs.getString("username"));
+        log.setCompanyId(rs.getObject("company_id", Long.class));
+        log.setActionType(AuditLog.ActionType.valueOf(rs.getString("action_type")));
+        log.setEntityType(rs.getString("entity_type"));
+        log.setEntityId(rs.getObject("entity_id", Long.class));
+        log.setDescription(rs.getString("description"));
+        log.setIpAddress(rs.getString("ip_address"));
+        log.setUserAgent(rs.getString("user_agent"));
+        log.setSessionId(rs.getString("session_id"));
+        log.setOldValues(rs.getString("old_values"));
+        log.setNewValues(rs.getString("new_values"));
+        String status = rs.getString("status");
+        log.setStatus(status != null ? AuditLog.AuditStatus.valueOf(status) : null);
+        log.setErrorMessage(rs.getString("error_message"));
+        return log;
+    }
+
+    static String hasher(Segment segment) {
+        String contenu = String.join("|", segment.hashPrecedent(), String.valueOf(segment.numero()), segment.fichier(),
+            String.valueOf(segment.debut()), String.valueOf(segment.fin()), String.valueOf(segment.seuil()),
+            String.valueOf(segment.nombre()), String.valueOf(segment.minId()), String.valueOf(segment.maxId()),
+            segment.empreinte());
+        if (segment.sommaire() != null) {
+            // Absent des lignes d'index antérieures au sommaire, dont le hash reste inchangé
+            contenu += "|" + segment.sommaire();
+        }
+        return hex(sha256().digest(contenu.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String empreinteFichier(Path fichier) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream entree = new DigestInputStream(Files.newInputStream(fichier), digest)) {
+            entree.transferTo(OutputStream.nullOutputStream());
+        }
+        return hex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+
+    private static String hex(byte[] octets) {
+        StringBuilder sb = new StringBuilder(octets.length * 2);
+        for (byte octet : octets) {
+            sb.append(Character.forDigit((octet >> 4) & 0xF, 16)).append(Character.forDigit(octet & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Ligne d'index d'un segment : bornes, empreinte du fichier, sommaire et hash chaîné
+     */
+    public record Segment(int numero, String fichier, LocalDateTime debut, LocalDateTime fin, LocalDateTime seuil,
+                          long nombre, long minId, long maxId, String empreinte, String hashPrecedent,
+                          Sommaire sommaire, String hash) {
+
+        Segment avecHash(String hash) {
+            return new Segment(numero, fichier, debut, fin, seuil, nombre, minId, maxId, empreinte, hashPrecedent,
+                sommaire, hash);
+        }
+
+        // Sans sommaire (ou liste omise), le segment peut contenir n'importe quelle valeur
+        public boolean peutContenirUtilisateur(Long userId) {
+            return sommaire == null || sommaire.utilisateurs() == null || sommaire.utilisateurs().contains(userId);
+        }
+
+        public boolean peutContenirEntreprise(Long companyId) {
+            return sommaire == null || sommaire.entreprises() == null || sommaire.entreprises().contains(companyId);
+        }
+
+        public boolean peutContenirAction(Predicate<String> action) {
+            return sommaire == null || sommaire.actions() == null || sommaire.actions().stream().anyMatch(action);
+        }
+
+        public boolean peutContenirEntite(String entityType) {
+            return sommaire == null || sommaire.entites() == null || sommaire.entites().contains(entityType);
+        }
+    }
+
+    /**
+     * Valeurs distinctes présentes dans un segment, triées ; une liste est null au-delà de VALEURS_SOMMAIRE_MAX
+     */
+    public record Sommaire(List<Long> utilisateurs, List<Long> entreprises, List<String> actions, List<String> entites) {
+    }
+}
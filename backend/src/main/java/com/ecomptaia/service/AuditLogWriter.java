@@ -0,0 +1,522 @@
+package com.ecomptaia.service;
+
+import com.ecomptaia.entity.AuditLog;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.dao.TypeMismatchDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Écriture asynchrone du journal d'audit.
+ *
+ * Le thread appelant ne fait que figer l'événement et l'ajouter à une file bornée sans verrou ;
+ * un thread d'écriture la vide par lots JDBC (app.audit.batch-size lignes par INSERT groupé, un lot par
+ * transaction : un lot refusé n'est pas écrit en partie), dès qu'un lot est complet ou au plus tard toutes
+ * les app.audit.flush-interval-ms.
+ *
+ * File pleine : l'appelant attend au plus app.audit.max-wait-ms que le thread d'écriture libère de la place,
+ * puis l'événement est ajouté au fichier de débordement (app.audit.overflow-file, une ligne JSON par événement,
+ * synchronisé sur disque, hors du répertoire temporaire par défaut). Un lot refusé par la base y est ajouté de même.
+ * Le fichier est rejoué en base dès que la file est vide, y compris au démarrage suivant. Une ligne illisible,
+ * ou refusée pour ses données (contrainte, valeur trop longue) app.audit.overflow-max-attempts fois, est déplacée
+ * dans le fichier des rejets (même nom suffixé .dead) pour ne pas bloquer le rejeu des suivantes ; une base
+ * indisponible suspend le rejeu sans rien rejeter. Un événement n'est perdu que si ces fichiers ne peuvent être
+ * écrits. À l'arrêt, la file est vidée avant la fermeture de la source de données.
+ */
+@Service
+public class AuditLogWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditLogWriter.class);
+
+    static final String INSERT_SQL = "INSERT INTO audit_logs (timestamp, user_id, username, company_id, action_type, "
+        + "entity_type, entity_id, description, ip_address, user_agent, session_id, old_values, new_values, status, "
+        + "error_message) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired(required = false)
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.audit.async.enabled:true}")
+    private boolean actif = true;
+
+    @Value("${app.audit.queue-capacity:10000}")
+    private int capacite = 10000;
+
+    @Value("${app.audit.batch-size:200}")
+    private int tailleLot = 200;
+
+    @Value("${app.audit.flush-interval-ms:200}")
+    private long intervalleMs = 200;
+
+    @Value("${app.audit.max-wait-ms:50}")
+    private long attenteMaxMs = 50;
+
+    @Value("${app.audit.overflow-file:./data/audit/ecomptaia-audit-overflow.jsonl}")
+    private String fichierDebordement = "./data/audit/ecomptaia-audit-overflow.jsonl";
+
+    @Value("${app.audit.overflow-max-attempts:5}")
+    private int tentativesMax = 5;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    private final ConcurrentLinkedQueue<Evenement> file = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger profondeur = new AtomicInteger();
+    private final Object verrouDebordement = new Object();
+    private final Map<String, Integer> tentatives = new ConcurrentHashMap<>();
+
+    private final AtomicLong ecrits = new AtomicLong();
+    private final AtomicLong lots = new AtomicLong();
+    private final AtomicLong debordes = new AtomicLong();
+    private final AtomicLong rejoues = new AtomicLong();
+    private final AtomicLong perdus = new AtomicLong();
+    private final AtomicLong ecartes = new AtomicLong();
+    private final AtomicLong derniereLatenceNanos = new AtomicLong();
+    private Timer latenceLots;
+    private volatile TransactionTemplate transactionLot;
+
+    private volatile Thread ecrivain;
+    private volatile boolean arrete;
+
+    @PostConstruct
+    public void demarrer() {
+        if (!isActif()) {
+            return;
+        }
+        if (meterRegistry != null) {
+            Gauge.builder("audit.queue.depth", profondeur, AtomicInteger::get)
+                .description("Événements d'audit en attente d'écriture").register(meterRegistry);
+            FunctionCounter.builder("audit.written", ecrits, AtomicLong::get).register(meterRegistry);
+            FunctionCounter.builder("audit.overflowed", debordes, AtomicLong::get)
+                .description("Événements reportés dans le fichier de débordement").register(meterRegistry);
+            FunctionCounter.builder("audit.dropped", perdus, AtomicLong::get)
+                .description("Événements perdus (fichier de débordement non inscriptible)").register(meterRegistry);
+            FunctionCounter.builder("audit.dead-lettered", ecartes, AtomicLong::get)
+                .description("Lignes du débordement écartées dans le fichier des rejets").register(meterRegistry);
+            latenceLots = Timer.builder("audit.batch.latency").register(meterRegistry);
+        }
+        if (Paths.get(fichierDebordement).toAbsolutePath().normalize()
+                .startsWith(Paths.get(System.getProperty("java.io.tmpdir")).toAbsolutePath().normalize())) {
+            logger.warn("Fichier de débordement d'audit dans le répertoire temporaire ({}) : non durable", fichierDebordement);
+        }
+        transactionLot();
+        arrete = false;
+        Thread thread = new Thread(this::boucler, "audit-writer");
+        thread.setDaemon(true);
+        ecrivain = thread;
+        thread.start();
+    }
+
+    /**
+     * Vider la file et arrêter le thread d'écriture ; ce qui ne peut être écrit reste dans le fichier de débordement
+     */
+    @PreDestroy
+    public void arreter() {
+        arrete = true;
+        Thread thread = ecrivain;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ecrivain = null;
+        }
+        vider();
+    }
+
+    /**
+     * L'écriture asynchrone est-elle disponible ; sinon l'appelant enregistre l'événement lui-même
+     */
+    public boolean isActif() {
+        return actif && jdbcTemplate != null;
+    }
+
+    /**
+     * Confier un événement d'audit (figé à l'appel) au thread d'écriture
+     *
+     * @return false si l'écriture asynchrone n'est pas disponible
+     */
+    public boolean soumettre(AuditLog auditLog) {
+        if (!isActif() || arrete) {
+            return false;
+        }
+        Evenement evenement = Evenement.de(auditLog);
+        if (!reserver()) {
+            // Contre-pression : laisser au thread d'écriture le temps de libérer de la place
+            LockSupport.unpark(ecrivain);
+            long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(attenteMaxMs);
+            boolean reserve = false;
+            while (!reserve && System.nanoTime() < limite) {
+                LockSupport.parkNanos(100_000);
+                reserve = reserver();
+            }
+            if (!reserve) {
+                deborder(List.of(evenement));
+                return true;
+            }
+        }
+        file.offer(evenement);
+        if (profondeur.get() >= tailleLot) {
+            LockSupport.unpark(ecrivain);
+        }
+        return true;
+    }
+
+    /**
+     * Écrire tout ce qui est en file (appelé par le thread d'écriture, et à l'arrêt)
+     *
+     * @return nombre d'événements traités
+     */
+    int vider() {
+        int total = 0;
+        int traites;
+        while ((traites = ecrireLot()) > 0) {
+            total += traites;
+        }
+        return total;
+    }
+
+    /**
+     * Rejouer en base le fichier de débordement, par lots ; ce qui n'a pu être écrit y reste, à partir de la
+     * première ligne non rejouée
+     *
+     * @return nombre d'événements rejoués
+     */
+    int rejouerDebordement() {
+        Path chemin = Paths.get(fichierDebordement);
+        Path enCours = Paths.get(fichierDebordement + ".replay");
+        List<String> lignes;
+        synchronized (verrouDebordement) {
+            try {
+                if (!Files.exists(enCours)) {
+                    if (!Files.exists(chemin)) {
+                        return 0;
+                    }
+                    Files.move(chemin, enCours, StandardCopyOption.ATOMIC_MOVE);
+                }
+                lignes = Files.readAllLines(enCours, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                logger.error("Lecture du fichier de débordement d'audit impossible : {}", e.getMessage());
+                return 0;
+            }
+        }
+
+        // Position dans les lignes brutes (lignes vides comprises) : tout ce qui la précède est traité
+        int position = 0;
+        Set<Integer> rejetees = new HashSet<>();
+        int rejouesIci = 0;
+        try {
+            while (position < lignes.size()) {
+                List<Evenement> lot = new ArrayList<>();
+                List<Integer> index = new ArrayList<>();
+                int fin = position;
+                while (fin < lignes.size() && lot.size() < tailleLot) {
+                    String ligne = lignes.get(fin);
+                    if (!ligne.isBlank()) {
+                        try {
+                            Evenement evenement = objectMapper.readValue(ligne, Evenement.class);
+                            if (evenement.timestamp() == null) {
+                                // Horodatage absent : refusé à la conversion, sans requête
+                                rejeter(ligne, "horodatage absent");
+                                rejetees.add(fin);
+                            } else {
+                                lot.add(evenement);
+                                index.add(fin);
+                            }
+                        } catch (IOException e) {
+                            rejeter(ligne, "illisible : " + e.getMessage());
+                            rejetees.add(fin);
+                        }
+                    }
+                    fin++;
+                }
+                try {
+                    inserer(lot);
+                    rejouesIci += lot.size();
+                    position = fin;
+                } catch (RuntimeException e) {
+                    if (!refusPourDonnees(e)) {
+                        throw e;
+                    }
+                    // Isoler les lignes refusées : celles qui le sont trop souvent sont écartées
+                    for (int k = 0; k < lot.size(); k++) {
+                        String ligne = lignes.get(index.get(k));
+                        try {
+                            inserer(List.of(lot.get(k)));
+                            tentatives.remove(ligne);
+                            rejouesIci++;
+                        } catch (RuntimeException ex) {
+                            if (!refusPourDonnees(ex) || tentatives.merge(ligne, 1, Integer::sum) < tentativesMax) {
+                                throw ex;
+                            }
+                            tentatives.remove(ligne);
+                            rejeter(ligne, ex.getMessage());
+                            rejetees.add(index.get(k));
+                        }
+                        position = index.get(k) + 1;
+                    }
+                    position = fin;
+                }
+            }
+            Files.delete(enCours);
+        } catch (Exception e) {
+            logger.warn("Rejeu du débordement d'audit interrompu ({} événements rejoués) : {}", rejouesIci, e.getMessage());
+            List<String> restantes = new ArrayList<>();
+            for (int i = position; i < lignes.size(); i++) {
+                if (!rejetees.contains(i)) {
+                    restantes.add(lignes.get(i));
+                }
+            }
+            try {
+                Files.write(enCours, restantes, StandardCharsets.UTF_8);
+            } catch (IOException ex) {
+                logger.error("Mise à jour du fichier de débordement d'audit impossible : {}", ex.getMessage());
+            }
+        }
+        rejoues.addAndGet(rejouesIci);
+        ecrits.addAndGet(rejouesIci);
+        return rejouesIci;
+    }
+
+    public Map<String, Object> getStatistiques() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("asynchrone", isActif());
+        stats.put("profondeurFile", profondeur.get());
+        stats.put("capaciteFile", capacite);
+        stats.put("evenementsEcrits", ecrits.get());
+        stats.put("lotsEcrits", lots.get());
+        stats.put("evenementsDebordes", debordes.get());
+        stats.put("evenementsRejoues", rejoues.get());
+        stats.put("evenementsPerdus", perdus.get());
+        stats.put("evenementsRejetes", ecartes.get());
+        stats.put("latenceDernierLotMs", derniereLatenceNanos.get() / 1_000_000.0);
+        stats.put("debordementEnAttente", Files.exists(Paths.get(fichierDebordement))
+            || Files.exists(Paths.get(fichierDebordement + ".replay")));
+        return stats;
+    }
+
+    public int getProfondeurFile() {
+        return profondeur.get();
+    }
+
+    public long getNombreEcrits() {
+        return ecrits.get();
+    }
+
+    public long getNombreDebordes() {
+        return debordes.get();
+    }
+
+    public long getNombrePerdus() {
+        return perdus.get();
+    }
+
+    public long getNombreRejetes() {
+        return ecartes.get();
+    }
+
+    private void boucler() {
+        while (!arrete) {
+            try {
+                if (vider() == 0) {
+                    rejouerDebordement();
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(intervalleMs));
+                }
+            } catch (Exception e) {
+                logger.error("Erreur du thread d'écriture d'audit : {}", e.getMessage());
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(intervalleMs));
+            }
+        }
+    }
+
+    private boolean reserver() {
+        while (true) {
+            int courante = profondeur.get();
+            if (courante >= capacite) {
+                return false;
+            }
+            if (profondeur.compareAndSet(courante, courante + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private int ecrireLot() {
+        List<Evenement> lot = new ArrayList<>(tailleLot);
+        Evenement evenement;
+        while (lot.size() < tailleLot && (evenement = file.poll()) != null) {
+            lot.add(evenement);
+            profondeur.decrementAndGet();
+        }
+        if (lot.isEmpty()) {
+            return 0;
+        }
+        try {
+            inserer(lot);
+            ecrits.addAndGet(lot.size());
+        } catch (Exception e) {
+            logger.warn("Écriture d'un lot d'audit refusée ({} événements reportés) : {}", lot.size(), e.getMessage());
+            deborder(lot);
+        }
+        return lot.size();
+    }
+
+    private void inserer(List<Evenement> lot) {
+        if (lot.isEmpty()) {
+            return;
+        }
+        long debut = System.nanoTime();
+        transactionLot().executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_SQL, lot, lot.size(), (ps, e) -> {
+            ps.setTimestamp(1, Timestamp.valueOf(e.timestamp()));
+            ps.setObject(2, e.userId(), Types.BIGINT);
+            ps.setString(3, e.username());
+            ps.setObject(4, e.companyId(), Types.BIGINT);
+            ps.setString(5, e.actionType());
+            ps.setString(6, e.entityType());
+            ps.setObject(7, e.entityId(), Types.BIGINT);
+            ps.setString(8, e.description());
+            ps.setString(9, e.ipAddress());
+            ps.setString(10, e.userAgent());
+            ps.setString(11, e.sessionId());
+            ps.setString(12, e.oldValues());
+            ps.setString(13, e.newValues());
+            ps.setString(14, e.status());
+            ps.setString(15, e.errorMessage());
+        }));
+        long duree = System.nanoTime() - debut;
+        derniereLatenceNanos.set(duree);
+        lots.incrementAndGet();
+        if (latenceLots != null) {
+            latenceLots.record(duree, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private TransactionTemplate transactionLot() {
+        TransactionTemplate transaction = transactionLot;
+        if (transaction == null) {
+            transaction = new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
+            transactionLot = transaction;
+        }
+        return transaction;
+    }
+
+    /**
+     * Refus lié aux données d'un événement (contrainte, valeur trop longue, conversion), par opposition à une base
+     * indisponible, une transaction impossible à ouvrir, un schéma absent ou toute autre erreur, qui suspendent
+     * le rejeu sans compter de tentative
+     */
+    private static boolean refusPourDonnees(RuntimeException e) {
+        return e instanceof DataIntegrityViolationException || e instanceof DataRetrievalFailureException
+            || e instanceof TypeMismatchDataAccessException;
+    }
+
+    /**
+     * Déplacer une ligne du débordement dans le fichier des rejets (synchronisé sur disque)
+     */
+    private void rejeter(String ligne, String motif) {
+        Path rejets = Paths.get(fichierDebordement + ".dead");
+        try {
+            creerRepertoire(rejets);
+            try (FileOutputStream sortie = new FileOutputStream(rejets.toFile(), true);
+                 Writer writer = new OutputStreamWriter(sortie, StandardCharsets.UTF_8)) {
+                writer.write(ligne);
+                writer.write('\n');
+                writer.flush();
+                sortie.getFD().sync();
+            }
+            ecartes.incrementAndGet();
+            logger.error("Événement d'audit écarté du rejeu dans {} : {}", rejets, motif);
+        } catch (IOException e) {
+            throw new RuntimeException("Fichier des rejets d'audit non inscriptible : " + e.getMessage(), e);
+        }
+    }
+
+    private static void creerRepertoire(Path fichier) throws IOException {
+        Path parent = fichier.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+    }
+
+    private void deborder(List<Evenement> evenements) {
+        synchronized (verrouDebordement) {
+            try {
+                creerRepertoire(Paths.get(fichierDebordement));
+            } catch (IOException e) {
+                logger.error("Répertoire du fichier de débordement d'audit non créé : {}", e.getMessage());
+            }
+            try (FileOutputStream sortie = new FileOutputStream(fichierDebordement, true);
+                 Writer writer = new OutputStreamWriter(sortie, StandardCharsets.UTF_8)) {
+                for (Evenement evenement : evenements) {
+                    writer.write(objectMapper.writeValueAsString(evenement));
+                    writer.write('\n');
+                }
+                writer.flush();
+                sortie.getFD().sync();
+                debordes.addAndGet(evenements.size());
+            } catch (IOException e) {
+                perdus.addAndGet(evenements.size());
+                logger.error("{} événements d'audit perdus, fichier de débordement non inscriptible : {}",
+                    evenements.size(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Événement d'audit figé au moment de l'appel
+     */
+    record Evenement(LocalDateTime timestamp, Long userId, String username, Long companyId, String actionType,
+                     String entityType, Long entityId, String description, String ipAddress, String userAgent,
+                     String sessionId, String oldValues, String newValues, String status, String errorMessage) {
+
+        static Evenement de(AuditLog log) {
+            return new Evenement(log.getTimestamp(), log.getUserId(), log.getUsername(), log.getCompanyId(),
+                log.getActionType() != null ? log.getActionType().name() : null, log.getEntityType(),
+                log.getEntityId(), log.getDescription(), log.getIpAddress(), log.getUserAgent(), log.getSessionId(),
+                log.getOldValues(), log.getNewValues(), log.getStatus() != null ? log.getStatus().name() : null,
+                log.getErrorMessage());
+        }
+    }
+}
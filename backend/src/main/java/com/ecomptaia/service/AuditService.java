@@ -10,12 +10,19 @@ import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 
 /**
@@ -27,6 +34,17 @@ public class AuditService {
     @Autowired
     private AuditLogRepository auditLogRepository;
 
+    @Autowired(required = false)
+    private AuditLogWriter auditLogWriter;
+
+    @Autowired(required = false)
+    private AuditArchiveService auditArchiveService;
+
+    private static final Set<AuditLog.ActionType> ACTIONS_SECURITE = EnumSet.of(
+        AuditLog.ActionType.LOGIN, AuditLog.ActionType.LOGOUT, AuditLog.ActionType.SECURITY_EVENT);
+    private static final Set<AuditLog.ActionType> ACTIONS_MODIFICATION = EnumSet.of(
+        AuditLog.ActionType.CREATE, AuditLog.ActionType.UPDATE, AuditLog.ActionType.DELETE);
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     /**
@@ -64,6 +82,50 @@ public class AuditService {
     public AuditLog logAction(AuditLog.ActionType actionType, String entityType, Long entityId, 
                              String description, Long userId, String username, 
                              Object oldValues, Object newValues) {
+        return enregistrer(construire(actionType, entityType, entityId, description, userId, username, oldValues, newValues));
+    }
+
+    /**
+     * Enregistrer une action d'audit avec entreprise
+     */
+    public AuditLog logAction(AuditLog.ActionType actionType, String entityType, Long entityId, 
+                             String description, Long userId, String username, Long companyId) {
+        
+        AuditLog auditLog = construire(actionType, entityType, entityId, description, userId, username, null, null);
+        auditLog.setCompanyId(companyId);
+        return enregistrer(auditLog);
+    }
+
+    /**
+     * Enregistrer une action d'audit avec statut d'échec
+     */
+    public AuditLog logFailedAction(AuditLog.ActionType actionType, String entityType, String description, 
+                                   String errorMessage, Long userId, String username) {
+        
+        AuditLog auditLog = construire(actionType, entityType, null, description, userId, username, null, null);
+        auditLog.setStatus(AuditLog.AuditStatus.FAILED);
+        auditLog.setErrorMessage(errorMessage);
+        return enregistrer(auditLog);
+    }
+
+    /**
+     * Confier l'événement à l'écriture asynchrone par lots ; enregistrement immédiat si elle est indisponible.
+     * En asynchrone, l'identifiant du log retourné n'est pas renseigné.
+     */
+    private AuditLog enregistrer(AuditLog auditLog) {
+        if (auditLogWriter != null && auditLogWriter.soumettre(auditLog)) {
+            return auditLog;
+        }
+        return auditLogRepository.save(auditLog);
+    }
+
+    /**
+     * Construire l'événement sur le thread appelant : informations de requête et valeurs sérialisées
+     * au moment de l'action
+     */
+    private AuditLog construire(AuditLog.ActionType actionType, String entityType, Long entityId,
+                                String description, Long userId, String username,
+                                Object oldValues, Object newValues) {
         
         AuditLog auditLog = new AuditLog(actionType, entityType, description);
         auditLog.setEntityId(entityId);
@@ -77,7 +139,11 @@ public class AuditService {
                 HttpServletRequest request = attributes.getRequest();
                 auditLog.setIpAddress(getClientIpAddress(request));
                 auditLog.setUserAgent(request.getHeader("User-Agent"));
-                auditLog.setSessionId(request.getSession().getId());
+                // Ne pas créer de session HTTP sur les API sans état
+                HttpSession session = request.getSession(false);
+                if (session != null) {
+                    auditLog.setSessionId(session.getId());
+                }
             }
         } catch (Exception e) {
             // Ignorer les erreurs de récupération des informations de requête
@@ -100,30 +166,7 @@ public class AuditService {
             }
         }
         
-        return auditLogRepository.save(auditLog);
-    }
-
-    /**
-     * Enregistrer une action d'audit avec entreprise
-     */
-    public AuditLog logAction(AuditLog.ActionType actionType, String entityType, Long entityId, 
-                             String description, Long userId, String username, Long companyId) {
-        
-        AuditLog auditLog = logAction(actionType, entityType, entityId, description, userId, username);
-        auditLog.setCompanyId(companyId);
-        return auditLogRepository.save(auditLog);
-    }
-
-    /**
-     * Enregistrer une action d'audit avec statut d'échec
-     */
-    public AuditLog logFailedAction(AuditLog.ActionType actionType, String entityType, String description, 
-                                   String errorMessage, Long userId, String username) {
-        
-        AuditLog auditLog = logAction(actionType, entityType, description, userId, username);
-        auditLog.setStatus(AuditLog.AuditStatus.FAILED);
-        auditLog.setErrorMessage(errorMessage);
-        return auditLogRepository.save(auditLog);
+        return auditLog;
     }
 
     /**
@@ -149,70 +192,121 @@ public class AuditService {
      * Obtenir les logs d'audit par utilisateur
      */
     public List<AuditLog> getAuditLogsByUser(Long userId) {
-        return auditLogRepository.findByUserIdOrderByTimestampDesc(userId);
+        return avecArchives(auditLogRepository.findByUserIdOrderByTimestampDesc(userId), LocalDateTime.MIN,
+            LocalDateTime.MAX, segment -> segment.peutContenirUtilisateur(userId),
+            log -> Objects.equals(userId, log.getUserId()));
     }
 
     /**
      * Obtenir les logs d'audit par entreprise
      */
     public List<AuditLog> getAuditLogsByCompany(Long companyId) {
-        return auditLogRepository.findByCompanyIdOrderByTimestampDesc(companyId);
+        return avecArchives(auditLogRepository.findByCompanyIdOrderByTimestampDesc(companyId), LocalDateTime.MIN,
+            LocalDateTime.MAX, segment -> segment.peutContenirEntreprise(companyId),
+            log -> Objects.equals(companyId, log.getCompanyId()));
     }
 
     /**
      * Obtenir les logs d'audit par type d'action
      */
     public List<AuditLog> getAuditLogsByActionType(AuditLog.ActionType actionType) {
-        return auditLogRepository.findByActionTypeOrderByTimestampDesc(actionType);
+        return avecArchives(auditLogRepository.findByActionTypeOrderByTimestampDesc(actionType), LocalDateTime.MIN,
+            LocalDateTime.MAX, segment -> segment.peutContenirAction(actionType.name()::equals),
+            log -> log.getActionType() == actionType);
     }
 
     /**
      * Obtenir les logs d'audit par période
      */
     public List<AuditLog> getAuditLogsByPeriod(LocalDateTime startDate, LocalDateTime endDate) {
-        return auditLogRepository.findByTimestampBetweenOrderByTimestampDesc(startDate, endDate);
+        return avecArchives(auditLogRepository.findByTimestampBetweenOrderByTimestampDesc(startDate, endDate),
+            startDate, endDate, log -> true);
+    }
+
+    private List<AuditLog> avecArchives(List<AuditLog> recents, LocalDateTime startDate, LocalDateTime endDate,
+                                        Predicate<AuditLog> filtre) {
+        return avecArchives(recents, startDate, endDate, segment -> true, filtre);
+    }
+
+    /**
+     * Compléter les logs de la table courante par les événements archivés de la période retenus par le filtre
+     * (même critère que la requête), du plus récent au plus ancien. Les segments ne sont lus que si la période
+     * recoupe les archives et que leur sommaire est accepté par candidats ; un événement présent des deux côtés
+     * pendant un archivage n'est compté qu'une fois.
+     */
+    private List<AuditLog> avecArchives(List<AuditLog> recents, LocalDateTime startDate, LocalDateTime endDate,
+                                        Predicate<AuditArchiveService.Segment> candidats, Predicate<AuditLog> filtre) {
+        if (auditArchiveService == null || !auditArchiveService.couvre(startDate, endDate)) {
+            return recents;
+        }
+        List<AuditLog> archives = auditArchiveService.rechercher(startDate, endDate, candidats, filtre);
+        if (archives.isEmpty()) {
+            return recents;
+        }
+        Set<Long> archivesIds = new HashSet<>();
+        archives.forEach(log -> archivesIds.add(log.getId()));
+        List<AuditLog> logs = new ArrayList<>(archives);
+        for (AuditLog log : recents) {
+            if (!archivesIds.contains(log.getId())) {
+                logs.add(log);
+            }
+        }
+        logs.sort((a, b) -> b.getTimestamp().compareTo(a.getTimestamp()));
+        return logs;
     }
 
     /**
      * Obtenir les logs d'audit par entité
      */
     public List<AuditLog> getAuditLogsByEntity(String entityType, Long entityId) {
-        return auditLogRepository.findByEntityTypeAndEntityIdOrderByTimestampDesc(entityType, entityId);
+        return avecArchives(auditLogRepository.findByEntityTypeAndEntityIdOrderByTimestampDesc(entityType, entityId),
+            LocalDateTime.MIN, LocalDateTime.MAX, segment -> segment.peutContenirEntite(entityType),
+            log -> Objects.equals(entityType, log.getEntityType()) && Objects.equals(entityId, log.getEntityId()));
     }
 
     /**
      * Obtenir les événements de sécurité
      */
     public List<AuditLog> getSecurityEvents(LocalDateTime since) {
-        return auditLogRepository.findSecurityEventsSince(since);
+        return avecArchives(auditLogRepository.findSecurityEventsSince(since), since, LocalDateTime.MAX,
+            segment -> segment.peutContenirAction(action -> ACTIONS_SECURITE.stream().anyMatch(t -> t.name().equals(action))),
+            log -> ACTIONS_SECURITE.contains(log.getActionType()));
     }
 
     /**
      * Obtenir les modifications d'entités
      */
     public List<AuditLog> getEntityModifications(String entityType, LocalDateTime since) {
-        return auditLogRepository.findEntityModificationsSince(entityType, since);
+        return avecArchives(auditLogRepository.findEntityModificationsSince(entityType, since), since, LocalDateTime.MAX,
+            segment -> segment.peutContenirEntite(entityType),
+            log -> ACTIONS_MODIFICATION.contains(log.getActionType()) && Objects.equals(entityType, log.getEntityType()));
     }
 
     /**
      * Obtenir les actions d'abonnement
      */
     public List<AuditLog> getSubscriptionActions(LocalDateTime since) {
-        return auditLogRepository.findSubscriptionActionsSince(since);
+        return avecArchives(auditLogRepository.findSubscriptionActionsSince(since), since, LocalDateTime.MAX,
+            segment -> segment.peutContenirAction(action -> action.startsWith("SUBSCRIPTION_")),
+            log -> log.getActionType().name().startsWith("SUBSCRIPTION_"));
     }
 
     /**
      * Obtenir les actions de paiement
      */
     public List<AuditLog> getPaymentActions(LocalDateTime since) {
-        return auditLogRepository.findPaymentActionsSince(since);
+        return avecArchives(auditLogRepository.findPaymentActionsSince(since), since, LocalDateTime.MAX,
+            segment -> segment.peutContenirAction(action -> action.startsWith("PAYMENT_")),
+            log -> log.getActionType().name().startsWith("PAYMENT_"));
     }
 
     /**
      * Obtenir les actions de document
      */
     public List<AuditLog> getDocumentActions(LocalDateTime since) {
-        return auditLogRepository.findDocumentActionsSince(since);
+        return avecArchives(auditLogRepository.findDocumentActionsSince(since), since, LocalDateTime.MAX,
+            segment -> segment.peutContenirAction(action -> action.startsWith("DOCUMENT_")),
+            log -> log.getActionType().name().startsWith("DOCUMENT_"));
     }
 
     // === MÉTHODES DE RAPPORT ===
@@ -223,8 +317,10 @@ public class AuditService {
     public Map<String, Object> generateUserActivityReport(Long userId, LocalDateTime since) {
         Map<String, Object> report = new HashMap<>();
         
-        List<AuditLog> userLogs = auditLogRepository.findByUserIdAndTimestampBetweenOrderByTimestampDesc(
-            userId, since, LocalDateTime.now());
+        LocalDateTime now = LocalDateTime.now();
+        List<AuditLog> userLogs = avecArchives(auditLogRepository.findByUserIdAndTimestampBetweenOrderByTimestampDesc(
+            userId, since, now), since, now, segment -> segment.peutContenirUtilisateur(userId),
+            log -> Objects.equals(userId, log.getUserId()));
         
         report.put("userId", userId);
         report.put("period", since.format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")) + " - " + 
@@ -249,8 +345,10 @@ public class AuditService {
     public Map<String, Object> generateCompanyActivityReport(Long companyId, LocalDateTime since) {
         Map<String, Object> report = new HashMap<>();
         
-        List<AuditLog> companyLogs = auditLogRepository.findByCompanyIdAndTimestampBetweenOrderByTimestampDesc(
-            companyId, since, LocalDateTime.now());
+        LocalDateTime now = LocalDateTime.now();
+        List<AuditLog> companyLogs = avecArchives(auditLogRepository.findByCompanyIdAndTimestampBetweenOrderByTimestampDesc(
+            companyId, since, now), since, now, segment -> segment.peutContenirEntreprise(companyId),
+            log -> Objects.equals(companyId, log.getCompanyId()));
         
         report.put("companyId", companyId);
         report.put("period", since.format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")) + " - " + 
@@ -275,7 +373,7 @@ public class AuditService {
     public Map<String, Object> generateSecurityReport(LocalDateTime since) {
         Map<String, Object> report = new HashMap<>();
         
-        List<AuditLog> securityEvents = auditLogRepository.findSecurityEventsSince(since);
+        List<AuditLog> securityEvents = getSecurityEvents(since);
         List<Object[]> suspiciousLogins = auditLogRepository.findSuspiciousLoginAttempts(since, 5L);
         
         report.put("period", since.format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")) + " - " + 
@@ -304,6 +402,20 @@ public class AuditService {
         report.put("period", since.format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")) + " - " + 
                    LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")));
         
+        LocalDateTime now = LocalDateTime.now();
+        if (auditArchiveService != null && auditArchiveService.couvre(since, now)) {
+            // Période recoupant les archives : statistiques calculées sur les événements archivés et courants
+            List<AuditLog> logs = getAuditLogsByPeriod(since, now);
+            report.put("actionTypeStats", compter(logs, AuditLog::getActionType));
+            report.put("entityTypeStats", compter(logs, AuditLog::getEntityType));
+            report.put("userActivityStats", compter(logs, AuditLog::getUsername));
+            report.put("ipActivityStats", compter(logs, AuditLog::getIpAddress));
+            report.put("dailyStats", compter(logs, log -> log.getTimestamp().toLocalDate()));
+            report.put("hourlyStats", compter(logs, log -> log.getTimestamp().getHour()));
+            report.put("recentActions", new ArrayList<>(logs.subList(0, Math.min(100, logs.size()))));
+            return report;
+        }
+        
         try {
             // Statistiques générales
             List<Object[]> actionTypeStats = auditLogRepository.getActionTypeStatsSince(since);
@@ -360,6 +472,20 @@ public class AuditService {
         return report;
     }
 
+    /**
+     * Nombre d'événements par valeur de la clé, par nombre décroissant (même forme que les requêtes de statistiques)
+     */
+    private static List<Object[]> compter(List<AuditLog> logs, Function<AuditLog, Object> cle) {
+        Map<Object, Long> comptes = new HashMap<>();
+        for (AuditLog log : logs) {
+            comptes.merge(cle.apply(log), 1L, Long::sum);
+        }
+        List<Object[]> stats = new ArrayList<>();
+        comptes.forEach((valeur, nombre) -> stats.add(new Object[]{valeur, nombre}));
+        stats.sort((a, b) -> Long.compare((Long) b[1], (Long) a[1]));
+        return stats;
+    }
+
     /**
      * Obtenir les statistiques d'audit
      */
@@ -370,7 +496,9 @@ public class AuditService {
         LocalDateTime last7Days = LocalDateTime.now().minusDays(7);
         LocalDateTime last30Days = LocalDateTime.now().minusDays(30);
         
-        stats.put("totalLogs", auditLogRepository.count());
+        long archives = auditArchiveService != null
+            ? ((Number) auditArchiveService.getStatistiques().get("evenementsArchives")).longValue() : 0L;
+        stats.put("totalLogs", auditLogRepository.count() + archives);
         stats.put("logsLast24Hours", auditLogRepository.countUserActionsSince(1L, last24Hours)); // Utilise un userId fictif
         stats.put("logsLast7Days", auditLogRepository.countUserActionsSince(1L, last7Days));
         stats.put("logsLast30Days", auditLogRepository.countUserActionsSince(1L, last30Days));
@@ -385,4 +513,29 @@ public class AuditService {
         
         return stats;
     }
+
+    /**
+     * Obtenir l'état de l'écriture asynchrone du journal d'audit
+     */
+    public Map<String, Object> getStatistiquesEcriture() {
+        if (auditLogWriter == null) {
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("asynchrone", false);
+            return stats;
+        }
+        return auditLogWriter.getStatistiques();
+    }
+
+    /**
+     * Vérifier l'intégrité des archives du journal d'audit (chaînage et empreintes des segments)
+     */
+    public Map<String, Object> verifierArchives() {
+        if (auditArchiveService == null) {
+            Map<String, Object> rapport = new HashMap<>();
+            rapport.put("valide", true);
+            rapport.put("segments", 0);
+            return rapport;
+        }
+        return auditArchiveService.verifierIntegrite();
+    }
 }
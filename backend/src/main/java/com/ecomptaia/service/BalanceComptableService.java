@@ -113,46 +113,51 @@ public class BalanceComptableService {
         balance.setDateFin(exercice.getEndDate());
         balance.setStatut("GENERATED");
         balance.setDateCreation(LocalDateTime.now());
-        genererSoldesComptes(balance);
-        calculerTotauxBalance(balance);
+        List<SoldeCompte> soldes = genererSoldesComptes(balance);
+        calculerTotauxBalance(balance, soldes);
         balance.verifierEquilibre();
         return balanceRepository.save(balance);
     }
     
-    private void genererSoldesComptes(BalanceComptable balance) {
+    /**
+     * Générer les soldes de tous les comptes actifs.
+     * Les soldes d'ouverture et les mouvements sont obtenus par deux requêtes agrégées
+     * (GROUP BY compte) au lieu d'un parcours du grand livre par compte.
+     */
+    private List<SoldeCompte> genererSoldesComptes(BalanceComptable balance) {
         Company company = balance.getCompany();
         LocalDate dateDebut = balance.getDateDebut();
         LocalDate dateFin = balance.getDateFin();
         List<Account> comptes = accountRepository.findByCompanyAndIsActiveTrueOrderByAccountNumberAsc(company);
+        
+        Map<Long, Object[]> cumulsAvant = indexerParCompte(
+            ligneRepository.sumDebitCreditByCompteAvantDate(company, dateDebut));
+        Map<Long, Object[]> mouvements = indexerParCompte(
+            ligneRepository.sumMouvementsByCompteEtPeriode(company, dateDebut, dateFin));
+        
+        List<SoldeCompte> soldes = new ArrayList<>(comptes.size());
         for (Account compte : comptes) {
             SoldeCompte solde = new SoldeCompte(balance, compte);
-            calculerSoldesDebut(solde, dateDebut);
-            calculerMouvements(solde, dateDebut, dateFin);
+            calculerSoldesDebut(solde, cumulsAvant.get(compte.getId()));
+            calculerMouvements(solde, mouvements.get(compte.getId()));
             solde.calculerSoldeFinal();
-            soldeRepository.save(solde);
+            soldes.add(solde);
         }
+        return soldeRepository.saveAll(soldes);
     }
     
-    private void calculerSoldesDebut(SoldeCompte solde, LocalDate dateDebut) {
-        Account compte = solde.getCompte();
-        Company company = compte.getCompany();
-        List<EcritureComptable> ecrituresAvant = ecritureRepository.findByEntrepriseOrderByDateEcritureDesc(company)
-            .stream()
-            .filter(e -> e.getDateEcriture().isBefore(dateDebut))
-            .collect(Collectors.toList());
-        BigDecimal soldeDebutDebit = BigDecimal.ZERO;
-        BigDecimal soldeDebutCredit = BigDecimal.ZERO;
-        for (EcritureComptable ecriture : ecrituresAvant) {
-            List<LigneEcriture> lignes = ligneRepository.findByEcritureAndCompte(ecriture, compte);
-            for (LigneEcriture ligne : lignes) {
-                if (ligne.getDebit() != null) {
-                    soldeDebutDebit = soldeDebutDebit.add(ligne.getDebit());
-                }
-                if (ligne.getCredit() != null) {
-                    soldeDebutCredit = soldeDebutCredit.add(ligne.getCredit());
-                }
-            }
+    private Map<Long, Object[]> indexerParCompte(List<Object[]> lignes) {
+        Map<Long, Object[]> index = new HashMap<>(lignes.size() * 2);
+        for (Object[] ligne : lignes) {
+            index.put((Long) ligne[0], ligne);
         }
+        return index;
+    }
+    
+    private void calculerSoldesDebut(SoldeCompte solde, Object[] cumuls) {
+        Account compte = solde.getCompte();
+        BigDecimal soldeDebutDebit = cumuls != null ? (BigDecimal) cumuls[1] : BigDecimal.ZERO;
+        BigDecimal soldeDebutCredit = cumuls != null ? (BigDecimal) cumuls[2] : BigDecimal.ZERO;
         if (compte.getOpeningBalance() != null) {
             if (compte.getOpeningBalance().compareTo(BigDecimal.ZERO) > 0) {
                 soldeDebutDebit = soldeDebutDebit.add(compte.getOpeningBalance());
@@ -164,40 +169,21 @@ public class BalanceComptableService {
         solde.setSoldeDebutCredit(soldeDebutCredit);
     }
     
-    private void calculerMouvements(SoldeCompte solde, LocalDate dateDebut, LocalDate dateFin) {
-        Account compte = solde.getCompte();
-        Company company = compte.getCompany();
-        List<EcritureComptable> ecritures = ecritureRepository.findByEntrepriseOrderByDateEcritureDesc(company)
-            .stream()
-            .filter(e -> !e.getDateEcriture().isBefore(dateDebut) && !e.getDateEcriture().isAfter(dateFin))
-            .collect(Collectors.toList());
-        BigDecimal mouvementDebit = BigDecimal.ZERO;
-        BigDecimal mouvementCredit = BigDecimal.ZERO;
-        int nombreMouvements = 0;
-        LocalDate dateDernierMouvement = null;
-        for (EcritureComptable ecriture : ecritures) {
-            List<LigneEcriture> lignes = ligneRepository.findByEcritureAndCompte(ecriture, compte);
-            for (LigneEcriture ligne : lignes) {
-                if (ligne.getDebit() != null) {
-                    mouvementDebit = mouvementDebit.add(ligne.getDebit());
-                }
-                if (ligne.getCredit() != null) {
-                    mouvementCredit = mouvementCredit.add(ligne.getCredit());
-                }
-                nombreMouvements++;
-                if (dateDernierMouvement == null || ecriture.getDateEcriture().isAfter(dateDernierMouvement)) {
-                    dateDernierMouvement = ecriture.getDateEcriture();
-                }
-            }
+    private void calculerMouvements(SoldeCompte solde, Object[] mouvements) {
+        if (mouvements == null) {
+            solde.setMouvementDebit(BigDecimal.ZERO);
+            solde.setMouvementCredit(BigDecimal.ZERO);
+            solde.setNombreMouvements(0);
+            solde.setDateDernierMouvement(null);
+            return;
         }
-        solde.setMouvementDebit(mouvementDebit);
-        solde.setMouvementCredit(mouvementCredit);
-        solde.setNombreMouvements(nombreMouvements);
-        solde.setDateDernierMouvement(dateDernierMouvement);
+        solde.setMouvementDebit((BigDecimal) mouvements[1]);
+        solde.setMouvementCredit((BigDecimal) mouvements[2]);
+        solde.setNombreMouvements(((Number) mouvements[3]).intValue());
+        solde.setDateDernierMouvement((LocalDate) mouvements[4]);
     }
     
-    private void calculerTotauxBalance(BalanceComptable balance) {
-        List<SoldeCompte> soldes = soldeRepository.findByBalanceOrderByNumeroCompte(balance);
+    private void calculerTotauxBalance(BalanceComptable balance, List<SoldeCompte> soldes) {
         BigDecimal totalDebit = BigDecimal.ZERO;
         BigDecimal totalCredit = BigDecimal.ZERO;
         BigDecimal soldeDebit = BigDecimal.ZERO;
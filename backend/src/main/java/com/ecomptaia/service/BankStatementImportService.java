@@ -0,0 +1,383 @@
+package com.ecomptaia.service;
+
+import com.ecomptaia.entity.BankAccount;
+import com.ecomptaia.repository.BankAccountRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Import de relevés bancaires depuis des fichiers locaux (CSV, MT940 ou CAMT.053).
+ *
+ * Le relevé est lu en flux par BankStatementStreamReader et les opérations sont insérées dans
+ * bank_statement_lines par lots JDBC, chaque lot dans sa transaction. Les références déjà importées pour le
+ * compte sont chargées une fois dans un index de hachage : une opération déjà connue, ou répétée dans le
+ * fichier, est comptée comme doublon sans requête. Une opération sans référence bancaire reçoit une
+ * référence déterministe (empreinte de la date, du montant et du libellé, plus son rang), ce qui rend
+ * la réimportation d'un même fichier sans effet.
+ *
+ * L'avancement (octets lus, opérations importées) est publié pendant l'import et consultable par son
+ * identifiant ; les fichiers sont lus dans le répertoire d'import configuré, sans accès réseau.
+ */
+@Service
+public class BankStatementImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BankStatementImportService.class);
+
+    static final String INSERT_SQL = "INSERT INTO bank_statement_lines (company_id, bank_account_id, bank_reference, "
+        + "transaction_date, value_date, amount, currency, description, counterparty, is_reconciled, source_file, "
+        + "imported_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, FALSE, ?, ?)";
+
+    private static final int MAX_IMPORTS_CONSERVES = 100;
+
+    @Autowired
+    private BankAccountRepository bankAccountRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.bank-import.repertoire:imports/releves}")
+    private String repertoire = "imports/releves";
+
+    @Value("${app.bank-import.charset:UTF-8}")
+    private String charset = "UTF-8";
+
+    @Value("${app.bank-import.batch-size:1000}")
+    private int tailleLot = 1000;
+
+    private final Map<String, Map<String, Object>> imports = new ConcurrentHashMap<>();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "import-releves");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Lancer l'import d'un fichier du répertoire d'import en arrière-plan ; l'avancement est consultable
+     * avec l'identifiant retourné
+     */
+    public Map<String, Object> demarrerImport(String fichier, String format, Long bankAccountId) {
+        Path chemin = resoudre(fichier);
+        BankAccount compte = bankAccountRepository.findById(bankAccountId)
+            .orElseThrow(() -> new RuntimeException("Compte bancaire non trouvé"));
+        String importId = UUID.randomUUID().toString();
+        Map<String, Object> progression = nouvelleProgression(importId, chemin);
+        executor.submit(() -> {
+            try {
+                importer(chemin, format, compte, progression);
+            } catch (RuntimeException e) {
+                logger.error("Import du relevé {} en échec : {}", chemin.getFileName(), e.getMessage());
+            }
+        });
+        return getProgression(importId);
+    }
+
+    /**
+     * Importer un fichier du répertoire d'import et attendre la fin
+     */
+    public Map<String, Object> importer(String fichier, String format, Long bankAccountId) {
+        Path chemin = resoudre(fichier);
+        BankAccount compte = bankAccountRepository.findById(bankAccountId)
+            .orElseThrow(() -> new RuntimeException("Compte bancaire non trouvé"));
+        return importer(chemin, format, compte, nouvelleProgression(UUID.randomUUID().toString(), chemin));
+    }
+
+    /**
+     * Avancement d'un import en cours ou terminé
+     */
+    public Map<String, Object> getProgression(String importId) {
+        Map<String, Object> progression = imports.get(importId);
+        if (progression == null) {
+            throw new RuntimeException("Import non trouvé");
+        }
+        return new LinkedHashMap<>(progression);
+    }
+
+    Map<String, Object> importer(Path chemin, String format, BankAccount compte, Map<String, Object> progression) {
+        long debut = System.nanoTime();
+        long taille;
+        try {
+            taille = Files.size(chemin);
+        } catch (IOException e) {
+            throw echec(progression, "Relevé illisible: " + e.getMessage());
+        }
+        progression.put("octets", taille);
+
+        // Index des références déjà importées pour le compte
+        Set<String> references = new HashSet<>();
+        jdbcTemplate.query("SELECT bank_reference FROM bank_statement_lines WHERE bank_account_id = ?",
+            (RowCallbackHandler) rs -> references.add(rs.getString(1)), compte.getId());
+
+        Map<String, Integer> occurrences = new HashMap<>();
+        List<Object[]> lot = new ArrayList<>(tailleLot);
+        String fichier = chemin.getFileName().toString();
+        Timestamp maintenant = Timestamp.valueOf(LocalDateTime.now());
+        long lues = 0;
+        long importees = 0;
+        long doublons = 0;
+        BigDecimal credits = BigDecimal.ZERO;
+        BigDecimal debits = BigDecimal.ZERO;
+        LocalDate premiere = null;
+        LocalDate derniere = null;
+        int dixiemes = 0;
+
+        try (CompteurOctets compteur = new CompteurOctets(Files.newInputStream(chemin));
+             BufferedInputStream in = new BufferedInputStream(compteur, 1 << 16)) {
+            String formatReel = format == null || format.isBlank() ? BankStatementStreamReader.detecterFormat(in) : format;
+            if (!BankStatementStreamReader.isSupportedFormat(formatReel)) {
+                throw new RuntimeException("Format de relevé non supporté: " + formatReel);
+            }
+            progression.put("format", formatReel.toLowerCase(Locale.ROOT));
+            try (BankStatementStreamReader reader = BankStatementStreamReader.create(formatReel, in,
+                    Charset.forName(charset), compte.getCurrency())) {
+                BankStatementStreamReader.Operation operation;
+                while ((operation = reader.suivante()) != null) {
+                    lues++;
+                    String reference = operation.reference();
+                    if (reference == null || reference.length() > 100) {
+                        reference = referenceSynthetique(operation, occurrences);
+                    }
+                    if (!references.add(reference)) {
+                        doublons++;
+                        continue;
+                    }
+                    lot.add(new Object[] {
+                        compte.getCompanyId(), compte.getId(), reference, Date.valueOf(operation.dateOperation()),
+                        operation.dateValeur() != null ? Date.valueOf(operation.dateValeur()) : null,
+                        operation.montant(), operation.devise() != null ? operation.devise() : compte.getCurrency(),
+                        tronquer(operation.libelle(), 500), tronquer(operation.contrepartie(), 255), fichier, maintenant
+                    });
+                    if (operation.montant().signum() >= 0) {
+                        credits = credits.add(operation.montant());
+                    } else {
+                        debits = debits.add(operation.montant().negate());
+                    }
+                    premiere = premiere == null || operation.dateOperation().isBefore(premiere) ? operation.dateOperation() : premiere;
+                    derniere = derniere == null || operation.dateOperation().isAfter(derniere) ? operation.dateOperation() : derniere;
+
+                    if (lot.size() >= tailleLot) {
+                        int inserees = inserer(lot);
+                        importees += inserees;
+                        doublons += lot.size() - inserees;
+                        lot.clear();
+                        avancer(progression, compteur.lus, lues, importees, doublons, reader.getRejets(), debut);
+                        int avancement = taille > 0 ? (int) (compteur.lus * 10 / taille) : 0;
+                        if (avancement > dixiemes) {
+                            dixiemes = avancement;
+                            logger.info("Import du relevé {} : {} %, {} opérations importées", fichier,
+                                progression.get("pourcentage"), importees);
+                        }
+                    }
+                }
+                if (!lot.isEmpty()) {
+                    int inserees = inserer(lot);
+                    importees += inserees;
+                    doublons += lot.size() - inserees;
+                }
+                avancer(progression, compteur.lus, lues, importees, doublons, reader.getRejets(), debut);
+                progression.put("anomalies", new ArrayList<>(reader.getAnomalies()));
+            }
+        } catch (IOException e) {
+            throw echec(progression, "Relevé illisible: " + e.getMessage());
+        } catch (RuntimeException e) {
+            throw echec(progression, e.getMessage());
+        }
+
+        long dureeNanos = System.nanoTime() - debut;
+        progression.put("pourcentage", 100);
+        progression.put("totalCredits", credits);
+        progression.put("totalDebits", debits);
+        if (premiere != null) {
+            progression.put("dateDebut", premiere);
+            progression.put("dateFin", derniere);
+        }
+        progression.put("dureeMs", dureeNanos / 1_000_000);
+        progression.put("lignesParSeconde", dureeNanos > 0 ? Math.round(lues * 1e9 / dureeNanos) : 0);
+        progression.put("statut", "TERMINE");
+        logger.info("Import du relevé {} terminé : {} opérations lues, {} importées, {} doublons, {} rejets en {} ms",
+            fichier, lues, importees, doublons, progression.get("rejets"), dureeNanos / 1_000_000);
+        return new LinkedHashMap<>(progression);
+    }
+
+    /**
+     * Insérer un lot dans sa transaction ; en cas de conflit (import concurrent du même compte), le lot est
+     * repris ligne à ligne et les références déjà présentes sont ignorées. Retourne le nombre de lignes insérées.
+     */
+    private int inserer(List<Object[]> lot) {
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                jdbcTemplate.batchUpdate(INSERT_SQL, lot, lot.size(), BankStatementImportService::parametrer));
+            return lot.size();
+        } catch (DataAccessException e) {
+            int inserees = 0;
+            for (Object[] ligne : lot) {
+                try {
+                    jdbcTemplate.update(INSERT_SQL, ps -> parametrer(ps, ligne));
+                    inserees++;
+                } catch (DuplicateKeyException doublon) {
+                    // déjà importée par ailleurs
+                }
+            }
+            return inserees;
+        }
+    }
+
+    private static void parametrer(PreparedStatement ps, Object[] ligne) throws SQLException {
+        for (int i = 0; i < ligne.length; i++) {
+            ps.setObject(i + 1, ligne[i]);
+        }
+    }
+
+    private void avancer(Map<String, Object> progression, long octetsLus, long lues, long importees, long doublons,
+                         long rejets, long debut) {
+        long taille = ((Number) progression.get("octets")).longValue();
+        long dureeNanos = System.nanoTime() - debut;
+        progression.put("octetsLus", octetsLus);
+        progression.put("pourcentage", taille > 0 ? (int) Math.min(100, octetsLus * 100 / taille) : 100);
+        progression.put("lignesLues", lues);
+        progression.put("lignesImportees", importees);
+        progression.put("doublons", doublons);
+        progression.put("rejets", rejets);
+        progression.put("lignesParSeconde", dureeNanos > 0 ? Math.round(lues * 1e9 / dureeNanos) : 0);
+    }
+
+    private Map<String, Object> nouvelleProgression(String importId, Path chemin) {
+        if (imports.size() >= MAX_IMPORTS_CONSERVES) {
+            imports.values().removeIf(p -> !"EN_COURS".equals(p.get("statut")));
+        }
+        Map<String, Object> progression = new ConcurrentHashMap<>();
+        progression.put("importId", importId);
+        progression.put("fichier", chemin.getFileName().toString());
+        progression.put("statut", "EN_COURS");
+        progression.put("octets", 0L);
+        progression.put("octetsLus", 0L);
+        progression.put("pourcentage", 0);
+        progression.put("lignesLues", 0L);
+        progression.put("lignesImportees", 0L);
+        progression.put("doublons", 0L);
+        progression.put("rejets", 0L);
+        progression.put("debut", LocalDateTime.now());
+        imports.put(importId, progression);
+        return progression;
+    }
+
+    private RuntimeException echec(Map<String, Object> progression, String message) {
+        progression.put("statut", "ECHEC");
+        progression.put("erreur", message != null ? message : "Erreur inconnue");
+        return new RuntimeException(message);
+    }
+
+    /**
+     * Fichier du répertoire d'import ; les chemins qui en sortent sont refusés
+     */
+    private Path resoudre(String fichier) {
+        Path base = Paths.get(repertoire).toAbsolutePath().normalize();
+        Path chemin = base.resolve(fichier).normalize();
+        if (!chemin.startsWith(base)) {
+            throw new RuntimeException("Chemin de relevé hors du répertoire d'import");
+        }
+        if (!Files.isRegularFile(chemin)) {
+            throw new RuntimeException("Relevé non trouvé: " + fichier);
+        }
+        return chemin;
+    }
+
+    /**
+     * Référence déterministe d'une opération sans référence bancaire : empreinte de la date, du montant,
+     * du libellé et de la contrepartie, suivie du rang de l'opération parmi ses identiques dans le fichier
+     */
+    static String referenceSynthetique(BankStatementStreamReader.Operation operation, Map<String, Integer> occurrences) {
+        String cle = operation.dateOperation() + "|" + operation.montant().stripTrailingZeros().toPlainString() + "|"
+            + Objects.toString(operation.libelle(), "") + "|" + Objects.toString(operation.contrepartie(), "") + "|"
+            + Objects.toString(operation.reference(), "");
+        try {
+            byte[] empreinte = MessageDigest.getInstance("SHA-256").digest(cle.getBytes(StandardCharsets.UTF_8));
+            String hex = HexFormat.of().formatHex(empreinte, 0, 16);
+            return "SR-" + hex + "-" + occurrences.merge(hex, 1, Integer::sum);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String tronquer(String valeur, int longueur) {
+        return valeur != null && valeur.length() > longueur ? valeur.substring(0, longueur) : valeur;
+    }
+
+    @PreDestroy
+    public void arreter() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Flux comptant les octets lus, pour l'avancement
+     */
+    private static final class CompteurOctets extends FilterInputStream {
+
+        private volatile long lus;
+
+        CompteurOctets(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int octet = super.read();
+            if (octet >= 0) {
+                lus++;
+            }
+            return octet;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                lus += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long sautes = super.skip(n);
+            lus += sautes;
+            return sautes;
+        }
+    }
+}
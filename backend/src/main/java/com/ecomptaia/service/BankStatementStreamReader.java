@@ -0,0 +1,659 @@
+package com.ecomptaia.service;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Lecture en flux des relevés bancaires (CSV, MT940 ou CAMT.053).
+ *
+ * Les opérations sont rendues une à une par {@link #suivante()} : seul l'enregistrement en cours est en
+ * mémoire (ligne CSV, bloc :61:/:86: MT940, élément Ntry CAMT lu par StAX), ce qui permet d'importer des
+ * relevés de plusieurs centaines de Mo avec une mémoire constante. Une opération illisible est écartée et
+ * signalée dans les anomalies sans interrompre la lecture.
+ */
+public abstract class BankStatementStreamReader implements Closeable {
+
+    public static final String FORMAT_CSV = "csv";
+    public static final String FORMAT_MT940 = "mt940";
+    public static final String FORMAT_CAMT053 = "camt053";
+
+    private static final int MAX_ANOMALIES = 50;
+
+    /**
+     * Opération lue dans le relevé. Le montant est signé : positif au crédit du compte (encaissement).
+     * La référence bancaire est nulle si le relevé n'en fournit pas.
+     */
+    public record Operation(String reference, LocalDate dateOperation, LocalDate dateValeur, BigDecimal montant,
+                            String devise, String libelle, String contrepartie, long position) {
+    }
+
+    private final List<String> anomalies = new ArrayList<>();
+    private long rejets;
+
+    /**
+     * Créer le lecteur correspondant au format demandé
+     */
+    public static BankStatementStreamReader create(String format, InputStream in, Charset charset, String deviseParDefaut) {
+        if (FORMAT_CSV.equalsIgnoreCase(format)) {
+            return new CsvReader(in, charset, deviseParDefaut);
+        }
+        if (FORMAT_MT940.equalsIgnoreCase(format)) {
+            return new Mt940Reader(in, charset, deviseParDefaut);
+        }
+        if (FORMAT_CAMT053.equalsIgnoreCase(format)) {
+            return new Camt053Reader(in, deviseParDefaut);
+        }
+        throw new IllegalArgumentException("Format de relevé non supporté: " + format);
+    }
+
+    public static boolean isSupportedFormat(String format) {
+        return FORMAT_CSV.equalsIgnoreCase(format) || FORMAT_MT940.equalsIgnoreCase(format)
+            || FORMAT_CAMT053.equalsIgnoreCase(format);
+    }
+
+    /**
+     * Reconnaître le format d'après les premiers octets du fichier, sans consommer le flux
+     */
+    public static String detecterFormat(BufferedInputStream in) throws IOException {
+        in.mark(4096);
+        byte[] entete = in.readNBytes(4096);
+        in.reset();
+        String debut = new String(entete, StandardCharsets.ISO_8859_1).stripLeading();
+        if (debut.startsWith("\u00EF\u00BB\u00BF")) {
+            debut = debut.substring(3).stripLeading(); // BOM UTF-8
+        }
+        if (debut.startsWith("<")) {
+            return FORMAT_CAMT053;
+        }
+        if (debut.startsWith("{1:") || debut.startsWith(":20:") || debut.contains("\n:20:") || debut.contains("\n:61:")) {
+            return FORMAT_MT940;
+        }
+        return FORMAT_CSV;
+    }
+
+    /**
+     * Opération suivante, ou null en fin de relevé
+     */
+    public abstract Operation suivante() throws IOException;
+
+    public List<String> getAnomalies() {
+        return anomalies;
+    }
+
+    public long getRejets() {
+        return rejets;
+    }
+
+    protected void rejeter(long position, String message) {
+        rejets++;
+        if (anomalies.size() < MAX_ANOMALIES) {
+            anomalies.add("Position " + position + ": " + message);
+        }
+    }
+
+    static String vide(String valeur) {
+        if (valeur == null) {
+            return null;
+        }
+        String nettoyee = valeur.strip();
+        return nettoyee.isEmpty() ? null : nettoyee;
+    }
+
+    // ==================== CSV ====================
+
+    /**
+     * CSV avec ligne d'en-tête : séparateur (; , ou tabulation) et colonnes reconnus d'après l'en-tête.
+     * Le montant est soit une colonne signée, soit deux colonnes débit / crédit ; les montants au format
+     * français (1 234,56) sont acceptés.
+     */
+    static class CsvReader extends BankStatementStreamReader {
+
+        private static final DateTimeFormatter[] DATES = {
+            DateTimeFormatter.ISO_LOCAL_DATE, DateTimeFormatter.ofPattern("dd/MM/yyyy"),
+            DateTimeFormatter.ofPattern("dd-MM-yyyy"), DateTimeFormatter.ofPattern("dd.MM.yyyy"),
+            DateTimeFormatter.ofPattern("dd/MM/yy"), DateTimeFormatter.BASIC_ISO_DATE
+        };
+
+        private static final Map<String, String> COLONNES = new HashMap<>();
+
+        static {
+            for (String nom : new String[] {"date", "dateoperation", "datecomptable", "bookingdate", "transactiondate"}) {
+                COLONNES.put(nom, "date");
+            }
+            for (String nom : new String[] {"datevaleur", "datedevaleur", "valuedate"}) {
+                COLONNES.put(nom, "dateValeur");
+            }
+            for (String nom : new String[] {"montant", "amount"}) {
+                COLONNES.put(nom, "montant");
+            }
+            for (String nom : new String[] {"debit", "montantdebit"}) {
+                COLONNES.put(nom, "debit");
+            }
+            for (String nom : new String[] {"credit", "montantcredit"}) {
+                COLONNES.put(nom, "credit");
+            }
+            for (String nom : new String[] {"libelle", "description", "libelleoperation", "label", "details"}) {
+                COLONNES.put(nom, "libelle");
+            }
+            for (String nom : new String[] {"reference", "referencebancaire", "ref", "bankreference", "id", "transactionid"}) {
+                COLONNES.put(nom, "reference");
+            }
+            for (String nom : new String[] {"devise", "currency", "monnaie"}) {
+                COLONNES.put(nom, "devise");
+            }
+            for (String nom : new String[] {"contrepartie", "counterparty", "tiers", "beneficiaire", "emetteur"}) {
+                COLONNES.put(nom, "contrepartie");
+            }
+        }
+
+        private final BufferedReader reader;
+        private final String deviseParDefaut;
+        private final Map<String, Integer> index = new HashMap<>();
+        private char separateur;
+        private long numeroLigne;
+
+        CsvReader(InputStream in, Charset charset, String deviseParDefaut) {
+            this.reader = new BufferedReader(new InputStreamReader(in, charset), 1 << 16);
+            this.deviseParDefaut = deviseParDefaut;
+        }
+
+        @Override
+        public Operation suivante() throws IOException {
+            if (index.isEmpty()) {
+                lireEntete();
+            }
+            String ligne;
+            while ((ligne = reader.readLine()) != null) {
+                numeroLigne++;
+                if (ligne.isBlank()) {
+                    continue;
+                }
+                List<String> champs = decouper(ligne);
+                try {
+                    LocalDate date = date(champ(champs, "date"));
+                    if (date == null) {
+                        rejeter(numeroLigne, "date d'opération absente");
+                        continue;
+                    }
+                    BigDecimal montant = montant(champs);
+                    if (montant == null) {
+                        rejeter(numeroLigne, "montant absent");
+                        continue;
+                    }
+                    LocalDate dateValeur = date(champ(champs, "dateValeur"));
+                    String devise = champ(champs, "devise");
+                    return new Operation(champ(champs, "reference"), date, dateValeur, montant,
+                        devise != null ? devise.toUpperCase(Locale.ROOT) : deviseParDefaut, champ(champs, "libelle"),
+                        champ(champs, "contrepartie"), numeroLigne);
+                } catch (RuntimeException e) {
+                    rejeter(numeroLigne, e.getMessage());
+                }
+            }
+            return null;
+        }
+
+        private void lireEntete() throws IOException {
+            String entete = reader.readLine();
+            if (entete == null) {
+                throw new RuntimeException("Relevé CSV vide");
+            }
+            numeroLigne = 1;
+            if (!entete.isEmpty() && entete.charAt(0) == '\uFEFF') {
+                entete = entete.substring(1);
+            }
+            separateur = entete.indexOf(';') >= 0 ? ';' : entete.indexOf('\t') >= 0 ? '\t' : ',';
+            List<String> noms = decouper(entete);
+            for (int i = 0; i < noms.size(); i++) {
+                String cle = normaliser(noms.get(i));
+                String colonne = COLONNES.get(cle);
+                if (colonne != null) {
+                    index.putIfAbsent(colonne, i);
+                }
+            }
+            if (!index.containsKey("date") || !(index.containsKey("montant") || index.containsKey("debit")
+                || index.containsKey("credit"))) {
+                throw new RuntimeException("En-tête CSV non reconnu (date et montant ou débit/crédit attendus): " + entete);
+            }
+        }
+
+        private BigDecimal montant(List<String> champs) {
+            String montant = champ(champs, "montant");
+            if (montant != null) {
+                return decimal(montant);
+            }
+            String debit = champ(champs, "debit");
+            String credit = champ(champs, "credit");
+            if (debit == null && credit == null) {
+                return null;
+            }
+            BigDecimal resultat = credit != null ? decimal(credit).abs() : BigDecimal.ZERO;
+            return debit != null ? resultat.subtract(decimal(debit).abs()) : resultat;
+        }
+
+        private String champ(List<String> champs, String colonne) {
+            Integer i = index.get(colonne);
+            return i != null && i < champs.size() ? vide(champs.get(i)) : null;
+        }
+
+        private List<String> decouper(String ligne) {
+            List<String> champs = new ArrayList<>();
+            StringBuilder courant = new StringBuilder();
+            boolean guillemets = false;
+            for (int i = 0; i < ligne.length(); i++) {
+                char c = ligne.charAt(i);
+                if (guillemets) {
+                    if (c == '"') {
+                        if (i + 1 < ligne.length() && ligne.charAt(i + 1) == '"') {
+                            courant.append('"');
+                            i++;
+                        } else {
+                            guillemets = false;
+                        }
+                    } else {
+                        courant.append(c);
+                    }
+                } else if (c == '"') {
+                    guillemets = true;
+                } else if (c == separateur) {
+                    champs.add(courant.toString());
+                    courant.setLength(0);
+                } else {
+                    courant.append(c);
+                }
+            }
+            champs.add(courant.toString());
+            return champs;
+        }
+
+        static String normaliser(String nom) {
+            StringBuilder cle = new StringBuilder();
+            for (char c : java.text.Normalizer.normalize(nom, java.text.Normalizer.Form.NFD).toCharArray()) {
+                if (Character.isLetterOrDigit(c) && c < 128) {
+                    cle.append(Character.toLowerCase(c));
+                }
+            }
+            return cle.toString();
+        }
+
+        static LocalDate date(String valeur) {
+            if (valeur == null) {
+                return null;
+            }
+            for (DateTimeFormatter format : DATES) {
+                try {
+                    return LocalDate.parse(valeur, format);
+                } catch (DateTimeParseException e) {
+                    // format suivant
+                }
+            }
+            throw new RuntimeException("date illisible: " + valeur);
+        }
+
+        static BigDecimal decimal(String valeur) {
+            String nettoyee = valeur.replace(" ", "").replace(" ", "").replace(" ", "");
+            int virgule = nettoyee.lastIndexOf(',');
+            int point = nettoyee.lastIndexOf('.');
+            if (virgule > point) {
+                nettoyee = nettoyee.replace(".", "").replace(',', '.');
+            } else if (virgule >= 0) {
+                nettoyee = nettoyee.replace(",", "");
+            }
+            try {
+                return new BigDecimal(nettoyee);
+            } catch (NumberFormatException e) {
+                throw new RuntimeException("montant illisible: " + valeur);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    // ==================== MT940 ====================
+
+    /**
+     * Relevé SWIFT MT940 : une opération par champ :61:, complétée par le champ :86: qui le suit.
+     * La devise est celle du solde d'ouverture (:60F: / :60M:) ; la référence est la référence de la banque
+     * (après //) ou, à défaut, la référence client si elle n'est pas NONREF.
+     */
+    static class Mt940Reader extends BankStatementStreamReader {
+
+        private final BufferedReader reader;
+        private String devise;
+        private String ligneEnAttente;
+        private long numeroLigne;
+
+        Mt940Reader(InputStream in, Charset charset, String deviseParDefaut) {
+            this.reader = new BufferedReader(new InputStreamReader(in, charset), 1 << 16);
+            this.devise = deviseParDefaut;
+        }
+
+        @Override
+        public Operation suivante() throws IOException {
+            String ligne;
+            while ((ligne = lire()) != null) {
+                if (ligne.startsWith(":60F:") || ligne.startsWith(":60M:")) {
+                    // C/D + AAMMJJ + devise
+                    if (ligne.length() >= 15) {
+                        devise = ligne.substring(12, 15);
+                    }
+                } else if (ligne.startsWith(":61:")) {
+                    long position = numeroLigne;
+                    StringBuilder complement = new StringBuilder();
+                    StringBuilder informations = null;
+                    String suite;
+                    while ((suite = lire()) != null && !suite.startsWith(":61:") && !suite.startsWith(":62")
+                        && !suite.startsWith(":20:") && !suite.startsWith("-")) {
+                        if (suite.startsWith(":86:")) {
+                            informations = new StringBuilder(suite.substring(4));
+                        } else if (suite.startsWith(":")) {
+                            break;
+                        } else if (informations != null) {
+                            informations.append(' ').append(suite.strip());
+                        } else {
+                            complement.append(' ').append(suite.strip());
+                        }
+                    }
+                    ligneEnAttente = suite;
+                    try {
+                        return operation(ligne.substring(4), informations != null ? informations.toString().strip()
+                            : vide(complement.toString()), position);
+                    } catch (RuntimeException e) {
+                        rejeter(position, e.getMessage() + " (" + ligne + ")");
+                    }
+                }
+            }
+            return null;
+        }
+
+        private String lire() throws IOException {
+            if (ligneEnAttente != null) {
+                String ligne = ligneEnAttente;
+                ligneEnAttente = null;
+                return ligne;
+            }
+            String ligne = reader.readLine();
+            if (ligne != null) {
+                numeroLigne++;
+            }
+            return ligne;
+        }
+
+        /**
+         * :61:AAMMJJ[MMJJ]2a[1!a]15d1!a3!c16x[//16x] — date de valeur, date comptable, sens, code fonds,
+         * montant, type d'opération, référence client, référence banque
+         */
+        private Operation operation(String champ, String informations, long position) {
+            int i = 0;
+            LocalDate dateValeur = LocalDate.of(2000 + Integer.parseInt(champ.substring(0, 2)),
+                Integer.parseInt(champ.substring(2, 4)), Integer.parseInt(champ.substring(4, 6)));
+            i = 6;
+            LocalDate dateOperation = dateValeur;
+            if (champ.length() >= i + 4 && Character.isDigit(champ.charAt(i)) && Character.isDigit(champ.charAt(i + 3))) {
+                int mois = Integer.parseInt(champ.substring(i, i + 2));
+                int jour = Integer.parseInt(champ.substring(i + 2, i + 4));
+                dateOperation = LocalDate.of(dateValeur.getYear(), mois, jour);
+                // Date comptable de part et d'autre d'un changement d'année
+                if (dateOperation.isAfter(dateValeur.plusMonths(6))) {
+                    dateOperation = dateOperation.minusYears(1);
+                } else if (dateOperation.isBefore(dateValeur.minusMonths(6))) {
+                    dateOperation = dateOperation.plusYears(1);
+                }
+                i += 4;
+            }
+            boolean negatif;
+            if (champ.startsWith("RC", i)) {
+                negatif = true;
+                i += 2;
+            } else if (champ.startsWith("RD", i)) {
+                negatif = false;
+                i += 2;
+            } else if (champ.charAt(i) == 'C') {
+                negatif = false;
+                i++;
+            } else if (champ.charAt(i) == 'D') {
+                negatif = true;
+                i++;
+            } else {
+                throw new RuntimeException("sens débit/crédit illisible");
+            }
+            if (Character.isLetter(champ.charAt(i))) {
+                i++; // code fonds (3e caractère de la devise)
+            }
+            int debutMontant = i;
+            while (i < champ.length() && (Character.isDigit(champ.charAt(i)) || champ.charAt(i) == ',')) {
+                i++;
+            }
+            BigDecimal montant = new BigDecimal(champ.substring(debutMontant, i).replace(',', '.'));
+            i = Math.min(champ.length(), i + 4); // type d'opération (N + code)
+            String references = champ.substring(i);
+            String referenceClient = references;
+            String referenceBanque = null;
+            int separation = references.indexOf("//");
+            if (separation >= 0) {
+                referenceClient = references.substring(0, separation);
+                referenceBanque = vide(references.substring(separation + 2));
+            }
+            String reference = referenceBanque;
+            if (reference == null && vide(referenceClient) != null && !"NONREF".equalsIgnoreCase(referenceClient.strip())) {
+                reference = referenceClient.strip();
+            }
+            return new Operation(reference, dateOperation, dateValeur, negatif ? montant.negate() : montant, devise,
+                informations, null, position);
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    // ==================== CAMT.053 ====================
+
+    /**
+     * Relevé ISO 20022 camt.053 lu par StAX : une opération par élément Ntry. Les espaces de noms (versions
+     * .001.02 à .001.10) sont ignorés ; les DTD et entités externes sont désactivées.
+     */
+    static class Camt053Reader extends BankStatementStreamReader {
+
+        private final XMLStreamReader xml;
+        private final String deviseParDefaut;
+        private String deviseCompte;
+        private long numeroEntree;
+
+        Camt053Reader(InputStream in, String deviseParDefaut) {
+            this.deviseParDefaut = deviseParDefaut;
+            XMLInputFactory factory = XMLInputFactory.newFactory();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+            factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+            try {
+                this.xml = factory.createXMLStreamReader(in);
+            } catch (XMLStreamException e) {
+                throw new RuntimeException("Relevé CAMT.053 illisible: " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public Operation suivante() throws IOException {
+            try {
+                List<String> chemin = new ArrayList<>();
+                while (xml.hasNext()) {
+                    int evenement = xml.next();
+                    if (evenement == XMLStreamConstants.START_ELEMENT) {
+                        String nom = xml.getLocalName();
+                        if ("Ntry".equals(nom)) {
+                            numeroEntree++;
+                            Operation operation = entree();
+                            if (operation != null) {
+                                return operation;
+                            }
+                            continue;
+                        }
+                        chemin.add(nom);
+                        // Acct/Ccy : devise du compte
+                        if ("Ccy".equals(nom) && chemin.size() >= 2 && "Acct".equals(chemin.get(chemin.size() - 2))) {
+                            deviseCompte = vide(xml.getElementText());
+                            chemin.remove(chemin.size() - 1);
+                        }
+                    } else if (evenement == XMLStreamConstants.END_ELEMENT && !chemin.isEmpty()) {
+                        chemin.remove(chemin.size() - 1);
+                    }
+                }
+                return null;
+            } catch (XMLStreamException e) {
+                throw new IOException("Relevé CAMT.053 mal formé: " + e.getMessage(), e);
+            }
+        }
+
+        /**
+         * Lire l'élément Ntry courant jusqu'à sa balise fermante ; null si l'entrée est rejetée
+         */
+        private Operation entree() throws XMLStreamException {
+            List<String> chemin = new ArrayList<>();
+            String montant = null;
+            String devise = null;
+            String sens = null;
+            boolean extourne = false;
+            String dateComptable = null;
+            String dateValeur = null;
+            String referenceBanque = null;
+            String referenceTransaction = null;
+            String referenceBoutEnBout = null;
+            String referenceEntree = null;
+            String debiteur = null;
+            String crediteur = null;
+            StringBuilder libelle = new StringBuilder();
+            String informations = null;
+            int profondeur = 1;
+            while (profondeur > 0 && xml.hasNext()) {
+                int evenement = xml.next();
+                if (evenement == XMLStreamConstants.END_ELEMENT) {
+                    profondeur--;
+                    if (!chemin.isEmpty()) {
+                        chemin.remove(chemin.size() - 1);
+                    }
+                    continue;
+                }
+                if (evenement != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                String nom = xml.getLocalName();
+                String parent = chemin.isEmpty() ? "" : chemin.get(chemin.size() - 1);
+                boolean feuille = true;
+                String texte = null;
+                if ("Amt".equals(nom) && chemin.isEmpty()) {
+                    devise = xml.getAttributeValue(null, "Ccy");
+                    texte = montant = vide(xml.getElementText());
+                } else if ("CdtDbtInd".equals(nom) && chemin.isEmpty()) {
+                    texte = sens = vide(xml.getElementText());
+                } else if ("RvslInd".equals(nom) && chemin.isEmpty()) {
+                    texte = xml.getElementText();
+                    extourne = "true".equalsIgnoreCase(vide(texte));
+                } else if (("Dt".equals(nom) || "DtTm".equals(nom)) && ("BookgDt".equals(parent) || "ValDt".equals(parent))) {
+                    texte = vide(xml.getElementText());
+                    if ("BookgDt".equals(parent)) {
+                        dateComptable = texte;
+                    } else {
+                        dateValeur = texte;
+                    }
+                } else if ("AcctSvcrRef".equals(nom)) {
+                    texte = vide(xml.getElementText());
+                    if (chemin.isEmpty()) {
+                        referenceBanque = texte;
+                    } else if (referenceTransaction == null) {
+                        referenceTransaction = texte;
+                    }
+                } else if ("NtryRef".equals(nom) && chemin.isEmpty()) {
+                    texte = referenceEntree = vide(xml.getElementText());
+                } else if ("EndToEndId".equals(nom) && referenceBoutEnBout == null) {
+                    texte = vide(xml.getElementText());
+                    if (texte != null && !"NOTPROVIDED".equalsIgnoreCase(texte)) {
+                        referenceBoutEnBout = texte;
+                    }
+                } else if ("Ustrd".equals(nom)) {
+                    texte = vide(xml.getElementText());
+                    if (texte != null) {
+                        libelle.append(libelle.length() > 0 ? " " : "").append(texte);
+                    }
+                } else if ("AddtlNtryInf".equals(nom) && chemin.isEmpty()) {
+                    texte = informations = vide(xml.getElementText());
+                } else if ("Nm".equals(nom) && chemin.size() >= 2) {
+                    String partie = chemin.get(chemin.size() - 2);
+                    texte = vide(xml.getElementText());
+                    if (("Dbtr".equals(parent) || "Dbtr".equals(partie)) && debiteur == null) {
+                        debiteur = texte;
+                    } else if (("Cdtr".equals(parent) || "Cdtr".equals(partie)) && crediteur == null) {
+                        crediteur = texte;
+                    }
+                } else {
+                    feuille = false;
+                }
+                if (!feuille) {
+                    chemin.add(nom);
+                    profondeur++;
+                }
+                // getElementText() a consommé la balise fermante de la feuille
+            }
+
+            try {
+                if (montant == null || sens == null) {
+                    throw new RuntimeException("montant ou sens absent");
+                }
+                LocalDate date = dateCamt(dateComptable != null ? dateComptable : dateValeur);
+                if (date == null) {
+                    throw new RuntimeException("date comptable absente");
+                }
+                boolean credit = "CRDT".equals(sens) != extourne;
+                BigDecimal valeur = new BigDecimal(montant);
+                String reference = referenceBanque != null ? referenceBanque
+                    : referenceTransaction != null ? referenceTransaction
+                    : referenceBoutEnBout != null ? referenceBoutEnBout : referenceEntree;
+                return new Operation(reference, date, dateCamt(dateValeur), credit ? valeur : valeur.negate(),
+                    devise != null ? devise : deviseCompte != null ? deviseCompte : deviseParDefaut,
+                    libelle.length() > 0 ? libelle.toString() : informations,
+                    "CRDT".equals(sens) ? debiteur : crediteur, numeroEntree);
+            } catch (RuntimeException e) {
+                rejeter(numeroEntree, e.getMessage());
+                return null;
+            }
+        }
+
+        private static LocalDate dateCamt(String valeur) {
+            if (valeur == null) {
+                return null;
+            }
+            return LocalDate.parse(valeur.length() > 10 ? valeur.substring(0, 10) : valeur);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                xml.close();
+            } catch (XMLStreamException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -9,6 +9,9 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
@@ -64,8 +67,10 @@ public class BankingIntegrationService {
                     // Traitement des transactions
                     int importedCount = 0;
                     if (transactions != null) {
+                        // Rang des opérations identiques sans référence, pour leur référence synthétique
+                        Map<String, Integer> occurrences = new HashMap<>();
                         for (Map<String, Object> transaction : transactions) {
-                            if (importBankTransaction(transaction, companyId)) {
+                            if (importBankTransaction(transaction, companyId, bankCode, accountNumber, occurrences)) {
                                 importedCount++;
                             }
                         }
@@ -96,19 +101,32 @@ public class BankingIntegrationService {
     /**
      * Importer une transaction bancaire individuelle
      */
-    private boolean importBankTransaction(Map<String, Object> transaction, Long companyId) {
+    private boolean importBankTransaction(Map<String, Object> transaction, Long companyId, String bankCode,
+                                          String accountNumber, Map<String, Integer> occurrences) {
         try {
+            LocalDate date = LocalDate.parse(transaction.get("date").toString());
+            String description = transaction.get("description").toString();
+            String currency = transaction.get("currency").toString();
+            BigDecimal amount = new BigDecimal(transaction.get("amount").toString());
+            // Référence bancaire, à défaut la référence synthétique déterministe de l'import des relevés (SR-...)
+            Object bankReference = transaction.get("reference");
+            String reference = bankReference != null && !bankReference.toString().isBlank()
+                ? bankReference.toString()
+                : BankStatementImportService.referenceSynthetique(new BankStatementStreamReader.Operation(
+                    null, date, null, amount, currency, description, null, 0), occurrences);
+
             // Créer l'écriture comptable pour la transaction
             JournalEntry entry = new JournalEntry();
-            entry.setEntryNumber("BANK_" + System.currentTimeMillis());
-            entry.setEntryDate(LocalDate.parse(transaction.get("date").toString()));
-            entry.setDescription(transaction.get("description").toString());
+            entry.setEntryNumber(entryNumber(bankCode, accountNumber, reference));
+            entry.setCompanyId(companyId);
+            entry.setEntryDate(date);
+            entry.setDescription(description);
             entry.setJournalType("BANQUE");
-            entry.setCurrency(transaction.get("currency").toString());
-            entry.setTotalDebit(new BigDecimal(transaction.get("amount").toString()));
+            entry.setCurrency(currency);
+            entry.setTotalDebit(amount);
             entry.setTotalCredit(new BigDecimal("0"));
             entry.setStatus("BROUILLON");
-            entry.setReference(transaction.get("reference").toString());
+            entry.setReference(reference);
             entry.setCreatedAt(LocalDateTime.now());
             
             // Sauvegarder l'écriture
@@ -120,6 +138,20 @@ public class BankingIntegrationService {
         }
     }
     
+    /**
+     * Numéro d'écriture d'une opération : empreinte du compte bancaire et de la référence, unique par opération
+     * et par compte (deux banques peuvent émettre la même référence) et de longueur fixe (45 caractères)
+     */
+    static String entryNumber(String bankCode, String accountNumber, String reference) {
+        String cle = bankCode + "|" + accountNumber + "|" + reference;
+        try {
+            byte[] empreinte = MessageDigest.getInstance("SHA-256").digest(cle.getBytes(StandardCharsets.UTF_8));
+            return "BANK-" + HexFormat.of().formatHex(empreinte, 0, 20);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
     /**
      * Obtenir le token d'API pour une banque
      */
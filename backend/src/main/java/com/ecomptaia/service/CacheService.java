@@ -1,13 +1,17 @@
 package com.ecomptaia.service;
 
+import com.ecomptaia.config.TwoTierCache;
+import com.ecomptaia.config.TwoTierCacheManager;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 
 @Service
@@ -16,9 +20,6 @@ public class CacheService {
     @Autowired
     private CacheManager cacheManager;
 
-    // Cache en mémoire pour les fonctionnalités avancées
-    private final Map<String, Map<String, Long>> ttlCache = new ConcurrentHashMap<>();
-
     // ==================== GESTION BASIQUE DU CACHE ====================
 
     /**
@@ -35,11 +36,18 @@ public class CacheService {
      * Mettre en cache une valeur avec TTL personnalisé
      */
     public void put(String cacheName, String key, Object value, Duration ttl) {
-        put(cacheName, key, value);
-        
-        // Stocker le TTL en mémoire
-        ttlCache.computeIfAbsent(cacheName, k -> new ConcurrentHashMap<>())
-                .put(key, System.currentTimeMillis() + ttl.toMillis());
+        TwoTierCache twoTierCache = TwoTierCacheManager.unwrap(cacheManager.getCache(cacheName));
+        if (twoTierCache != null) {
+            // TTL propre à l'entrée : gardée dans le cache local de ce nœud
+            twoTierCache.putLocal(key, value, ttl);
+            return;
+        }
+        Optional<Policy.VarExpiration<Object, Object>> expiration = varExpiration(cacheName);
+        if (expiration.isPresent() && value != null) {
+            expiration.get().put(key, value, ttl);
+        } else {
+            put(cacheName, key, value);
+        }
     }
 
     /**
@@ -291,36 +299,53 @@ public class CacheService {
     // ==================== GESTION DES TTL ====================
 
     /**
-     * Définir un TTL pour une clé
+     * Définir un TTL pour une clé déjà en cache
      */
     public void setTTL(String cacheName, String key, Duration ttl) {
-        ttlCache.computeIfAbsent(cacheName, k -> new ConcurrentHashMap<>())
-                .put(key, System.currentTimeMillis() + ttl.toMillis());
+        varExpiration(cacheName).ifPresent(expiration -> expiration.setExpiresAfter(key, ttl));
     }
 
     /**
      * Récupérer le TTL restant
      */
     public Duration getTTL(String cacheName, String key) {
-        Map<String, Long> cacheTtl = ttlCache.get(cacheName);
-        if (cacheTtl != null) {
-            Long expiryTime = cacheTtl.get(key);
-            if (expiryTime != null) {
-                long remaining = expiryTime - System.currentTimeMillis();
-                return remaining > 0 ? Duration.ofMillis(remaining) : Duration.ZERO;
+        return varExpiration(cacheName)
+            .flatMap(expiration -> expiration.getExpiresAfter(key))
+            .orElse(Duration.ZERO);
+    }
+
+    /**
+     * Supprimer le TTL personnalisé (retour au TTL par défaut du cache)
+     */
+    public void removeTTL(String cacheName, String key) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            Cache.ValueWrapper wrapper = cache.get(key);
+            if (wrapper != null) {
+                // Une mise à jour réapplique le TTL du cache
+                cache.put(key, wrapper.get());
             }
         }
-        return Duration.ZERO;
     }
 
     /**
-     * Supprimer le TTL (rendre permanent)
+     * Politique d'expiration variable du cache Caffeine sous-jacent
      */
-    public void removeTTL(String cacheName, String key) {
-        Map<String, Long> cacheTtl = ttlCache.get(cacheName);
-        if (cacheTtl != null) {
-            cacheTtl.remove(key);
+    private Optional<Policy.VarExpiration<Object, Object>> varExpiration(String cacheName) {
+        return nativeCache(cacheName).flatMap(cache -> cache.policy().expireVariably());
+    }
+
+    private Optional<com.github.benmanes.caffeine.cache.Cache<Object, Object>> nativeCache(String cacheName) {
+        Cache cache = cacheManager.getCache(cacheName);
+        TwoTierCache twoTierCache = TwoTierCacheManager.unwrap(cache);
+        if (twoTierCache != null) {
+            // Cache à deux niveaux : TTL et statistiques du cache local
+            return Optional.of(twoTierCache.getLocalCache().getNativeCache());
+        }
+        if (cache instanceof CaffeineCache) {
+            return Optional.of(((CaffeineCache) cache).getNativeCache());
         }
+        return Optional.empty();
     }
 
     // ==================== GESTION DES STATISTIQUES ====================
@@ -335,17 +360,18 @@ public class CacheService {
         stats.put("cacheName", cacheName);
         stats.put("timestamp", new Date());
         
-        // Compter les clés (approximatif)
-        try {
-            Cache cache = cacheManager.getCache(cacheName);
-            if (cache != null) {
-                // Pour un cache simple, on ne peut pas compter facilement les clés
-                stats.put("keyCount", "N/A (cache simple)");
-            } else {
-                stats.put("keyCount", 0);
-            }
-        } catch (Exception e) {
-            stats.put("keyCount", "N/A");
+        Optional<com.github.benmanes.caffeine.cache.Cache<Object, Object>> cache = nativeCache(cacheName);
+        if (cache.isPresent()) {
+            CacheStats cacheStats = cache.get().stats();
+            stats.put("keyCount", cache.get().estimatedSize());
+            stats.put("hitCount", cacheStats.hitCount());
+            stats.put("missCount", cacheStats.missCount());
+            stats.put("hitRate", cacheStats.hitRate());
+            stats.put("evictionCount", cacheStats.evictionCount());
+            cache.get().policy().eviction()
+                .ifPresent(eviction -> stats.put("maximumSize", eviction.getMaximum()));
+        } else {
+            stats.put("keyCount", 0);
         }
         
         // Taille mémoire (approximatif)
@@ -368,7 +394,28 @@ public class CacheService {
         
         stats.put("timestamp", new Date());
         stats.put("cacheManager", cacheManager.getClass().getSimpleName());
-        stats.put("cacheType", "ConcurrentMapCacheManager (Simple)");
+        stats.put("cacheType", "Caffeine (borné, TTL par cache et par entrée)");
+        
+        long totalKeys = 0;
+        long totalHits = 0;
+        long totalMisses = 0;
+        long totalEvictions = 0;
+        for (String cacheName : cacheManager.getCacheNames()) {
+            Optional<com.github.benmanes.caffeine.cache.Cache<Object, Object>> cache = nativeCache(cacheName);
+            if (cache.isPresent()) {
+                CacheStats cacheStats = cache.get().stats();
+                totalKeys += cache.get().estimatedSize();
+                totalHits += cacheStats.hitCount();
+                totalMisses += cacheStats.missCount();
+                totalEvictions += cacheStats.evictionCount();
+            }
+        }
+        stats.put("cacheCount", cacheManager.getCacheNames().size());
+        stats.put("totalKeys", totalKeys);
+        stats.put("hitCount", totalHits);
+        stats.put("missCount", totalMisses);
+        stats.put("evictionCount", totalEvictions);
+        stats.put("hitRate", totalHits + totalMisses > 0 ? (double) totalHits / (totalHits + totalMisses) : 0.0);
         
         // Statistiques système
         try {
@@ -422,7 +469,9 @@ public class CacheService {
      * Nettoyer les caches expirés
      */
     public void cleanup() {
-        // Cette méthode peut être appelée périodiquement pour nettoyer les caches
-        // Redis gère automatiquement l'expiration, mais on peut ajouter une logique personnalisée ici
+        // Caffeine expire les entrées à l'accès ; cleanUp() applique immédiatement expirations et évictions en attente
+        for (String cacheName : cacheManager.getCacheNames()) {
+            nativeCache(cacheName).ifPresent(com.github.benmanes.caffeine.cache.Cache::cleanUp);
+        }
     }
 }
@@ -0,0 +1,252 @@
+package com.ecomptaia.service;
+
+import com.ecomptaia.entity.EcritureComptable;
+import com.ecomptaia.entity.LigneEcriture;
+import com.ecomptaia.repository.EcritureComptableRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Création d'écritures en masse (imports bancaires, génération automatique).
+ *
+ * Les écritures sont contrôlées en mémoire, puis enregistrées par lots : une transaction par lot,
+ * numéros de pièce attribués par plage (une mise à jour de compteur par entreprise × journal × mois)
+ * et insertions regroupées par Hibernate (hibernate.jdbc.batch_size, identifiants par séquence).
+ * Si un lot échoue, ses écritures sont rejouées une à une pour isoler les écritures fautives :
+ * les erreurs sont rapportées par écriture, sans interrompre le reste du traitement.
+ * Les écritures créées validées sont ajoutées aux cumuls par compte (AccountBalanceService) dans la
+ * transaction de leur lot.
+ */
+@Service
+public class EcritureComptableBatchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EcritureComptableBatchService.class);
+
+    private static final int TAILLE_CONTROLE_NUMEROS = 1000;
+
+    @Autowired
+    private EcritureComptableRepository ecritureRepository;
+
+    @Autowired
+    private NumerotationPieceService numerotationPieceService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired(required = false)
+    private AccountBalanceService accountBalanceService;
+
+    @Value("${app.ecritures.batch.taille-lot:500}")
+    private int tailleLot;
+
+    /**
+     * Créer une liste d'écritures ; le résultat indique les écritures créées et les erreurs par index
+     */
+    public Map<String, Object> createEcrituresEnMasse(List<EcritureComptable> ecritures) {
+        long debut = System.nanoTime();
+        Map<Integer, String> erreurs = new TreeMap<>();
+        Set<Integer> numerosAutomatiques = new HashSet<>();
+
+        List<Integer> valides = controlerEcritures(ecritures, erreurs, numerosAutomatiques);
+
+        int ecrituresCreees = 0;
+        long lignesCreees = 0;
+        for (int i = 0; i < valides.size(); i += tailleLot) {
+            List<EcritureComptable> lot = new ArrayList<>();
+            List<Integer> indexLot = valides.subList(i, Math.min(i + tailleLot, valides.size()));
+            for (Integer index : indexLot) {
+                lot.add(ecritures.get(index));
+            }
+
+            try {
+                enregistrerLot(lot);
+                ecrituresCreees += lot.size();
+                lignesCreees += compterLignes(lot);
+            } catch (RuntimeException e) {
+                logger.warn("Lot de {} écritures en échec, reprise écriture par écriture : {}", lot.size(), message(e));
+                for (Integer index : indexLot) {
+                    EcritureComptable ecriture = ecritures.get(index);
+                    reinitialiser(ecriture, numerosAutomatiques.contains(index));
+                    try {
+                        enregistrerLot(List.of(ecriture));
+                        ecrituresCreees++;
+                        lignesCreees += compterLignes(List.of(ecriture));
+                    } catch (RuntimeException ex) {
+                        reinitialiser(ecriture, numerosAutomatiques.contains(index));
+                        erreurs.put(index, message(ex));
+                    }
+                }
+            }
+        }
+
+        long dureeMs = Math.max(1, (System.nanoTime() - debut) / 1_000_000);
+        List<Map<String, Object>> details = new ArrayList<>();
+        for (Map.Entry<Integer, String> erreur : erreurs.entrySet()) {
+            Map<String, Object> detail = new LinkedHashMap<>();
+            detail.put("index", erreur.getKey());
+            detail.put("numeroPiece", ecritures.get(erreur.getKey()).getNumeroPiece());
+            detail.put("message", erreur.getValue());
+            details.add(detail);
+        }
+
+        Map<String, Object> resultat = new LinkedHashMap<>();
+        resultat.put("total", ecritures.size());
+        resultat.put("ecrituresCreees", ecrituresCreees);
+        resultat.put("ecrituresRejetees", erreurs.size());
+        resultat.put("lignesCreees", lignesCreees);
+        resultat.put("dureeMs", dureeMs);
+        resultat.put("lignesParSeconde", lignesCreees * 1000 / dureeMs);
+        resultat.put("erreurs", details);
+        return resultat;
+    }
+
+    // ==================== CONTRÔLES EN MÉMOIRE ====================
+
+    /**
+     * Contrôler chaque écriture (équilibre, lignes, champs obligatoires, unicité du numéro de pièce)
+     * et retourner les index des écritures valides
+     */
+    private List<Integer> controlerEcritures(List<EcritureComptable> ecritures, Map<Integer, String> erreurs,
+                                             Set<Integer> numerosAutomatiques) {
+        List<Integer> valides = new ArrayList<>();
+        Map<String, Integer> numerosFournis = new HashMap<>();
+
+        for (int index = 0; index < ecritures.size(); index++) {
+            EcritureComptable ecriture = ecritures.get(index);
+            if (ecriture == null) {
+                erreurs.put(index, "Écriture vide");
+                continue;
+            }
+            ecriture.calculerTotaux();
+
+            List<String> anomalies = new ArrayList<>(EcritureComptableService.controlerEcriture(ecriture));
+            if (ecriture.getEntreprise() == null || ecriture.getEntreprise().getId() == null) {
+                anomalies.add("Entreprise obligatoire");
+            }
+            if (ecriture.getExercice() == null) {
+                anomalies.add("Exercice obligatoire");
+            }
+            if (ecriture.getUtilisateur() == null) {
+                anomalies.add("Utilisateur obligatoire");
+            }
+            if (ecriture.getDateEcriture() == null) {
+                anomalies.add("Date d'écriture obligatoire");
+            }
+
+            String numeroPiece = ecriture.getNumeroPiece();
+            if (numeroPiece == null || numeroPiece.isEmpty()) {
+                numerosAutomatiques.add(index);
+                ecriture.setNumeroPiece(null);
+            } else if (numerosFournis.putIfAbsent(numeroPiece, index) != null) {
+                anomalies.add("Numéro de pièce en double dans le lot : " + numeroPiece);
+            }
+
+            if (anomalies.isEmpty()) {
+                preparerLignes(ecriture);
+                valides.add(index);
+            } else {
+                erreurs.put(index, "Erreurs de validation : " + String.join(", ", anomalies));
+            }
+        }
+
+        // Numéros de pièce fournis déjà présents en base
+        List<String> numeros = new ArrayList<>(numerosFournis.keySet());
+        for (int i = 0; i < numeros.size(); i += TAILLE_CONTROLE_NUMEROS) {
+            for (String existant : ecritureRepository.findNumerosPieceExistants(
+                    numeros.subList(i, Math.min(i + TAILLE_CONTROLE_NUMEROS, numeros.size())))) {
+                Integer index = numerosFournis.get(existant);
+                if (valides.remove(index)) {
+                    erreurs.put(index, "Numéro de pièce déjà utilisé : " + existant);
+                }
+            }
+        }
+        return valides;
+    }
+
+    private void preparerLignes(EcritureComptable ecriture) {
+        int ordre = 1;
+        for (LigneEcriture ligne : ecriture.getLignes()) {
+            ligne.setEcriture(ecriture);
+            if (ligne.getOrdre() == null) {
+                ligne.setOrdre(ordre);
+            }
+            ordre++;
+        }
+    }
+
+    // ==================== ENREGISTREMENT PAR LOTS ====================
+
+    /**
+     * Enregistrer un lot dans une transaction : numérotation par plage, insertion groupée puis cumuls
+     * des écritures validées (au flush de validation ; une violation de contrainte fait échouer tout le lot)
+     */
+    private void enregistrerLot(List<EcritureComptable> lot) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            numeroterLot(lot);
+            ecritureRepository.saveAll(lot);
+            if (accountBalanceService != null) {
+                for (EcritureComptable ecriture : lot) {
+                    if (AccountBalanceService.STATUTS_COMPTABILISES.contains(ecriture.getStatut())) {
+                        accountBalanceService.comptabiliserEcriture(ecriture);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Attribuer les numéros manquants : une plage par entreprise × journal × mois, dans l'ordre du lot
+     */
+    private void numeroterLot(List<EcritureComptable> lot) {
+        Map<String, List<EcritureComptable>> groupes = new LinkedHashMap<>();
+        for (EcritureComptable ecriture : lot) {
+            if (ecriture.getNumeroPiece() == null) {
+                LocalDate date = NumerotationPieceService.date(ecriture);
+                String cle = NumerotationPieceService.entrepriseId(ecriture) + "|"
+                    + NumerotationPieceService.journal(ecriture) + "|" + date.getYear() + "-" + date.getMonthValue();
+                groupes.computeIfAbsent(cle, k -> new ArrayList<>()).add(ecriture);
+            }
+        }
+
+        for (List<EcritureComptable> groupe : groupes.values()) {
+            EcritureComptable premiere = groupe.get(0);
+            List<String> numeros = numerotationPieceService.attribuerNumerosPiece(
+                NumerotationPieceService.entrepriseId(premiere), NumerotationPieceService.journal(premiere),
+                NumerotationPieceService.date(premiere), groupe.size());
+            for (int i = 0; i < groupe.size(); i++) {
+                groupe.get(i).setNumeroPiece(numeros.get(i));
+            }
+        }
+    }
+
+    /**
+     * Après un rollback, remettre l'écriture dans son état d'origine (identifiants, numéro attribué)
+     */
+    private void reinitialiser(EcritureComptable ecriture, boolean numeroAutomatique) {
+        ecriture.setId(null);
+        for (LigneEcriture ligne : ecriture.getLignes()) {
+            ligne.setId(null);
+        }
+        if (numeroAutomatique) {
+            ecriture.setNumeroPiece(null);
+        }
+    }
+
+    private long compterLignes(List<EcritureComptable> lot) {
+        return lot.stream().mapToLong(ecriture -> ecriture.getLignes().size()).sum();
+    }
+
+    private String message(Throwable e) {
+        Throwable cause = NestedExceptionUtils.getMostSpecificCause(e);
+        return cause.getMessage() != null ? cause.getMessage().split("\n")[0] : cause.getClass().getSimpleName();
+    }
+}
@@ -26,9 +26,6 @@ public class EcritureComptableService {
     @Autowired
     private TemplateEcritureRepository templateRepository;
     
-    @Autowired
-    private AccountRepository accountRepository;
-    
     @Autowired
     private CompanyRepository companyRepository;
     
@@ -38,6 +35,15 @@ public class EcritureComptableService {
     @Autowired
     private ObjectMapper objectMapper;
     
+    @Autowired
+    private AccountBalanceService accountBalanceService;
+    
+    @Autowired
+    private NumerotationPieceService numerotationPieceService;
+    
+    @Autowired
+    private PlanComptableIndexService planComptableIndexService;
+    
     // ==================== CRUD BASIQUE ====================
     
     /**
@@ -46,7 +52,7 @@ public class EcritureComptableService {
     public EcritureComptable createEcriture(EcritureComptable ecriture) {
         // Générer le numéro de pièce automatiquement
         if (ecriture.getNumeroPiece() == null || ecriture.getNumeroPiece().isEmpty()) {
-            ecriture.setNumeroPiece(genererNumeroPiece(ecriture.getEntreprise()));
+            ecriture.setNumeroPiece(numerotationPieceService.attribuerNumeroPiece(ecriture));
         }
         
         // Calculer les totaux
@@ -81,6 +87,13 @@ public class EcritureComptableService {
             throw new RuntimeException("Impossible de modifier une écriture clôturée");
         }
         
+        // Une écriture validée est déjà dans les cumuls : on retire ses anciennes lignes (à l'ancienne date)
+        boolean comptabilisee = AccountBalanceService.STATUTS_COMPTABILISES.contains(ecritureExistante.getStatut());
+        List<LigneEcriture> anciennesLignes = ligneRepository.findByEcritureOrderByOrdreAsc(ecritureExistante);
+        if (comptabilisee) {
+            accountBalanceService.extournerLignes(ecritureExistante, anciennesLignes);
+        }
+        
         // Mettre à jour les champs
         ecritureExistante.setDateEcriture(ecriture.getDateEcriture());
         ecritureExistante.setDatePiece(ecriture.getDatePiece());
@@ -110,7 +123,12 @@ public class EcritureComptableService {
         // Validation
         validerEcriture(ecritureExistante);
         
-        return ecritureRepository.save(ecritureExistante);
+        EcritureComptable ecritureMiseAJour = ecritureRepository.save(ecritureExistante);
+        if (comptabilisee) {
+            accountBalanceService.comptabiliserLignes(ecritureMiseAJour,
+                ecriture.getLignes() != null ? ecriture.getLignes() : anciennesLignes);
+        }
+        return ecritureMiseAJour;
     }
     
     /**
@@ -165,6 +183,11 @@ public class EcritureComptableService {
         // Validation complète
         validerEcriture(ecriture);
         
+        // Alimenter les cumuls de soldes (une seule fois par validation)
+        if (!AccountBalanceService.STATUTS_COMPTABILISES.contains(ecriture.getStatut())) {
+            accountBalanceService.comptabiliserEcriture(ecriture);
+        }
+        
         // Changer le statut
         ecriture.setStatut(EcritureComptable.StatutEcriture.VALIDEE);
         
@@ -182,6 +205,9 @@ public class EcritureComptableService {
             throw new RuntimeException("Seules les écritures validées peuvent être annulées");
         }
         
+        // Retirer l'écriture des cumuls de soldes
+        accountBalanceService.extournerEcriture(ecriture);
+        
         // Changer le statut
         ecriture.setStatut(EcritureComptable.StatutEcriture.BROUILLON);
         
@@ -225,7 +251,7 @@ public class EcritureComptableService {
         appliquerVariablesTemplate(ecriture, template, variables);
         
         // Créer les lignes selon le pattern
-        List<LigneEcriture> lignes = genererLignesFromTemplate(template, variables);
+        List<LigneEcriture> lignes = genererLignesFromTemplate(template, variables, ecriture.getEntreprise());
         ecriture.setLignes(lignes);
         
         // Calculer les totaux
@@ -340,26 +366,20 @@ public class EcritureComptableService {
     // ==================== MÉTHODES UTILITAIRES ====================
     
     /**
-     * Générer un numéro de pièce automatique
+     * Valider une écriture comptable
      */
-    private String genererNumeroPiece(Company entreprise) {
-        LocalDate aujourdhui = LocalDate.now();
-        String prefixe = "ECR-" + aujourdhui.getYear() + String.format("%02d", aujourdhui.getMonthValue());
-        
-        // Compter les écritures du mois
-        LocalDate debutMois = aujourdhui.withDayOfMonth(1);
-        LocalDate finMois = aujourdhui.withDayOfMonth(aujourdhui.lengthOfMonth());
-        
-        List<EcritureComptable> ecrituresMois = ecritureRepository.findByDateEcritureBetweenOrderByDateEcritureDesc(debutMois, finMois);
+    private void validerEcriture(EcritureComptable ecriture) {
+        List<String> erreurs = controlerEcriture(ecriture);
         
-        int numero = ecrituresMois.size() + 1;
-        return prefixe + "-" + String.format("%04d", numero);
+        if (!erreurs.isEmpty()) {
+            throw new RuntimeException("Erreurs de validation : " + String.join(", ", erreurs));
+        }
     }
     
     /**
-     * Valider une écriture comptable
+     * Contrôles de cohérence d'une écriture, sans accès à la base (totaux déjà calculés)
      */
-    private void validerEcriture(EcritureComptable ecriture) {
+    public static List<String> controlerEcriture(EcritureComptable ecriture) {
         List<String> erreurs = new ArrayList<>();
         
         // Vérifier l'équilibre
@@ -389,9 +409,7 @@ public class EcritureComptableService {
             }
         }
         
-        if (!erreurs.isEmpty()) {
-            throw new RuntimeException("Erreurs de validation : " + String.join(", ", erreurs));
-        }
+        return erreurs;
     }
     
     /**
@@ -422,13 +440,21 @@ public class EcritureComptableService {
         if (variables.containsKey("devise")) {
             ecriture.setDevise((String) variables.get("devise"));
         }
+        
+        if (variables.containsKey("entrepriseId")) {
+            Long entrepriseId = Long.valueOf(variables.get("entrepriseId").toString());
+            ecriture.setEntreprise(companyRepository.findById(entrepriseId)
+                .orElseThrow(() -> new RuntimeException("Entreprise non trouvée : " + entrepriseId)));
+        }
     }
     
     /**
      * Générer les lignes d'écriture à partir d'un template
      */
-    private List<LigneEcriture> genererLignesFromTemplate(TemplateEcriture template, Map<String, Object> variables) {
+    private List<LigneEcriture> genererLignesFromTemplate(TemplateEcriture template, Map<String, Object> variables,
+                                                          Company entreprise) {
         List<LigneEcriture> lignes = new ArrayList<>();
+        PlanComptableIndex<Account> planComptable = planComptableIndexService.getIndex(entreprise);
         
         try {
             // Parser le pattern des comptes
@@ -450,7 +476,7 @@ public class EcritureComptableService {
                 String comptePatternStr = (String) comptePattern.get("compte_pattern");
                 
                 // Trouver le compte correspondant
-                Account compte = trouverCompteByPattern(comptePatternStr);
+                Account compte = trouverCompteByPattern(planComptable, comptePatternStr);
                 ligne.setCompte(compte);
                 ligne.setCompteNumero(compte.getAccountNumber());
                 ligne.setCompteLibelle(compte.getName());
@@ -482,19 +508,14 @@ public class EcritureComptableService {
     }
     
     /**
-     * Trouver un compte par pattern
+     * Trouver un compte par pattern ("411%" : premier compte de la racine 411)
      */
-    private Account trouverCompteByPattern(String pattern) {
-        // Implémentation simplifiée - à améliorer selon les besoins
-        List<Account> comptes = accountRepository.findAll();
-        
-        for (Account compte : comptes) {
-            if (compte.getAccountNumber().startsWith(pattern.replace("%", ""))) {
-                return compte;
-            }
+    private Account trouverCompteByPattern(PlanComptableIndex<Account> planComptable, String pattern) {
+        Account compte = planComptable.premier(pattern);
+        if (compte == null) {
+            throw new RuntimeException("Aucun compte trouvé pour le pattern : " + pattern);
         }
-        
-        throw new RuntimeException("Aucun compte trouvé pour le pattern : " + pattern);
+        return compte;
     }
     
     /**
@@ -0,0 +1,368 @@
+package com.ecomptaia.service;
+
+import com.ecomptaia.entity.ExchangeRate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Photographie immuable des taux de change : les cotations directes de chaque paire, datées.
+ *
+ * Les devises sont indexées par leur code ISO (table de 26³ entrées, sans Map ni objet intermédiaire)
+ * et chaque paire cotée garde sa chronologie (jours, taux) en tableaux primitifs : la taille est celle
+ * des cotations, pas devises² par date. Pour une date donnée, on utilise la dernière cotation connue
+ * de la paire ; à défaut l'inverse de la paire opposée, puis le taux croisé par un pivot.
+ *
+ * Les taux croisés sont calculés à la construction : pour chaque date de cotation, un parcours en largeur
+ * depuis la devise la plus cotée de chaque groupe de devises reliées donne le taux de chaque devise depuis
+ * son pivot, en une tranche double[] par date. Le taux croisé de i vers j est alors taux(j) / taux(i) :
+ * la photographie est entièrement immuable et une conversion n'alloue rien.
+ */
+public final class ExchangeRateMatrix {
+
+    private static final int TAILLE_TABLE_CODES = 26 * 26 * 26;
+
+    private final String[] devises;
+    private final int[] indexParCode;
+    private final long[] jours;
+    private final int[] paires;
+    private final long[][] joursParPaire;
+    private final double[][] tauxParPaire;
+    private final int[][] voisins;
+    // Par date de cotation : pivot de chaque devise (-1 si isolée) et taux depuis ce pivot
+    private final int[][] pivots;
+    private final double[][] depuisPivot;
+    private final LocalDateTime chargeeLe;
+    private final String source;
+
+    private ExchangeRateMatrix(String[] devises, int[] indexParCode, long[] jours, int[] paires,
+                               long[][] joursParPaire, double[][] tauxParPaire, int[][] voisins,
+                               LocalDateTime chargeeLe, String source) {
+        this.devises = devises;
+        this.indexParCode = indexParCode;
+        this.jours = jours;
+        this.paires = paires;
+        this.joursParPaire = joursParPaire;
+        this.tauxParPaire = tauxParPaire;
+        this.voisins = voisins;
+        this.chargeeLe = chargeeLe;
+        this.source = source;
+        this.pivots = new int[jours.length][];
+        this.depuisPivot = new double[jours.length][];
+        int[] ordre = ordrePivots(voisins);
+        for (int position = 0; position < jours.length; position++) {
+            croiser(position, ordre);
+        }
+    }
+
+    /**
+     * Construire la photographie.
+     *
+     * @param referentiel taux de référence, valables avant toute cotation datée (date ignorée)
+     * @param cotations   taux datés, dans n'importe quel ordre
+     */
+    public static ExchangeRateMatrix of(Collection<ExchangeRate> referentiel, Collection<ExchangeRate> cotations,
+                                        String source) {
+        // Devises connues
+        SortedSet<String> codes = new TreeSet<>();
+        for (ExchangeRate taux : referentiel) {
+            ajouterCodes(codes, taux);
+        }
+        for (ExchangeRate taux : cotations) {
+            ajouterCodes(codes, taux);
+        }
+        String[] devises = codes.toArray(new String[0]);
+        int[] indexParCode = new int[TAILLE_TABLE_CODES];
+        Arrays.fill(indexParCode, -1);
+        for (int i = 0; i < devises.length; i++) {
+            indexParCode[cle(devises[i])] = i;
+        }
+        int n = devises.length;
+
+        // Chronologie de chaque paire cotée (référentiel avant toute date)
+        SortedMap<Integer, SortedMap<Long, Double>> parPaire = new TreeMap<>();
+        SortedSet<Long> datesCotees = new TreeSet<>();
+        for (ExchangeRate taux : referentiel) {
+            if (valide(taux)) {
+                coter(parPaire, indexParCode, n, taux, Long.MIN_VALUE);
+            }
+        }
+        for (ExchangeRate taux : cotations) {
+            if (taux.getDate() != null && valide(taux)) {
+                long jour = taux.getDate().toEpochDay();
+                coter(parPaire, indexParCode, n, taux, jour);
+                datesCotees.add(jour);
+            }
+        }
+
+        long[] jours = new long[datesCotees.size() + 1];
+        jours[0] = Long.MIN_VALUE;
+        int position = 1;
+        for (long jour : datesCotees) {
+            jours[position++] = jour;
+        }
+
+        int[] paires = new int[parPaire.size()];
+        long[][] joursParPaire = new long[paires.length][];
+        double[][] tauxParPaire = new double[paires.length][];
+        List<Set<Integer>> adjacence = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            adjacence.add(new TreeSet<>());
+        }
+        int p = 0;
+        for (Map.Entry<Integer, SortedMap<Long, Double>> entry : parPaire.entrySet()) {
+            int paire = entry.getKey();
+            paires[p] = paire;
+            joursParPaire[p] = new long[entry.getValue().size()];
+            tauxParPaire[p] = new double[entry.getValue().size()];
+            int k = 0;
+            for (Map.Entry<Long, Double> cotation : entry.getValue().entrySet()) {
+                joursParPaire[p][k] = cotation.getKey();
+                tauxParPaire[p][k] = cotation.getValue();
+                k++;
+            }
+            adjacence.get(paire / n).add(paire % n);
+            adjacence.get(paire % n).add(paire / n);
+            p++;
+        }
+
+        // Voisins de chaque devise, les plus cotées (pivots) d'abord
+        int[][] voisins = new int[n][];
+        for (int i = 0; i < n; i++) {
+            voisins[i] = adjacence.get(i).stream()
+                .sorted(Comparator.comparingInt((Integer v) -> -adjacence.get(v).size()).thenComparingInt(v -> v))
+                .mapToInt(Integer::intValue).toArray();
+        }
+
+        return new ExchangeRateMatrix(devises, indexParCode, jours, paires, joursParPaire, tauxParPaire, voisins,
+            LocalDateTime.now(), source);
+    }
+
+    // ==================== CONVERSIONS ====================
+
+    /**
+     * Taux de from vers to à la date donnée (dernière cotation connue), NaN si inconnu
+     */
+    public double rate(String from, String to, LocalDate date) {
+        int i = indexOf(from);
+        int j = indexOf(to);
+        if (i < 0 || j < 0) {
+            return Double.NaN;
+        }
+        return taux(i, j, date.toEpochDay());
+    }
+
+    /**
+     * Taux de from vers to selon la dernière cotation disponible, NaN si inconnu
+     */
+    public double rate(String from, String to) {
+        int i = indexOf(from);
+        int j = indexOf(to);
+        if (i < 0 || j < 0) {
+            return Double.NaN;
+        }
+        return taux(i, j, jours[jours.length - 1]);
+    }
+
+    /**
+     * Convertir un montant (NaN si le taux est inconnu)
+     */
+    public double convert(double montant, String from, String to, LocalDate date) {
+        return montant * rate(from, to, date);
+    }
+
+    /**
+     * Index de la devise dans la photographie, -1 si inconnue
+     */
+    public int indexOf(String code) {
+        if (code == null || code.length() != 3) {
+            return -1;
+        }
+        int cle = cle(code);
+        return cle < 0 ? -1 : indexParCode[cle];
+    }
+
+    // ==================== INFORMATIONS ====================
+
+    public List<String> getDevises() {
+        return Collections.unmodifiableList(Arrays.asList(devises));
+    }
+
+    /**
+     * Date de la dernière cotation (null si seuls les taux de référence sont connus)
+     */
+    public LocalDate getDerniereDate() {
+        return jours.length > 1 ? LocalDate.ofEpochDay(jours[jours.length - 1]) : null;
+    }
+
+    public int getNombreDates() {
+        return jours.length - 1;
+    }
+
+    public LocalDateTime getChargeeLe() {
+        return chargeeLe;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    // ==================== RÉSOLUTION ====================
+
+    /**
+     * Cotation directe, inverse, sinon taux croisé précalculé pour la date de cotation
+     */
+    private double taux(int i, int j, long jour) {
+        double lien = lien(i, j, jour);
+        if (!Double.isNaN(lien)) {
+            return lien;
+        }
+        int position = positionAu(jour);
+        int pivot = pivots[position][i];
+        if (pivot < 0 || pivot != pivots[position][j]) {
+            return Double.NaN;
+        }
+        return depuisPivot[position][j] / depuisPivot[position][i];
+    }
+
+    /**
+     * Tranche d'une date de cotation : parcours en largeur depuis chaque pivot non encore atteint,
+     * via les devises les plus cotées d'abord
+     */
+    private void croiser(int position, int[] ordre) {
+        int n = devises.length;
+        long jour = jours[position];
+        int[] pivot = new int[n];
+        double[] depuis = new double[n];
+        Arrays.fill(pivot, -1);
+        Arrays.fill(depuis, Double.NaN);
+        int[] file = new int[n];
+        for (int racine : ordre) {
+            if (pivot[racine] >= 0) {
+                continue;
+            }
+            pivot[racine] = racine;
+            depuis[racine] = 1.0;
+            int tete = 0;
+            int queue = 0;
+            file[queue++] = racine;
+            while (tete < queue) {
+                int k = file[tete++];
+                for (int v : voisins[k]) {
+                    if (pivot[v] >= 0) {
+                        continue;
+                    }
+                    double lien = lien(k, v, jour);
+                    if (Double.isNaN(lien)) {
+                        continue;
+                    }
+                    pivot[v] = racine;
+                    depuis[v] = depuis[k] * lien;
+                    file[queue++] = v;
+                }
+            }
+        }
+        pivots[position] = pivot;
+        depuisPivot[position] = depuis;
+    }
+
+    /**
+     * Devises de la plus cotée à la moins cotée : ordre de choix des pivots
+     */
+    private static int[] ordrePivots(int[][] voisins) {
+        return IntStream.range(0, voisins.length).boxed()
+            .sorted(Comparator.comparingInt((Integer v) -> -voisins[v].length).thenComparingInt(v -> v))
+            .mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Taux d'une paire à la date : identité, dernière cotation directe, sinon inverse de la paire opposée
+     */
+    private double lien(int i, int j, long jour) {
+        if (i == j) {
+            return 1.0;
+        }
+        double direct = cotation(i, j, jour);
+        if (!Double.isNaN(direct)) {
+            return direct;
+        }
+        double inverse = cotation(j, i, jour);
+        return Double.isNaN(inverse) ? Double.NaN : 1.0 / inverse;
+    }
+
+    /**
+     * Dernière cotation de from vers to connue au jour donné, NaN sinon
+     */
+    private double cotation(int from, int to, long jour) {
+        int p = Arrays.binarySearch(paires, from * devises.length + to);
+        if (p < 0) {
+            return Double.NaN;
+        }
+        int position = dernierAu(joursParPaire[p], jour);
+        return position < 0 ? Double.NaN : tauxParPaire[p][position];
+    }
+
+    private int positionAu(long jour) {
+        return Math.max(dernierAu(jours, jour), 0);
+    }
+
+    /**
+     * Position du dernier jour inférieur ou égal au jour donné dans un tableau trié, -1 si aucun
+     */
+    private static int dernierAu(long[] chronologie, long jour) {
+        int bas = -1;
+        int haut = chronologie.length - 1;
+        while (bas < haut) {
+            int milieu = (bas + haut + 1) >>> 1;
+            if (chronologie[milieu] <= jour) {
+                bas = milieu;
+            } else {
+                haut = milieu - 1;
+            }
+        }
+        return bas;
+    }
+
+    // ==================== CONSTRUCTION ====================
+
+    private static void coter(SortedMap<Integer, SortedMap<Long, Double>> parPaire, int[] indexParCode, int n,
+                              ExchangeRate taux, long jour) {
+        int i = indexParCode[cle(taux.getFromCurrency())];
+        int j = indexParCode[cle(taux.getToCurrency())];
+        if (i != j) {
+            parPaire.computeIfAbsent(i * n + j, p -> new TreeMap<>()).put(jour, taux.getRate().doubleValue());
+        }
+    }
+
+    private static boolean valide(ExchangeRate taux) {
+        return taux.getRate() != null && taux.getRate().signum() > 0
+            && cle(taux.getFromCurrency()) >= 0 && cle(taux.getToCurrency()) >= 0;
+    }
+
+    private static void ajouterCodes(Set<String> codes, ExchangeRate taux) {
+        if (valide(taux)) {
+            codes.add(taux.getFromCurrency());
+            codes.add(taux.getToCurrency());
+        }
+    }
+
+    /**
+     * Code ISO à 3 lettres majuscules vers [0, 26³), -1 sinon
+     */
+    private static int cle(String code) {
+        if (code == null || code.length() != 3) {
+            return -1;
+        }
+        int cle = 0;
+        for (int i = 0; i < 3; i++) {
+            int c = code.charAt(i) - 'A';
+            if (c < 0 || c >= 26) {
+                return -1;
+            }
+            cle = cle * 26 + c;
+        }
+        return cle;
+    }
+}
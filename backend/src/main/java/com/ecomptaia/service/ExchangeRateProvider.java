@@ -0,0 +1,21 @@
+package com.ecomptaia.service;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Source externe de taux de change, interrogée uniquement lors du rafraîchissement
+ * de la photographie des taux (jamais pendant une conversion)
+ */
+public interface ExchangeRateProvider {
+
+    /**
+     * Nom de la source, enregistré avec les taux récupérés
+     */
+    String getName();
+
+    /**
+     * Derniers taux de la devise de base vers chaque devise cotée
+     */
+    Map<String, BigDecimal> fetchLatestRates(String baseCurrency);
+}
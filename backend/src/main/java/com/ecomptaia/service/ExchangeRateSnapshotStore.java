@@ -0,0 +1,145 @@
+package com.ecomptaia.service;
+
+import com.ecomptaia.entity.Currency;
+import com.ecomptaia.entity.ExchangeRate;
+import com.ecomptaia.repository.ExchangeRateRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Photographie des taux de change servie aux conversions.
+ *
+ * Au rafraîchissement (planifié, ou à la demande) : les sources externes éventuelles sont interrogées
+ * et leurs taux enregistrés, puis les taux datés de ExchangeRateRepository et les taux de référence
+ * des devises (CurrencyService) sont chargés dans une nouvelle ExchangeRateMatrix, substituée
+ * atomiquement à la précédente. Les conversions lisent la photographie courante, sans entrée/sortie.
+ */
+@Service
+public class ExchangeRateSnapshotStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExchangeRateSnapshotStore.class);
+
+    // Plus grand taux enregistrable (exchange_rates.rate : precision 10, scale 6)
+    private static final BigDecimal TAUX_MAXIMUM_ENREGISTRABLE = new BigDecimal("10000");
+
+    @Autowired
+    private ExchangeRateRepository exchangeRateRepository;
+
+    @Autowired
+    private CurrencyService currencyService;
+
+    @Autowired(required = false)
+    private List<ExchangeRateProvider> providers = Collections.emptyList();
+
+    @Value("${app.exchange-rates.base-currency:EUR}")
+    private String baseCurrency;
+
+    @Value("${app.exchange-rates.history-days:400}")
+    private int historyDays;
+
+    private volatile ExchangeRateMatrix matrix;
+
+    /**
+     * Photographie courante (chargée au premier appel si nécessaire)
+     */
+    public ExchangeRateMatrix getMatrix() {
+        ExchangeRateMatrix courante = matrix;
+        if (courante == null) {
+            synchronized (this) {
+                courante = matrix;
+                if (courante == null) {
+                    courante = reload();
+                }
+            }
+        }
+        return courante;
+    }
+
+    /**
+     * Interroger les sources externes puis recharger la photographie
+     */
+    @Scheduled(fixedDelayString = "${app.exchange-rates.refresh-interval-ms:3600000}",
+               initialDelayString = "${app.exchange-rates.initial-delay-ms:60000}")
+    public void refresh() {
+        for (ExchangeRateProvider provider : providers) {
+            try {
+                enregistrer(provider.getName(), provider.fetchLatestRates(baseCurrency));
+            } catch (Exception e) {
+                logger.warn("Taux de change non récupérés depuis {} : {}", provider.getName(), e.getMessage());
+            }
+        }
+        reload();
+    }
+
+    /**
+     * Reconstruire la photographie depuis la base et la substituer à la précédente
+     */
+    public synchronized ExchangeRateMatrix reload() {
+        List<ExchangeRate> cotations = exchangeRateRepository
+            .findByDateGreaterThanEqualAndIsActiveTrue(LocalDate.now().minusDays(historyDays));
+
+        List<ExchangeRate> referentiel = new ArrayList<>();
+        String source = "database";
+        for (Currency devise : currencyService.getAllActiveCurrencies()) {
+            if (devise.getExchangeRate() != null) {
+                // Taux des devises exprimés par rapport à l'EUR (devise de référence)
+                referentiel.add(new ExchangeRate("EUR", devise.getCode(), devise.getExchangeRate(), null));
+            }
+        }
+        if (referentiel.isEmpty()) {
+            referentiel = tauxFixes();
+            source = cotations.isEmpty() ? "fallback" : source;
+        }
+
+        ExchangeRateMatrix nouvelle = ExchangeRateMatrix.of(referentiel, cotations, source);
+        matrix = nouvelle;
+        logger.debug("Photographie des taux rechargée : {} devises, {} dates", nouvelle.getDevises().size(),
+            nouvelle.getNombreDates());
+        return nouvelle;
+    }
+
+    /**
+     * Enregistrer (ou mettre à jour) les taux du jour d'une source externe
+     */
+    private void enregistrer(String source, Map<String, BigDecimal> rates) {
+        LocalDate aujourdhui = LocalDate.now();
+        for (Map.Entry<String, BigDecimal> entry : rates.entrySet()) {
+            String devise = entry.getKey();
+            BigDecimal taux = entry.getValue();
+            if (devise.equals(baseCurrency) || taux == null || taux.signum() <= 0
+                    || taux.compareTo(TAUX_MAXIMUM_ENREGISTRABLE) >= 0) {
+                continue;
+            }
+            ExchangeRate cotation = exchangeRateRepository
+                .findByFromCurrencyAndToCurrencyAndDate(baseCurrency, devise, aujourdhui)
+                .orElseGet(() -> new ExchangeRate(baseCurrency, devise, taux, aujourdhui, source));
+            cotation.setRate(taux);
+            cotation.setSource(source);
+            exchangeRateRepository.save(cotation);
+        }
+    }
+
+    /**
+     * Taux fixes de secours (aucune devise ni cotation en base)
+     */
+    private List<ExchangeRate> tauxFixes() {
+        List<ExchangeRate> taux = new ArrayList<>();
+        taux.add(new ExchangeRate("EUR", "USD", new BigDecimal("1.18"), null));
+        taux.add(new ExchangeRate("EUR", "GBP", new BigDecimal("0.86"), null));
+        taux.add(new ExchangeRate("EUR", "XOF", new BigDecimal("655.957"), null));
+        taux.add(new ExchangeRate("EUR", "XAF", new BigDecimal("655.957"), null));
+        taux.add(new ExchangeRate("EUR", "CDF", new BigDecimal("2350.0"), null));
+        return taux;
+    }
+}
@@ -1,12 +1,18 @@
 package com.ecomptaia.service;
 
+import com.ecomptaia.repository.AccountEntryRepository;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.stream.Stream;
 
 /**
  * Service d'export et téléchargement des documents comptables
@@ -14,6 +20,41 @@ import java.util.*;
 @Service
 public class ExportService {
 
+    @Autowired
+    private AccountEntryRepository accountEntryRepository;
+
+    @Autowired
+    private AccountBalanceService accountBalanceService;
+
+    /**
+     * Export du grand livre en flux (NDJSON, CSV ou PDF) directement dans le flux de sortie.
+     * Les lignes sont lues par curseur dans l'ordre compte / date : la mémoire utilisée
+     * ne dépend pas de la taille du grand livre.
+     */
+    @Transactional(readOnly = true)
+    public long streamGeneralLedger(Long companyId, LocalDate startDate, LocalDate endDate,
+                                    String format, OutputStream out) throws IOException {
+        // Soldes d'ouverture : un solde par compte, indépendant du nombre de lignes
+        Map<String, BigDecimal> openingBalances = new HashMap<>();
+        for (AccountBalanceService.AccountTotals totals : accountBalanceService
+                .getBalancesAsOf(companyId, AccountBalanceService.LEDGER_JOURNAL, startDate.minusDays(1)).values()) {
+            openingBalances.put(totals.getAccountNumber(), totals.getSolde());
+        }
+
+        String title = "GRAND LIVRE du " + startDate.format(DateTimeFormatter.ofPattern("dd/MM/yyyy")) +
+            " au " + endDate.format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
+        try (Stream<Object[]> rows = accountEntryRepository.streamValidatedLinesByDateRange(companyId, startDate, endDate);
+             GeneralLedgerStreamWriter writer = GeneralLedgerStreamWriter.create(format, out, openingBalances, title)) {
+            Iterator<Object[]> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                Object[] row = iterator.next();
+                writer.writeLine((String) row[0], (String) row[1], (LocalDate) row[2], (String) row[3],
+                    (String) row[4], (String) row[5], (String) row[6], (BigDecimal) row[7]);
+            }
+            return writer.getLineCount();
+        }
+    }
+
     /**
      * Export du journal général en PDF
      */
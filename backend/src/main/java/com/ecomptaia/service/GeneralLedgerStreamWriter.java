@@ -0,0 +1,334 @@
+package com.ecomptaia.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.layout.Document;
+import com.itextpdf.layout.element.Cell;
+import com.itextpdf.layout.element.Paragraph;
+import com.itextpdf.layout.element.Table;
+import com.itextpdf.layout.properties.TextAlignment;
+import com.itextpdf.layout.properties.UnitValue;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+
+/**
+ * Écriture en flux du grand livre (NDJSON, CSV ou PDF).
+ *
+ * Les lignes doivent arriver triées par compte puis par date : le writer ne garde en mémoire
+ * que le compte en cours (solde courant et totaux), ce qui permet d'exporter un grand livre de
+ * taille quelconque avec une mémoire constante.
+ */
+public abstract class GeneralLedgerStreamWriter implements Closeable {
+
+    public static final String FORMAT_NDJSON = "ndjson";
+    public static final String FORMAT_CSV = "csv";
+    public static final String FORMAT_PDF = "pdf";
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    private final Map<String, BigDecimal> openingBalances;
+
+    private String currentAccount;
+    private String currentAccountName;
+    private BigDecimal openingBalance = BigDecimal.ZERO;
+    private BigDecimal runningBalance = BigDecimal.ZERO;
+    private BigDecimal accountDebit = BigDecimal.ZERO;
+    private BigDecimal accountCredit = BigDecimal.ZERO;
+    private long lineCount;
+    private long accountCount;
+    private boolean closed;
+
+    protected GeneralLedgerStreamWriter(Map<String, BigDecimal> openingBalances) {
+        this.openingBalances = openingBalances;
+    }
+
+    /**
+     * Créer le writer correspondant au format demandé
+     */
+    public static GeneralLedgerStreamWriter create(String format, OutputStream out, Map<String, BigDecimal> openingBalances,
+                                                   String title) throws IOException {
+        if (FORMAT_NDJSON.equalsIgnoreCase(format)) {
+            return new NdjsonWriter(out, openingBalances);
+        }
+        if (FORMAT_CSV.equalsIgnoreCase(format)) {
+            return new CsvWriter(out, openingBalances);
+        }
+        if (FORMAT_PDF.equalsIgnoreCase(format)) {
+            return new PdfLedgerWriter(out, openingBalances, title);
+        }
+        throw new IllegalArgumentException("Format d'export non supporté: " + format);
+    }
+
+    public static boolean isSupportedFormat(String format) {
+        return FORMAT_NDJSON.equalsIgnoreCase(format) || FORMAT_CSV.equalsIgnoreCase(format)
+            || FORMAT_PDF.equalsIgnoreCase(format);
+    }
+
+    public static String contentType(String format) {
+        if (FORMAT_PDF.equalsIgnoreCase(format)) {
+            return "application/pdf";
+        }
+        if (FORMAT_CSV.equalsIgnoreCase(format)) {
+            return "text/csv; charset=UTF-8";
+        }
+        return "application/x-ndjson";
+    }
+
+    /**
+     * Écrire une ligne du grand livre ; un changement de compte clôture le compte précédent
+     */
+    public void writeLine(String accountNumber, String accountName, LocalDate date, String entryNumber,
+                          String journal, String label, String accountType, BigDecimal amount) throws IOException {
+        if (!accountNumber.equals(currentAccount)) {
+            closeAccount();
+            currentAccount = accountNumber;
+            currentAccountName = accountName;
+            openingBalance = openingBalances.getOrDefault(accountNumber, BigDecimal.ZERO);
+            runningBalance = openingBalance;
+            accountDebit = BigDecimal.ZERO;
+            accountCredit = BigDecimal.ZERO;
+            accountCount++;
+            writeAccountHeader(accountNumber, accountName, openingBalance);
+        }
+
+        BigDecimal debit = "DEBIT".equals(accountType) ? amount : BigDecimal.ZERO;
+        BigDecimal credit = "CREDIT".equals(accountType) ? amount : BigDecimal.ZERO;
+        accountDebit = accountDebit.add(debit);
+        accountCredit = accountCredit.add(credit);
+        runningBalance = runningBalance.add(debit).subtract(credit);
+        lineCount++;
+        writeEntry(accountNumber, date, entryNumber, journal, label, debit, credit, runningBalance);
+    }
+
+    public long getLineCount() { return lineCount; }
+    public long getAccountCount() { return accountCount; }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        closeAccount();
+        finish();
+    }
+
+    private void closeAccount() throws IOException {
+        if (currentAccount != null) {
+            writeAccountTotal(currentAccount, currentAccountName, openingBalance, accountDebit, accountCredit, runningBalance);
+            currentAccount = null;
+        }
+    }
+
+    protected abstract void writeAccountHeader(String accountNumber, String accountName, BigDecimal opening) throws IOException;
+
+    protected abstract void writeEntry(String accountNumber, LocalDate date, String entryNumber, String journal, String label,
+                                       BigDecimal debit, BigDecimal credit, BigDecimal balance) throws IOException;
+
+    protected abstract void writeAccountTotal(String accountNumber, String accountName, BigDecimal opening,
+                                              BigDecimal debit, BigDecimal credit, BigDecimal closing) throws IOException;
+
+    protected abstract void finish() throws IOException;
+
+    // ==================== NDJSON ====================
+
+    private static class NdjsonWriter extends GeneralLedgerStreamWriter {
+        private final JsonGenerator json;
+
+        NdjsonWriter(OutputStream out, Map<String, BigDecimal> openingBalances) throws IOException {
+            super(openingBalances);
+            this.json = new JsonFactory().createGenerator(out, JsonEncoding.UTF8);
+            this.json.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+            this.json.setRootValueSeparator(null);
+        }
+
+        @Override
+        protected void writeAccountHeader(String accountNumber, String accountName, BigDecimal opening) {
+            // L'en-tête est porté par chaque ligne et par le total du compte
+        }
+
+        @Override
+        protected void writeEntry(String accountNumber, LocalDate date, String entryNumber, String journal, String label,
+                                  BigDecimal debit, BigDecimal credit, BigDecimal balance) throws IOException {
+            json.writeStartObject();
+            json.writeStringField("type", "line");
+            json.writeStringField("accountNumber", accountNumber);
+            json.writeStringField("date", date != null ? date.toString() : null);
+            json.writeStringField("entryNumber", entryNumber);
+            json.writeStringField("journal", journal);
+            json.writeStringField("label", label);
+            json.writeNumberField("debit", debit);
+            json.writeNumberField("credit", credit);
+            json.writeNumberField("balance", balance);
+            json.writeEndObject();
+            json.writeRaw('\n');
+        }
+
+        @Override
+        protected void writeAccountTotal(String accountNumber, String accountName, BigDecimal opening,
+                                         BigDecimal debit, BigDecimal credit, BigDecimal closing) throws IOException {
+            json.writeStartObject();
+            json.writeStringField("type", "account");
+            json.writeStringField("accountNumber", accountNumber);
+            json.writeStringField("accountName", accountName);
+            json.writeNumberField("openingBalance", opening);
+            json.writeNumberField("totalDebit", debit);
+            json.writeNumberField("totalCredit", credit);
+            json.writeNumberField("closingBalance", closing);
+            json.writeEndObject();
+            json.writeRaw('\n');
+        }
+
+        @Override
+        protected void finish() throws IOException {
+            json.close();
+        }
+    }
+
+    // ==================== CSV ====================
+
+    private static class CsvWriter extends GeneralLedgerStreamWriter {
+        private static final char SEPARATOR = ';';
+        private final Writer writer;
+
+        CsvWriter(OutputStream out, Map<String, BigDecimal> openingBalances) throws IOException {
+            super(openingBalances);
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+            writer.write("Compte;Libellé compte;Date;N° pièce;Journal;Libellé;Débit;Crédit;Solde\n");
+        }
+
+        @Override
+        protected void writeAccountHeader(String accountNumber, String accountName, BigDecimal opening) throws IOException {
+            row(accountNumber, accountName, "", "", "", "Report à nouveau", "", "", opening.toPlainString());
+        }
+
+        @Override
+        protected void writeEntry(String accountNumber, LocalDate date, String entryNumber, String journal, String label,
+                                  BigDecimal debit, BigDecimal credit, BigDecimal balance) throws IOException {
+            row(accountNumber, "", date != null ? date.format(DATE_FORMATTER) : "", entryNumber, journal, label,
+                debit.toPlainString(), credit.toPlainString(), balance.toPlainString());
+        }
+
+        @Override
+        protected void writeAccountTotal(String accountNumber, String accountName, BigDecimal opening,
+                                         BigDecimal debit, BigDecimal credit, BigDecimal closing) throws IOException {
+            row(accountNumber, accountName, "", "", "", "Total compte", debit.toPlainString(), credit.toPlainString(),
+                closing.toPlainString());
+        }
+
+        @Override
+        protected void finish() throws IOException {
+            writer.flush();
+        }
+
+        private void row(String... values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(SEPARATOR);
+                }
+                writer.write(escape(values[i]));
+            }
+            writer.write('\n');
+        }
+
+        private String escape(String value) {
+            if (value == null) {
+                return "";
+            }
+            if (value.indexOf(SEPARATOR) >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0) {
+                return '"' + value.replace("\"", "\"\"") + '"';
+            }
+            return value;
+        }
+    }
+
+    // ==================== PDF ====================
+
+    /**
+     * PDF écrit page par page : le tableau est déclaré « large » et vidé régulièrement,
+     * les pages terminées sont écrites dans le flux et libérées
+     */
+    private static class PdfLedgerWriter extends GeneralLedgerStreamWriter {
+        private static final int FLUSH_EVERY = 200;
+        private final Document document;
+        private final Table table;
+        private int pendingRows;
+
+        PdfLedgerWriter(OutputStream out, Map<String, BigDecimal> openingBalances, String title) {
+            super(openingBalances);
+            PdfWriter pdfWriter = new PdfWriter(out);
+            pdfWriter.setCloseStream(false);
+            this.document = new Document(new PdfDocument(pdfWriter), PageSize.A4.rotate(), true);
+            document.add(new Paragraph(title).setBold().setFontSize(14).setTextAlignment(TextAlignment.CENTER));
+
+            this.table = new Table(UnitValue.createPercentArray(new float[]{10, 10, 8, 32, 13, 13, 14}), true)
+                .useAllAvailableWidth().setFontSize(8);
+            for (String header : new String[]{"Date", "N° pièce", "Journal", "Libellé", "Débit", "Crédit", "Solde"}) {
+                table.addHeaderCell(new Cell().add(new Paragraph(header).setBold()));
+            }
+            document.add(table);
+        }
+
+        @Override
+        protected void writeAccountHeader(String accountNumber, String accountName, BigDecimal opening) {
+            table.addCell(new Cell(1, 6).add(new Paragraph(accountNumber + " - " + (accountName != null ? accountName : ""))
+                .setBold()));
+            table.addCell(amountCell(opening));
+            rowAdded();
+        }
+
+        @Override
+        protected void writeEntry(String accountNumber, LocalDate date, String entryNumber, String journal, String label,
+                                  BigDecimal debit, BigDecimal credit, BigDecimal balance) {
+            table.addCell(date != null ? date.format(DATE_FORMATTER) : "");
+            table.addCell(entryNumber != null ? entryNumber : "");
+            table.addCell(journal != null ? journal : "");
+            table.addCell(label != null ? label : "");
+            table.addCell(amountCell(debit));
+            table.addCell(amountCell(credit));
+            table.addCell(amountCell(balance));
+            rowAdded();
+        }
+
+        @Override
+        protected void writeAccountTotal(String accountNumber, String accountName, BigDecimal opening,
+                                         BigDecimal debit, BigDecimal credit, BigDecimal closing) {
+            table.addCell(new Cell(1, 4).add(new Paragraph("Total " + accountNumber).setBold()));
+            table.addCell(amountCell(debit));
+            table.addCell(amountCell(credit));
+            table.addCell(amountCell(closing));
+            rowAdded();
+        }
+
+        @Override
+        protected void finish() {
+            table.complete();
+            document.close();
+        }
+
+        private void rowAdded() {
+            if (++pendingRows >= FLUSH_EVERY) {
+                table.flush();
+                pendingRows = 0;
+            }
+        }
+
+        private Cell amountCell(BigDecimal amount) {
+            return new Cell().add(new Paragraph(String.format("%,.2f", amount))).setTextAlignment(TextAlignment.RIGHT);
+        }
+    }
+}
@@ -7,6 +7,7 @@ import com.ecomptaia.repository.AccountEntryRepository;
 import com.ecomptaia.config.CountrySpecificRules;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -28,6 +29,9 @@ public class JournalEntryService {
     @Autowired
     private CountrySpecificRules countryRules;
 
+    @Autowired
+    private AccountBalanceService accountBalanceService;
+
     /**
      * Créer une nouvelle écriture comptable
      */
@@ -49,17 +53,80 @@ public class JournalEntryService {
             accountEntry.setJournalEntryId(savedEntry.getId());
             accountEntryRepository.save(accountEntry);
         }
+
+        // Écriture créée directement validée : ses lignes entrent dans les cumuls
+        if ("VALIDÉ".equals(savedEntry.getStatus())) {
+            accountBalanceService.postJournalEntry(savedEntry);
+            savedEntry.setIsPosted(true);
+            savedEntry = journalEntryRepository.save(savedEntry);
+        }
         
         return savedEntry;
     }
 
+    /**
+     * Mettre à jour l'en-tête d'une écriture (description, totaux, statut).
+     * Une écriture validée n'est plus modifiable ; un passage au statut validé ou annulé
+     * suit les mêmes règles que validateEntry et cancelEntry pour garder les cumuls à jour.
+     */
+    @Transactional
+    public JournalEntry updateEntry(Long entryId, Map<String, Object> updates, Long userId) {
+        JournalEntry entry = journalEntryRepository.findById(entryId)
+            .orElseThrow(() -> new RuntimeException("Écriture non trouvée"));
+        if ("VALIDÉ".equals(entry.getStatus()) || Boolean.TRUE.equals(entry.getIsPosted())) {
+            throw new RuntimeException("Impossible de modifier une écriture validée");
+        }
+        if (updates.containsKey("description")) {
+            entry.setDescription((String) updates.get("description"));
+        }
+        if (updates.containsKey("totalDebit")) {
+            entry.setTotalDebit(new BigDecimal(updates.get("totalDebit").toString()));
+        }
+        if (updates.containsKey("totalCredit")) {
+            entry.setTotalCredit(new BigDecimal(updates.get("totalCredit").toString()));
+        }
+        entry.setUpdatedAt(LocalDateTime.now());
+        entry = journalEntryRepository.save(entry);
+
+        String status = (String) updates.get("status");
+        if ("VALIDÉ".equals(status)) {
+            return validateEntry(entryId, userId);
+        }
+        if ("ANNULE".equals(status)) {
+            return cancelEntry(entryId);
+        }
+        if (status != null) {
+            entry.setStatus(status);
+            entry = journalEntryRepository.save(entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Supprimer une écriture non validée et ses lignes
+     */
+    @Transactional
+    public void deleteEntry(Long entryId) {
+        JournalEntry entry = journalEntryRepository.findById(entryId)
+            .orElseThrow(() -> new RuntimeException("Écriture non trouvée"));
+        if ("VALIDÉ".equals(entry.getStatus()) || Boolean.TRUE.equals(entry.getIsPosted())) {
+            throw new RuntimeException("Impossible de supprimer une écriture validée");
+        }
+        accountEntryRepository.deleteAll(accountEntryRepository.findByJournalEntryId(entryId));
+        journalEntryRepository.delete(entry);
+    }
+
     /**
      * Valider une écriture
      */
+    @Transactional
     public JournalEntry validateEntry(Long entryId, Long validatedBy) {
         Optional<JournalEntry> entryOpt = journalEntryRepository.findById(entryId);
         if (entryOpt.isPresent()) {
             JournalEntry entry = entryOpt.get();
+            if (!"VALIDÉ".equals(entry.getStatus())) {
+                accountBalanceService.postJournalEntry(entry);
+            }
             entry.setStatus("VALIDÉ");
             entry.setValidatedBy(validatedBy);
             entry.setValidatedAt(LocalDateTime.now());
@@ -73,6 +140,7 @@ public class JournalEntryService {
     /**
      * Annuler une écriture
      */
+    @Transactional
     public JournalEntry cancelEntry(Long entryId) {
         Optional<JournalEntry> entryOpt = journalEntryRepository.findById(entryId);
         if (entryOpt.isPresent()) {
@@ -80,6 +148,11 @@ public class JournalEntryService {
             if ("VALIDÉ".equals(entry.getStatus())) {
                 throw new RuntimeException("Impossible d'annuler une écriture validée");
             }
+            // Écriture comptabilisée sans statut validé : la retirer des cumuls
+            if (Boolean.TRUE.equals(entry.getIsPosted())) {
+                accountBalanceService.unpostJournalEntry(entry);
+                entry.setIsPosted(false);
+            }
             entry.setStatus("ANNULE");
             entry.setUpdatedAt(LocalDateTime.now());
             return journalEntryRepository.save(entry);
@@ -0,0 +1,241 @@
+package com.ecomptaia.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogramme de latences sans verrou, à seaux logarithmiques (principe HDR) : chaque puissance de deux
+ * est découpée en 32 sous-seaux linéaires, soit une erreur relative d'au plus 1/32 (~3 %) sur les centiles ;
+ * les valeurs inférieures à 64 µs sont exactes. Les valeurs sont en microsecondes, plafonnées à ~134 s.
+ *
+ * Les comptes sont répartis en bandes (une par groupe de threads) pour éviter la contention, et en tranches
+ * de temps tournantes : un instantané fusionne les tranches de la fenêtre glissante. L'enregistrement ne fait
+ * ni allocation ni verrou, hormis la création paresseuse d'une bande ou d'une tranche au changement de période.
+ */
+public final class LatencyHistogram {
+
+    static final int BITS_SOUS_SEAUX = 5;
+    static final int SOUS_SEAUX = 1 << BITS_SOUS_SEAUX;
+    static final long VALEUR_MAX = (1L << 27) - 1;
+    static final int NB_SEAUX = index(VALEUR_MAX) + 1;
+
+    private final long dureeTrancheMs;
+    private final int masqueBandes;
+    private final AtomicReferenceArray<Tranche> anneau;
+
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sommeTotale = new LongAdder();
+
+    /**
+     * @param dureeTrancheMs durée d'une tranche de temps
+     * @param tranches nombre de tranches conservées (fenêtre = tranches x durée, tranche courante incluse)
+     * @param bandes nombre de bandes par tranche, arrondi à la puissance de deux supérieure
+     */
+    public LatencyHistogram(long dureeTrancheMs, int tranches, int bandes) {
+        if (dureeTrancheMs <= 0 || tranches <= 0 || bandes <= 0) {
+            throw new IllegalArgumentException("Histogramme invalide : tranche " + dureeTrancheMs + " ms, "
+                + tranches + " tranches, " + bandes + " bandes");
+        }
+        this.dureeTrancheMs = dureeTrancheMs;
+        this.masqueBandes = Integer.highestOneBit(bandes * 2 - 1) - 1;
+        this.anneau = new AtomicReferenceArray<>(tranches);
+    }
+
+    /**
+     * Enregistrer une latence (en microsecondes) à l'instant donné (en millisecondes)
+     */
+    public void enregistrer(long micros, long maintenant) {
+        long valeur = Math.min(Math.max(micros, 0), VALEUR_MAX);
+        AtomicLongArray bande = tranche(maintenant / dureeTrancheMs).bande(indexBande());
+        bande.incrementAndGet(index(valeur));
+        bande.addAndGet(NB_SEAUX, valeur);
+        Tranche.majorer(bande, valeur);
+        total.increment();
+        sommeTotale.add(valeur);
+    }
+
+    /**
+     * Nombre de valeurs enregistrées depuis la création
+     */
+    public long getTotal() {
+        return total.sum();
+    }
+
+    /**
+     * Somme des valeurs enregistrées depuis la création, en microsecondes
+     */
+    public long getSommeTotale() {
+        return sommeTotale.sum();
+    }
+
+    /**
+     * Durée de la fenêtre glissante couverte par un instantané
+     */
+    public long getFenetreMs() {
+        return dureeTrancheMs * anneau.length();
+    }
+
+    /**
+     * Fusionner les tranches de la fenêtre glissante se terminant à l'instant donné
+     */
+    public Instantane instantane(long maintenant) {
+        long epoque = maintenant / dureeTrancheMs;
+        long[] comptes = new long[NB_SEAUX];
+        long nombre = 0;
+        long somme = 0;
+        long max = 0;
+        for (int i = 0; i < anneau.length(); i++) {
+            Tranche tranche = anneau.get(i);
+            if (tranche == null || tranche.epoque > epoque || tranche.epoque <= epoque - anneau.length()) {
+                continue;
+            }
+            for (int b = 0; b < tranche.bandes.length(); b++) {
+                AtomicLongArray bande = tranche.bandes.get(b);
+                if (bande == null) {
+                    continue;
+                }
+                for (int s = 0; s < NB_SEAUX; s++) {
+                    long compte = bande.get(s);
+                    comptes[s] += compte;
+                    nombre += compte;
+                }
+                somme += bande.get(NB_SEAUX);
+                max = Math.max(max, bande.get(NB_SEAUX + 1));
+            }
+        }
+        return new Instantane(comptes, nombre, somme, max);
+    }
+
+    private Tranche tranche(long epoque) {
+        int position = (int) (epoque % anneau.length());
+        while (true) {
+            Tranche courante = anneau.get(position);
+            if (courante != null && courante.epoque >= epoque) {
+                return courante;
+            }
+            Tranche nouvelle = new Tranche(epoque, masqueBandes + 1);
+            if (anneau.compareAndSet(position, courante, nouvelle)) {
+                return nouvelle;
+            }
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private int indexBande() {
+        long id = Thread.currentThread().getId();
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 40) & masqueBandes;
+    }
+
+    /**
+     * Seau d'une valeur : exact sous 2 x 32, puis 32 sous-seaux par puissance de deux
+     */
+    static int index(long valeur) {
+        if (valeur < 2 * SOUS_SEAUX) {
+            return (int) valeur;
+        }
+        int decalage = 63 - Long.numberOfLeadingZeros(valeur) - BITS_SOUS_SEAUX;
+        return (decalage << BITS_SOUS_SEAUX) + (int) (valeur >>> decalage);
+    }
+
+    /**
+     * Plus grande valeur ramenée au seau donné
+     */
+    static long borneSuperieure(int index) {
+        if (index < 2 * SOUS_SEAUX) {
+            return index;
+        }
+        int decalage = (index >>> BITS_SOUS_SEAUX) - 1;
+        long mantisse = index - ((long) decalage << BITS_SOUS_SEAUX);
+        return ((mantisse + 1) << decalage) - 1;
+    }
+
+    /**
+     * Tranche de temps : bandes de comptes créées à la première valeur enregistrée par un thread de la bande.
+     * Chaque bande porte en plus la somme (position NB_SEAUX) et le maximum (position NB_SEAUX + 1).
+     */
+    private static final class Tranche {
+
+        final long epoque;
+        final AtomicReferenceArray<AtomicLongArray> bandes;
+
+        Tranche(long epoque, int nombreBandes) {
+            this.epoque = epoque;
+            this.bandes = new AtomicReferenceArray<>(nombreBandes);
+        }
+
+        AtomicLongArray bande(int index) {
+            AtomicLongArray bande = bandes.get(index);
+            if (bande == null) {
+                bandes.compareAndSet(index, null, new AtomicLongArray(NB_SEAUX + 2));
+                bande = bandes.get(index);
+            }
+            return bande;
+        }
+
+        static void majorer(AtomicLongArray bande, long valeur) {
+            long max = bande.get(NB_SEAUX + 1);
+            while (valeur > max && !bande.compareAndSet(NB_SEAUX + 1, max, valeur)) {
+                max = bande.get(NB_SEAUX + 1);
+            }
+        }
+    }
+
+    /**
+     * Fusion immuable des tranches d'une fenêtre
+     */
+    public static final class Instantane {
+
+        private final long[] comptes;
+        private final long nombre;
+        private final long somme;
+        private final long max;
+
+        Instantane(long[] comptes, long nombre, long somme, long max) {
+            this.comptes = comptes;
+            this.nombre = nombre;
+            this.somme = somme;
+            this.max = max;
+        }
+
+        public long getNombre() {
+            return nombre;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public long getMin() {
+            for (int s = 0; s < comptes.length; s++) {
+                if (comptes[s] > 0) {
+                    return Math.min(borneSuperieure(s), max);
+                }
+            }
+            return 0;
+        }
+
+        public double getMoyenne() {
+            return nombre == 0 ? 0 : (double) somme / nombre;
+        }
+
+        /**
+         * Centile par rang le plus proche (q entre 0 et 1), en microsecondes
+         */
+        public long centile(double q) {
+            if (nombre == 0) {
+                return 0;
+            }
+            long rang = Math.max(1, (long) Math.ceil(q * nombre));
+            long cumul = 0;
+            for (int s = 0; s < comptes.length; s++) {
+                cumul += comptes[s];
+                if (cumul >= rang) {
+                    return Math.min(borneSuperieure(s), max);
+                }
+            }
+            return max;
+        }
+    }
+}
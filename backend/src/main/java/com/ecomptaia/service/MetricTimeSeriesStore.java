@@ -0,0 +1,544 @@
+package com.ecomptaia.service;
+
+import com.ecomptaia.entity.Metric;
+import com.ecomptaia.entity.MetricRollup;
+import com.ecomptaia.repository.MetricRollupRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Magasin de séries temporelles des métriques de supervision.
+ *
+ * Chaque série (nom de métrique, entreprise) garde ses derniers échantillons bruts dans un tampon circulaire
+ * (app.monitoring.timeseries.raw-capacity). La compaction périodique calcule, pour chaque minute, heure et jour
+ * écoulés, un agrégat min/max/moyenne/p95 à partir des échantillons bruts (p95 exact tant que le tampon couvre
+ * la période), conservé en mémoire sur une fenêtre glissante et écrit en base par lots (table metric_rollups).
+ * Chaque instance du backend écrit ses agrégats sous son identifiant (app.instance-id, à défaut pid@hôte) : les agrégats
+ * d'une même période venant de plusieurs instances sont des lignes distinctes, combinées à la lecture par resumer.
+ * Un lot est écrit dans une transaction : un lot reporté après un échec n'a rien écrit.
+ * Les alertes sont évaluées sur le dernier échantillon de chaque série, sans requête.
+ *
+ * Un échantillon antérieur à une période déjà compactée n'entre plus dans son agrégat.
+ */
+@Component
+public class MetricTimeSeriesStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricTimeSeriesStore.class);
+
+    static final String INSERT_SQL = "INSERT INTO metric_rollups (node_id, metric_name, entreprise_id, category, resolution, "
+        + "bucket_start, sample_count, min_value, max_value, avg_value, p95_value, warning_count, critical_count) "
+        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final int MAX_EN_ATTENTE = 100_000;
+
+    @Autowired(required = false)
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired(required = false)
+    private MetricRollupRepository metricRollupRepository;
+
+    @Value("${app.instance-id:}")
+    private String instance = "";
+
+    @Value("${app.monitoring.timeseries.raw-capacity:2880}")
+    private int capaciteBrute = 2880;
+
+    @Value("${app.monitoring.timeseries.retention.minute:1440}")
+    private int retentionMinutes = 1440;
+
+    @Value("${app.monitoring.timeseries.retention.hour:720}")
+    private int retentionHeures = 720;
+
+    @Value("${app.monitoring.timeseries.retention.day:400}")
+    private int retentionJours = 400;
+
+    // Au-delà, le dernier échantillon d'une série n'est plus pris en compte pour les alertes
+    @Value("${app.monitoring.timeseries.alert-freshness-ms:300000}")
+    private long fraicheurAlertesMs = 300000;
+
+    private LongSupplier horloge = System::currentTimeMillis;
+    private ZoneId zone = ZoneId.systemDefault();
+
+    private volatile TransactionTemplate transactionLot;
+
+    private final ConcurrentHashMap<Cle, Serie> series = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<MetricRollup> aPersister = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger nombreAPersister = new AtomicInteger();
+
+    /**
+     * Identifiant d'une série : nom de la métrique et entreprise (null pour les métriques système)
+     */
+    public record Cle(String nom, Long entrepriseId) {
+    }
+
+    /**
+     * Ajouter un échantillon à sa série (seuils, unité et catégorie de la métrique mis à jour)
+     *
+     * @return statut du précédent échantillon de la série, null s'il n'y en avait pas
+     */
+    public Metric.MetricStatus enregistrer(Metric metric) {
+        if (metric.getValue() == null) {
+            return null;
+        }
+        Cle cle = new Cle(metric.getMetricName(), metric.getEntrepriseId());
+        Serie serie = series.computeIfAbsent(cle, c -> new Serie(c, capaciteBrute));
+        long instant = metric.getTimestamp() != null
+            ? metric.getTimestamp().atZone(zone).toInstant().toEpochMilli() : horloge.getAsLong();
+        return serie.ajouter(metric, instant);
+    }
+
+    /**
+     * Compacter les périodes écoulées et écrire les nouveaux agrégats en base
+     */
+    @Scheduled(fixedRateString = "${app.monitoring.timeseries.compaction-interval-ms:60000}")
+    public void compacterEtPersister() {
+        try {
+            compacter();
+            persister();
+        } catch (Exception e) {
+            logger.error("Erreur lors de la compaction des métriques: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Calculer les agrégats des minutes, heures et jours écoulés depuis la dernière compaction
+     *
+     * @return nombre d'agrégats produits
+     */
+    public int compacter() {
+        long maintenant = horloge.getAsLong();
+        int produits = 0;
+        for (Serie serie : series.values()) {
+            List<MetricRollup> nouveaux = serie.compacter(maintenant);
+            for (MetricRollup agregat : nouveaux) {
+                if (nombreAPersister.incrementAndGet() > MAX_EN_ATTENTE) {
+                    // Base indisponible depuis longtemps : abandonner les plus anciens
+                    aPersister.poll();
+                    nombreAPersister.decrementAndGet();
+                }
+                aPersister.offer(agregat);
+            }
+            produits += nouveaux.size();
+        }
+        return produits;
+    }
+
+    /**
+     * Écrire en un lot JDBC les agrégats en attente ; conservés pour la tentative suivante en cas d'échec
+     *
+     * @return nombre d'agrégats écrits
+     */
+    public int persister() {
+        if (jdbcTemplate == null) {
+            return 0;
+        }
+        List<MetricRollup> lot = new ArrayList<>();
+        MetricRollup agregat;
+        while ((agregat = aPersister.poll()) != null) {
+            nombreAPersister.decrementAndGet();
+            lot.add(agregat);
+        }
+        if (lot.isEmpty()) {
+            return 0;
+        }
+        try {
+            transactionLot().executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_SQL, lot, 500, (ps, r) -> {
+                ps.setString(1, r.getNodeId());
+                ps.setString(2, r.getMetricName());
+                ps.setObject(3, r.getEntrepriseId(), Types.BIGINT);
+                ps.setString(4, r.getCategory().name());
+                ps.setString(5, r.getResolution().name());
+                ps.setTimestamp(6, Timestamp.valueOf(r.getBucketStart()));
+                ps.setLong(7, r.getSampleCount());
+                ps.setDouble(8, r.getMinValue());
+                ps.setDouble(9, r.getMaxValue());
+                ps.setDouble(10, r.getAvgValue());
+                ps.setDouble(11, r.getP95Value());
+                ps.setLong(12, r.getWarningCount());
+                ps.setLong(13, r.getCriticalCount());
+            }));
+            return lot.size();
+        } catch (Exception e) {
+            logger.warn("Écriture de {} agrégats de métriques reportée: {}", lot.size(), e.getMessage());
+            lot.forEach(r -> {
+                aPersister.offer(r);
+                nombreAPersister.incrementAndGet();
+            });
+            return 0;
+        }
+    }
+
+    /**
+     * Agrégats de la période pour les séries d'une entreprise et les séries système, à la résolution donnée,
+     * toutes instances confondues. Les agrégats de cette instance antérieurs à sa fenêtre en mémoire et ceux des
+     * autres instances sur toute la période sont lus en base ; ceux d'une même période sont combinés.
+     */
+    public Map<Cle, List<MetricRollup>> agregats(Long entrepriseId, MetricRollup.Resolution resolution,
+                                                 LocalDateTime debut, LocalDateTime fin) {
+        Map<Cle, List<MetricRollup>> lus = new HashMap<>();
+        Map<Cle, LocalDateTime> debutsEnMemoire = new HashMap<>();
+        for (Serie serie : series.values()) {
+            if (!concerne(serie.cle.entrepriseId(), entrepriseId)) {
+                continue;
+            }
+            LocalDateTime plusAncien = serie.plusAncien(resolution);
+            if (plusAncien != null) {
+                debutsEnMemoire.put(serie.cle, plusAncien);
+            }
+            List<MetricRollup> agregats = serie.agregats(resolution, debut, fin);
+            if (!agregats.isEmpty()) {
+                lus.put(serie.cle, new ArrayList<>(agregats));
+            }
+        }
+
+        if (metricRollupRepository != null) {
+            String locale = getInstance();
+            for (MetricRollup r : metricRollupRepository.findByResolutionAndPeriod(resolution, debut, fin)) {
+                if (!concerne(r.getEntrepriseId(), entrepriseId)) {
+                    continue;
+                }
+                Cle cle = new Cle(r.getMetricName(), r.getEntrepriseId());
+                // La fenêtre en mémoire ne remplace que les lignes écrites par cette instance
+                LocalDateTime debutEnMemoire = debutsEnMemoire.get(cle);
+                if (locale.equals(r.getNodeId()) && debutEnMemoire != null && !r.getBucketStart().isBefore(debutEnMemoire)) {
+                    continue;
+                }
+                lus.computeIfAbsent(cle, c -> new ArrayList<>()).add(r);
+            }
+        }
+
+        Map<Cle, List<MetricRollup>> resultat = new HashMap<>();
+        lus.forEach((cle, agregats) -> {
+            TreeMap<LocalDateTime, MetricRollup> parPeriode = new TreeMap<>();
+            for (MetricRollup r : agregats) {
+                parPeriode.merge(r.getBucketStart(), r, MetricTimeSeriesStore::combiner);
+            }
+            resultat.put(cle, new ArrayList<>(parPeriode.values()));
+        });
+        return resultat;
+    }
+
+    /**
+     * Agrégat d'une même période sur deux instances : comptes additionnés, moyenne pondérée,
+     * p95 = le plus haut (borne supérieure) ; sans instance propre
+     */
+    private static MetricRollup combiner(MetricRollup a, MetricRollup b) {
+        long echantillons = a.getSampleCount() + b.getSampleCount();
+        MetricRollup agregat = new MetricRollup();
+        agregat.setMetricName(a.getMetricName());
+        agregat.setEntrepriseId(a.getEntrepriseId());
+        agregat.setCategory(a.getCategory());
+        agregat.setResolution(a.getResolution());
+        agregat.setBucketStart(a.getBucketStart());
+        agregat.setSampleCount(echantillons);
+        agregat.setMinValue(Math.min(a.getMinValue(), b.getMinValue()));
+        agregat.setMaxValue(Math.max(a.getMaxValue(), b.getMaxValue()));
+        agregat.setAvgValue(echantillons > 0
+            ? (a.getAvgValue() * a.getSampleCount() + b.getAvgValue() * b.getSampleCount()) / echantillons : 0);
+        agregat.setP95Value(Math.max(a.getP95Value(), b.getP95Value()));
+        agregat.setWarningCount(a.getWarningCount() + b.getWarningCount());
+        agregat.setCriticalCount(a.getCriticalCount() + b.getCriticalCount());
+        return agregat;
+    }
+
+    /**
+     * Résolution adaptée à la longueur de la période
+     */
+    public static MetricRollup.Resolution resolutionPour(LocalDateTime debut, LocalDateTime fin) {
+        long heures = ChronoUnit.HOURS.between(debut, fin);
+        if (heures <= 6) {
+            return MetricRollup.Resolution.MINUTE;
+        }
+        return heures <= 14 * 24 ? MetricRollup.Resolution.HOUR : MetricRollup.Resolution.DAY;
+    }
+
+    /**
+     * Résumé d'une suite d'agrégats : moyenne pondérée par le nombre d'échantillons,
+     * p95 = plus haut p95 des périodes (borne supérieure)
+     */
+    public static Map<String, Object> resumer(List<MetricRollup> agregats) {
+        Map<String, Object> resume = new HashMap<>();
+        long echantillons = 0;
+        long avertissements = 0;
+        long critiques = 0;
+        double somme = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double p95 = Double.NEGATIVE_INFINITY;
+        for (MetricRollup r : agregats) {
+            echantillons += r.getSampleCount();
+            avertissements += r.getWarningCount();
+            critiques += r.getCriticalCount();
+            somme += r.getAvgValue() * r.getSampleCount();
+            min = Math.min(min, r.getMinValue());
+            max = Math.max(max, r.getMaxValue());
+            p95 = Math.max(p95, r.getP95Value());
+        }
+        resume.put("samples", echantillons);
+        resume.put("warningSamples", avertissements);
+        resume.put("criticalSamples", critiques);
+        resume.put("average", echantillons > 0 ? somme / echantillons : null);
+        resume.put("min", echantillons > 0 ? min : null);
+        resume.put("max", echantillons > 0 ? max : null);
+        resume.put("p95", echantillons > 0 ? p95 : null);
+        return resume;
+    }
+
+    /**
+     * Séries dont le dernier échantillon (récent) est en avertissement ou critique
+     */
+    public List<Map<String, Object>> alertes() {
+        long limite = horloge.getAsLong() - fraicheurAlertesMs;
+        List<Map<String, Object>> alertes = new ArrayList<>();
+        for (Serie serie : series.values()) {
+            Map<String, Object> alerte = serie.alerte(limite);
+            if (alerte != null) {
+                alertes.add(alerte);
+            }
+        }
+        return alertes;
+    }
+
+    /**
+     * Identifiant de cette instance dans les agrégats : app.instance-id, à défaut pid@hôte
+     */
+    public String getInstance() {
+        return instance == null || instance.isBlank() ? ManagementFactory.getRuntimeMXBean().getName() : instance;
+    }
+
+    public int getNombreSeries() {
+        return series.size();
+    }
+
+    public int getNombreAPersister() {
+        return nombreAPersister.get();
+    }
+
+    private TransactionTemplate transactionLot() {
+        TransactionTemplate transaction = transactionLot;
+        if (transaction == null) {
+            transaction = new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
+            transactionLot = transaction;
+        }
+        return transaction;
+    }
+
+    private static boolean concerne(Long entrepriseSerie, Long entrepriseId) {
+        return entrepriseSerie == null || entrepriseSerie.equals(entrepriseId);
+    }
+
+    private long debutPeriode(long instant, MetricRollup.Resolution resolution) {
+        LocalDateTime date = LocalDateTime.ofInstant(Instant.ofEpochMilli(instant), zone).truncatedTo(unite(resolution));
+        return date.atZone(zone).toInstant().toEpochMilli();
+    }
+
+    private static ChronoUnit unite(MetricRollup.Resolution resolution) {
+        return switch (resolution) {
+            case MINUTE -> ChronoUnit.MINUTES;
+            case HOUR -> ChronoUnit.HOURS;
+            case DAY -> ChronoUnit.DAYS;
+        };
+    }
+
+    private int retention(MetricRollup.Resolution resolution) {
+        return switch (resolution) {
+            case MINUTE -> retentionMinutes;
+            case HOUR -> retentionHeures;
+            case DAY -> retentionJours;
+        };
+    }
+
+    /**
+     * Série : tampon circulaire des échantillons bruts et agrégats récents par résolution
+     */
+    private final class Serie {
+        private final Cle cle;
+        private final long[] instants;
+        private final double[] valeurs;
+        private int tete;
+        private int taille;
+
+        private Metric.MetricCategory categorie = Metric.MetricCategory.SYSTEM;
+        private String unite;
+        private Double seuilAvertissement;
+        private Double seuilCritique;
+        private Metric.MetricStatus statut;
+        private double derniereValeur;
+        private long dernierInstant;
+
+        private final EnumMap<MetricRollup.Resolution, ArrayDeque<MetricRollup>> agregats =
+            new EnumMap<>(MetricRollup.Resolution.class);
+        private final EnumMap<MetricRollup.Resolution, Long> compacteJusqua = new EnumMap<>(MetricRollup.Resolution.class);
+
+        private Serie(Cle cle, int capacite) {
+            this.cle = cle;
+            this.instants = new long[capacite];
+            this.valeurs = new double[capacite];
+            for (MetricRollup.Resolution resolution : MetricRollup.Resolution.values()) {
+                agregats.put(resolution, new ArrayDeque<>());
+            }
+        }
+
+        private synchronized Metric.MetricStatus ajouter(Metric metric, long instant) {
+            int position = (tete + taille) % instants.length;
+            if (taille == instants.length) {
+                tete = (tete + 1) % instants.length;
+            } else {
+                taille++;
+            }
+            instants[position] = instant;
+            valeurs[position] = metric.getValue();
+
+            if (metric.getCategory() != null) {
+                categorie = metric.getCategory();
+            }
+            if (metric.getUnit() != null) {
+                unite = metric.getUnit();
+            }
+            if (metric.getThresholdWarning() != null) {
+                seuilAvertissement = metric.getThresholdWarning();
+            }
+            if (metric.getThresholdCritical() != null) {
+                seuilCritique = metric.getThresholdCritical();
+            }
+            Metric.MetricStatus precedent = statut;
+            statut = metric.getStatus() != null ? metric.getStatus() : Metric.MetricStatus.NORMAL;
+            derniereValeur = metric.getValue();
+            dernierInstant = Math.max(dernierInstant, instant);
+            return precedent;
+        }
+
+        private synchronized List<MetricRollup> compacter(long maintenant) {
+            List<MetricRollup> nouveaux = new ArrayList<>();
+            for (MetricRollup.Resolution resolution : MetricRollup.Resolution.values()) {
+                long limite = debutPeriode(maintenant, resolution);
+                long depuis = compacteJusqua.getOrDefault(resolution, Long.MIN_VALUE);
+                if (limite <= depuis) {
+                    continue;
+                }
+                // Échantillons des périodes closes non encore compactées, du plus récent au plus ancien
+                TreeMap<Long, double[]> periodes = new TreeMap<>();
+                Map<Long, Integer> tailles = new HashMap<>();
+                for (int i = taille - 1; i >= 0; i--) {
+                    int position = (tete + i) % instants.length;
+                    long instant = instants[position];
+                    if (instant < depuis) {
+                        break;
+                    }
+                    if (instant >= limite) {
+                        continue;
+                    }
+                    long periode = debutPeriode(instant, resolution);
+                    double[] tampon = periodes.computeIfAbsent(periode, p -> new double[16]);
+                    int n = tailles.getOrDefault(periode, 0);
+                    if (n == tampon.length) {
+                        tampon = Arrays.copyOf(tampon, n * 2);
+                        periodes.put(periode, tampon);
+                    }
+                    tampon[n] = valeurs[position];
+                    tailles.put(periode, n + 1);
+                }
+                ArrayDeque<MetricRollup> fenetre = agregats.get(resolution);
+                for (Map.Entry<Long, double[]> entry : periodes.entrySet()) {
+                    MetricRollup agregat = agreger(resolution, entry.getKey(),
+                        Arrays.copyOf(entry.getValue(), tailles.get(entry.getKey())));
+                    fenetre.addLast(agregat);
+                    nouveaux.add(agregat);
+                }
+                while (fenetre.size() > retention(resolution)) {
+                    fenetre.removeFirst();
+                }
+                compacteJusqua.put(resolution, limite);
+            }
+            return nouveaux;
+        }
+
+        private MetricRollup agreger(MetricRollup.Resolution resolution, long periode, double[] echantillons) {
+            Arrays.sort(echantillons);
+            int n = echantillons.length;
+            double somme = 0;
+            long avertissements = 0;
+            long critiques = 0;
+            for (double valeur : echantillons) {
+                somme += valeur;
+                if (seuilCritique != null && valeur >= seuilCritique) {
+                    critiques++;
+                } else if (seuilAvertissement != null && valeur >= seuilAvertissement) {
+                    avertissements++;
+                }
+            }
+            MetricRollup agregat = new MetricRollup();
+            agregat.setNodeId(getInstance());
+            agregat.setMetricName(cle.nom());
+            agregat.setEntrepriseId(cle.entrepriseId());
+            agregat.setCategory(categorie);
+            agregat.setResolution(resolution);
+            agregat.setBucketStart(LocalDateTime.ofInstant(Instant.ofEpochMilli(periode), zone));
+            agregat.setSampleCount((long) n);
+            agregat.setMinValue(echantillons[0]);
+            agregat.setMaxValue(echantillons[n - 1]);
+            agregat.setAvgValue(somme / n);
+            // Rang le plus proche
+            agregat.setP95Value(echantillons[Math.max(0, (int) Math.ceil(0.95 * n) - 1)]);
+            agregat.setWarningCount(avertissements);
+            agregat.setCriticalCount(critiques);
+            return agregat;
+        }
+
+        private synchronized List<MetricRollup> agregats(MetricRollup.Resolution resolution, LocalDateTime debut, LocalDateTime fin) {
+            List<MetricRollup> resultat = new ArrayList<>();
+            for (MetricRollup agregat : agregats.get(resolution)) {
+                if (!agregat.getBucketStart().isBefore(debut) && agregat.getBucketStart().isBefore(fin)) {
+                    resultat.add(agregat);
+                }
+            }
+            return resultat;
+        }
+
+        private synchronized LocalDateTime plusAncien(MetricRollup.Resolution resolution) {
+            MetricRollup premier = agregats.get(resolution).peekFirst();
+            return premier != null ? premier.getBucketStart() : null;
+        }
+
+        private synchronized Map<String, Object> alerte(long limite) {
+            if (statut == null || statut == Metric.MetricStatus.NORMAL || dernierInstant < limite) {
+                return null;
+            }
+            Map<String, Object> alerte = new HashMap<>();
+            alerte.put("metricName", cle.nom());
+            alerte.put("entrepriseId", cle.entrepriseId());
+            alerte.put("status", statut);
+            alerte.put("value", derniereValeur);
+            alerte.put("unit", unite);
+            alerte.put("timestamp", LocalDateTime.ofInstant(Instant.ofEpochMilli(dernierInstant), zone));
+            return alerte;
+        }
+    }
+}
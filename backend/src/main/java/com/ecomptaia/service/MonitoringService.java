@@ -1,8 +1,11 @@
 package com.ecomptaia.service;
 
 import com.ecomptaia.entity.Metric;
+import com.ecomptaia.entity.MetricRollup;
 import com.ecomptaia.repository.MetricRepository;
+import com.ecomptaia.repository.MetricRollupRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -25,6 +28,22 @@ public class MonitoringService {
     @Autowired
     private MetricRepository metricRepository;
 
+    @Autowired
+    private MetricRollupRepository metricRollupRepository;
+
+    @Autowired
+    private MetricTimeSeriesStore timeSeriesStore;
+
+    // Conservation en base des agrégats par résolution
+    @Value("${app.monitoring.timeseries.db-retention.minute-days:7}")
+    private int retentionMinutesJours = 7;
+
+    @Value("${app.monitoring.timeseries.db-retention.hour-days:90}")
+    private int retentionHeuresJours = 90;
+
+    @Value("${app.monitoring.timeseries.db-retention.day-days:1825}")
+    private int retentionJoursJours = 1825;
+
     // ==================== COLLECTE DE MÉTRIQUES ====================
 
     /**
@@ -66,7 +85,7 @@ public class MonitoringService {
         usedMemoryMetric.setThresholdWarning(512.0); // 512MB
         usedMemoryMetric.setThresholdCritical(1024.0); // 1GB
         evaluateMetricStatus(usedMemoryMetric);
-        metricRepository.save(usedMemoryMetric);
+        enregistrer(usedMemoryMetric);
         
         // Mémoire maximale
         long maxMemory = memoryBean.getHeapMemoryUsage().getMax();
@@ -75,7 +94,7 @@ public class MonitoringService {
                                           Metric.MetricCategory.MEMORY, "system");
         maxMemoryMetric.setUnit("MB");
         maxMemoryMetric.setDescription("Mémoire heap maximale");
-        metricRepository.save(maxMemoryMetric);
+        enregistrer(maxMemoryMetric);
         
         // Pourcentage d'utilisation
         double usagePercent = (double) usedMemory / maxMemory * 100;
@@ -86,7 +105,7 @@ public class MonitoringService {
         usagePercentMetric.setThresholdWarning(70.0); // 70%
         usagePercentMetric.setThresholdCritical(90.0); // 90%
         evaluateMetricStatus(usagePercentMetric);
-        metricRepository.save(usagePercentMetric);
+        enregistrer(usagePercentMetric);
     }
 
     /**
@@ -102,14 +121,14 @@ public class MonitoringService {
         cpuMetric.setThresholdWarning(80.0); // 80%
         cpuMetric.setThresholdCritical(95.0); // 95%
         evaluateMetricStatus(cpuMetric);
-        metricRepository.save(cpuMetric);
+        enregistrer(cpuMetric);
         
         // Nombre de processeurs
         int processors = Runtime.getRuntime().availableProcessors();
         Metric processorsMetric = new Metric("cpu.processors", Metric.MetricType.GAUGE, 
                                            (double) processors, Metric.MetricCategory.CPU, "system");
         processorsMetric.setDescription("Nombre de processeurs disponibles");
-        metricRepository.save(processorsMetric);
+        enregistrer(processorsMetric);
     }
 
     /**
@@ -126,14 +145,14 @@ public class MonitoringService {
         threadCountMetric.setThresholdWarning(100.0); // 100 threads
         threadCountMetric.setThresholdCritical(200.0); // 200 threads
         evaluateMetricStatus(threadCountMetric);
-        metricRepository.save(threadCountMetric);
+        enregistrer(threadCountMetric);
         
         // Nombre de threads démarrés
         long totalStarted = threadBean.getTotalStartedThreadCount();
         Metric totalStartedMetric = new Metric("threads.total.started", Metric.MetricType.COUNTER, 
                                              (double) totalStarted, Metric.MetricCategory.SYSTEM, "system");
         totalStartedMetric.setDescription("Nombre total de threads démarrés");
-        metricRepository.save(totalStartedMetric);
+        enregistrer(totalStartedMetric);
     }
 
     /**
@@ -146,14 +165,25 @@ public class MonitoringService {
                                        (double) uptime / (1000 * 60), Metric.MetricCategory.APPLICATION, "system");
         uptimeMetric.setUnit("minutes");
         uptimeMetric.setDescription("Temps de fonctionnement de l'application");
-        metricRepository.save(uptimeMetric);
+        enregistrer(uptimeMetric);
         
         // Nombre de classes chargées
         int loadedClasses = ManagementFactory.getClassLoadingMXBean().getLoadedClassCount();
         Metric loadedClassesMetric = new Metric("application.classes.loaded", Metric.MetricType.GAUGE, 
                                               (double) loadedClasses, Metric.MetricCategory.APPLICATION, "system");
         loadedClassesMetric.setDescription("Nombre de classes chargées");
-        metricRepository.save(loadedClassesMetric);
+        enregistrer(loadedClassesMetric);
+    }
+
+    /**
+     * Ajouter l'échantillon à sa série en mémoire ; seuls les passages en avertissement ou critique
+     * sont enregistrés en base (historique des alertes)
+     */
+    private void enregistrer(Metric metric) {
+        Metric.MetricStatus precedent = timeSeriesStore.enregistrer(metric);
+        if (metric.getStatus() != Metric.MetricStatus.NORMAL && metric.getStatus() != precedent) {
+            metricRepository.save(metric);
+        }
     }
 
     /**
@@ -186,6 +216,7 @@ public class MonitoringService {
             evaluateMetricStatus(metric);
         }
         
+        timeSeriesStore.enregistrer(metric);
         return metricRepository.save(metric);
     }
 
@@ -205,6 +236,7 @@ public class MonitoringService {
         
         evaluateMetricStatus(metric);
         
+        timeSeriesStore.enregistrer(metric);
         return metricRepository.save(metric);
     }
 
@@ -282,55 +314,76 @@ public class MonitoringService {
     }
 
     /**
-     * Obtenir les métriques de performance
+     * Obtenir les métriques de performance des dernières 24 heures (agrégats horaires)
      */
     public Map<String, Object> getPerformanceMetrics(Long entrepriseId) {
         Map<String, Object> metrics = new HashMap<>();
+        LocalDateTime fin = LocalDateTime.now();
+        Map<MetricTimeSeriesStore.Cle, List<MetricRollup>> rollups =
+            timeSeriesStore.agregats(entrepriseId, MetricRollup.Resolution.HOUR, fin.minusHours(24), fin);
         
         // Métriques mémoire
-        Double avgMemoryUsage = metricRepository.getAverageValueByEntrepriseAndMetric(entrepriseId, "memory.usage.percent");
-        Double maxMemoryUsage = metricRepository.getMaxValueByEntrepriseAndMetric(entrepriseId, "memory.usage.percent");
-        metrics.put("averageMemoryUsage", avgMemoryUsage);
-        metrics.put("maxMemoryUsage", maxMemoryUsage);
+        Map<String, Object> memory = resumeSerie(rollups, "memory.usage.percent", entrepriseId);
+        metrics.put("averageMemoryUsage", memory.get("average"));
+        metrics.put("maxMemoryUsage", memory.get("max"));
+        metrics.put("p95MemoryUsage", memory.get("p95"));
         
         // Métriques CPU
-        Double avgCpuUsage = metricRepository.getAverageValueByEntrepriseAndMetric(entrepriseId, "cpu.usage");
-        Double maxCpuUsage = metricRepository.getMaxValueByEntrepriseAndMetric(entrepriseId, "cpu.usage");
-        metrics.put("averageCpuUsage", avgCpuUsage);
-        metrics.put("maxCpuUsage", maxCpuUsage);
+        Map<String, Object> cpu = resumeSerie(rollups, "cpu.usage", entrepriseId);
+        metrics.put("averageCpuUsage", cpu.get("average"));
+        metrics.put("maxCpuUsage", cpu.get("max"));
+        metrics.put("p95CpuUsage", cpu.get("p95"));
         
         // Métriques threads
-        Double avgThreadCount = metricRepository.getAverageValueByEntrepriseAndMetric(entrepriseId, "threads.active");
-        Double maxThreadCount = metricRepository.getMaxValueByEntrepriseAndMetric(entrepriseId, "threads.active");
-        metrics.put("averageThreadCount", avgThreadCount);
-        metrics.put("maxThreadCount", maxThreadCount);
+        Map<String, Object> threads = resumeSerie(rollups, "threads.active", entrepriseId);
+        metrics.put("averageThreadCount", threads.get("average"));
+        metrics.put("maxThreadCount", threads.get("max"));
+        metrics.put("p95ThreadCount", threads.get("p95"));
         
         return metrics;
     }
 
+    /**
+     * Résumé d'une série : celle de l'entreprise si elle existe, sinon la série système
+     */
+    private Map<String, Object> resumeSerie(Map<MetricTimeSeriesStore.Cle, List<MetricRollup>> rollups,
+                                            String metricName, Long entrepriseId) {
+        List<MetricRollup> serie = rollups.get(new MetricTimeSeriesStore.Cle(metricName, entrepriseId));
+        if (serie == null) {
+            serie = rollups.getOrDefault(new MetricTimeSeriesStore.Cle(metricName, null), List.of());
+        }
+        return MetricTimeSeriesStore.resumer(serie);
+    }
+
     // ==================== ALERTES ====================
 
     /**
-     * Vérifier les alertes
+     * Vérifier les alertes (dernier échantillon de chaque série, en mémoire)
      */
     @Scheduled(fixedRate = 30000) // Toutes les 30 secondes
     public void checkAlerts() {
         try {
+            List<Map<String, Object>> alertes = timeSeriesStore.alertes();
+            
             // Vérifier les métriques critiques
-            List<Metric> criticalMetrics = getCriticalMetrics();
+            List<Map<String, Object>> criticalMetrics = alertes.stream()
+                    .filter(a -> a.get("status") == Metric.MetricStatus.CRITICAL)
+                    .toList();
             if (!criticalMetrics.isEmpty()) {
                 System.out.println("🚨 ALERTE CRITIQUE: " + criticalMetrics.size() + " métriques critiques détectées");
-                for (Metric metric : criticalMetrics) {
-                    System.out.println("  - " + metric.getMetricName() + ": " + metric.getValue() + " " + metric.getUnit());
+                for (Map<String, Object> metric : criticalMetrics) {
+                    System.out.println("  - " + metric.get("metricName") + ": " + metric.get("value") + " " + metric.get("unit"));
                 }
             }
             
             // Vérifier les métriques d'avertissement
-            List<Metric> warningMetrics = getWarningMetrics();
+            List<Map<String, Object>> warningMetrics = alertes.stream()
+                    .filter(a -> a.get("status") == Metric.MetricStatus.WARNING)
+                    .toList();
             if (!warningMetrics.isEmpty()) {
                 System.out.println("⚠️ AVERTISSEMENT: " + warningMetrics.size() + " métriques en avertissement");
-                for (Metric metric : warningMetrics) {
-                    System.out.println("  - " + metric.getMetricName() + ": " + metric.getValue() + " " + metric.getUnit());
+                for (Map<String, Object> metric : warningMetrics) {
+                    System.out.println("  - " + metric.get("metricName") + ": " + metric.get("value") + " " + metric.get("unit"));
                 }
             }
             
@@ -342,7 +395,7 @@ public class MonitoringService {
     // ==================== RAPPORTS ====================
 
     /**
-     * Générer un rapport de performance
+     * Générer un rapport de performance à partir des agrégats (minute, heure ou jour selon la période)
      */
     public Map<String, Object> generatePerformanceReport(Long entrepriseId, LocalDateTime startDate, LocalDateTime endDate) {
         Map<String, Object> report = new HashMap<>();
@@ -350,29 +403,38 @@ public class MonitoringService {
         report.put("period", startDate.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME) + " - " + endDate.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
         report.put("entrepriseId", entrepriseId);
         
-        // Statistiques générales
-        List<Metric> periodMetrics = metricRepository.findByTimestampBetweenAndEntrepriseIdOrderByTimestampDesc(startDate, endDate, entrepriseId);
-        report.put("totalMetrics", periodMetrics.size());
+        MetricRollup.Resolution resolution = MetricTimeSeriesStore.resolutionPour(startDate, endDate);
+        Map<MetricTimeSeriesStore.Cle, List<MetricRollup>> rollups =
+            timeSeriesStore.agregats(entrepriseId, resolution, startDate, endDate);
+        report.put("resolution", resolution.name());
         
-        // Métriques par catégorie
+        // Statistiques générales et par série
+        long totalMetrics = 0;
         Map<String, Long> categoryStats = new HashMap<>();
         for (Metric.MetricCategory category : Metric.MetricCategory.values()) {
-            long count = periodMetrics.stream()
-                    .filter(m -> m.getCategory() == category)
-                    .count();
-            categoryStats.put(category.name(), count);
+            categoryStats.put(category.name(), 0L);
         }
-        report.put("categoryStats", categoryStats);
-        
-        // Métriques par statut
         Map<String, Long> statusStats = new HashMap<>();
         for (Metric.MetricStatus status : Metric.MetricStatus.values()) {
-            long count = periodMetrics.stream()
-                    .filter(m -> m.getStatus() == status)
-                    .count();
-            statusStats.put(status.name(), count);
+            statusStats.put(status.name(), 0L);
+        }
+        Map<String, Object> series = new HashMap<>();
+        for (Map.Entry<MetricTimeSeriesStore.Cle, List<MetricRollup>> entry : rollups.entrySet()) {
+            Map<String, Object> resume = MetricTimeSeriesStore.resumer(entry.getValue());
+            long samples = (Long) resume.get("samples");
+            long warnings = (Long) resume.get("warningSamples");
+            long criticals = (Long) resume.get("criticalSamples");
+            totalMetrics += samples;
+            categoryStats.merge(entry.getValue().get(0).getCategory().name(), samples, Long::sum);
+            statusStats.merge(Metric.MetricStatus.NORMAL.name(), samples - warnings - criticals, Long::sum);
+            statusStats.merge(Metric.MetricStatus.WARNING.name(), warnings, Long::sum);
+            statusStats.merge(Metric.MetricStatus.CRITICAL.name(), criticals, Long::sum);
+            series.put(entry.getKey().nom(), resume);
         }
+        report.put("totalMetrics", totalMetrics);
+        report.put("categoryStats", categoryStats);
         report.put("statusStats", statusStats);
+        report.put("series", series);
         
         // Tendances
         report.put("performanceMetrics", getPerformanceMetrics(entrepriseId));
@@ -383,20 +445,19 @@ public class MonitoringService {
     // ==================== UTILITAIRES ====================
 
     /**
-     * Nettoyer les anciennes métriques
+     * Nettoyer les anciennes métriques et les agrégats hors conservation
      */
     @Scheduled(cron = "0 0 2 * * ?") // Tous les jours à 2h du matin
     public void cleanupOldMetrics() {
         try {
-            LocalDateTime cutoffDate = LocalDateTime.now().minusDays(30); // Garder 30 jours
-            List<Metric> oldMetrics = metricRepository.findByTimestampBetweenOrderByTimestampDesc(
-                    LocalDateTime.MIN, cutoffDate);
-            
-            for (Metric metric : oldMetrics) {
-                metricRepository.delete(metric);
-            }
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime cutoffDate = now.minusDays(30); // Garder 30 jours
+            int deleted = metricRepository.deleteByTimestampBefore(cutoffDate);
+            int deletedRollups = metricRollupRepository.deleteByResolutionBefore(MetricRollup.Resolution.MINUTE, now.minusDays(retentionMinutesJours))
+                    + metricRollupRepository.deleteByResolutionBefore(MetricRollup.Resolution.HOUR, now.minusDays(retentionHeuresJours))
+                    + metricRollupRepository.deleteByResolutionBefore(MetricRollup.Resolution.DAY, now.minusDays(retentionJoursJours));
             
-            System.out.println("🧹 Nettoyage terminé: " + oldMetrics.size() + " anciennes métriques supprimées");
+            System.out.println("🧹 Nettoyage terminé: " + deleted + " anciennes métriques et " + deletedRollups + " agrégats supprimés");
             
         } catch (Exception e) {
             System.err.println("Erreur lors du nettoyage des anciennes métriques: " + e.getMessage());
@@ -7,10 +7,16 @@ import com.ecomptaia.entity.LocaleSettings;
 import com.ecomptaia.entity.CompanySubscription;
 import com.ecomptaia.entity.SubscriptionPlan;
 import com.ecomptaia.accounting.AccountingStandard;
+import com.ecomptaia.config.RateLimitConfig;
+import com.ecomptaia.repository.CompanySubscriptionRepository;
+import com.ecomptaia.security.DistributedRateLimiter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.*;
 import java.util.HashMap;
 
@@ -27,6 +33,15 @@ public class MultiTenantService {
     @Autowired
     private LocalizationService localizationService;
     
+    @Autowired
+    private CompanySubscriptionRepository companySubscriptionRepository;
+    
+    @Autowired
+    private DistributedRateLimiter distributedRateLimiter;
+    
+    @Autowired(required = false)
+    private RateLimitConfig rateLimitConfig;
+    
     /**
      * CrÃ©e une nouvelle entreprise avec configuration multi-tenant
      */
@@ -102,9 +117,26 @@ public class MultiTenantService {
      * VÃ©rifie les limites d'utilisation pour une entreprise
      */
     public boolean checkUsageLimits(Company company, String resourceType, int requestedAmount) {
-        // Pour l'instant, pas de limites strictes
-        // Cette logique sera implÃ©mentÃ©e avec la relation CompanySubscription
-        return company != null && company.isActive();
+        if (company == null || !company.isActive()) {
+            return false;
+        }
+        if (requestedAmount <= 0 || rateLimitConfig == null || rateLimitConfig.getQuotas().isEmpty()) {
+            return true;
+        }
+        
+        // Quota mensuel du plan de l'abonnement actif (rate.limit.quotas), décompté à l'échelle du cluster
+        String planCode = companySubscriptionRepository
+            .findByCompanyAndStatus(company, CompanySubscription.SubscriptionStatus.ACTIVE)
+            .map(subscription -> subscription.getSubscriptionPlan() != null ? subscription.getSubscriptionPlan().getPlanCode() : null)
+            .orElse(null);
+        Long quota = rateLimitConfig.quotaOf(planCode, resourceType);
+        if (quota == null) {
+            return true;
+        }
+        YearMonth mois = YearMonth.now();
+        long ttlMs = Duration.between(LocalDateTime.now(), mois.plusMonths(1).atDay(2).atStartOfDay()).toMillis();
+        return distributedRateLimiter.essayer("quota:" + company.getId() + ":" + resourceType.toUpperCase() + ":" + mois,
+            quota, requestedAmount, ttlMs);
     }
     
     /**
@@ -0,0 +1,210 @@
+package com.ecomptaia.service;
+
+import com.ecomptaia.entity.EcritureComptable;
+import com.ecomptaia.entity.SequencePiece;
+import com.ecomptaia.repository.SequencePieceRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Attribution des numéros de pièce, par entreprise × journal × mois.
+ *
+ * Mode sans trou (par défaut) : le compteur est avancé dans la transaction de l'appelant ;
+ * le verrou de ligne ne sérialise que les écritures de la même entreprise, du même journal
+ * et du même mois, et un rollback rend le numéro.
+ *
+ * Mode par blocs (journaux listés dans app.ecritures.numerotation.journaux-par-blocs) :
+ * un bloc de numéros est réservé dans une transaction courte et distribué en mémoire ;
+ * les numéros non utilisés (rollback, redémarrage) laissent des trous.
+ */
+@Service
+public class NumerotationPieceService {
+
+    public static final String PREFIXE = "ECR";
+
+    @Autowired
+    private SequencePieceRepository sequenceRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.ecritures.numerotation.journaux-par-blocs:}")
+    private String journauxParBlocs;
+
+    @Value("${app.ecritures.numerotation.taille-bloc:50}")
+    private int tailleBloc;
+
+    private final Map<String, BlocNumeros> blocs = new ConcurrentHashMap<>();
+
+    /**
+     * Attribuer le prochain numéro de pièce d'une écriture (journal et mois de l'écriture)
+     */
+    @Transactional
+    public String attribuerNumeroPiece(EcritureComptable ecriture) {
+        return attribuerNumeroPiece(entrepriseId(ecriture), journal(ecriture), date(ecriture));
+    }
+
+    /**
+     * Attribuer le prochain numéro de pièce : ECR-{entreprise}-{journal}-{aaaaMM}-{numéro}
+     */
+    @Transactional
+    public String attribuerNumeroPiece(Long entrepriseId, String journal, LocalDate date) {
+        return attribuerNumerosPiece(entrepriseId, journal, date, 1).get(0);
+    }
+
+    /**
+     * Attribuer une plage de numéros consécutifs pour un même entreprise × journal × mois.
+     * En mode sans trou, une seule mise à jour du compteur pour toute la plage.
+     */
+    @Transactional
+    public List<String> attribuerNumerosPiece(Long entrepriseId, String journal, LocalDate date, int nombre) {
+        List<String> numeros = new ArrayList<>(nombre);
+        if (nombre <= 0) {
+            return numeros;
+        }
+        int annee = date.getYear();
+        int mois = date.getMonthValue();
+        if (isParBlocs(journal)) {
+            for (int i = 0; i < nombre; i++) {
+                numeros.add(formater(entrepriseId, journal, annee, mois, suivantDansBloc(entrepriseId, journal, annee, mois)));
+            }
+        } else {
+            long dernier = suivantsSansTrou(entrepriseId, journal, annee, mois, nombre);
+            for (long numero = dernier - nombre + 1; numero <= dernier; numero++) {
+                numeros.add(formater(entrepriseId, journal, annee, mois, numero));
+            }
+        }
+        return numeros;
+    }
+
+    /**
+     * Clé de numérotation d'une écriture : entreprise, journal et mois
+     */
+    public static Long entrepriseId(EcritureComptable ecriture) {
+        if (ecriture.getEntreprise() == null || ecriture.getEntreprise().getId() == null) {
+            throw new RuntimeException("Entreprise obligatoire pour numéroter la pièce");
+        }
+        return ecriture.getEntreprise().getId();
+    }
+
+    public static String journal(EcritureComptable ecriture) {
+        return ecriture.getTypeEcriture() != null
+            ? ecriture.getTypeEcriture().name()
+            : EcritureComptable.TypeEcriture.NORMALE.name();
+    }
+
+    public static LocalDate date(EcritureComptable ecriture) {
+        return ecriture.getDateEcriture() != null ? ecriture.getDateEcriture() : LocalDate.now();
+    }
+
+    /**
+     * Dernier numéro attribué (0 si aucun)
+     */
+    @Transactional(readOnly = true)
+    public long getDernierNumero(Long entrepriseId, String journal, int annee, int mois) {
+        return sequenceRepository.findDernierNumero(entrepriseId, journal, annee, mois).orElse(0L);
+    }
+
+    public boolean isParBlocs(String journal) {
+        Set<String> journaux = StringUtils.commaDelimitedListToSet(journauxParBlocs == null ? "" : journauxParBlocs);
+        return journaux.stream().map(String::trim).anyMatch(journal::equalsIgnoreCase);
+    }
+
+    // ==================== MODE SANS TROU ====================
+
+    /**
+     * Avancer le compteur de n numéros et retourner le dernier attribué
+     */
+    private long suivantsSansTrou(Long entrepriseId, String journal, int annee, int mois, int n) {
+        if (avancer(entrepriseId, journal, annee, mois, n) == 0) {
+            creerCompteur(entrepriseId, journal, annee, mois);
+            if (avancer(entrepriseId, journal, annee, mois, n) == 0) {
+                throw new RuntimeException("Compteur de pièces introuvable : " + journal + " " + annee + "/" + mois);
+            }
+        }
+        // La ligne est verrouillée par la mise à jour : la lecture voit notre propre incrément
+        return getDernierNumero(entrepriseId, journal, annee, mois);
+    }
+
+    // ==================== MODE PAR BLOCS ====================
+
+    private long suivantDansBloc(Long entrepriseId, String journal, int annee, int mois) {
+        String cle = entrepriseId + "|" + journal + "|" + annee + "|" + mois;
+        BlocNumeros bloc = blocs.computeIfAbsent(cle, k -> new BlocNumeros());
+        synchronized (bloc) {
+            if (bloc.prochain > bloc.dernier) {
+                long fin = reserverBloc(entrepriseId, journal, annee, mois);
+                bloc.prochain = fin - tailleBloc + 1;
+                bloc.dernier = fin;
+            }
+            return bloc.prochain++;
+        }
+    }
+
+    /**
+     * Réserver tailleBloc numéros dans une transaction indépendante, validée immédiatement
+     */
+    private long reserverBloc(Long entrepriseId, String journal, int annee, int mois) {
+        Long fin = nouvelleTransaction().execute(status -> {
+            if (avancer(entrepriseId, journal, annee, mois, tailleBloc) == 0) {
+                creerCompteur(entrepriseId, journal, annee, mois);
+                avancer(entrepriseId, journal, annee, mois, tailleBloc);
+            }
+            return sequenceRepository.findDernierNumero(entrepriseId, journal, annee, mois).orElseThrow(
+                () -> new RuntimeException("Compteur de pièces introuvable : " + journal + " " + annee + "/" + mois));
+        });
+        return fin;
+    }
+
+    // ==================== COMPTEURS ====================
+
+    private int avancer(Long entrepriseId, String journal, int annee, int mois, long n) {
+        return sequenceRepository.avancer(entrepriseId, journal, annee, mois, n, LocalDateTime.now());
+    }
+
+    /**
+     * Créer le compteur du mois dans une transaction indépendante ; si une autre transaction
+     * l'a créé en même temps, la contrainte d'unicité fait échouer celle-ci et le compteur existant est utilisé
+     */
+    private void creerCompteur(Long entrepriseId, String journal, int annee, int mois) {
+        try {
+            nouvelleTransaction().executeWithoutResult(status ->
+                sequenceRepository.saveAndFlush(new SequencePiece(entrepriseId, journal, annee, mois)));
+        } catch (DataIntegrityViolationException e) {
+            // Compteur déjà créé par une transaction concurrente
+        }
+    }
+
+    private String formater(Long entrepriseId, String journal, int annee, int mois, long numero) {
+        return String.format("%s-%d-%s-%d%02d-%05d", PREFIXE, entrepriseId, journal, annee, mois, numero);
+    }
+
+    private TransactionTemplate nouvelleTransaction() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return template;
+    }
+
+    /**
+     * Plage de numéros réservée et non encore distribuée
+     */
+    private static class BlocNumeros {
+        private long prochain = 1;
+        private long dernier = 0;
+    }
+}
@@ -6,7 +6,6 @@ import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.regex.Pattern;
 
 /**
  * Service de mapping entre les comptes comptables et les postes OHADA/SYSCOHADA
@@ -110,13 +109,14 @@ public class OHADAMappingService {
      */
     public BilanSYSCOHADA genererBilanOHADA(Map<String, BigDecimal> soldesComptes) {
         BilanSYSCOHADA bilan = new BilanSYSCOHADA();
+        PlanComptableIndex<Map.Entry<String, BigDecimal>> comptes = indexerSoldes(soldesComptes);
         
         // Affecter les valeurs selon le mapping
         for (Map.Entry<String, String[]> entry : mappingBilan.entrySet()) {
             String codePoste = entry.getKey();
             String[] patternsComptes = entry.getValue();
             
-            BigDecimal valeur = calculerValeurPoste(soldesComptes, patternsComptes);
+            BigDecimal valeur = calculerValeurPoste(comptes, patternsComptes);
             bilan.affecterValeur(codePoste, valeur, BigDecimal.ZERO); // Valeur exercice précédent à 0 pour l'instant
         }
         
@@ -129,13 +129,14 @@ public class OHADAMappingService {
      */
     public CompteResultatSYSCOHADA genererCompteResultatOHADA(Map<String, BigDecimal> soldesComptes) {
         CompteResultatSYSCOHADA compteResultat = new CompteResultatSYSCOHADA();
+        PlanComptableIndex<Map.Entry<String, BigDecimal>> comptes = indexerSoldes(soldesComptes);
         
         // Affecter les valeurs selon le mapping
         for (Map.Entry<String, String[]> entry : mappingCompteResultat.entrySet()) {
             String codePoste = entry.getKey();
             String[] patternsComptes = entry.getValue();
             
-            BigDecimal valeur = calculerValeurPoste(soldesComptes, patternsComptes);
+            BigDecimal valeur = calculerValeurPoste(comptes, patternsComptes);
             compteResultat.affecterValeur(codePoste, valeur);
         }
         
@@ -144,17 +145,22 @@ public class OHADAMappingService {
     }
     
     /**
-     * Calculer la valeur d'un poste en agrégeant les comptes correspondants
+     * Indexer les soldes par numéro de compte (une fois par état)
      */
-    private BigDecimal calculerValeurPoste(Map<String, BigDecimal> soldesComptes, String[] patterns) {
+    private PlanComptableIndex<Map.Entry<String, BigDecimal>> indexerSoldes(Map<String, BigDecimal> soldesComptes) {
+        return PlanComptableIndex.of(soldesComptes.entrySet(), Map.Entry::getKey);
+    }
+    
+    /**
+     * Calculer la valeur d'un poste en agrégeant les comptes des racines du poste
+     */
+    private BigDecimal calculerValeurPoste(PlanComptableIndex<Map.Entry<String, BigDecimal>> comptes, String[] racines) {
         BigDecimal total = BigDecimal.ZERO;
         
-        for (String pattern : patterns) {
-            for (Map.Entry<String, BigDecimal> entry : soldesComptes.entrySet()) {
-                String numeroCompte = entry.getKey();
-                BigDecimal solde = entry.getValue();
-                
-                if (correspondAuPattern(numeroCompte, pattern)) {
+        for (String racine : racines) {
+            for (int i = comptes.debut(racine), fin = comptes.fin(racine); i < fin; i++) {
+                BigDecimal solde = comptes.element(i).getValue();
+                if (solde != null) {
                     total = total.add(solde);
                 }
             }
@@ -163,15 +169,6 @@ public class OHADAMappingService {
         return total;
     }
     
-    /**
-     * Vérifier si un numéro de compte correspond à un pattern
-     */
-    private boolean correspondAuPattern(String numeroCompte, String pattern) {
-        // Convertir le pattern en regex
-        String regex = "^" + pattern.replace("%", ".*");
-        return Pattern.matches(regex, numeroCompte);
-    }
-    
     /**
      * Générer le Tableau des Flux de Trésorerie OHADA
      */
@@ -1,7 +1,6 @@
 package com.ecomptaia.service;
 
 import com.ecomptaia.entity.AccountEntry;
-import com.ecomptaia.entity.JournalEntry;
 import com.ecomptaia.model.ohada.*;
 import com.ecomptaia.repository.AccountEntryRepository;
 import com.ecomptaia.repository.JournalEntryRepository;
@@ -11,7 +10,9 @@ import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -30,24 +31,23 @@ public class OHADAReportingService {
     @Autowired
     private OHADAMappingService ohadaMappingService;
 
+    @Autowired
+    private AccountBalanceService accountBalanceService;
+
     /**
      * Générer le Grand Livre OHADA
      */
     public Map<String, Object> generateGeneralLedgerOHADA(Long companyId, LocalDate startDate, LocalDate endDate) {
         Map<String, Object> ledger = new HashMap<>();
         
-        // Récupérer toutes les écritures validées de la période
-        List<JournalEntry> entries = journalEntryRepository.findValidatedEntriesByDateRange(companyId, startDate, endDate);
+        // Lignes validées de la période en une requête, déjà triées par compte puis par date
+        long totalEntries = journalEntryRepository.countValidatedEntriesByDateRange(companyId, startDate, endDate);
         
         // Grouper par compte
-        Map<String, List<AccountEntry>> entriesByAccount = new HashMap<>();
+        Map<String, List<AccountEntry>> entriesByAccount = new LinkedHashMap<>();
         
-        for (JournalEntry entry : entries) {
-            List<AccountEntry> accountEntries = accountEntryRepository.findByJournalEntryId(entry.getId());
-            for (AccountEntry accountEntry : accountEntries) {
-                String accountNumber = accountEntry.getAccountNumber();
-                entriesByAccount.computeIfAbsent(accountNumber, k -> new java.util.ArrayList<>()).add(accountEntry);
-            }
+        for (AccountEntry accountEntry : accountEntryRepository.findValidatedLinesByDateRange(companyId, startDate, endDate)) {
+            entriesByAccount.computeIfAbsent(accountEntry.getAccountNumber(), k -> new ArrayList<>()).add(accountEntry);
         }
         
         // Calculer les soldes par compte
@@ -95,7 +95,7 @@ public class OHADAReportingService {
         ledger.put("endDate", endDate);
         ledger.put("accountsByClass", accountsByClass);
         ledger.put("totalAccounts", accountBalances.size());
-        ledger.put("totalEntries", entries.size());
+        ledger.put("totalEntries", totalEntries);
         ledger.put("generatedAt", LocalDateTime.now());
         ledger.put("standard", "OHADA/SYSCOHADA");
         
@@ -263,51 +263,19 @@ public class OHADAReportingService {
 
     // Méthodes utilitaires privées
     private Map<String, BigDecimal> getAccountBalances(Long companyId, LocalDate asOfDate) {
-        List<JournalEntry> entries = journalEntryRepository.findValidatedEntriesByDateRange(
-            companyId, LocalDate.of(1900, 1, 1), asOfDate);
-        
         Map<String, BigDecimal> accountBalances = new HashMap<>();
-        
-        for (JournalEntry entry : entries) {
-            List<AccountEntry> accountEntries = accountEntryRepository.findByJournalEntryId(entry.getId());
-            for (AccountEntry accountEntry : accountEntries) {
-                String accountNumber = accountEntry.getAccountNumber();
-                BigDecimal currentBalance = accountBalances.getOrDefault(accountNumber, BigDecimal.ZERO);
-                
-                if ("DEBIT".equals(accountEntry.getAccountType())) {
-                    currentBalance = currentBalance.add(accountEntry.getAmount());
-                } else if ("CREDIT".equals(accountEntry.getAccountType())) {
-                    currentBalance = currentBalance.subtract(accountEntry.getAmount());
-                }
-                
-                accountBalances.put(accountNumber, currentBalance);
-            }
+        for (AccountBalanceService.AccountTotals totals : accountBalanceService
+                .getBalancesAsOf(companyId, AccountBalanceService.LEDGER_JOURNAL, asOfDate).values()) {
+            accountBalances.put(totals.getAccountNumber(), totals.getSolde());
         }
-        
         return accountBalances;
     }
 
     private Map<String, BigDecimal> getAccountBalancesForPeriod(Long companyId, LocalDate startDate, LocalDate endDate) {
-        List<JournalEntry> entries = journalEntryRepository.findValidatedEntriesByDateRange(companyId, startDate, endDate);
-        
         Map<String, BigDecimal> accountBalances = new HashMap<>();
-        
-        for (JournalEntry entry : entries) {
-            List<AccountEntry> accountEntries = accountEntryRepository.findByJournalEntryId(entry.getId());
-            for (AccountEntry accountEntry : accountEntries) {
-                String accountNumber = accountEntry.getAccountNumber();
-                BigDecimal currentBalance = accountBalances.getOrDefault(accountNumber, BigDecimal.ZERO);
-                
-                if ("DEBIT".equals(accountEntry.getAccountType())) {
-                    currentBalance = currentBalance.add(accountEntry.getAmount());
-                } else if ("CREDIT".equals(accountEntry.getAccountType())) {
-                    currentBalance = currentBalance.subtract(accountEntry.getAmount());
-                }
-                
-                accountBalances.put(accountNumber, currentBalance);
-            }
+        for (Object[] row : accountEntryRepository.sumValidatedByAccountBetween(companyId, startDate, endDate)) {
+            accountBalances.put((String) row[0], ((BigDecimal) row[2]).subtract((BigDecimal) row[3]));
         }
-        
         return accountBalances;
     }
 
@@ -0,0 +1,329 @@
+package com.ecomptaia.service;
+
+import com.ecomptaia.entity.Company;
+import com.ecomptaia.entity.Employee;
+import com.ecomptaia.entity.Payroll;
+import com.ecomptaia.repository.CompanyRepository;
+import com.ecomptaia.repository.EmployeeRepository;
+import com.ecomptaia.repository.PayrollRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * Campagne de paie mensuelle d'une entreprise.
+ *
+ * Les salariés actifs et les paies déjà calculées de la période sont chargés en deux requêtes ; le pays de
+ * l'entreprise est résolu une fois. Les bulletins sont calculés en parallèle sur un pool fork-join borné avec
+ * les règles fiscales et sociales de TaxAndSocialService (mémorisées par salaire brut et type de contrat),
+ * puis insérés par lots JDBC, chaque lot dans sa transaction.
+ *
+ * Le code d'un bulletin (PAY-entreprise-AAAAMM-salarié) est déterministe et unique : relancer une campagne
+ * interrompue ne calcule que les salariés restants, et une campagne terminée ne crée rien.
+ */
+@Service
+public class PayrollRunService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PayrollRunService.class);
+
+    static final String INSERT_SQL = "INSERT INTO payrolls (payroll_code, employee_id, company_id, entreprise_id, "
+        + "month, year, pay_period, pay_date, period_start_date, period_end_date, base_salary, gross_salary, "
+        + "income_tax, social_security_tax, social_charges, net_salary, status, currency, payroll_status, "
+        + "created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Codes pays ISO vers les libellés attendus par TaxAndSocialService
+    private static final Map<String, String> PAYS = Map.ofEntries(
+        Map.entry("FR", "FRANCE"), Map.entry("CM", "CAMEROUN"), Map.entry("SN", "SENEGAL"),
+        Map.entry("CI", "COTE D'IVOIRE"), Map.entry("BJ", "BENIN"), Map.entry("BF", "BURKINA FASO"),
+        Map.entry("CF", "CENTRAFRIQUE"), Map.entry("KM", "COMORES"), Map.entry("CG", "CONGO"),
+        Map.entry("GA", "GABON"), Map.entry("GN", "GUINEE"), Map.entry("GW", "GUINEE BISSAU"),
+        Map.entry("GQ", "GUINEE EQUATORIALE"), Map.entry("ML", "MALI"), Map.entry("NE", "NIGER"),
+        Map.entry("CD", "RD CONGO"), Map.entry("TD", "TCHAD"), Map.entry("TG", "TOGO"),
+        Map.entry("US", "USA"), Map.entry("CA", "CANADA"), Map.entry("DE", "ALLEMAGNE"),
+        Map.entry("BE", "BELGIQUE"), Map.entry("CH", "SUISSE"), Map.entry("LU", "LUXEMBOURG"),
+        Map.entry("MA", "MAROC"), Map.entry("TN", "TUNISIE"), Map.entry("DZ", "ALGERIE"),
+        Map.entry("EG", "EGYPTE"), Map.entry("NG", "NIGERIA"));
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    @Autowired
+    private PayrollRepository payrollRepository;
+
+    @Autowired
+    private CompanyRepository companyRepository;
+
+    @Autowired
+    private TaxAndSocialService taxAndSocialService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.payroll.parallelisme:4}")
+    private int parallelisme = 4;
+
+    @Value("${app.payroll.batch-size:500}")
+    private int tailleLot = 500;
+
+    private final Set<String> campagnesEnCours = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Calculer et enregistrer les bulletins du mois pour tous les salariés actifs de l'entreprise
+     */
+    public Map<String, Object> executer(Long companyId, int year, int month) {
+        long debut = System.nanoTime();
+        YearMonth periode = YearMonth.of(year, month);
+        Company entreprise = companyRepository.findById(companyId)
+            .orElseThrow(() -> new RuntimeException("Entreprise non trouvée"));
+        String cle = companyId + "-" + periode;
+        if (!campagnesEnCours.add(cle)) {
+            throw new RuntimeException("Campagne de paie " + periode + " déjà en cours pour l'entreprise " + companyId);
+        }
+        try {
+            String pays = pays(entreprise);
+            Set<Long> dejaCalcules = new HashSet<>(payrollRepository.findEmployeeIdsByCompanyAndPeriod(companyId, year, month));
+            List<Employee> aCalculer = new ArrayList<>();
+            int horsPeriode = 0;
+            for (Employee employee : employeeRepository.findByCompanyIdAndIsActiveTrue(companyId)) {
+                if (dejaCalcules.contains(employee.getId())) {
+                    continue;
+                }
+                if (!present(employee, periode)) {
+                    horsPeriode++;
+                    continue;
+                }
+                aCalculer.add(employee);
+            }
+
+            Map<Bareme, Retenues> memo = new ConcurrentHashMap<>();
+            List<Object> calcules = calculer(aCalculer, entreprise, pays, periode, memo);
+            List<Payroll> bulletins = new ArrayList<>(calcules.size());
+            List<Map<String, Object>> anomalies = new ArrayList<>();
+            for (Object calcul : calcules) {
+                if (calcul instanceof Payroll payroll) {
+                    bulletins.add(payroll);
+                } else {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> anomalie = (Map<String, Object>) calcul;
+                    anomalies.add(anomalie);
+                }
+            }
+
+            long calculNanos = System.nanoTime() - debut;
+            int crees = 0;
+            for (int i = 0; i < bulletins.size(); i += tailleLot) {
+                List<Payroll> lot = bulletins.subList(i, Math.min(bulletins.size(), i + tailleLot));
+                try {
+                    new TransactionTemplate(transactionManager).executeWithoutResult(status -> inserer(lot));
+                    crees += lot.size();
+                } catch (DataAccessException e) {
+                    // Lot concurrent ou contrainte violée : la relance reprendra les salariés de ce lot
+                    logger.warn("Paie {} entreprise {} : lot {} en échec : {}", periode, companyId, i / tailleLot,
+                        e.getMostSpecificCause().getMessage());
+                    Map<String, Object> anomalie = new LinkedHashMap<>();
+                    anomalie.put("lot", i / tailleLot);
+                    anomalie.put("bulletins", lot.size());
+                    anomalie.put("erreur", e.getMostSpecificCause().getMessage());
+                    anomalies.add(anomalie);
+                }
+            }
+
+            long dureeNanos = System.nanoTime() - debut;
+            Map<String, Object> resultat = new LinkedHashMap<>();
+            resultat.put("entrepriseId", companyId);
+            resultat.put("periode", periode.toString());
+            resultat.put("pays", pays);
+            resultat.put("dejaCalcules", dejaCalcules.size());
+            resultat.put("horsPeriode", horsPeriode);
+            resultat.put("bulletinsCrees", crees);
+            resultat.put("anomalies", anomalies);
+            resultat.put("baremesDistincts", memo.size());
+            resultat.put("statut", crees == bulletins.size() && anomalies.isEmpty() ? "TERMINEE" : "PARTIELLE");
+            resultat.put("calculMs", calculNanos / 1_000_000);
+            resultat.put("dureeMs", dureeNanos / 1_000_000);
+            resultat.put("bulletinsParSeconde", dureeNanos > 0 ? Math.round(crees * 1e9 / dureeNanos) : 0);
+            return resultat;
+        } finally {
+            campagnesEnCours.remove(cle);
+        }
+    }
+
+    /**
+     * Bulletin d'un salarié pour le mois, non enregistré
+     */
+    public Payroll calculerBulletin(Employee employee, Company entreprise, YearMonth periode) {
+        Object calcul = calculer(employee, entreprise, pays(entreprise), periode, new HashMap<>());
+        if (calcul instanceof Payroll payroll) {
+            return payroll;
+        }
+        throw new RuntimeException(String.valueOf(((Map<?, ?>) calcul).get("erreur")));
+    }
+
+    private List<Object> calculer(List<Employee> employees, Company entreprise, String pays, YearMonth periode,
+                                  Map<Bareme, Retenues> memo) {
+        int threads = Math.max(1, Math.min(parallelisme, employees.size()));
+        if (threads == 1) {
+            return employees.stream().map(e -> calculer(e, entreprise, pays, periode, memo)).collect(Collectors.toList());
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return pool.submit(() -> employees.parallelStream()
+                .map(e -> calculer(e, entreprise, pays, periode, memo))
+                .collect(Collectors.toList())).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Campagne de paie interrompue");
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Erreur lors du calcul de la paie: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Bulletin calculé, ou anomalie (Map) si le salarié n'a pas de salaire de base ou si le calcul échoue
+     */
+    private Object calculer(Employee employee, Company entreprise, String pays, YearMonth periode,
+                            Map<Bareme, Retenues> memo) {
+        BigDecimal brut = employee.getBaseSalary();
+        if (brut == null || brut.signum() <= 0) {
+            return anomalie(employee, "Salaire de base absent");
+        }
+        String typeContrat = employee.getContractType() != null ? employee.getContractType().name() : "CDI";
+        Retenues retenues;
+        try {
+            retenues = memo.computeIfAbsent(new Bareme(brut.setScale(2, RoundingMode.HALF_UP), typeContrat),
+                bareme -> retenues(pays, bareme, periode.atEndOfMonth(), entreprise.getBusinessType()));
+        } catch (RuntimeException e) {
+            return anomalie(employee, e.getMessage());
+        }
+
+        LocalDateTime maintenant = LocalDateTime.now();
+        Payroll payroll = new Payroll();
+        payroll.setPayrollCode(code(entreprise.getId(), periode, employee.getId()));
+        payroll.setEmployeeId(employee.getId());
+        payroll.setCompanyId(entreprise.getId());
+        payroll.setEntrepriseId(employee.getEntrepriseId() != null ? employee.getEntrepriseId() : entreprise.getId());
+        payroll.setMonth(periode.getMonthValue());
+        payroll.setYear(periode.getYear());
+        payroll.setPayPeriod(Payroll.PayPeriod.MONTHLY);
+        payroll.setPayDate(periode.atEndOfMonth());
+        payroll.setPeriodStartDate(periode.atDay(1));
+        payroll.setPeriodEndDate(periode.atEndOfMonth());
+        payroll.setBaseSalary(brut);
+        payroll.setGrossSalary(retenues.brut());
+        payroll.setIncomeTax(retenues.impot());
+        payroll.setSocialSecurityTax(retenues.chargesSalariales());
+        payroll.setSocialCharges(retenues.chargesSalariales());
+        payroll.setNetSalary(retenues.net());
+        payroll.setStatus("CALCULATED");
+        payroll.setPayrollStatus(Payroll.PayrollStatus.DRAFT);
+        payroll.setCurrency(employee.getSalaryCurrency() != null ? employee.getSalaryCurrency()
+            : entreprise.getCurrency() != null ? entreprise.getCurrency() : "XOF");
+        payroll.setCreatedAt(maintenant);
+        payroll.setUpdatedAt(maintenant);
+        return payroll;
+    }
+
+    private Retenues retenues(String pays, Bareme bareme, LocalDate date, String secteur) {
+        Map<String, Object> impot = taxAndSocialService.calculateSalaryTaxes(pays, bareme.brut(), bareme.typeContrat(),
+            date, false, 0);
+        Map<String, Object> social = taxAndSocialService.calculateSocialCharges(pays, bareme.brut(), bareme.typeContrat(),
+            date, secteur);
+        if (!"SUCCESS".equals(impot.get("status")) || !"SUCCESS".equals(social.get("status"))) {
+            throw new RuntimeException(String.valueOf(impot.getOrDefault("error", social.get("error"))));
+        }
+        BigDecimal montantImpot = montant(impot.get("taxCalculation"), "taxAmount");
+        BigDecimal chargesSalariales = montant(social.get("socialCalculation"), "employeeCharges");
+        return new Retenues(bareme.brut(), montantImpot, chargesSalariales,
+            bareme.brut().subtract(montantImpot).subtract(chargesSalariales));
+    }
+
+    private static BigDecimal montant(Object calcul, String cle) {
+        Object valeur = calcul instanceof Map<?, ?> map ? map.get(cle) : null;
+        return valeur instanceof BigDecimal montant ? montant.setScale(2, RoundingMode.HALF_UP) : BigDecimal.ZERO.setScale(2);
+    }
+
+    private void inserer(List<Payroll> lot) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, lot, lot.size(), (ps, p) -> {
+            ps.setString(1, p.getPayrollCode());
+            ps.setLong(2, p.getEmployeeId());
+            ps.setLong(3, p.getCompanyId());
+            ps.setLong(4, p.getEntrepriseId());
+            ps.setInt(5, p.getMonth());
+            ps.setInt(6, p.getYear());
+            ps.setString(7, p.getPayPeriod().name());
+            ps.setDate(8, Date.valueOf(p.getPayDate()));
+            ps.setDate(9, Date.valueOf(p.getPeriodStartDate()));
+            ps.setDate(10, Date.valueOf(p.getPeriodEndDate()));
+            ps.setBigDecimal(11, p.getBaseSalary());
+            ps.setBigDecimal(12, p.getGrossSalary());
+            ps.setBigDecimal(13, p.getIncomeTax());
+            ps.setBigDecimal(14, p.getSocialSecurityTax());
+            ps.setBigDecimal(15, p.getSocialCharges());
+            ps.setBigDecimal(16, p.getNetSalary());
+            ps.setString(17, p.getStatus());
+            ps.setString(18, p.getCurrency());
+            ps.setString(19, p.getPayrollStatus().name());
+            ps.setTimestamp(20, Timestamp.valueOf(p.getCreatedAt()));
+            ps.setTimestamp(21, Timestamp.valueOf(p.getUpdatedAt()));
+        });
+    }
+
+    private static boolean present(Employee employee, YearMonth periode) {
+        LocalDate embauche = employee.getHireDate();
+        LocalDate depart = employee.getTerminationDate();
+        return (embauche == null || !embauche.isAfter(periode.atEndOfMonth()))
+            && (depart == null || !depart.isBefore(periode.atDay(1)));
+    }
+
+    private static Map<String, Object> anomalie(Employee employee, String erreur) {
+        Map<String, Object> anomalie = new LinkedHashMap<>();
+        anomalie.put("employeeId", employee.getId());
+        anomalie.put("erreur", erreur);
+        return anomalie;
+    }
+
+    static String code(Long companyId, YearMonth periode, Long employeeId) {
+        return String.format("PAY-%d-%04d%02d-%d", companyId, periode.getYear(), periode.getMonthValue(), employeeId);
+    }
+
+    static String pays(Company entreprise) {
+        String code = entreprise.getCountryCode() != null ? entreprise.getCountryCode().toUpperCase() : null;
+        if (code != null && PAYS.containsKey(code)) {
+            return PAYS.get(code);
+        }
+        if (entreprise.getCountryName() != null && !entreprise.getCountryName().isBlank()) {
+            return entreprise.getCountryName();
+        }
+        return code != null ? code : "GENERIQUE";
+    }
+
+    private record Bareme(BigDecimal brut, String typeContrat) {
+    }
+
+    private record Retenues(BigDecimal brut, BigDecimal impot, BigDecimal chargesSalariales, BigDecimal net) {
+    }
+}
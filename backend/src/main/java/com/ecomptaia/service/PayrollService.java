@@ -1,7 +1,9 @@
 package com.ecomptaia.service;
 
+import com.ecomptaia.entity.Company;
 import com.ecomptaia.entity.Employee;
 import com.ecomptaia.entity.Payroll;
+import com.ecomptaia.repository.CompanyRepository;
 import com.ecomptaia.repository.EmployeeRepository;
 import com.ecomptaia.repository.PayrollRepository;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,7 +12,9 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -26,8 +30,14 @@ public class PayrollService {
     @Autowired
     private EmployeeRepository employeeRepository;
 
+    @Autowired
+    private CompanyRepository companyRepository;
+
+    @Autowired
+    private PayrollRunService payrollRunService;
+
     /**
-     * Calculer la paie d'un employé
+     * Calculer la paie d'un employé (mêmes règles par pays que la campagne de paie mensuelle)
      */
     public Payroll calculatePayroll(Long employeeId, Integer month, Integer year) {
         Optional<Employee> employeeOpt = employeeRepository.findById(employeeId);
@@ -36,38 +46,20 @@ public class PayrollService {
         }
 
         Employee employee = employeeOpt.get();
-        Payroll payroll = new Payroll();
-        
-        payroll.setEmployeeId(employeeId);
-        payroll.setMonth(month);
-        payroll.setYear(year);
-        payroll.setBaseSalary(employee.getBaseSalary());
-        
-        // Calculs de base
-        BigDecimal baseSalary = employee.getBaseSalary();
-        BigDecimal grossSalary = baseSalary;
-        
-        // Calcul des charges sociales (exemple: 20% du salaire brut)
-        BigDecimal socialCharges = baseSalary.multiply(new BigDecimal("0.20"));
-        
-        // Calcul de l'impôt sur le revenu (exemple: 10% du salaire brut)
-        BigDecimal incomeTax = baseSalary.multiply(new BigDecimal("0.10"));
-        
-        // Calcul du salaire net
-        BigDecimal netSalary = grossSalary.subtract(socialCharges).subtract(incomeTax);
-        
-        payroll.setGrossSalary(grossSalary);
-        payroll.setSocialCharges(socialCharges);
-        payroll.setIncomeTax(incomeTax);
-        payroll.setNetSalary(netSalary);
-        payroll.setCurrency(employee.getSalaryCurrency());
-        payroll.setStatus("CALCULATED");
-        payroll.setCreatedAt(LocalDateTime.now());
-        payroll.setUpdatedAt(LocalDateTime.now());
+        Company entreprise = companyRepository.findById(employee.getCompanyId())
+            .orElseThrow(() -> new RuntimeException("Entreprise non trouvée"));
+        Payroll payroll = payrollRunService.calculerBulletin(employee, entreprise, YearMonth.of(year, month));
         
         return payrollRepository.save(payroll);
     }
 
+    /**
+     * Calculer et enregistrer les paies du mois de tous les employés actifs d'une entreprise
+     */
+    public Map<String, Object> runPayroll(Long companyId, Integer month, Integer year) {
+        return payrollRunService.executer(companyId, year, month);
+    }
+
     /**
      * Valider une paie
      */
@@ -1,6 +1,11 @@
 package com.ecomptaia.service;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 
@@ -10,49 +15,122 @@ import java.lang.management.ThreadMXBean;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
 
 @Service
 public class PerformanceService {
 
+    /**
+     * Série regroupant les requêtes au-delà du nombre maximal de séries par dimension
+     */
+    static final String AUTRES = "_autres";
+
+    private static final double[] CENTILES = {0.5, 0.95, 0.99, 0.999};
+
     @Autowired
     private CacheManager cacheManager;
 
-    // Métriques de performance
-    private final Map<String, AtomicLong> requestCounters = new ConcurrentHashMap<>();
-    private final Map<String, AtomicLong> responseTimeCounters = new ConcurrentHashMap<>();
-    private final Map<String, List<Long>> responseTimeHistory = new ConcurrentHashMap<>();
-    private final Map<String, AtomicLong> errorCounters = new ConcurrentHashMap<>();
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.performance.histogram.slice-seconds:10}")
+    private long dureeTrancheSecondes = 10;
+
+    @Value("${app.performance.histogram.window-seconds:60}")
+    private long fenetreSecondes = 60;
+
+    @Value("${app.performance.histogram.stripes:4}")
+    private int bandes = 4;
+
+    @Value("${app.performance.histogram.max-series:500}")
+    private int maxSeries = 500;
+
+    private LongSupplier horloge = System::currentTimeMillis;
+
+    // Métriques de performance : une série par endpoint et une par entreprise
+    private final Map<String, Serie> endpoints = new ConcurrentHashMap<>();
+    private final Map<String, Serie> entreprises = new ConcurrentHashMap<>();
 
     // ==================== MÉTRIQUES DE BASE ====================
 
+    /**
+     * Enregistrer une requête terminée : compteur, latence et erreur éventuelle, pour l'endpoint et l'entreprise
+     */
+    public void enregistrer(String endpoint, String entrepriseId, long dureeNanos, boolean erreur) {
+        long maintenant = horloge.getAsLong();
+        long micros = dureeNanos / 1_000;
+        serie(endpoints, endpoint, "endpoint").enregistrer(micros, maintenant, erreur);
+        if (entrepriseId != null && !entrepriseId.isEmpty()) {
+            serie(entreprises, entrepriseId, "entreprise").enregistrer(micros, maintenant, erreur);
+        }
+    }
+
     /**
      * Enregistrer une requête
      */
     public void recordRequest(String endpoint) {
-        requestCounters.computeIfAbsent(endpoint, k -> new AtomicLong(0)).incrementAndGet();
+        serie(endpoints, endpoint, "endpoint").requetes.increment();
     }
 
     /**
      * Enregistrer le temps de réponse
      */
     public void recordResponseTime(String endpoint, long responseTimeMs) {
-        responseTimeCounters.computeIfAbsent(endpoint, k -> new AtomicLong(0)).addAndGet(responseTimeMs);
-        
-        responseTimeHistory.computeIfAbsent(endpoint, k -> new ArrayList<>()).add(responseTimeMs);
-        
-        // Garder seulement les 100 dernières mesures
-        List<Long> history = responseTimeHistory.get(endpoint);
-        if (history.size() > 100) {
-            history.remove(0);
-        }
+        serie(endpoints, endpoint, "endpoint").histogramme.enregistrer(responseTimeMs * 1_000, horloge.getAsLong());
     }
 
     /**
      * Enregistrer une erreur
      */
     public void recordError(String endpoint) {
-        errorCounters.computeIfAbsent(endpoint, k -> new AtomicLong(0)).incrementAndGet();
+        serie(endpoints, endpoint, "endpoint").erreurs.increment();
+    }
+
+    /**
+     * Instantané des latences d'un endpoint sur la fenêtre glissante, ou null si l'endpoint est inconnu
+     */
+    public LatencyHistogram.Instantane getInstantane(String endpoint) {
+        Serie serie = endpoints.get(endpoint);
+        return serie == null ? null : serie.instantane(horloge.getAsLong());
+    }
+
+    /**
+     * Instantané des latences d'une entreprise sur la fenêtre glissante, ou null si l'entreprise est inconnue
+     */
+    public LatencyHistogram.Instantane getInstantaneEntreprise(String entrepriseId) {
+        Serie serie = entreprises.get(entrepriseId);
+        return serie == null ? null : serie.instantane(horloge.getAsLong());
+    }
+
+    private Serie serie(Map<String, Serie> series, String cle, String dimension) {
+        Serie serie = series.get(cle);
+        if (serie != null) {
+            return serie;
+        }
+        String retenue = series.size() < maxSeries ? cle : AUTRES;
+        return series.computeIfAbsent(retenue, k -> creerSerie(k, dimension));
+    }
+
+    private Serie creerSerie(String cle, String dimension) {
+        long dureeTrancheMs = dureeTrancheSecondes * 1_000;
+        int tranches = (int) Math.max(1, (fenetreSecondes + dureeTrancheSecondes - 1) / dureeTrancheSecondes);
+        Serie serie = new Serie(new LatencyHistogram(dureeTrancheMs, tranches, bandes), horloge);
+        if (meterRegistry != null) {
+            String prefixe = "endpoint".equals(dimension) ? "http.endpoint" : "http.tenant";
+            for (double q : CENTILES) {
+                serie.meters.add(Gauge.builder(prefixe + ".latency", serie, s -> s.centileMs(q))
+                    .tag(dimension, cle).tag("quantile", String.valueOf(q)).baseUnit("milliseconds")
+                    .description("Latence sur la fenêtre glissante").register(meterRegistry));
+            }
+            serie.meters.add(FunctionCounter.builder(prefixe + ".requests", serie, Serie::getRequetes)
+                .tag(dimension, cle).register(meterRegistry));
+            serie.meters.add(FunctionCounter.builder(prefixe + ".errors", serie, s -> s.erreurs.sum())
+                .tag(dimension, cle).register(meterRegistry));
+            serie.meters.add(FunctionCounter.builder(prefixe + ".latency.sum", serie.histogramme, h -> h.getSommeTotale() / 1_000.0)
+                .tag(dimension, cle).baseUnit("milliseconds").register(meterRegistry));
+        }
+        return serie;
     }
 
     // ==================== STATISTIQUES DE PERFORMANCE ====================
@@ -68,6 +146,7 @@ public class PerformanceService {
         stats.put("memoryInfo", getMemoryInfo());
         stats.put("threadInfo", getThreadInfo());
         stats.put("endpointStats", getEndpointStats());
+        stats.put("tenantStats", getTenantStats());
         stats.put("cacheStats", getCacheStats());
         
         return stats;
@@ -141,39 +220,51 @@ public class PerformanceService {
      * Obtenir les statistiques par endpoint
      */
     public Map<String, Object> getEndpointStats() {
+        return statistiques(endpoints);
+    }
+
+    /**
+     * Obtenir les statistiques par entreprise
+     */
+    public Map<String, Object> getTenantStats() {
+        return statistiques(entreprises);
+    }
+
+    private Map<String, Object> statistiques(Map<String, Serie> series) {
         Map<String, Object> endpointStats = new HashMap<>();
+        long maintenant = horloge.getAsLong();
         
-        for (String endpoint : requestCounters.keySet()) {
+        for (Map.Entry<String, Serie> entry : series.entrySet()) {
             Map<String, Object> stats = new HashMap<>();
+            Serie serie = entry.getValue();
             
-            long requestCount = requestCounters.get(endpoint).get();
-            long totalResponseTime = responseTimeCounters.get(endpoint).get();
-            long errorCount = errorCounters.getOrDefault(endpoint, new AtomicLong(0)).get();
+            long requestCount = serie.getRequetes();
+            long errorCount = serie.erreurs.sum();
             
             stats.put("requestCount", requestCount);
             stats.put("errorCount", errorCount);
             stats.put("successRate", requestCount > 0 ? 
                 String.format("%.2f%%", ((double)(requestCount - errorCount) / requestCount) * 100) : "0%");
             
-            if (requestCount > 0) {
-                double avgResponseTime = (double) totalResponseTime / requestCount;
+            if (serie.histogramme.getTotal() > 0) {
+                double avgResponseTime = serie.histogramme.getSommeTotale() / 1_000.0 / serie.histogramme.getTotal();
                 stats.put("averageResponseTime", String.format("%.2f ms", avgResponseTime));
             }
             
-            // Calculer les percentiles
-            List<Long> history = responseTimeHistory.get(endpoint);
-            if (history != null && !history.isEmpty()) {
-                List<Long> sortedHistory = new ArrayList<>(history);
-                Collections.sort(sortedHistory);
-                
-                stats.put("minResponseTime", sortedHistory.get(0) + " ms");
-                stats.put("maxResponseTime", sortedHistory.get(sortedHistory.size() - 1) + " ms");
-                stats.put("medianResponseTime", calculatePercentile(sortedHistory, 50) + " ms");
-                stats.put("p95ResponseTime", calculatePercentile(sortedHistory, 95) + " ms");
-                stats.put("p99ResponseTime", calculatePercentile(sortedHistory, 99) + " ms");
+            // Centiles sur la fenêtre glissante
+            LatencyHistogram.Instantane instantane = serie.instantane(maintenant);
+            stats.put("windowSeconds", serie.histogramme.getFenetreMs() / 1_000);
+            stats.put("windowCount", instantane.getNombre());
+            if (instantane.getNombre() > 0) {
+                stats.put("minResponseTime", formatMicros(instantane.getMin()));
+                stats.put("maxResponseTime", formatMicros(instantane.getMax()));
+                stats.put("medianResponseTime", formatMicros(instantane.centile(0.5)));
+                stats.put("p95ResponseTime", formatMicros(instantane.centile(0.95)));
+                stats.put("p99ResponseTime", formatMicros(instantane.centile(0.99)));
+                stats.put("p999ResponseTime", formatMicros(instantane.centile(0.999)));
             }
             
-            endpointStats.put(endpoint, stats);
+            endpointStats.put(entry.getKey(), stats);
         }
         
         return endpointStats;
@@ -243,13 +334,15 @@ public class PerformanceService {
         List<Map<String, Object>> slowEndpoints = new ArrayList<>();
         List<Map<String, Object>> errorProneEndpoints = new ArrayList<>();
         
-        for (String endpoint : requestCounters.keySet()) {
-            long requestCount = requestCounters.get(endpoint).get();
-            long totalResponseTime = responseTimeCounters.get(endpoint).get();
-            long errorCount = errorCounters.getOrDefault(endpoint, new AtomicLong(0)).get();
+        for (Map.Entry<String, Serie> entry : endpoints.entrySet()) {
+            String endpoint = entry.getKey();
+            Serie serie = entry.getValue();
+            long requestCount = serie.getRequetes();
+            long errorCount = serie.erreurs.sum();
             
             if (requestCount > 0) {
-                double avgResponseTime = (double) totalResponseTime / requestCount;
+                double avgResponseTime = serie.histogramme.getTotal() > 0
+                    ? serie.histogramme.getSommeTotale() / 1_000.0 / serie.histogramme.getTotal() : 0;
                 double errorRate = (double) errorCount / requestCount;
                 
                 // Endpoints lents (> 1000ms en moyenne)
@@ -293,13 +386,10 @@ public class PerformanceService {
     }
 
     /**
-     * Calculer un percentile
+     * Formater une durée en microsecondes en millisecondes
      */
-    private long calculatePercentile(List<Long> values, int percentile) {
-        if (values.isEmpty()) return 0;
-        
-        int index = (int) Math.ceil((percentile / 100.0) * values.size()) - 1;
-        return values.get(Math.max(0, index));
+    private String formatMicros(long micros) {
+        return String.format("%.2f ms", micros / 1_000.0);
     }
 
     /**
@@ -332,10 +422,12 @@ public class PerformanceService {
      * Réinitialiser les métriques
      */
     public void resetMetrics() {
-        requestCounters.clear();
-        responseTimeCounters.clear();
-        responseTimeHistory.clear();
-        errorCounters.clear();
+        for (Map<String, Serie> series : List.of(endpoints, entreprises)) {
+            if (meterRegistry != null) {
+                series.values().forEach(serie -> serie.meters.forEach(meterRegistry::remove));
+            }
+            series.clear();
+        }
     }
 
     /**
@@ -360,11 +452,53 @@ public class PerformanceService {
         
         return testData;
     }
-}
-
-
 
+    /**
+     * Compteurs et histogramme d'une série. Le nombre de requêtes est celui enregistré explicitement
+     * (recordRequest) ou, à défaut, le nombre de latences mesurées. Les jauges exportées relisent un
+     * instantané mis en cache une seconde pour ne pas refusionner l'histogramme à chaque centile.
+     */
+    private static final class Serie {
+
+        final LatencyHistogram histogramme;
+        final LongAdder requetes = new LongAdder();
+        final LongAdder erreurs = new LongAdder();
+        final List<Meter> meters = new ArrayList<>();
+        private final LongSupplier horloge;
+        private volatile LatencyHistogram.Instantane dernier;
+        private volatile long dernierInstant = Long.MIN_VALUE;
+
+        Serie(LatencyHistogram histogramme, LongSupplier horloge) {
+            this.histogramme = histogramme;
+            this.horloge = horloge;
+        }
 
+        void enregistrer(long micros, long maintenant, boolean erreur) {
+            requetes.increment();
+            histogramme.enregistrer(micros, maintenant);
+            if (erreur) {
+                erreurs.increment();
+            }
+        }
 
+        long getRequetes() {
+            return Math.max(requetes.sum(), histogramme.getTotal());
+        }
 
+        LatencyHistogram.Instantane instantane(long maintenant) {
+            LatencyHistogram.Instantane instantane = histogramme.instantane(maintenant);
+            dernier = instantane;
+            dernierInstant = maintenant;
+            return instantane;
+        }
 
+        double centileMs(double q) {
+            long maintenant = horloge.getAsLong();
+            LatencyHistogram.Instantane instantane = dernier;
+            if (instantane == null || maintenant - dernierInstant >= 1_000 || maintenant < dernierInstant) {
+                instantane = instantane(maintenant);
+            }
+            return instantane.centile(q) / 1_000.0;
+        }
+    }
+}
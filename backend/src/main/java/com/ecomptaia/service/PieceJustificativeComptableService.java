@@ -50,6 +50,9 @@ public class PieceJustificativeComptableService {
     
     @Autowired
     private EcritureComptableRepository ecritureRepository;
+
+    @Autowired
+    private AccountBalanceService accountBalanceService;
     
     
     @Autowired
@@ -403,6 +406,9 @@ public class PieceJustificativeComptableService {
             // Sauvegarder l'écriture
             ecriture = ecritureRepository.save(ecriture);
             
+            // Écriture créée validée : ses lignes entrent dans les cumuls de soldes
+            accountBalanceService.comptabiliserEcriture(ecriture);
+            
             // Mettre à jour la PJ
             pj.setValidatedBy(user);
             pj.setDateValidation(LocalDateTime.now());
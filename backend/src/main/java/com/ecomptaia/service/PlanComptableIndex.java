@@ -0,0 +1,219 @@
+package com.ecomptaia.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Index en mémoire d'un plan de comptes, trié par numéro de compte.
+ *
+ * Les recherches par racine ("411") et par motif ("411%", "6%", "44_1%") se font par recherche
+ * dichotomique sur la partie fixe du motif (O(log n)), puis parcours de la seule plage concernée ;
+ * la comparaison de motif ne crée aucun objet (pas d'expression régulière).
+ *
+ * L'index est immuable : il est reconstruit après création ou modification d'un compte.
+ */
+public final class PlanComptableIndex<T> {
+
+    private final String[] numeros;
+    private final Object[] elements;
+
+    private PlanComptableIndex(String[] numeros, Object[] elements) {
+        this.numeros = numeros;
+        this.elements = elements;
+    }
+
+    /**
+     * Construire l'index ; les éléments sans numéro sont ignorés
+     */
+    public static <T> PlanComptableIndex<T> of(Collection<? extends T> comptes, Function<? super T, String> numero) {
+        List<T> tries = new ArrayList<>(comptes.size());
+        for (T compte : comptes) {
+            if (compte != null && numero.apply(compte) != null) {
+                tries.add(compte);
+            }
+        }
+        tries.sort(Comparator.comparing(numero));
+
+        String[] numeros = new String[tries.size()];
+        Object[] elements = new Object[tries.size()];
+        for (int i = 0; i < tries.size(); i++) {
+            numeros[i] = numero.apply(tries.get(i));
+            elements[i] = tries.get(i);
+        }
+        return new PlanComptableIndex<>(numeros, elements);
+    }
+
+    public int taille() {
+        return numeros.length;
+    }
+
+    public String numero(int position) {
+        return numeros[position];
+    }
+
+    @SuppressWarnings("unchecked")
+    public T element(int position) {
+        return (T) elements[position];
+    }
+
+    // ==================== RACINES ====================
+
+    /**
+     * Première position dont le numéro commence par la racine (ou lui succède)
+     */
+    public int debut(String racine) {
+        return debut(racine, racine.length());
+    }
+
+    /**
+     * Position suivant le dernier numéro commençant par la racine
+     */
+    public int fin(String racine) {
+        return fin(racine, racine.length());
+    }
+
+    /**
+     * Comptes dont le numéro commence par la racine, dans l'ordre des numéros (vue sans copie)
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> parRacine(String racine) {
+        int debut = debut(racine);
+        int fin = fin(racine);
+        if (debut >= fin) {
+            return Collections.emptyList();
+        }
+        return (List<T>) Collections.unmodifiableList(Arrays.asList(elements).subList(debut, fin));
+    }
+
+    // ==================== MOTIFS ====================
+
+    /**
+     * Premier compte correspondant au motif, ou null
+     */
+    public T premier(String motif) {
+        int fixe = longueurFixe(motif);
+        for (int i = debut(motif, fixe), fin = fin(motif, fixe); i < fin; i++) {
+            if (correspond(numeros[i], motif)) {
+                return element(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Tous les comptes correspondant au motif, dans l'ordre des numéros
+     */
+    public List<T> rechercher(String motif) {
+        List<T> resultat = new ArrayList<>();
+        parcourir(motif, resultat::add);
+        return resultat;
+    }
+
+    /**
+     * Appliquer une action à chaque compte correspondant au motif
+     */
+    public void parcourir(String motif, Consumer<? super T> action) {
+        int fixe = longueurFixe(motif);
+        for (int i = debut(motif, fixe), fin = fin(motif, fixe); i < fin; i++) {
+            if (correspond(numeros[i], motif)) {
+                action.accept(element(i));
+            }
+        }
+    }
+
+    /**
+     * Motif de type SQL LIKE, ancré au début et à la fin : '%' = toute suite de caractères,
+     * '_' = un caractère. Exemples : "411%" (racine 411), "6%" (classe 6), "401" (compte 401 seul).
+     */
+    public static boolean correspond(String numero, String motif) {
+        if (numero == null || motif == null) {
+            return false;
+        }
+        int n = 0;
+        int m = 0;
+        int etoile = -1;
+        int reprise = 0;
+        while (n < numero.length()) {
+            if (m < motif.length() && (motif.charAt(m) == '_' || motif.charAt(m) == numero.charAt(n))) {
+                n++;
+                m++;
+            } else if (m < motif.length() && motif.charAt(m) == '%') {
+                etoile = m++;
+                reprise = n;
+            } else if (etoile >= 0) {
+                m = etoile + 1;
+                n = ++reprise;
+            } else {
+                return false;
+            }
+        }
+        while (m < motif.length() && motif.charAt(m) == '%') {
+            m++;
+        }
+        return m == motif.length();
+    }
+
+    /**
+     * Longueur de la partie fixe du motif (avant le premier joker)
+     */
+    static int longueurFixe(String motif) {
+        for (int i = 0; i < motif.length(); i++) {
+            char c = motif.charAt(i);
+            if (c == '%' || c == '_') {
+                return i;
+            }
+        }
+        return motif.length();
+    }
+
+    // ==================== RECHERCHE DICHOTOMIQUE ====================
+
+    private int debut(String racine, int longueur) {
+        int bas = 0;
+        int haut = numeros.length;
+        while (bas < haut) {
+            int milieu = (bas + haut) >>> 1;
+            if (comparerRacine(numeros[milieu], racine, longueur) < 0) {
+                bas = milieu + 1;
+            } else {
+                haut = milieu;
+            }
+        }
+        return bas;
+    }
+
+    private int fin(String racine, int longueur) {
+        int bas = 0;
+        int haut = numeros.length;
+        while (bas < haut) {
+            int milieu = (bas + haut) >>> 1;
+            if (comparerRacine(numeros[milieu], racine, longueur) <= 0) {
+                bas = milieu + 1;
+            } else {
+                haut = milieu;
+            }
+        }
+        return bas;
+    }
+
+    /**
+     * Comparer un numéro aux longueur premiers caractères de la racine :
+     * 0 si le numéro commence par la racine, sinon l'ordre lexicographique
+     */
+    private static int comparerRacine(String numero, String racine, int longueur) {
+        int commun = Math.min(numero.length(), longueur);
+        for (int i = 0; i < commun; i++) {
+            int difference = numero.charAt(i) - racine.charAt(i);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return numero.length() >= longueur ? 0 : -1;
+    }
+}
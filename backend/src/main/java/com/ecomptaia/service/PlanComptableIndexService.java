@@ -0,0 +1,138 @@
+package com.ecomptaia.service;
+
+import com.ecomptaia.accounting.entity.Account;
+import com.ecomptaia.repository.AccountRepository;
+import com.ecomptaia.entity.Company;
+import com.ecomptaia.sycebnl.entity.PlanComptableSycebnl;
+import com.ecomptaia.sycebnl.repository.PlanComptableSycebnlRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Supplier;
+
+/**
+ * Index des plans de comptes, par entreprise × référentiel, partagé par la génération depuis les templates,
+ * le mapping OHADA et les états SYCEBNL.
+ *
+ * Les index sont conservés dans le cache "chartIndex" (local à chaque nœud ; en multi-instances,
+ * l'éviction est propagée aux autres nœuds) et invalidés à la création, la modification
+ * ou la suppression d'un compte (écouteur Hibernate enregistré par HibernateListenerConfig).
+ */
+@Service
+public class PlanComptableIndexService {
+
+    public static final String CACHE = "chartIndex";
+
+    private static final String CLE_TOUS = "*";
+    private static final String CLE_SYCEBNL = "SYCEBNL";
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private PlanComptableSycebnlRepository planComptableSycebnlRepository;
+
+    @Autowired(required = false)
+    private CacheManager cacheManager;
+
+    /**
+     * Plan de comptes d'une entreprise (référentiel de l'entreprise) ; sans entreprise, tous les comptes
+     */
+    public PlanComptableIndex<Account> getIndex(Company entreprise) {
+        if (entreprise == null || entreprise.getId() == null) {
+            return getIndexTousComptes();
+        }
+        return charger(cle(entreprise.getId(), entreprise.getAccountingStandard()), () ->
+            PlanComptableIndex.of(accountRepository.findByCompanyOrderByAccountNumberAsc(entreprise), Account::getAccountNumber));
+    }
+
+    /**
+     * Tous les comptes, toutes entreprises confondues (templates sans entreprise)
+     */
+    public PlanComptableIndex<Account> getIndexTousComptes() {
+        return charger(CLE_TOUS, () -> PlanComptableIndex.of(accountRepository.findAll(), Account::getAccountNumber));
+    }
+
+    /**
+     * Plan comptable SYCEBNL (comptes actifs)
+     */
+    public PlanComptableIndex<PlanComptableSycebnl> getIndexSycebnl() {
+        return charger(CLE_SYCEBNL, () -> PlanComptableIndex.of(
+            planComptableSycebnlRepository.findByActifTrueOrderByNumeroCompte(), PlanComptableSycebnl::getNumeroCompte));
+    }
+
+    // ==================== INVALIDATION ====================
+
+    /**
+     * Invalider les index d'une entreprise (et l'index global), immédiatement et après validation
+     * de la transaction en cours : un index reconstruit entre-temps ne verrait pas encore le compte
+     */
+    public void invaliderEntreprise(Company entreprise) {
+        invaliderApresCommit(() -> {
+            Cache cache = cache();
+            if (cache == null) {
+                return;
+            }
+            if (entreprise == null || entreprise.getId() == null) {
+                cache.clear();
+                return;
+            }
+            cache.evict(cle(entreprise.getId(), entreprise.getAccountingStandard()));
+            cache.evict(CLE_TOUS);
+        });
+    }
+
+    /**
+     * Invalider l'index du plan SYCEBNL
+     */
+    public void invaliderSycebnl() {
+        invaliderApresCommit(() -> {
+            Cache cache = cache();
+            if (cache != null) {
+                cache.evict(CLE_SYCEBNL);
+            }
+        });
+    }
+
+    public void invaliderTout() {
+        Cache cache = cache();
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    private void invaliderApresCommit(Runnable invalidation) {
+        invalidation.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidation.run();
+                }
+            });
+        }
+    }
+
+    // ==================== CACHE ====================
+
+    @SuppressWarnings("unchecked")
+    private <T> PlanComptableIndex<T> charger(String cle, Supplier<PlanComptableIndex<T>> construction) {
+        Cache cache = cache();
+        if (cache == null) {
+            return construction.get();
+        }
+        return (PlanComptableIndex<T>) cache.get(cle, construction::get);
+    }
+
+    private Cache cache() {
+        return cacheManager != null ? cacheManager.getCache(CACHE) : null;
+    }
+
+    private static String cle(Long entrepriseId, String referentiel) {
+        return entrepriseId + "|" + (referentiel != null ? referentiel.toUpperCase() : "");
+    }
+}
@@ -0,0 +1,447 @@
+package com.ecomptaia.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Moteur d'appariement des lignes de relevé bancaire avec les lignes comptables non rapprochées.
+ *
+ * Les lignes comptables sont indexées par montant (en centimes) dans une table de hachage, chaque groupe
+ * étant trié par date : une recherche coûte une lecture de la table et une recherche dichotomique, au lieu
+ * d'un parcours de toutes les lignes. Les passes s'enchaînent de la plus sûre à la plus large, chaque ligne
+ * n'étant appariée qu'une fois :
+ * 1. EXACT : même montant, même date ;
+ * 2. TOLERANCE : même montant, écart de 1 à toleranceJours jours (les écarts les plus faibles d'abord) ;
+ * 3. REFERENCE : même montant dans une fenêtre plus large, si les libellés et références se ressemblent ;
+ * 4. COMBINAISON : une ligne bancaire pour plusieurs lignes comptables de même sens (règlement groupé),
+ *    recherche bornée de sous-ensembles de somme exacte.
+ * En cas d'égalité, la ligne dont la référence ressemble le plus au libellé bancaire est retenue.
+ *
+ * Les montants comptables sont signés du point de vue de la banque : débit du compte de trésorerie positif.
+ * Une instance sert à un seul appariement et n'est pas partagée entre threads.
+ */
+public final class ReconciliationMatcher {
+
+    public enum Passe {
+        EXACT, TOLERANCE, REFERENCE, COMBINAISON
+    }
+
+    /**
+     * Paramètres d'appariement
+     */
+    public record Parametres(int toleranceJours, int fenetreReferenceJours, double similariteMin,
+                             int fenetreCombinaisonJours, int maxLignesCombinaison, int maxCandidats,
+                             int budgetNoeuds) {
+
+        public static Parametres defaut() {
+            return new Parametres(3, 31, 0.5, 10, 5, 24, 20_000);
+        }
+    }
+
+    /**
+     * Ligne bancaire appariée à une ou plusieurs lignes comptables
+     */
+    public record Appariement(long ligneBancaireId, long[] lignesComptablesIds, Passe passe, double confiance,
+                              BigDecimal montant) {
+    }
+
+    private final Parametres parametres;
+
+    private final Lignes banque = new Lignes();
+    private final Lignes livres = new Lignes();
+    private boolean[] bancaireApparie;
+    private boolean[] comptableApparie;
+    private Map<Long, int[]> parMontant;
+
+    public ReconciliationMatcher(Parametres parametres) {
+        this.parametres = parametres;
+    }
+
+    public void ajouterLigneBancaire(long id, BigDecimal montant, LocalDate date, String texte) {
+        banque.ajouter(id, centimes(montant), (int) date.toEpochDay(), texte, null);
+    }
+
+    public void ajouterLigneComptable(long id, BigDecimal montant, LocalDate date, String reference, String texte) {
+        livres.ajouter(id, centimes(montant), (int) date.toEpochDay(), texte, reference);
+    }
+
+    public int getNombreLignesBancaires() {
+        return banque.taille;
+    }
+
+    public int getNombreLignesComptables() {
+        return livres.taille;
+    }
+
+    /**
+     * Apparier toutes les lignes ajoutées ; chaque ligne figure dans au plus un appariement
+     */
+    public List<Appariement> apparier() {
+        bancaireApparie = new boolean[banque.taille];
+        comptableApparie = new boolean[livres.taille];
+        indexer();
+
+        List<Appariement> resultat = new ArrayList<>();
+        // 1. Montant et date identiques
+        for (int b = 0; b < banque.taille; b++) {
+            int l = meilleurAEcart(b, 0);
+            if (l >= 0) {
+                resultat.add(apparier(b, new int[] {l}, Passe.EXACT, 1.0));
+            }
+        }
+        // 2. Même montant, écart de date croissant
+        for (int ecart = 1; ecart <= parametres.toleranceJours(); ecart++) {
+            for (int b = 0; b < banque.taille; b++) {
+                if (bancaireApparie[b]) {
+                    continue;
+                }
+                int l = meilleurAEcart(b, ecart);
+                if (l >= 0) {
+                    resultat.add(apparier(b, new int[] {l}, Passe.TOLERANCE, 1.0 - 0.05 * ecart));
+                }
+            }
+        }
+        // 3. Même montant dans la fenêtre large, références semblables
+        for (int b = 0; b < banque.taille; b++) {
+            if (!bancaireApparie[b]) {
+                apparierParReference(b, resultat);
+            }
+        }
+        // 4. Règlements groupés
+        if (parametres.maxLignesCombinaison() >= 2) {
+            int[] parDate = nonApparieesParDate();
+            for (int b = 0; b < banque.taille; b++) {
+                if (!bancaireApparie[b] && banque.montants[b] != 0) {
+                    apparierParCombinaison(b, parDate, resultat);
+                }
+            }
+        }
+        return resultat;
+    }
+
+    /**
+     * Groupes de lignes comptables de même montant, triés par date
+     */
+    private void indexer() {
+        Integer[] ordre = new Integer[livres.taille];
+        for (int i = 0; i < ordre.length; i++) {
+            ordre[i] = i;
+        }
+        Arrays.sort(ordre, (x, y) -> {
+            int c = Long.compare(livres.montants[x], livres.montants[y]);
+            return c != 0 ? c : Integer.compare(livres.jours[x], livres.jours[y]);
+        });
+        parMontant = new HashMap<>(Math.max(16, livres.taille * 2));
+        int debut = 0;
+        while (debut < ordre.length) {
+            long montant = livres.montants[ordre[debut]];
+            int fin = debut;
+            while (fin < ordre.length && livres.montants[ordre[fin]] == montant) {
+                fin++;
+            }
+            int[] groupe = new int[fin - debut];
+            for (int i = debut; i < fin; i++) {
+                groupe[i - debut] = ordre[i];
+            }
+            parMontant.put(montant, groupe);
+            debut = fin;
+        }
+    }
+
+    /**
+     * Ligne comptable libre de même montant datée exactement à ± ecart jours, la plus ressemblante en cas d'égalité
+     */
+    private int meilleurAEcart(int b, int ecart) {
+        int[] groupe = parMontant.get(banque.montants[b]);
+        if (groupe == null) {
+            return -1;
+        }
+        int jour = banque.jours[b];
+        int meilleur = -1;
+        double meilleureSimilarite = -1;
+        int nombre = 0;
+        for (int sens = -1; sens <= 1; sens += 2) {
+            if (ecart == 0 && sens > 0) {
+                break;
+            }
+            int cible = jour + sens * ecart;
+            for (int i = premierJour(groupe, cible); i < groupe.length && livres.jours[groupe[i]] == cible; i++) {
+                int l = groupe[i];
+                if (comptableApparie[l]) {
+                    continue;
+                }
+                if (++nombre == 1) {
+                    meilleur = l;
+                    continue;
+                }
+                if (meilleureSimilarite < 0) {
+                    meilleureSimilarite = similarite(b, meilleur);
+                }
+                double s = similarite(b, l);
+                if (s > meilleureSimilarite) {
+                    meilleur = l;
+                    meilleureSimilarite = s;
+                }
+            }
+        }
+        return meilleur;
+    }
+
+    private void apparierParReference(int b, List<Appariement> resultat) {
+        int[] groupe = parMontant.get(banque.montants[b]);
+        if (groupe == null) {
+            return;
+        }
+        int jour = banque.jours[b];
+        int meilleur = -1;
+        double meilleureSimilarite = parametres.similariteMin();
+        for (int i = premierJour(groupe, jour - parametres.fenetreReferenceJours());
+             i < groupe.length && livres.jours[groupe[i]] <= jour + parametres.fenetreReferenceJours(); i++) {
+            int l = groupe[i];
+            if (comptableApparie[l]) {
+                continue;
+            }
+            double s = similarite(b, l);
+            if (s >= meilleureSimilarite) {
+                meilleur = l;
+                meilleureSimilarite = s;
+            }
+        }
+        if (meilleur >= 0) {
+            resultat.add(apparier(b, new int[] {meilleur}, Passe.REFERENCE, meilleureSimilarite));
+        }
+    }
+
+    private void apparierParCombinaison(int b, int[] parDate, List<Appariement> resultat) {
+        long cible = Math.abs(banque.montants[b]);
+        int signe = Long.signum(banque.montants[b]);
+        int jour = banque.jours[b];
+        String texte = banque.texteNormalise(b);
+
+        List<int[]> candidats = new ArrayList<>();
+        for (int i = premierJour(parDate, jour - parametres.fenetreCombinaisonJours());
+             i < parDate.length && livres.jours[parDate[i]] <= jour + parametres.fenetreCombinaisonJours(); i++) {
+            int l = parDate[i];
+            long montant = livres.montants[l];
+            if (comptableApparie[l] || Long.signum(montant) != signe || Math.abs(montant) >= cible) {
+                continue;
+            }
+            // Rang : référence citée dans le libellé bancaire, puis proximité de date
+            String reference = livres.referenceNormalisee(l);
+            int cite = reference.length() >= 4 && texte.contains(reference) ? 1 : 0;
+            candidats.add(new int[] {l, cite, Math.abs(livres.jours[l] - jour)});
+        }
+        if (candidats.size() < 2) {
+            return;
+        }
+        candidats.sort((x, y) -> x[1] != y[1] ? Integer.compare(y[1], x[1]) : Integer.compare(x[2], y[2]));
+        int n = Math.min(candidats.size(), parametres.maxCandidats());
+        int[] indices = new int[n];
+        long[] montants = new long[n];
+        int cites = 0;
+        for (int i = 0; i < n; i++) {
+            indices[i] = candidats.get(i)[0];
+            montants[i] = Math.abs(livres.montants[indices[i]]);
+        }
+        long[] suffixes = new long[n + 1];
+        for (int i = n - 1; i >= 0; i--) {
+            suffixes[i] = suffixes[i + 1] + montants[i];
+        }
+        int[] choix = new int[parametres.maxLignesCombinaison()];
+        int[] budget = {parametres.budgetNoeuds()};
+        int taille = chercher(montants, suffixes, 0, cible, choix, 0, budget);
+        if (taille < 2) {
+            return;
+        }
+        int[] lignes = new int[taille];
+        for (int i = 0; i < taille; i++) {
+            lignes[i] = indices[choix[i]];
+            if (candidats.get(choix[i])[1] == 1) {
+                cites++;
+            }
+        }
+        resultat.add(apparier(b, lignes, Passe.COMBINAISON, 0.7 + 0.3 * cites / taille));
+    }
+
+    /**
+     * Recherche en profondeur d'un sous-ensemble de somme exacte, élaguée par la somme des montants restants
+     *
+     * @return nombre de lignes retenues (dans choix), ou 0 si aucun sous-ensemble trouvé dans le budget
+     */
+    private int chercher(long[] montants, long[] suffixes, int depart, long reste, int[] choix, int profondeur,
+                         int[] budget) {
+        if (reste == 0) {
+            return profondeur;
+        }
+        if (profondeur == choix.length || suffixes[depart] < reste) {
+            return 0;
+        }
+        for (int i = depart; i < montants.length; i++) {
+            if (--budget[0] < 0) {
+                return 0;
+            }
+            if (montants[i] > reste) {
+                continue;
+            }
+            choix[profondeur] = i;
+            int trouve = chercher(montants, suffixes, i + 1, reste - montants[i], choix, profondeur + 1, budget);
+            if (trouve > 0) {
+                return trouve;
+            }
+            if (suffixes[i + 1] < reste) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    private Appariement apparier(int b, int[] lignes, Passe passe, double confiance) {
+        bancaireApparie[b] = true;
+        long[] ids = new long[lignes.length];
+        for (int i = 0; i < lignes.length; i++) {
+            comptableApparie[lignes[i]] = true;
+            ids[i] = livres.ids[lignes[i]];
+        }
+        return new Appariement(banque.ids[b], ids, passe, Math.round(confiance * 100) / 100.0,
+            BigDecimal.valueOf(banque.montants[b], 2));
+    }
+
+    private int[] nonApparieesParDate() {
+        return java.util.stream.IntStream.range(0, livres.taille)
+            .filter(l -> !comptableApparie[l])
+            .boxed()
+            .sorted(Comparator.comparingInt(l -> livres.jours[l]))
+            .mapToInt(Integer::intValue)
+            .toArray();
+    }
+
+    /**
+     * Premier indice du tableau (trié par date) dont la date est >= jour
+     */
+    private int premierJour(int[] trie, int jour) {
+        int bas = 0;
+        int haut = trie.length;
+        while (bas < haut) {
+            int milieu = (bas + haut) >>> 1;
+            if (livres.jours[trie[milieu]] < jour) {
+                bas = milieu + 1;
+            } else {
+                haut = milieu;
+            }
+        }
+        return bas;
+    }
+
+    private double similarite(int b, int l) {
+        String reference = livres.referenceNormalisee(l);
+        String texteBancaire = banque.texteNormalise(b);
+        if (reference.length() >= 4 && texteBancaire.contains(reference)) {
+            return 1.0;
+        }
+        return similarite(texteBancaire, livres.texteNormalise(l));
+    }
+
+    /**
+     * Coefficient de Dice sur les trigrammes de deux textes normalisés (0 à 1)
+     */
+    static double similarite(String a, String b) {
+        if (a.length() < 3 || b.length() < 3) {
+            return a.equals(b) && !a.isEmpty() ? 1.0 : 0.0;
+        }
+        Set<Integer> trigrammesA = trigrammes(a);
+        Set<Integer> trigrammesB = trigrammes(b);
+        int communs = 0;
+        for (Integer t : trigrammesA) {
+            if (trigrammesB.contains(t)) {
+                communs++;
+            }
+        }
+        return 2.0 * communs / (trigrammesA.size() + trigrammesB.size());
+    }
+
+    private static Set<Integer> trigrammes(String texte) {
+        Set<Integer> trigrammes = new HashSet<>();
+        for (int i = 0; i + 3 <= texte.length(); i++) {
+            trigrammes.add((texte.charAt(i) << 16) ^ (texte.charAt(i + 1) << 8) ^ texte.charAt(i + 2));
+        }
+        return trigrammes;
+    }
+
+    /**
+     * Majuscules, lettres et chiffres seulement
+     */
+    static String normaliser(String texte) {
+        if (texte == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(texte.length());
+        for (int i = 0; i < texte.length(); i++) {
+            char c = texte.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(Character.toUpperCase(c));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static long centimes(BigDecimal montant) {
+        return montant.setScale(2, java.math.RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Lignes en tableaux parallèles ; textes normalisés à la première comparaison
+     */
+    private static final class Lignes {
+
+        long[] ids = new long[1024];
+        long[] montants = new long[1024];
+        int[] jours = new int[1024];
+        String[] textes = new String[1024];
+        String[] references = new String[1024];
+        private String[] textesNormalises;
+        private String[] referencesNormalisees;
+        int taille;
+
+        void ajouter(long id, long montant, int jour, String texte, String reference) {
+            if (taille == ids.length) {
+                int capacite = taille * 2;
+                ids = Arrays.copyOf(ids, capacite);
+                montants = Arrays.copyOf(montants, capacite);
+                jours = Arrays.copyOf(jours, capacite);
+                textes = Arrays.copyOf(textes, capacite);
+                references = Arrays.copyOf(references, capacite);
+            }
+            ids[taille] = id;
+            montants[taille] = montant;
+            jours[taille] = jour;
+            textes[taille] = texte;
+            references[taille] = reference;
+            taille++;
+        }
+
+        String texteNormalise(int i) {
+            if (textesNormalises == null) {
+                textesNormalises = new String[taille];
+            }
+            String normalise = textesNormalises[i];
+            if (normalise == null) {
+                normalise = normaliser(textes[i]);
+                textesNormalises[i] = normalise;
+            }
+            return normalise;
+        }
+
+        String referenceNormalisee(int i) {
+            if (referencesNormalisees == null) {
+                referencesNormalisees = new String[taille];
+            }
+            String normalisee = referencesNormalisees[i];
+            if (normalisee == null) {
+                normalisee = normaliser(references[i]);
+                referencesNormalisees[i] = normalisee;
+            }
+            return normalisee;
+        }
+    }
+}
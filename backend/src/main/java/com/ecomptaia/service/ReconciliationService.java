@@ -6,16 +6,24 @@ import com.ecomptaia.entity.BankAccount;
 import com.ecomptaia.repository.ReconciliationRepository;
 import com.ecomptaia.repository.AccountEntryRepository;
 import com.ecomptaia.repository.BankAccountRepository;
+import com.ecomptaia.repository.BankStatementLineRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Service
 public class ReconciliationService {
@@ -29,6 +37,40 @@ public class ReconciliationService {
     @Autowired
     private BankAccountRepository bankAccountRepository;
 
+    @Autowired
+    private BankStatementLineRepository bankStatementLineRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Racines des comptes de trésorerie rapprochés (banques)
+    @Value("${app.reconciliation.racines-comptes:51,52}")
+    private String[] racinesComptes = {"51", "52"};
+
+    @Value("${app.reconciliation.tolerance-jours:3}")
+    private int toleranceJours = 3;
+
+    @Value("${app.reconciliation.fenetre-reference-jours:31}")
+    private int fenetreReferenceJours = 31;
+
+    @Value("${app.reconciliation.similarite-min:0.5}")
+    private double similariteMin = 0.5;
+
+    @Value("${app.reconciliation.combinaison.fenetre-jours:10}")
+    private int fenetreCombinaisonJours = 10;
+
+    @Value("${app.reconciliation.combinaison.max-lignes:5}")
+    private int maxLignesCombinaison = 5;
+
+    @Value("${app.reconciliation.combinaison.max-candidats:24}")
+    private int maxCandidats = 24;
+
+    @Value("${app.reconciliation.combinaison.budget-noeuds:20000}")
+    private int budgetNoeuds = 20_000;
+
+    @Value("${app.reconciliation.batch-size:1000}")
+    private int tailleLot = 1000;
+
     /**
      * Créer un nouveau rapprochement
      */
@@ -141,29 +183,82 @@ public class ReconciliationService {
     }
 
     /**
-     * Rapprochement automatique
+     * Rapprochement automatique : lignes du relevé non rapprochées de la période appariées aux lignes
+     * comptables non rapprochées des comptes de trésorerie (ReconciliationMatcher), puis marquées en masse
      */
+    @Transactional
     public Map<String, Object> autoReconcile(Long reconciliationId) {
         Optional<Reconciliation> reconciliationOpt = reconciliationRepository.findById(reconciliationId);
         if (reconciliationOpt.isPresent()) {
             Reconciliation reconciliation = reconciliationOpt.get();
+            long debut = System.nanoTime();
+            ReconciliationMatcher.Parametres parametres = new ReconciliationMatcher.Parametres(toleranceJours,
+                fenetreReferenceJours, similariteMin, fenetreCombinaisonJours, maxLignesCombinaison, maxCandidats,
+                budgetNoeuds);
+            ReconciliationMatcher matcher = new ReconciliationMatcher(parametres);
             
-            // Récupérer les écritures non rapprochées du compte bancaire
-            List<AccountEntry> unreconciledEntries = accountEntryRepository.findUnreconciledEntriesByCompany(reconciliation.getCompanyId());
+            // Lignes du relevé de la période, puis lignes comptables élargies de la fenêtre d'appariement
+            LocalDate debutPeriode = reconciliation.getStartDate() != null
+                ? reconciliation.getStartDate().toLocalDate() : LocalDate.of(1900, 1, 1);
+            LocalDate finPeriode = reconciliation.getEndDate() != null
+                ? reconciliation.getEndDate().toLocalDate() : LocalDate.of(9999, 12, 31);
+            BigDecimal montantBancaire = BigDecimal.ZERO;
+            try (Stream<Object[]> lignes = bankStatementLineRepository.streamUnreconciled(
+                    reconciliation.getBankAccountId(), debutPeriode, finPeriode)) {
+                for (Object[] ligne : (Iterable<Object[]>) lignes::iterator) {
+                    BigDecimal montant = (BigDecimal) ligne[1];
+                    montantBancaire = montantBancaire.add(montant.abs());
+                    matcher.ajouterLigneBancaire(((Number) ligne[0]).longValue(), montant, (LocalDate) ligne[2],
+                        texte(ligne[3], ligne[4], ligne[5]));
+                }
+            }
+            int marge = Math.max(Math.max(toleranceJours, fenetreReferenceJours), fenetreCombinaisonJours);
+            try (Stream<Object[]> lignes = accountEntryRepository.streamUnreconciledLinesByDateRange(
+                    reconciliation.getCompanyId(), debutPeriode.minusDays(marge), finPeriode.plusDays(marge))) {
+                for (Object[] ligne : (Iterable<Object[]>) lignes::iterator) {
+                    if (!compteTresorerie((String) ligne[1])) {
+                        continue;
+                    }
+                    // Débit du compte de banque = encaissement (montant positif sur le relevé)
+                    BigDecimal montant = "CREDIT".equals(ligne[2]) ? ((BigDecimal) ligne[3]).negate() : (BigDecimal) ligne[3];
+                    matcher.ajouterLigneComptable(((Number) ligne[0]).longValue(), montant, (LocalDate) ligne[4],
+                        ligne[5] != null ? (String) ligne[5] : (String) ligne[6], texte(ligne[5], ligne[6], ligne[7]));
+                }
+            }
             
-            // Logique de rapprochement automatique basée sur :
-            // - Montant exact
-            // - Date proche
-            // - Référence similaire
+            long chargement = System.nanoTime();
+            List<ReconciliationMatcher.Appariement> appariements = matcher.apparier();
+            long appariement = System.nanoTime();
+            int lignesComptables = ecrireAppariements(reconciliation, appariements);
+            
+            Map<ReconciliationMatcher.Passe, Integer> parPasse = new EnumMap<>(ReconciliationMatcher.Passe.class);
+            BigDecimal montantRapproche = BigDecimal.ZERO;
+            double confiance = 0;
+            for (ReconciliationMatcher.Appariement a : appariements) {
+                parPasse.merge(a.passe(), 1, Integer::sum);
+                montantRapproche = montantRapproche.add(a.montant().abs());
+                confiance += a.confiance();
+            }
             
             Map<String, Object> result = new HashMap<>();
-            result.put("totalEntries", unreconciledEntries.size());
-            result.put("reconciledEntries", 0); // À implémenter avec la logique de matching
-            result.put("unreconciledEntries", unreconciledEntries.size());
-            result.put("confidence", 0.85); // Niveau de confiance du rapprochement automatique
+            result.put("totalEntries", matcher.getNombreLignesBancaires());
+            result.put("bookEntries", matcher.getNombreLignesComptables());
+            result.put("reconciledEntries", appariements.size());
+            result.put("reconciledBookEntries", lignesComptables);
+            result.put("unreconciledEntries", matcher.getNombreLignesBancaires() - appariements.size());
+            result.put("matchesByPass", parPasse);
+            result.put("confidence", appariements.isEmpty() ? 0.0 : Math.round(confiance / appariements.size() * 100) / 100.0);
+            result.put("loadMs", (chargement - debut) / 1_000_000);
+            result.put("matchMs", (appariement - chargement) / 1_000_000);
+            result.put("durationMs", (System.nanoTime() - debut) / 1_000_000);
             
             reconciliation.setIsAutoReconciled(true);
             reconciliation.setReconciliationMethod("AUTO");
+            reconciliation.setTotalTransactions(matcher.getNombreLignesBancaires());
+            reconciliation.setReconciledTransactions(appariements.size());
+            reconciliation.setUnreconciledTransactions(matcher.getNombreLignesBancaires() - appariements.size());
+            reconciliation.setTotalReconciledAmount(montantRapproche);
+            reconciliation.setTotalUnreconciledAmount(montantBancaire.subtract(montantRapproche));
             reconciliation.setUpdatedAt(LocalDateTime.now());
             reconciliationRepository.save(reconciliation);
             
@@ -172,6 +267,58 @@ public class ReconciliationService {
         throw new RuntimeException("Rapprochement non trouvé");
     }
 
+    /**
+     * Marquer par lots JDBC les lignes bancaires et comptables appariées ; les lignes d'un même appariement
+     * partagent la référence [n° de rapprochement]-[id ligne bancaire]
+     *
+     * @return nombre de lignes comptables marquées
+     */
+    private int ecrireAppariements(Reconciliation reconciliation, List<ReconciliationMatcher.Appariement> appariements) {
+        Timestamp maintenant = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> bancaires = new ArrayList<>(appariements.size());
+        List<Object[]> comptables = new ArrayList<>(appariements.size());
+        for (ReconciliationMatcher.Appariement a : appariements) {
+            String reference = reconciliation.getReconciliationNumber() + "-" + a.ligneBancaireId();
+            bancaires.add(new Object[] {reconciliation.getId(), reference, a.passe().name(), maintenant, a.ligneBancaireId()});
+            for (long id : a.lignesComptablesIds()) {
+                comptables.add(new Object[] {reference, maintenant, maintenant, id});
+            }
+        }
+        for (int i = 0; i < bancaires.size(); i += tailleLot) {
+            jdbcTemplate.batchUpdate("UPDATE bank_statement_lines SET is_reconciled = TRUE, reconciliation_id = ?, "
+                + "reconciliation_reference = ?, match_type = ?, reconciled_at = ? WHERE id = ?",
+                bancaires.subList(i, Math.min(bancaires.size(), i + tailleLot)));
+        }
+        for (int i = 0; i < comptables.size(); i += tailleLot) {
+            jdbcTemplate.batchUpdate("UPDATE account_entries SET is_reconciled = TRUE, reconciliation_reference = ?, "
+                + "reconciled_at = ?, updated_at = ? WHERE id = ?",
+                comptables.subList(i, Math.min(comptables.size(), i + tailleLot)));
+        }
+        return comptables.size();
+    }
+
+    private boolean compteTresorerie(String compte) {
+        if (compte == null) {
+            return false;
+        }
+        for (String racine : racinesComptes) {
+            if (compte.startsWith(racine.trim())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String texte(Object... parties) {
+        StringBuilder sb = new StringBuilder();
+        for (Object partie : parties) {
+            if (partie != null) {
+                sb.append(partie).append(' ');
+            }
+        }
+        return sb.toString();
+    }
+
     /**
      * Récupérer les rapprochements d'une entreprise
      */
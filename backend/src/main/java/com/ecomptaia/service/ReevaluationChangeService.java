@@ -0,0 +1,416 @@
+package com.ecomptaia.service;
+
+import com.ecomptaia.accounting.entity.Account;
+import com.ecomptaia.entity.Company;
+import com.ecomptaia.entity.EcritureComptable;
+import com.ecomptaia.entity.FinancialPeriod;
+import com.ecomptaia.entity.LigneEcriture;
+import com.ecomptaia.entity.ThirdParty;
+import com.ecomptaia.repository.CompanyRepository;
+import com.ecomptaia.repository.EcritureComptableRepository;
+import com.ecomptaia.repository.FinancialPeriodRepository;
+import com.ecomptaia.repository.LigneEcritureRepository;
+import com.ecomptaia.security.entity.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Réévaluation de clôture des créances et dettes en devises (écarts de conversion OHADA).
+ *
+ * Pour chaque entreprise, les lignes en devise étrangère sont lues en une passe par curseur et cumulées
+ * par compte × tiers × devise : montant en devise et contre-valeur au taux historique (taux de l'écriture,
+ * à défaut taux du jour de l'écriture). Chaque position ouverte est valorisée au taux de clôture de la
+ * photographie des taux (ExchangeRateSnapshotStore) ; l'écart est comptabilisé en 476 (perte latente)
+ * ou 477 (gain latent) par la création en masse, qui alimente les cumuls par compte, et contre-passé
+ * au lendemain de la clôture. Une entreprise déjà réévaluée à la date (écritures REEVAL-date non annulées)
+ * est ignorée : relancer la clôture ne double pas les écarts.
+ * Les entreprises sont traitées en parallèle sur un pool borné.
+ */
+@Service
+public class ReevaluationChangeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReevaluationChangeService.class);
+
+    public static final String COMPTE_ECART_ACTIF = "476";
+    public static final String COMPTE_ECART_PASSIF = "477";
+
+    private static final Set<EcritureComptable.StatutEcriture> STATUTS_COMPTABILISES =
+        EnumSet.of(EcritureComptable.StatutEcriture.VALIDEE, EcritureComptable.StatutEcriture.CLOTUREE);
+
+    @Autowired
+    private LigneEcritureRepository ligneRepository;
+
+    @Autowired
+    private CompanyRepository companyRepository;
+
+    @Autowired
+    private EcritureComptableRepository ecritureRepository;
+
+    @Autowired
+    private FinancialPeriodRepository periodRepository;
+
+    @Autowired
+    private PlanComptableIndexService planComptableIndexService;
+
+    @Autowired
+    private ExchangeRateSnapshotStore exchangeRateStore;
+
+    @Autowired
+    private EcritureComptableBatchService batchService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Racines des comptes de créances et dettes réévalués (fournisseurs, clients, autres tiers)
+    @Value("${app.reevaluation.racines-comptes:40,41,46,47}")
+    private String[] racinesComptes;
+
+    @Value("${app.reevaluation.parallelisme:4}")
+    private int parallelisme;
+
+    /**
+     * Réévaluer toutes les entreprises actives
+     */
+    public Map<String, Object> reevaluer(LocalDate dateCloture, Long utilisateurId, boolean contrepasser) {
+        List<Company> entreprises = companyRepository.findByIsActiveTrue();
+        return reevaluer(entreprises, dateCloture, utilisateurId, contrepasser);
+    }
+
+    /**
+     * Réévaluer les entreprises données, en parallèle (au plus app.reevaluation.parallelisme à la fois)
+     */
+    public Map<String, Object> reevaluer(List<Company> entreprises, LocalDate dateCloture, Long utilisateurId,
+                                         boolean contrepasser) {
+        long debut = System.nanoTime();
+        // Taux de clôture : photographie chargée une fois pour toutes les entreprises
+        ExchangeRateMatrix taux = exchangeRateStore.getMatrix();
+
+        int threads = Math.max(1, Math.min(parallelisme, entreprises.size()));
+        AtomicInteger compteur = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "reevaluation-" + compteur.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        List<Map<String, Object>> resultats = new ArrayList<>();
+        try {
+            List<Future<Map<String, Object>>> futures = new ArrayList<>();
+            for (Company entreprise : entreprises) {
+                futures.add(executor.submit(() -> reevaluerEntreprise(entreprise, dateCloture, utilisateurId,
+                    contrepasser, taux)));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    resultats.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    Map<String, Object> echec = new LinkedHashMap<>();
+                    echec.put("entrepriseId", entreprises.get(i).getId());
+                    echec.put("erreur", e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+                    resultats.add(echec);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Réévaluation interrompue");
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Map<String, Object> resultat = new LinkedHashMap<>();
+        resultat.put("dateCloture", dateCloture);
+        resultat.put("entreprises", resultats.size());
+        resultat.put("lignesAnalysees", resultats.stream().mapToLong(r -> ((Number) r.getOrDefault("lignesAnalysees", 0)).longValue()).sum());
+        resultat.put("ecrituresCreees", resultats.stream().mapToLong(r -> ((Number) r.getOrDefault("ecrituresCreees", 0)).longValue()).sum());
+        resultat.put("dureeMs", (System.nanoTime() - debut) / 1_000_000);
+        resultat.put("details", resultats);
+        return resultat;
+    }
+
+    /**
+     * Réévaluer une entreprise : une passe sur ses lignes en devise, puis création en masse des écarts
+     */
+    public Map<String, Object> reevaluerEntreprise(Company entreprise, LocalDate dateCloture, Long utilisateurId,
+                                                   boolean contrepasser, ExchangeRateMatrix taux) {
+        String deviseEntreprise = entreprise.getCurrency() != null ? entreprise.getCurrency() : "XOF";
+
+        if (ecritureRepository.existsByEntrepriseIdAndReferenceAndStatutNot(entreprise.getId(),
+                reference(dateCloture), EcritureComptable.StatutEcriture.ANNULEE)) {
+            Map<String, Object> dejaFaite = new LinkedHashMap<>();
+            dejaFaite.put("entrepriseId", entreprise.getId());
+            dejaFaite.put("dejaReevaluee", true);
+            dejaFaite.put("ecrituresCreees", 0);
+            logger.info("Réévaluation entreprise {} au {} déjà comptabilisée, ignorée", entreprise.getId(), dateCloture);
+            return dejaFaite;
+        }
+
+        Positions positions = new TransactionTemplate(transactionManager).execute(status -> {
+            Positions cumul = new Positions(racinesComptes, deviseEntreprise, taux);
+            try (Stream<Object[]> lignes = ligneRepository.streamLignesEnDeviseAuDate(
+                    entreprise.getId(), STATUTS_COMPTABILISES, deviseEntreprise, dateCloture)) {
+                Iterator<Object[]> iterator = lignes.iterator();
+                while (iterator.hasNext()) {
+                    cumul.ajouter(iterator.next());
+                }
+            }
+            return cumul;
+        });
+
+        Map<String, Object> resultat = new LinkedHashMap<>();
+        resultat.put("entrepriseId", entreprise.getId());
+        resultat.put("lignesAnalysees", positions.lignes);
+        resultat.put("lignesSansTaux", positions.lignesSansTaux);
+
+        List<Ecart> ecarts = positions.ecarts(dateCloture);
+        resultat.put("positionsReevaluees", ecarts.size());
+        resultat.put("perteLatente", ecarts.stream().map(Ecart::montant).filter(m -> m.signum() < 0)
+            .reduce(BigDecimal.ZERO, BigDecimal::add).negate());
+        resultat.put("gainLatent", ecarts.stream().map(Ecart::montant).filter(m -> m.signum() > 0)
+            .reduce(BigDecimal.ZERO, BigDecimal::add));
+        if (ecarts.isEmpty()) {
+            resultat.put("ecrituresCreees", 0);
+            return resultat;
+        }
+
+        PlanComptableIndex<Account> planComptable = planComptableIndexService.getIndex(entreprise);
+        Account compteEcartActif = compteObligatoire(planComptable, COMPTE_ECART_ACTIF);
+        Account compteEcartPassif = compteObligatoire(planComptable, COMPTE_ECART_PASSIF);
+        User utilisateur = new User();
+        utilisateur.setId(utilisateurId);
+
+        FinancialPeriod exercice = periodRepository.findPeriodByDate(entreprise.getId(), dateCloture)
+            .orElseThrow(() -> new RuntimeException("Aucun exercice au " + dateCloture));
+        List<EcritureComptable> ecritures = new ArrayList<>(contrepasser ? ecarts.size() * 2 : ecarts.size());
+        for (Ecart ecart : ecarts) {
+            ecritures.add(ecriture(entreprise, exercice, utilisateur, deviseEntreprise, dateCloture,
+                EcritureComptable.TypeEcriture.CLOTURE, ecart, false, compteEcartActif, compteEcartPassif));
+        }
+        if (contrepasser) {
+            LocalDate lendemain = dateCloture.plusDays(1);
+            Optional<FinancialPeriod> exerciceSuivant = periodRepository.findPeriodByDate(entreprise.getId(), lendemain);
+            if (exerciceSuivant.isPresent()) {
+                for (Ecart ecart : ecarts) {
+                    ecritures.add(ecriture(entreprise, exerciceSuivant.get(), utilisateur, deviseEntreprise, lendemain,
+                        EcritureComptable.TypeEcriture.OUVERTURE, ecart, true, compteEcartActif, compteEcartPassif));
+                }
+            } else {
+                resultat.put("contrepassation", "Aucun exercice au " + lendemain + " : contre-passation non générée");
+            }
+        }
+
+        Map<String, Object> creation = batchService.createEcrituresEnMasse(ecritures);
+        resultat.put("ecrituresCreees", creation.get("ecrituresCreees"));
+        resultat.put("ecrituresRejetees", creation.get("ecrituresRejetees"));
+        resultat.put("erreurs", creation.get("erreurs"));
+        logger.info("Réévaluation entreprise {} au {} : {} lignes, {} écarts", entreprise.getId(), dateCloture,
+            positions.lignes, ecarts.size());
+        return resultat;
+    }
+
+    // ==================== ÉCRITURES D'ÉCART ====================
+
+    /**
+     * Écart positif (gain) : débit du compte de tiers, crédit 477 ; négatif (perte) : débit 476, crédit du tiers.
+     * La contre-passation inverse les sens.
+     */
+    private EcritureComptable ecriture(Company entreprise, FinancialPeriod exercice, User utilisateur, String devise,
+                                       LocalDate date, EcritureComptable.TypeEcriture type, Ecart ecart,
+                                       boolean contrepassation, Account compteEcartActif, Account compteEcartPassif) {
+        BigDecimal montant = ecart.montant().abs();
+        boolean gain = ecart.montant().signum() > 0;
+        Account compteEcart = gain ? compteEcartPassif : compteEcartActif;
+        boolean tiersAuDebit = gain != contrepassation;
+
+        Account compteTiers = new Account();
+        compteTiers.setId(ecart.position().compteId);
+        ThirdParty tiers = null;
+        if (ecart.position().tiersId != null) {
+            tiers = new ThirdParty();
+            tiers.setId(ecart.position().tiersId);
+        }
+
+        String libelle = (contrepassation ? "Contre-passation écart de conversion " : "Écart de conversion ")
+            + ecart.position().devise + " " + ecart.position().compteNumero + " au "
+            + ecart.dateCloture().format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
+
+        LigneEcriture ligneTiers = ligne(compteTiers, ecart.position().compteNumero, ecart.position().compteLibelle,
+            libelle, tiersAuDebit ? montant : BigDecimal.ZERO, tiersAuDebit ? BigDecimal.ZERO : montant, 1);
+        ligneTiers.setTiers(tiers);
+        LigneEcriture ligneEcart = ligne(compteEcart, compteEcart.getAccountNumber(), compteEcart.getName(),
+            libelle, tiersAuDebit ? BigDecimal.ZERO : montant, tiersAuDebit ? montant : BigDecimal.ZERO, 2);
+
+        EcritureComptable ecriture = new EcritureComptable();
+        ecriture.setEntreprise(entreprise);
+        ecriture.setExercice(exercice);
+        ecriture.setUtilisateur(utilisateur);
+        ecriture.setDateEcriture(date);
+        ecriture.setDatePiece(date);
+        ecriture.setLibelle(libelle);
+        ecriture.setReference(reference(ecart.dateCloture()));
+        ecriture.setTypeEcriture(type);
+        ecriture.setSource(EcritureComptable.SourceEcriture.AUTOMATIQUE);
+        ecriture.setStatut(EcritureComptable.StatutEcriture.VALIDEE);
+        ecriture.setDevise(devise);
+        ecriture.setTauxChange(BigDecimal.ONE);
+        ecriture.setLignes(new ArrayList<>(List.of(ligneTiers, ligneEcart)));
+        return ecriture;
+    }
+
+    private static String reference(LocalDate dateCloture) {
+        return "REEVAL-" + dateCloture;
+    }
+
+    private LigneEcriture ligne(Account compte, String numero, String libelleCompte, String libelle,
+                                BigDecimal debit, BigDecimal credit, int ordre) {
+        LigneEcriture ligne = new LigneEcriture();
+        ligne.setCompte(compte);
+        ligne.setCompteNumero(numero);
+        ligne.setCompteLibelle(libelleCompte != null ? libelleCompte : numero);
+        ligne.setLibelleLigne(libelle);
+        ligne.setDebit(debit);
+        ligne.setCredit(credit);
+        ligne.setOrdre(ordre);
+        return ligne;
+    }
+
+    private Account compteObligatoire(PlanComptableIndex<Account> planComptable, String racine) {
+        Account compte = planComptable.premier(racine + "%");
+        if (compte == null) {
+            throw new RuntimeException("Compte " + racine + " absent du plan comptable");
+        }
+        return compte;
+    }
+
+    // ==================== CUMULS PAR POSITION ====================
+
+    /**
+     * Cumuls des lignes en devise par compte × tiers × devise
+     */
+    static class Positions {
+
+        private final String[] racines;
+        private final String deviseEntreprise;
+        private final ExchangeRateMatrix taux;
+        private final Map<Cle, Position> positions = new HashMap<>();
+        private long lignes;
+        private long lignesSansTaux;
+
+        Positions(String[] racines, String deviseEntreprise, ExchangeRateMatrix taux) {
+            this.racines = racines;
+            this.deviseEntreprise = deviseEntreprise;
+            this.taux = taux;
+        }
+
+        /**
+         * Ajouter une ligne (colonnes de LigneEcritureRepository.streamLignesEnDeviseAuDate)
+         */
+        void ajouter(Object[] ligne) {
+            String compteNumero = (String) ligne[1];
+            if (!reevaluable(compteNumero)) {
+                return;
+            }
+            lignes++;
+            String devise = (String) ligne[4];
+            BigDecimal debit = ligne[5] != null ? (BigDecimal) ligne[5] : BigDecimal.ZERO;
+            BigDecimal credit = ligne[6] != null ? (BigDecimal) ligne[6] : BigDecimal.ZERO;
+            BigDecimal montantDevise = debit.subtract(credit);
+
+            // Taux historique : celui de l'écriture, à défaut celui du jour de l'écriture
+            BigDecimal tauxHistorique = (BigDecimal) ligne[7];
+            if (tauxHistorique == null || tauxHistorique.signum() <= 0) {
+                double jour = taux.rate(devise, deviseEntreprise, (LocalDate) ligne[8]);
+                if (Double.isNaN(jour)) {
+                    lignesSansTaux++;
+                    return;
+                }
+                tauxHistorique = BigDecimal.valueOf(jour);
+            }
+
+            Position position = positions.computeIfAbsent(new Cle(compteNumero, (Long) ligne[3], devise),
+                cle -> new Position((Long) ligne[0], compteNumero, (String) ligne[2], cle.tiersId(), devise));
+            position.montantDevise = position.montantDevise.add(montantDevise);
+            position.valeurHistorique = position.valeurHistorique.add(montantDevise.multiply(tauxHistorique));
+        }
+
+        /**
+         * Écarts de conversion des positions ouvertes au taux de clôture (arrondis au centime, écarts nuls ignorés)
+         */
+        List<Ecart> ecarts(LocalDate dateCloture) {
+            List<Ecart> ecarts = new ArrayList<>();
+            for (Position position : positions.values()) {
+                if (position.montantDevise.signum() == 0) {
+                    continue;
+                }
+                double tauxCloture = taux.rate(position.devise, deviseEntreprise, dateCloture);
+                if (Double.isNaN(tauxCloture)) {
+                    lignesSansTaux++;
+                    continue;
+                }
+                BigDecimal valeurCloture = position.montantDevise.multiply(BigDecimal.valueOf(tauxCloture));
+                BigDecimal ecart = valeurCloture.subtract(position.valeurHistorique).setScale(2, RoundingMode.HALF_UP);
+                if (ecart.signum() != 0) {
+                    ecarts.add(new Ecart(position, ecart, dateCloture));
+                }
+            }
+            ecarts.sort(Comparator.comparing((Ecart e) -> e.position().compteNumero)
+                .thenComparing(e -> e.position().devise)
+                .thenComparing(e -> e.position().tiersId, Comparator.nullsFirst(Comparator.naturalOrder())));
+            return ecarts;
+        }
+
+        long getLignes() {
+            return lignes;
+        }
+
+        private boolean reevaluable(String compteNumero) {
+            if (compteNumero == null || compteNumero.startsWith(COMPTE_ECART_ACTIF)
+                    || compteNumero.startsWith(COMPTE_ECART_PASSIF)) {
+                return false;
+            }
+            for (String racine : racines) {
+                if (compteNumero.startsWith(racine)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    record Cle(String compteNumero, Long tiersId, String devise) {
+    }
+
+    static class Position {
+        private final Long compteId;
+        private final String compteNumero;
+        private final String compteLibelle;
+        private final Long tiersId;
+        private final String devise;
+        private BigDecimal montantDevise = BigDecimal.ZERO;
+        private BigDecimal valeurHistorique = BigDecimal.ZERO;
+
+        Position(Long compteId, String compteNumero, String compteLibelle, Long tiersId, String devise) {
+            this.compteId = compteId;
+            this.compteNumero = compteNumero;
+            this.compteLibelle = compteLibelle;
+            this.tiersId = tiersId;
+            this.devise = devise;
+        }
+    }
+
+    record Ecart(Position position, BigDecimal montant, LocalDate dateCloture) {
+    }
+}
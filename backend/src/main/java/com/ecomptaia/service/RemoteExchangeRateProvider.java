@@ -0,0 +1,45 @@
+package com.ecomptaia.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Taux de l'API gratuite exchangerate-api.com (désactivable par app.exchange-rates.remote.enabled)
+ */
+@Component
+@ConditionalOnProperty(name = "app.exchange-rates.remote.enabled", havingValue = "true", matchIfMissing = true)
+public class RemoteExchangeRateProvider implements ExchangeRateProvider {
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Value("${app.exchange-rates.remote.url:https://api.exchangerate-api.com/v4/latest/}")
+    private String apiBaseUrl;
+
+    @Override
+    public String getName() {
+        return "exchangerate-api.com";
+    }
+
+    @Override
+    public Map<String, BigDecimal> fetchLatestRates(String baseCurrency) {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> response = restTemplate.getForObject(apiBaseUrl + baseCurrency, Map.class);
+        Map<String, BigDecimal> rates = new HashMap<>();
+        if (response != null && response.get("rates") instanceof Map<?, ?> cotations) {
+            for (Map.Entry<?, ?> entry : cotations.entrySet()) {
+                if (entry.getValue() instanceof Number taux) {
+                    rates.put(entry.getKey().toString(), new BigDecimal(taux.toString()));
+                }
+            }
+        }
+        return rates;
+    }
+}
@@ -1,7 +1,6 @@
 package com.ecomptaia.service;
 
 import com.ecomptaia.entity.AccountEntry;
-import com.ecomptaia.entity.JournalEntry;
 import com.ecomptaia.repository.AccountEntryRepository;
 import com.ecomptaia.repository.JournalEntryRepository;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,6 +11,7 @@ import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -26,24 +26,23 @@ public class ReportingService {
     @Autowired
     private JournalEntryRepository journalEntryRepository;
 
+    @Autowired
+    private AccountBalanceService accountBalanceService;
+
     /**
      * Générer le Grand Livre (conforme SYSCOHADA)
      */
     public Map<String, Object> generateGeneralLedger(Long companyId, LocalDate startDate, LocalDate endDate) {
         Map<String, Object> ledger = new HashMap<>();
         
-        // Récupérer toutes les écritures validées de la période
-        List<JournalEntry> entries = journalEntryRepository.findValidatedEntriesByDateRange(companyId, startDate, endDate);
+        // Lignes validées de la période en une requête, déjà triées par compte puis par date
+        long totalEntries = journalEntryRepository.countValidatedEntriesByDateRange(companyId, startDate, endDate);
         
         // Grouper par compte
-        Map<String, List<AccountEntry>> entriesByAccount = new HashMap<>();
+        Map<String, List<AccountEntry>> entriesByAccount = new LinkedHashMap<>();
         
-        for (JournalEntry entry : entries) {
-            List<AccountEntry> accountEntries = accountEntryRepository.findByJournalEntryId(entry.getId());
-            for (AccountEntry accountEntry : accountEntries) {
-                String accountNumber = accountEntry.getAccountNumber();
-                entriesByAccount.computeIfAbsent(accountNumber, k -> new ArrayList<>()).add(accountEntry);
-            }
+        for (AccountEntry accountEntry : accountEntryRepository.findValidatedLinesByDateRange(companyId, startDate, endDate)) {
+            entriesByAccount.computeIfAbsent(accountEntry.getAccountNumber(), k -> new ArrayList<>()).add(accountEntry);
         }
         
         // Calculer les soldes par compte selon SYSCOHADA
@@ -53,9 +52,6 @@ public class ReportingService {
             String accountNumber = entry.getKey();
             List<AccountEntry> accountEntries = entry.getValue();
             
-            // Trier par date de création
-            accountEntries.sort(Comparator.comparing(AccountEntry::getCreatedAt));
-            
             BigDecimal totalDebit = BigDecimal.ZERO;
             BigDecimal totalCredit = BigDecimal.ZERO;
             BigDecimal soldePrecedent = BigDecimal.ZERO;
@@ -103,7 +99,7 @@ public class ReportingService {
         ledger.put("endDate", endDate);
         ledger.put("accountsByClass", accountsByClass);
         ledger.put("totalAccounts", accountBalances.size());
-        ledger.put("totalEntries", entries.size());
+        ledger.put("totalEntries", totalEntries);
         ledger.put("generatedAt", LocalDateTime.now());
         
         return ledger;
@@ -115,30 +111,17 @@ public class ReportingService {
     public Map<String, Object> generateTrialBalance(Long companyId, LocalDate asOfDate) {
         Map<String, Object> trialBalance = new HashMap<>();
         
-        // Récupérer toutes les écritures validées jusqu'à la date
-        List<JournalEntry> entries = journalEntryRepository.findValidatedEntriesByDateRange(
-            companyId, LocalDate.of(1900, 1, 1), asOfDate);
-        
-        // Grouper par compte et calculer les soldes
+        // Soldes à date depuis les cumuls mensuels maintenus à la validation
         Map<String, BigDecimal> accountBalances = new HashMap<>();
         Map<String, String> accountNames = new HashMap<>();
         Map<String, String> accountClasses = new HashMap<>();
         
-        for (JournalEntry entry : entries) {
-            List<AccountEntry> accountEntries = accountEntryRepository.findByJournalEntryId(entry.getId());
-            for (AccountEntry accountEntry : accountEntries) {
-                String accountNumber = accountEntry.getAccountNumber();
-                accountNames.put(accountNumber, accountEntry.getAccountName());
-                accountClasses.put(accountNumber, accountNumber.substring(0, 1));
-                
-                BigDecimal currentBalance = accountBalances.getOrDefault(accountNumber, BigDecimal.ZERO);
-                if ("DEBIT".equals(accountEntry.getAccountType())) {
-                    currentBalance = currentBalance.add(accountEntry.getAmount());
-                } else if ("CREDIT".equals(accountEntry.getAccountType())) {
-                    currentBalance = currentBalance.subtract(accountEntry.getAmount());
-                }
-                accountBalances.put(accountNumber, currentBalance);
-            }
+        for (AccountBalanceService.AccountTotals totals : accountBalanceService
+                .getBalancesAsOf(companyId, AccountBalanceService.LEDGER_JOURNAL, asOfDate).values()) {
+            String accountNumber = totals.getAccountNumber();
+            accountNames.put(accountNumber, totals.getAccountName());
+            accountClasses.put(accountNumber, accountNumber.substring(0, 1));
+            accountBalances.put(accountNumber, totals.getSolde());
         }
         
         // Organiser par classe de compte SYSCOHADA
@@ -288,31 +271,26 @@ public class ReportingService {
     public Map<String, Object> generateIncomeStatement(Long companyId, LocalDate startDate, LocalDate endDate) {
         Map<String, Object> incomeStatement = new HashMap<>();
         
-        // Récupérer les écritures de la période
-        List<JournalEntry> entries = journalEntryRepository.findValidatedEntriesByDateRange(companyId, startDate, endDate);
-        
+        // Lignes validées de la période en une requête
         Map<String, BigDecimal> produits = new HashMap<>();
         Map<String, BigDecimal> charges = new HashMap<>();
         
-        for (JournalEntry entry : entries) {
-            List<AccountEntry> accountEntries = accountEntryRepository.findByJournalEntryId(entry.getId());
-            for (AccountEntry accountEntry : accountEntries) {
-                String accountNumber = accountEntry.getAccountNumber();
-                String accountClass = accountNumber.substring(0, 1);
-                
-                BigDecimal amount = accountEntry.getAmount();
-                if ("DEBIT".equals(accountEntry.getAccountType())) {
-                    amount = amount.negate();
-                }
-                
-                // Classification selon SYSCOHADA
-                if ("6".equals(accountClass)) { // Charges
-                    charges.put(accountEntry.getAccountName(), 
-                        charges.getOrDefault(accountEntry.getAccountName(), BigDecimal.ZERO).add(amount.abs()));
-                } else if ("7".equals(accountClass)) { // Produits
-                    produits.put(accountEntry.getAccountName(), 
-                        produits.getOrDefault(accountEntry.getAccountName(), BigDecimal.ZERO).add(amount));
-                }
+        for (AccountEntry accountEntry : accountEntryRepository.findValidatedLinesByDateRange(companyId, startDate, endDate)) {
+            String accountNumber = accountEntry.getAccountNumber();
+            String accountClass = accountNumber.substring(0, 1);
+            
+            BigDecimal amount = accountEntry.getAmount();
+            if ("DEBIT".equals(accountEntry.getAccountType())) {
+                amount = amount.negate();
+            }
+            
+            // Classification selon SYSCOHADA
+            if ("6".equals(accountClass)) { // Charges
+                charges.put(accountEntry.getAccountName(), 
+                    charges.getOrDefault(accountEntry.getAccountName(), BigDecimal.ZERO).add(amount.abs()));
+            } else if ("7".equals(accountClass)) { // Produits
+                produits.put(accountEntry.getAccountName(), 
+                    produits.getOrDefault(accountEntry.getAccountName(), BigDecimal.ZERO).add(amount));
             }
         }
         
@@ -0,0 +1,75 @@
+package com.ecomptaia.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Verrous des tâches planifiées partagées entre les instances du backend (table scheduler_locks).
+ *
+ * Un verrou est un bail daté : l'instance qui l'acquiert le garde jusqu'à sa libération ou l'échéance du bail,
+ * ce qui couvre l'arrêt brutal d'une instance en cours de tâche. L'acquisition met à jour un bail échu,
+ * sinon insère la ligne ; une clé déjà présente signifie qu'une autre instance tient le verrou.
+ */
+@Service
+public class SchedulerLockService {
+
+    @Autowired(required = false)
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.instance-id:}")
+    private String instance = "";
+
+    /**
+     * Acquérir le verrou pour la durée donnée
+     *
+     * @return true si cette instance tient désormais le verrou
+     */
+    public boolean acquerir(String nom, Duration duree) {
+        if (jdbcTemplate == null) {
+            return false;
+        }
+        LocalDateTime maintenant = LocalDateTime.now();
+        Timestamp debut = Timestamp.valueOf(maintenant);
+        Timestamp echeance = Timestamp.valueOf(maintenant.plus(duree));
+        int repris = jdbcTemplate.update(
+            "UPDATE scheduler_locks SET locked_until = ?, locked_at = ?, locked_by = ? WHERE name = ? AND locked_until <= ?",
+            echeance, debut, getInstance(), nom, debut);
+        if (repris > 0) {
+            return true;
+        }
+        try {
+            jdbcTemplate.update("INSERT INTO scheduler_locks (name, locked_until, locked_at, locked_by) VALUES (?, ?, ?, ?)",
+                nom, echeance, debut, getInstance());
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            // Bail en cours détenu par une autre instance
+            return false;
+        }
+    }
+
+    /**
+     * Libérer le verrou détenu par cette instance (sans effet s'il a été repris après échéance)
+     */
+    public void liberer(String nom) {
+        if (jdbcTemplate == null) {
+            return;
+        }
+        jdbcTemplate.update("UPDATE scheduler_locks SET locked_until = ? WHERE name = ? AND locked_by = ?",
+            Timestamp.valueOf(LocalDateTime.now()), nom, getInstance());
+    }
+
+    /**
+     * Identifiant de cette instance : app.instance-id, à défaut pid@hôte
+     */
+    public String getInstance() {
+        return instance == null || instance.isBlank() ? ManagementFactory.getRuntimeMXBean().getName() : instance;
+    }
+}
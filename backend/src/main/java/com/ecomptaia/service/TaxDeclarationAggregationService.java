@@ -0,0 +1,386 @@
+package com.ecomptaia.service;
+
+import com.ecomptaia.entity.Company;
+import com.ecomptaia.repository.AccountEntryRepository;
+import com.ecomptaia.repository.CompanyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * Données des déclarations fiscales et sociales périodiques (TVA, impôts retenus à la source, bases sociales)
+ * agrégées directement depuis les lignes validées du grand livre.
+ *
+ * Les mouvements des comptes fiscaux et sociaux (43, 44, 66 et 70) d'une entreprise sont lus en une
+ * requête groupée par compte et par mois. Chaque mois clos est conservé dans le cache "taxDeclarations" et n'est
+ * plus relu ; une écriture validée ou annulée après coup sur ce mois l'invalide (AccountBalanceService, à la
+ * comptabilisation). Les déclarations mensuelles de toutes les entreprises sont préparées en un lot parallèle.
+ *
+ * Chaque invalidation écrit dans le cache un nouveau jeton de version du mois, partagé par toutes les instances
+ * (L2 Redis) ; les cumuls mis en cache portent le jeton sous lequel ils ont été lus. Des cumuls lus pendant une
+ * invalidation, sur cette instance ou une autre, ne sont pas mis en cache, et ceux qui porteraient un ancien jeton
+ * sont ignorés à la lecture.
+ *
+ * Rubriques SYSCOHADA : 443 TVA facturée, 4451 TVA récupérable sur immobilisations, autres 445 TVA récupérable
+ * sur biens et services, 447 impôts retenus à la source, 661 à 663 rémunérations (base sociale), 664 charges
+ * sociales, 43 organismes sociaux, 70 chiffre d'affaires.
+ */
+@Service
+public class TaxDeclarationAggregationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TaxDeclarationAggregationService.class);
+
+    public static final String CACHE = "taxDeclarations";
+
+    /**
+     * Mouvements d'un mois, par compte : [débit, crédit]
+     */
+    public static final class Cumuls implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Map<String, BigDecimal[]> comptes = new HashMap<>();
+        private long lignes;
+        // Jeton de version du mois au moment de la lecture (null : mois jamais invalidé)
+        private String version;
+
+        void ajouter(String compte, BigDecimal debit, BigDecimal credit, long nombre) {
+            BigDecimal[] totaux = comptes.computeIfAbsent(compte, k -> new BigDecimal[]{BigDecimal.ZERO, BigDecimal.ZERO});
+            totaux[0] = totaux[0].add(debit != null ? debit : BigDecimal.ZERO);
+            totaux[1] = totaux[1].add(credit != null ? credit : BigDecimal.ZERO);
+            lignes += nombre;
+        }
+
+        public Map<String, BigDecimal[]> getComptes() { return comptes; }
+        public long getLignes() { return lignes; }
+        public String getVersion() { return version; }
+    }
+
+    // Totaux des rubriques d'une période
+    private static final class Rubriques {
+        BigDecimal chiffreAffaires = BigDecimal.ZERO;
+        BigDecimal tvaCollectee = BigDecimal.ZERO;
+        BigDecimal tvaImmobilisations = BigDecimal.ZERO;
+        BigDecimal tvaBiensServices = BigDecimal.ZERO;
+        BigDecimal retenues = BigDecimal.ZERO;
+        BigDecimal baseSociale = BigDecimal.ZERO;
+        BigDecimal chargesPatronales = BigDecimal.ZERO;
+        BigDecimal organismesSociaux = BigDecimal.ZERO;
+        final Map<String, BigDecimal> retenuesParCompte = new TreeMap<>();
+        final Map<String, BigDecimal[]> parClasse = new LinkedHashMap<>();
+        long lignes;
+
+        Rubriques() {
+            for (String classe : new String[]{"443", "445", "447"}) {
+                parClasse.put(classe, new BigDecimal[]{BigDecimal.ZERO, BigDecimal.ZERO});
+            }
+        }
+
+        void ajouter(Cumuls cumuls) {
+            lignes += cumuls.getLignes();
+            cumuls.getComptes().forEach(this::classer);
+        }
+
+        void classer(String compte, BigDecimal[] totaux) {
+            BigDecimal debit = totaux[0];
+            BigDecimal credit = totaux[1];
+            BigDecimal[] classe = compte.length() >= 3 ? parClasse.get(compte.substring(0, 3)) : null;
+            if (classe != null) {
+                classe[0] = classe[0].add(debit);
+                classe[1] = classe[1].add(credit);
+            }
+            if (compte.startsWith("70")) {
+                chiffreAffaires = chiffreAffaires.add(credit).subtract(debit);
+            } else if (compte.startsWith("443")) {
+                tvaCollectee = tvaCollectee.add(credit).subtract(debit);
+            } else if (compte.startsWith("4451")) {
+                tvaImmobilisations = tvaImmobilisations.add(debit).subtract(credit);
+            } else if (compte.startsWith("445")) {
+                tvaBiensServices = tvaBiensServices.add(debit).subtract(credit);
+            } else if (compte.startsWith("447")) {
+                BigDecimal retenue = credit.subtract(debit);
+                retenues = retenues.add(retenue);
+                retenuesParCompte.merge(compte.length() > 4 ? compte.substring(0, 4) : compte, retenue, BigDecimal::add);
+            } else if (compte.startsWith("661") || compte.startsWith("662") || compte.startsWith("663")) {
+                baseSociale = baseSociale.add(debit).subtract(credit);
+            } else if (compte.startsWith("664")) {
+                chargesPatronales = chargesPatronales.add(debit).subtract(credit);
+            } else if (compte.startsWith("43")) {
+                organismesSociaux = organismesSociaux.add(credit).subtract(debit);
+            }
+        }
+
+        BigDecimal tvaDeductible() {
+            return tvaImmobilisations.add(tvaBiensServices);
+        }
+    }
+
+    @Autowired
+    private AccountEntryRepository accountEntryRepository;
+
+    @Autowired
+    private CompanyRepository companyRepository;
+
+    @Autowired(required = false)
+    private CacheManager cacheManager;
+
+    @Value("${app.tax-declarations.parallelisme:4}")
+    private int parallelisme = 4;
+
+    /**
+     * Données d'une déclaration mensuelle
+     */
+    public Map<String, Object> agreger(Long companyId, YearMonth periode) {
+        return agreger(companyId, periode, periode);
+    }
+
+    /**
+     * Données d'une déclaration sur les mois de debut à fin inclus (trimestre, année)
+     */
+    public Map<String, Object> agreger(Long companyId, YearMonth debut, YearMonth fin) {
+        if (companyId == null || debut == null || fin == null || fin.isBefore(debut)) {
+            throw new RuntimeException("Entreprise et période valides requises");
+        }
+        YearMonth courant = YearMonth.now();
+        Cache cache = cache();
+        Map<YearMonth, Cumuls> mois = new TreeMap<>();
+        YearMonth premierManquant = null;
+        YearMonth dernierManquant = null;
+        for (YearMonth m = debut; !m.isAfter(fin); m = m.plusMonths(1)) {
+            Cumuls cumuls = cache != null && m.isBefore(courant) ? enCache(cache, companyId, m) : null;
+            if (cumuls != null) {
+                mois.put(m, cumuls);
+            } else {
+                premierManquant = premierManquant == null ? m : premierManquant;
+                dernierManquant = m;
+            }
+        }
+        int enCache = mois.size();
+
+        if (premierManquant != null) {
+            // Seuls les mois clos sont conservés : le mois en cours reçoit encore des écritures
+            Map<YearMonth, String> versionsLues = new HashMap<>();
+            for (YearMonth m = premierManquant; cache != null && !m.isAfter(dernierManquant) && m.isBefore(courant); m = m.plusMonths(1)) {
+                if (!mois.containsKey(m)) {
+                    versionsLues.put(m, version(cache, companyId, m));
+                }
+            }
+            Map<YearMonth, Cumuls> lus = lire(companyId, premierManquant, dernierManquant);
+            for (YearMonth m = premierManquant; !m.isAfter(dernierManquant); m = m.plusMonths(1)) {
+                if (mois.containsKey(m)) {
+                    continue;
+                }
+                Cumuls cumuls = lus.getOrDefault(m, new Cumuls());
+                mois.put(m, cumuls);
+                if (versionsLues.containsKey(m)) {
+                    String version = versionsLues.get(m);
+                    if (Objects.equals(version, version(cache, companyId, m))) {
+                        cumuls.version = version;
+                        cache.put(cle(companyId, m), cumuls);
+                    }
+                }
+            }
+        }
+        return rapport(companyId, debut, fin, mois, enCache);
+    }
+
+    /**
+     * Déclarations mensuelles de toutes les entreprises actives, calculées en parallèle
+     */
+    public Map<String, Object> agregerEntreprises(YearMonth periode) {
+        return agregerEntreprises(periode, periode);
+    }
+
+    /**
+     * Déclarations de toutes les entreprises actives sur les mois de debut à fin inclus
+     */
+    public Map<String, Object> agregerEntreprises(YearMonth debut, YearMonth fin) {
+        List<Long> companyIds = companyRepository.findByIsActiveTrue().stream().map(Company::getId).collect(Collectors.toList());
+        return agregerEntreprises(companyIds, debut, fin);
+    }
+
+    /**
+     * Déclarations d'une liste d'entreprises, calculées en parallèle ; l'échec d'une entreprise n'arrête pas le lot
+     */
+    public Map<String, Object> agregerEntreprises(List<Long> companyIds, YearMonth debut, YearMonth fin) {
+        long depart = System.nanoTime();
+        int threads = Math.max(1, Math.min(parallelisme, companyIds.size()));
+        List<Map<String, Object>> resultats;
+        if (threads == 1) {
+            resultats = companyIds.stream().map(id -> agregerOuAnomalie(id, debut, fin)).collect(Collectors.toList());
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                resultats = pool.submit(() -> companyIds.parallelStream()
+                    .map(id -> agregerOuAnomalie(id, debut, fin))
+                    .collect(Collectors.toList())).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Préparation des déclarations interrompue");
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Erreur lors de la préparation des déclarations: " + e.getCause().getMessage(), e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        List<Map<String, Object>> declarations = new ArrayList<>();
+        List<Map<String, Object>> anomalies = new ArrayList<>();
+        for (Map<String, Object> resultat : resultats) {
+            (resultat.containsKey("erreur") ? anomalies : declarations).add(resultat);
+        }
+        long dureeNanos = System.nanoTime() - depart;
+        Map<String, Object> lot = new LinkedHashMap<>();
+        lot.put("periodStart", debut.toString());
+        lot.put("periodEnd", fin.toString());
+        lot.put("entreprises", companyIds.size());
+        lot.put("declarations", declarations);
+        lot.put("anomalies", anomalies);
+        lot.put("statut", anomalies.isEmpty() ? "TERMINE" : "PARTIEL");
+        lot.put("dureeMs", dureeNanos / 1_000_000);
+        lot.put("entreprisesParSeconde", dureeNanos > 0 ? Math.round(companyIds.size() * 1e9 / dureeNanos) : 0);
+        return lot;
+    }
+
+    /**
+     * Invalider le mois d'une écriture validée ou annulée (immédiatement et après validation de la transaction)
+     */
+    public void invaliderMois(Long companyId, LocalDate date) {
+        if (companyId == null || date == null) {
+            return;
+        }
+        YearMonth mois = YearMonth.from(date);
+        Runnable invalidation = () -> {
+            Cache cache = cache();
+            if (cache != null) {
+                // Jeton toujours nouveau : deux invalidations concurrentes ne peuvent pas écrire la même version
+                cache.put(cleVersion(companyId, mois), UUID.randomUUID().toString());
+                cache.evict(cle(companyId, mois));
+            }
+        };
+        invalidation.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidation.run();
+                }
+            });
+        }
+    }
+
+    private Map<String, Object> agregerOuAnomalie(Long companyId, YearMonth debut, YearMonth fin) {
+        try {
+            return agreger(companyId, debut, fin);
+        } catch (RuntimeException e) {
+            logger.warn("Déclaration {} à {} de l'entreprise {} en échec : {}", debut, fin, companyId, e.getMessage());
+            Map<String, Object> anomalie = new LinkedHashMap<>();
+            anomalie.put("companyId", companyId);
+            anomalie.put("erreur", e.getMessage());
+            return anomalie;
+        }
+    }
+
+    // Une requête groupée par compte et par mois sur les comptes fiscaux et sociaux
+    private Map<YearMonth, Cumuls> lire(Long companyId, YearMonth debut, YearMonth fin) {
+        Map<YearMonth, Cumuls> parMois = new HashMap<>();
+        for (Object[] row : accountEntryRepository.sumValidatedTaxAccountsByMonth(companyId, debut.atDay(1), fin.atEndOfMonth())) {
+            YearMonth mois = YearMonth.of(((Number) row[1]).intValue(), ((Number) row[2]).intValue());
+            parMois.computeIfAbsent(mois, k -> new Cumuls())
+                .ajouter((String) row[0], (BigDecimal) row[3], (BigDecimal) row[4], ((Number) row[5]).longValue());
+        }
+        return parMois;
+    }
+
+    private Map<String, Object> rapport(Long companyId, YearMonth debut, YearMonth fin, Map<YearMonth, Cumuls> mois, int enCache) {
+        Rubriques total = new Rubriques();
+        List<Map<String, Object>> mensuel = new ArrayList<>();
+        for (Map.Entry<YearMonth, Cumuls> entree : mois.entrySet()) {
+            Rubriques duMois = new Rubriques();
+            duMois.ajouter(entree.getValue());
+            total.ajouter(entree.getValue());
+            Map<String, Object> ligne = new LinkedHashMap<>();
+            ligne.put("period", entree.getKey().toString());
+            ligne.put("vatCollected", montant(duMois.tvaCollectee));
+            ligne.put("vatDeductible", montant(duMois.tvaDeductible()));
+            ligne.put("withholdingTax", montant(duMois.retenues));
+            ligne.put("socialBase", montant(duMois.baseSociale));
+            mensuel.add(ligne);
+        }
+
+        BigDecimal tvaNette = total.tvaCollectee.subtract(total.tvaDeductible());
+        Map<String, Object> retenuesParCompte = new LinkedHashMap<>();
+        total.retenuesParCompte.forEach((compte, montant) -> retenuesParCompte.put(compte, montant(montant)));
+        Map<String, Object> parClasse = new LinkedHashMap<>();
+        total.parClasse.forEach((classe, totaux) -> parClasse.put(classe + "x", Map.of(
+            "debit", montant(totaux[0]), "credit", montant(totaux[1]))));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("companyId", companyId);
+        result.put("periodStart", debut.toString());
+        result.put("periodEnd", fin.toString());
+        result.put("revenue", montant(total.chiffreAffaires));
+        result.put("vatCollected", montant(total.tvaCollectee));
+        result.put("vatDeductibleFixedAssets", montant(total.tvaImmobilisations));
+        result.put("vatDeductibleGoodsAndServices", montant(total.tvaBiensServices));
+        result.put("vatDeductible", montant(total.tvaDeductible()));
+        result.put("vatNet", montant(tvaNette));
+        result.put("vatPayable", montant(tvaNette.max(BigDecimal.ZERO)));
+        result.put("vatCredit", montant(tvaNette.negate().max(BigDecimal.ZERO)));
+        result.put("withholdingTax", montant(total.retenues));
+        result.put("withholdingByAccount", retenuesParCompte);
+        result.put("socialBase", montant(total.baseSociale));
+        result.put("employerSocialCharges", montant(total.chargesPatronales));
+        result.put("socialContributions", montant(total.organismesSociaux));
+        result.put("byAccountClass", parClasse);
+        result.put("monthly", mensuel);
+        result.put("linesCount", total.lignes);
+        result.put("cachedMonths", enCache);
+        result.put("queriedMonths", mois.size() - enCache);
+        return result;
+    }
+
+    /**
+     * Cumuls du mois en cache, s'ils ont été lus sous la version courante du mois
+     */
+    private static Cumuls enCache(Cache cache, Long companyId, YearMonth mois) {
+        Cumuls cumuls = cache.get(cle(companyId, mois), Cumuls.class);
+        return cumuls != null && Objects.equals(cumuls.version, version(cache, companyId, mois)) ? cumuls : null;
+    }
+
+    private static String version(Cache cache, Long companyId, YearMonth mois) {
+        return cache.get(cleVersion(companyId, mois), String.class);
+    }
+
+    private Cache cache() {
+        return cacheManager != null ? cacheManager.getCache(CACHE) : null;
+    }
+
+    private static String cle(Long companyId, YearMonth mois) {
+        return companyId + "|" + mois;
+    }
+
+    private static String cleVersion(Long companyId, YearMonth mois) {
+        return companyId + "|" + mois + "|version";
+    }
+
+    private static BigDecimal montant(BigDecimal valeur) {
+        return valeur.setScale(2, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,408 @@
+package com.ecomptaia.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * Règles fiscales et sociales de paie compilées : barèmes d'impôt sur les salaires, taux de charges sociales et
+ * taux de TVA, par pays et par date d'effet, lus depuis un fichier de règles (voir fiscalite/regles-fiscales.csv).
+ *
+ * Chaque règle est compilée une fois en tableaux de constantes immuables ; les versions successives d'un pays sont
+ * rangées par date d'effet et retrouvées par recherche dichotomique. Un calcul ne fait donc ni analyse de constante,
+ * ni aiguillage par pays au-delà d'une lecture de table de hachage, ni allocation hors des montants calculés.
+ * Le moteur est immuable et partagé entre threads : modifier les règles revient à en compiler un nouveau.
+ */
+public final class TaxRuleEngine {
+
+    public static final String IMPOT = "IMPOT";
+    public static final String SOCIAL = "SOCIAL";
+    public static final String TVA = "TVA";
+
+    static final String TOUS = "*";
+
+    private static final BigDecimal CENT = new BigDecimal("100");
+
+    /**
+     * Impôt sur un salaire brut
+     */
+    public record Impot(BigDecimal revenuImposable, BigDecimal montant, BigDecimal net, BigDecimal taux) {
+    }
+
+    /**
+     * Charges sociales sur un salaire brut
+     */
+    public record Charges(BigDecimal employeur, BigDecimal salarie, BigDecimal total, BigDecimal net, BigDecimal coutTotal) {
+    }
+
+    /**
+     * TVA sur un montant hors taxe ; le taux est exprimé en pourcentage
+     */
+    public record Tva(BigDecimal montant, BigDecimal taux, BigDecimal tva, BigDecimal totalTtc) {
+    }
+
+    /**
+     * Barème progressif d'impôt compilé : la tranche i couvre ]planchers[i], plafonds[i]] (plafond null pour la dernière)
+     * et l'impôt y vaut cumuls[i] + (revenu - planchers[i]) x taux[i]
+     */
+    public static final class BaremeImpot {
+
+        private final BigDecimal abattement;
+        private final BigDecimal[] planchers;
+        private final BigDecimal[] plafonds;
+        private final BigDecimal[] cumuls;
+        private final BigDecimal[] taux;
+        private final boolean quotient;
+        private final BigDecimal parEnfant;
+        private final BigDecimal tauxAffiche;
+
+        private BaremeImpot(BigDecimal abattement, BigDecimal[] planchers, BigDecimal[] plafonds, BigDecimal[] cumuls,
+                            BigDecimal[] taux, boolean quotient, BigDecimal parEnfant, BigDecimal tauxAffiche) {
+            this.abattement = abattement;
+            this.planchers = planchers;
+            this.plafonds = plafonds;
+            this.cumuls = cumuls;
+            this.taux = taux;
+            this.quotient = quotient;
+            this.parEnfant = parEnfant;
+            this.tauxAffiche = tauxAffiche;
+        }
+
+        public Impot calculer(BigDecimal brut, boolean enfants, int nombreEnfants) {
+            BigDecimal revenu = abattement != null ? brut.multiply(abattement) : brut;
+
+            int i = 0;
+            while (plafonds[i] != null && revenu.compareTo(plafonds[i]) > 0) {
+                i++;
+            }
+            BigDecimal impot;
+            if (taux[i].signum() == 0 && cumuls[i].signum() == 0) {
+                impot = BigDecimal.ZERO;
+            } else {
+                impot = (planchers[i].signum() == 0 ? revenu : revenu.subtract(planchers[i])).multiply(taux[i]);
+                if (cumuls[i].signum() != 0) {
+                    impot = cumuls[i].add(impot);
+                }
+            }
+
+            // Quotient familial (parts supplémentaires) ou crédit d'impôt par enfant
+            if (enfants && nombreEnfants > 0 && parEnfant != null) {
+                impot = quotient
+                    ? impot.divide(BigDecimal.ONE.add(parEnfant.multiply(BigDecimal.valueOf(nombreEnfants))), 2, RoundingMode.HALF_UP)
+                    : impot.subtract(BigDecimal.valueOf(nombreEnfants).multiply(parEnfant)).max(BigDecimal.ZERO);
+            }
+
+            BigDecimal net = brut.subtract(impot);
+            BigDecimal tauxEffectif = tauxAffiche != null ? tauxAffiche
+                : impot.divide(brut, 4, RoundingMode.HALF_UP).multiply(CENT);
+            return new Impot(revenu, impot, net, tauxEffectif);
+        }
+
+        public int getNombreTranches() {
+            return taux.length;
+        }
+    }
+
+    /**
+     * Taux de charges sociales compilés
+     */
+    public static final class TauxSociaux {
+
+        private final BigDecimal employeur;
+        private final BigDecimal salarie;
+
+        private TauxSociaux(BigDecimal employeur, BigDecimal salarie) {
+            this.employeur = employeur;
+            this.salarie = salarie;
+        }
+
+        public Charges calculer(BigDecimal brut) {
+            BigDecimal chargesEmployeur = brut.multiply(employeur);
+            BigDecimal chargesSalariales = brut.multiply(salarie);
+            return new Charges(chargesEmployeur, chargesSalariales, chargesEmployeur.add(chargesSalariales),
+                brut.subtract(chargesSalariales), brut.add(chargesEmployeur));
+        }
+    }
+
+    /**
+     * Taux de TVA compilés par type d'opération ; sans type déclaré, le taux par défaut s'applique à tout type
+     */
+    public static final class BaremeTva {
+
+        private final String[] types;
+        private final BigDecimal[] taux;
+        private final BigDecimal[] pourcentages;
+        private final BigDecimal tauxAutres;
+        private final BigDecimal pourcentageAutres;
+
+        private BaremeTva(String[] types, BigDecimal[] taux, BigDecimal tauxAutres) {
+            this.types = types;
+            this.taux = taux;
+            this.pourcentages = new BigDecimal[taux.length];
+            for (int i = 0; i < taux.length; i++) {
+                pourcentages[i] = taux[i].multiply(CENT);
+            }
+            this.tauxAutres = tauxAutres;
+            this.pourcentageAutres = tauxAutres.multiply(CENT);
+        }
+
+        public Tva calculer(BigDecimal montant, String type) {
+            BigDecimal applique = tauxAutres;
+            BigDecimal pourcentage = pourcentageAutres;
+            if (types.length > 0) {
+                if (type == null) {
+                    throw new RuntimeException("Type de TVA requis");
+                }
+                String cle = type.toUpperCase();
+                for (int i = 0; i < types.length; i++) {
+                    if (types[i].equals(cle)) {
+                        applique = taux[i];
+                        pourcentage = pourcentages[i];
+                        break;
+                    }
+                }
+            }
+            BigDecimal tva = montant.multiply(applique);
+            return new Tva(montant, pourcentage, tva, montant.add(tva));
+        }
+    }
+
+    // Versions successives d'une règle pour un pays, triées par date d'effet (jours depuis l'époque)
+    private static final class Versions<T> {
+        private final long[] depuis;
+        private final Object[] regles;
+
+        private Versions(TreeMap<LocalDate, T> parDate) {
+            depuis = new long[parDate.size()];
+            regles = new Object[parDate.size()];
+            int i = 0;
+            for (Map.Entry<LocalDate, T> version : parDate.entrySet()) {
+                depuis[i] = version.getKey().toEpochDay();
+                regles[i++] = version.getValue();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        T en(LocalDate date) {
+            int i = Arrays.binarySearch(depuis, date.toEpochDay());
+            if (i < 0) {
+                // Dernière version entrée en vigueur ; avant la première, la plus ancienne s'applique
+                i = Math.max(0, -i - 2);
+            }
+            return (T) regles[i];
+        }
+    }
+
+    private final Map<String, Versions<BaremeImpot>> impots;
+    private final Map<String, Versions<TauxSociaux>> sociaux;
+    private final Map<String, Versions<BaremeTva>> tvas;
+    private final String source;
+    private final int nombreRegles;
+
+    private TaxRuleEngine(Map<String, Versions<BaremeImpot>> impots, Map<String, Versions<TauxSociaux>> sociaux,
+                          Map<String, Versions<BaremeTva>> tvas, String source, int nombreRegles) {
+        this.impots = impots;
+        this.sociaux = sociaux;
+        this.tvas = tvas;
+        this.source = source;
+        this.nombreRegles = nombreRegles;
+    }
+
+    /**
+     * Barème d'impôt en vigueur à la date pour le pays (règle '*' pour un pays non listé)
+     */
+    public BaremeImpot impot(String pays, LocalDate date) {
+        return regle(impots, IMPOT, pays, date);
+    }
+
+    public TauxSociaux social(String pays, LocalDate date) {
+        return regle(sociaux, SOCIAL, pays, date);
+    }
+
+    public BaremeTva tva(String pays, LocalDate date) {
+        return regle(tvas, TVA, pays, date);
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public int getNombreRegles() {
+        return nombreRegles;
+    }
+
+    /**
+     * Noms de pays reconnus, par nature de règle
+     */
+    public Map<String, Set<String>> getPays() {
+        Map<String, Set<String>> pays = new LinkedHashMap<>();
+        pays.put(IMPOT, new TreeSet<>(impots.keySet()));
+        pays.put(SOCIAL, new TreeSet<>(sociaux.keySet()));
+        pays.put(TVA, new TreeSet<>(tvas.keySet()));
+        return pays;
+    }
+
+    private static <T> T regle(Map<String, Versions<T>> regles, String nature, String pays, LocalDate date) {
+        Versions<T> versions = regles.get(pays.toUpperCase());
+        if (versions == null) {
+            versions = regles.get(TOUS);
+            if (versions == null) {
+                throw new RuntimeException("Aucune règle " + nature + " pour le pays " + pays);
+            }
+        }
+        return versions.en(date != null ? date : LocalDate.now());
+    }
+
+    /**
+     * Compiler un fichier de règles ; une ligne invalide fait échouer toute la compilation
+     */
+    public static TaxRuleEngine compiler(BufferedReader lecteur, String source) throws IOException {
+        Map<String, TreeMap<LocalDate, BaremeImpot>> impots = new HashMap<>();
+        Map<String, TreeMap<LocalDate, TauxSociaux>> sociaux = new HashMap<>();
+        Map<String, TreeMap<LocalDate, BaremeTva>> tvas = new HashMap<>();
+        int nombreRegles = 0;
+        int numero = 0;
+        String ligne;
+        while ((ligne = lecteur.readLine()) != null) {
+            numero++;
+            String texte = ligne.strip();
+            if (texte.isEmpty() || texte.startsWith("#")) {
+                continue;
+            }
+            String[] champs = texte.split(";", -1);
+            try {
+                if (champs.length < 3) {
+                    throw new IllegalArgumentException("nature, pays et date d'effet requis");
+                }
+                String nature = champs[0].strip().toUpperCase();
+                LocalDate depuis = LocalDate.parse(champs[2].strip());
+                switch (nature) {
+                    case IMPOT -> enregistrer(impots, champs[1], depuis, compilerImpot(champs));
+                    case SOCIAL -> enregistrer(sociaux, champs[1], depuis, compilerSocial(champs));
+                    case TVA -> enregistrer(tvas, champs[1], depuis, compilerTva(champs));
+                    default -> throw new IllegalArgumentException("nature inconnue " + champs[0]);
+                }
+                nombreRegles++;
+            } catch (IllegalArgumentException | DateTimeParseException | ArithmeticException e) {
+                throw new RuntimeException("Règle fiscale invalide (" + source + ", ligne " + numero + ") : " + e.getMessage(), e);
+            }
+        }
+        return new TaxRuleEngine(figer(impots), figer(sociaux), figer(tvas), source, nombreRegles);
+    }
+
+    private static <T> void enregistrer(Map<String, TreeMap<LocalDate, T>> regles, String pays, LocalDate depuis, T regle) {
+        for (String nom : pays.split("\\|")) {
+            String cle = nom.strip().toUpperCase();
+            if (cle.isEmpty()) {
+                throw new IllegalArgumentException("pays vide");
+            }
+            if (regles.computeIfAbsent(cle, k -> new TreeMap<>()).putIfAbsent(depuis, regle) != null) {
+                throw new IllegalArgumentException("règle en double pour " + cle + " au " + depuis);
+            }
+        }
+    }
+
+    private static <T> Map<String, Versions<T>> figer(Map<String, TreeMap<LocalDate, T>> regles) {
+        Map<String, Versions<T>> versions = new HashMap<>();
+        regles.forEach((pays, parDate) -> versions.put(pays, new Versions<>(parDate)));
+        return Collections.unmodifiableMap(versions);
+    }
+
+    // IMPOT;pays;depuis;abattement;tranches;famille;taux affiché
+    private static BaremeImpot compilerImpot(String[] champs) {
+        if (champs.length < 5) {
+            throw new IllegalArgumentException("tranches requises");
+        }
+        String[] tranches = champs[4].strip().split("\\|");
+        BigDecimal[] planchers = new BigDecimal[tranches.length];
+        BigDecimal[] plafonds = new BigDecimal[tranches.length];
+        BigDecimal[] cumuls = new BigDecimal[tranches.length];
+        BigDecimal[] taux = new BigDecimal[tranches.length];
+        BigDecimal plancher = BigDecimal.ZERO;
+        for (int i = 0; i < tranches.length; i++) {
+            String[] tranche = tranches[i].strip().split(":");
+            if (tranche.length != 3) {
+                throw new IllegalArgumentException("tranche " + tranches[i] + " : plafond:cumul:taux attendu");
+            }
+            boolean derniere = i == tranches.length - 1;
+            if (TOUS.equals(tranche[0].strip()) != derniere) {
+                throw new IllegalArgumentException("seule la dernière tranche, et elle seule, est sans plafond ('*')");
+            }
+            planchers[i] = plancher;
+            if (!derniere) {
+                plafonds[i] = decimal(tranche[0]);
+                if (plafonds[i].compareTo(plancher) <= 0) {
+                    throw new IllegalArgumentException("plafonds non croissants à la tranche " + tranches[i]);
+                }
+                plancher = plafonds[i];
+            }
+            cumuls[i] = decimal(tranche[1]);
+            taux[i] = decimal(tranche[2]);
+        }
+
+        boolean quotient = false;
+        BigDecimal parEnfant = null;
+        String famille = champs.length > 5 ? champs[5].strip() : "";
+        if (!famille.isEmpty()) {
+            String[] mesure = famille.split(":");
+            if (mesure.length != 2 || !("QUOTIENT".equals(mesure[0]) || "CREDIT".equals(mesure[0]))) {
+                throw new IllegalArgumentException("mesure familiale " + famille + " : QUOTIENT:parts ou CREDIT:montant attendu");
+            }
+            quotient = "QUOTIENT".equals(mesure[0]);
+            parEnfant = decimal(mesure[1]);
+        }
+        return new BaremeImpot(optionnel(champs[3]), planchers, plafonds, cumuls, taux, quotient, parEnfant,
+            champs.length > 6 ? optionnel(champs[6]) : null);
+    }
+
+    // SOCIAL;pays;depuis;taux employeur;taux salarié
+    private static TauxSociaux compilerSocial(String[] champs) {
+        if (champs.length < 5) {
+            throw new IllegalArgumentException("taux employeur et salarié requis");
+        }
+        return new TauxSociaux(decimal(champs[3]), decimal(champs[4]));
+    }
+
+    // TVA;pays;depuis;TYPE=taux|...|*=taux
+    private static BaremeTva compilerTva(String[] champs) {
+        if (champs.length < 4) {
+            throw new IllegalArgumentException("taux de TVA requis");
+        }
+        List<String> types = new ArrayList<>();
+        List<BigDecimal> taux = new ArrayList<>();
+        BigDecimal tauxAutres = null;
+        for (String element : champs[3].strip().split("\\|")) {
+            String[] paire = element.split("=");
+            if (paire.length != 2) {
+                throw new IllegalArgumentException("taux " + element + " : TYPE=taux attendu");
+            }
+            String type = paire[0].strip().toUpperCase();
+            if (TOUS.equals(type)) {
+                tauxAutres = decimal(paire[1]);
+            } else {
+                types.add(type);
+                taux.add(decimal(paire[1]));
+            }
+        }
+        if (tauxAutres == null) {
+            throw new IllegalArgumentException("taux par défaut ('*=taux') requis");
+        }
+        return new BaremeTva(types.toArray(new String[0]), taux.toArray(new BigDecimal[0]), tauxAutres);
+    }
+
+    private static BigDecimal optionnel(String valeur) {
+        return valeur.isBlank() ? null : decimal(valeur);
+    }
+
+    private static BigDecimal decimal(String valeur) {
+        try {
+            return new BigDecimal(valeur.strip());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("nombre invalide '" + valeur + "'");
+        }
+    }
+}
@@ -24,6 +24,9 @@ public class TestDataService {
     @Autowired
     private AccountEntryRepository accountEntryRepository;
 
+    @Autowired
+    private AccountBalanceService accountBalanceService;
+
     /**
      * Générer des données de test pour les rapports financiers
      */
@@ -150,6 +153,11 @@ public class TestDataService {
         
         // Générer les comptes correspondants
         generateTestAccountEntries(savedEntries);
+
+        // Écritures validées : leurs lignes entrent dans les cumuls de soldes
+        for (JournalEntry entry : savedEntries) {
+            accountBalanceService.postJournalEntry(entry);
+        }
     }
 
     private void generateTestAccountEntries(List<JournalEntry> journalEntries) {
@@ -341,12 +349,19 @@ public class TestDataService {
      * Nettoyer les données de test
      */
     public void cleanTestData(Long companyId) {
+        // Retirer des cumuls les écritures comptabilisées, tant que leurs lignes existent
+        List<JournalEntry> journalEntries = journalEntryRepository.findByCompanyId(companyId);
+        for (JournalEntry entry : journalEntries) {
+            if (Boolean.TRUE.equals(entry.getIsPosted())) {
+                accountBalanceService.unpostJournalEntry(entry);
+            }
+        }
+
         // Supprimer les comptes d'abord
         List<AccountEntry> accountEntries = accountEntryRepository.findByCompanyId(companyId);
         accountEntryRepository.deleteAll(accountEntries);
         
         // Puis supprimer les écritures
-        List<JournalEntry> journalEntries = journalEntryRepository.findByCompanyId(companyId);
         journalEntryRepository.deleteAll(journalEntries);
     }
 }
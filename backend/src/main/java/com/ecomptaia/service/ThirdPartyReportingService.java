@@ -1,13 +1,11 @@
 package com.ecomptaia.service;
 
 import com.ecomptaia.entity.ThirdParty;
-import com.ecomptaia.entity.JournalEntry;
-import com.ecomptaia.entity.AccountEntry;
 import com.ecomptaia.repository.ThirdPartyRepository;
-import com.ecomptaia.repository.JournalEntryRepository;
 import com.ecomptaia.repository.AccountEntryRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -16,9 +14,14 @@ import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Service de reporting spécifique aux tiers
+ *
+ * Grands livres, balance âgée et analyse des créances sont calculés à partir des écritures validées par
+ * ThirdPartySubLedger : un parcours des lignes des comptes de tiers, trié par compte puis par date, pour
+ * tous les tiers de l'entreprise ; le grand livre d'un seul tiers passe par l'index (entreprise, compte).
  */
 @Service
 public class ThirdPartyReportingService {
@@ -26,19 +29,15 @@ public class ThirdPartyReportingService {
     @Autowired
     private ThirdPartyRepository thirdPartyRepository;
 
-    @Autowired
-    private JournalEntryRepository journalEntryRepository;
-
     @Autowired
     private AccountEntryRepository accountEntryRepository;
 
     /**
      * Générer le Grand Livre d'un tiers spécifique
      */
+    @Transactional(readOnly = true)
     public Map<String, Object> generateThirdPartyLedger(Long companyId, Long thirdPartyId, 
                                                        LocalDate startDate, LocalDate endDate) {
-        Map<String, Object> ledger = new HashMap<>();
-        
         // Récupérer le tiers
         Optional<ThirdParty> thirdPartyOpt = thirdPartyRepository.findById(thirdPartyId);
         if (!thirdPartyOpt.isPresent()) {
@@ -46,72 +45,70 @@ public class ThirdPartyReportingService {
         }
         ThirdParty thirdParty = thirdPartyOpt.get();
         
-        // Récupérer toutes les écritures de la période
-        List<JournalEntry> entries = journalEntryRepository.findValidatedEntriesByDateRange(companyId, startDate, endDate);
-        
-        // Filtrer les écritures liées à ce tiers (comptes de tiers)
-        List<Map<String, Object>> thirdPartyEntries = new ArrayList<>();
-        BigDecimal totalDebit = BigDecimal.ZERO;
-        BigDecimal totalCredit = BigDecimal.ZERO;
-        BigDecimal soldePrecedent = BigDecimal.ZERO;
-        
-        for (JournalEntry entry : entries) {
-            List<AccountEntry> accountEntries = accountEntryRepository.findByJournalEntryId(entry.getId());
-            
-            for (AccountEntry accountEntry : accountEntries) {
-                // Vérifier si c'est le compte spécifique du tiers
-                if (isAccountForThirdParty(accountEntry.getAccountNumber(), thirdParty.getAccountNumber())) {
-                    
-                    Map<String, Object> entryData = new HashMap<>();
-                    entryData.put("date", entry.getEntryDate());
-                    entryData.put("journalEntryId", entry.getId());
-                    entryData.put("reference", entry.getReference());
-                    entryData.put("description", entry.getDescription());
-                    entryData.put("accountNumber", accountEntry.getAccountNumber());
-                    entryData.put("accountName", accountEntry.getAccountName());
-                    entryData.put("debit", "DEBIT".equals(accountEntry.getAccountType()) ? accountEntry.getAmount() : BigDecimal.ZERO);
-                    entryData.put("credit", "CREDIT".equals(accountEntry.getAccountType()) ? accountEntry.getAmount() : BigDecimal.ZERO);
-                    entryData.put("accountType", accountEntry.getAccountType());
-                    
-                    thirdPartyEntries.add(entryData);
-                    
-                    if ("DEBIT".equals(accountEntry.getAccountType())) {
-                        totalDebit = totalDebit.add(accountEntry.getAmount());
-                    } else {
-                        totalCredit = totalCredit.add(accountEntry.getAmount());
-                    }
-                }
+        // Lignes du seul compte du tiers jusqu'à la fin de période (solde d'ouverture et lettrage compris)
+        ThirdPartySubLedger sousLedger = new ThirdPartySubLedger(startDate);
+        if (thirdParty.getAccountNumber() != null) {
+            try (Stream<Object[]> lignes = accountEntryRepository.streamValidatedLinesByAccount(
+                    companyId, thirdParty.getAccountNumber(), endDate)) {
+                lignes.forEach(ligne -> ajouter(sousLedger, ligne));
             }
         }
+        sousLedger.terminer();
         
-        // Trier par date
-        thirdPartyEntries.sort(Comparator.comparing(e -> (LocalDate) e.get("date")));
-        
-        // Calculer le solde final
-        BigDecimal soldeFinal = soldePrecedent.add(totalDebit).subtract(totalCredit);
-        
+        Map<String, Object> ledger = createLedger(thirdParty, sousLedger.compte(thirdParty.getAccountNumber()));
         ledger.put("thirdParty", thirdParty);
         ledger.put("startDate", startDate);
         ledger.put("endDate", endDate);
-        ledger.put("soldePrecedent", soldePrecedent);
-        ledger.put("totalDebit", totalDebit);
-        ledger.put("totalCredit", totalCredit);
-        ledger.put("soldeFinal", soldeFinal);
-        ledger.put("entries", thirdPartyEntries);
-        ledger.put("nombreEcritures", thirdPartyEntries.size());
         ledger.put("generatedAt", LocalDateTime.now());
         
         return ledger;
     }
 
+    /**
+     * Générer les Grands Livres de tous les tiers de l'entreprise en un seul parcours des écritures
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> generateThirdPartyLedgers(Long companyId, LocalDate startDate, LocalDate endDate) {
+        long debut = System.nanoTime();
+        List<ThirdParty> thirdParties = thirdPartyRepository.findByCompanyIdAndIsActiveTrue(companyId);
+        ThirdPartySubLedger sousLedger = buildSubLedger(companyId, thirdParties, startDate, endDate);
+        
+        List<Map<String, Object>> ledgers = new ArrayList<>();
+        for (ThirdParty thirdParty : thirdParties) {
+            ThirdPartySubLedger.Compte compte = sousLedger.compte(thirdParty.getAccountNumber());
+            if (compte == null) {
+                continue;
+            }
+            Map<String, Object> ledger = createLedger(thirdParty, compte);
+            ledger.put("thirdPartyId", thirdParty.getId());
+            ledger.put("code", thirdParty.getCode());
+            ledger.put("name", thirdParty.getName());
+            ledger.put("accountNumber", thirdParty.getAccountNumber());
+            ledgers.add(ledger);
+        }
+        ledgers.sort(Comparator.comparing(l -> (String) l.get("accountNumber")));
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("startDate", startDate);
+        result.put("endDate", endDate);
+        result.put("ledgers", ledgers);
+        result.put("totalThirdParties", ledgers.size());
+        result.put("totalLines", sousLedger.getLignesLues());
+        result.put("durationMs", (System.nanoTime() - debut) / 1_000_000);
+        result.put("generatedAt", LocalDateTime.now());
+        return result;
+    }
+
     /**
      * Générer la Balance des Tiers (Balance Âgée)
      */
+    @Transactional(readOnly = true)
     public Map<String, Object> generateThirdPartyBalance(Long companyId, LocalDate asOfDate) {
         Map<String, Object> balance = new HashMap<>();
         
-        // Récupérer tous les tiers actifs
+        // Récupérer tous les tiers actifs et leurs comptes en un parcours
         List<ThirdParty> allThirdParties = thirdPartyRepository.findByCompanyIdAndIsActiveTrue(companyId);
+        ThirdPartySubLedger sousLedger = buildSubLedger(companyId, allThirdParties, null, asOfDate);
         
         // Séparer les débiteurs et créanciers
         List<Map<String, Object>> debtors = new ArrayList<>();
@@ -119,30 +116,41 @@ public class ThirdPartyReportingService {
         
         BigDecimal totalReceivables = BigDecimal.ZERO;
         BigDecimal totalPayables = BigDecimal.ZERO;
+        Map<String, BigDecimal> receivablesByAge = emptyAgeBuckets();
+        Map<String, BigDecimal> payablesByAge = emptyAgeBuckets();
         
         for (ThirdParty thirdParty : allThirdParties) {
-            if (thirdParty.getCurrentBalance().compareTo(BigDecimal.ZERO) > 0) {
+            ThirdPartySubLedger.Compte compte = sousLedger.compte(thirdParty.getAccountNumber());
+            if (compte == null || compte.getSolde().signum() == 0) {
+                continue;
+            }
+            Map<String, Object> entry = createThirdPartyBalanceEntry(thirdParty, compte, asOfDate);
+            @SuppressWarnings("unchecked")
+            Map<String, BigDecimal> agedBalance = (Map<String, BigDecimal>) entry.get("agedBalance");
+            if (compte.getSolde().signum() > 0) {
                 // Débiteur
-                Map<String, Object> debtor = createThirdPartyBalanceEntry(thirdParty, asOfDate);
-                debtors.add(debtor);
-                totalReceivables = totalReceivables.add(thirdParty.getCurrentBalance());
-            } else if (thirdParty.getCurrentBalance().compareTo(BigDecimal.ZERO) < 0) {
+                debtors.add(entry);
+                totalReceivables = totalReceivables.add(compte.getSolde());
+                agedBalance.forEach((tranche, montant) -> receivablesByAge.merge(tranche, montant, BigDecimal::add));
+            } else {
                 // Créancier
-                Map<String, Object> creditor = createThirdPartyBalanceEntry(thirdParty, asOfDate);
-                creditors.add(creditor);
-                totalPayables = totalPayables.add(thirdParty.getCurrentBalance().abs());
+                creditors.add(entry);
+                totalPayables = totalPayables.add(compte.getSolde().abs());
+                agedBalance.forEach((tranche, montant) -> payablesByAge.merge(tranche, montant.negate(), BigDecimal::add));
             }
         }
         
-        // Trier par montant décroissant
+        // Trier par montant décroissant (en valeur absolue pour les créanciers)
         debtors.sort((a, b) -> ((BigDecimal) b.get("balance")).compareTo((BigDecimal) a.get("balance")));
-        creditors.sort((a, b) -> ((BigDecimal) b.get("balance")).compareTo((BigDecimal) a.get("balance")));
+        creditors.sort((a, b) -> ((BigDecimal) a.get("balance")).compareTo((BigDecimal) b.get("balance")));
         
         balance.put("asOfDate", asOfDate);
         balance.put("debtors", debtors);
         balance.put("creditors", creditors);
         balance.put("totalReceivables", totalReceivables);
         balance.put("totalPayables", totalPayables);
+        balance.put("receivablesByAge", receivablesByAge);
+        balance.put("payablesByAge", payablesByAge);
         balance.put("netPosition", totalReceivables.subtract(totalPayables));
         balance.put("totalThirdParties", allThirdParties.size());
         balance.put("totalDebtors", debtors.size());
@@ -203,29 +211,35 @@ public class ThirdPartyReportingService {
     /**
      * Générer l'Analyse des Créances et Dettes
      */
+    @Transactional(readOnly = true)
     public Map<String, Object> generateReceivablesAnalysis(Long companyId, LocalDate asOfDate) {
         Map<String, Object> analysis = new HashMap<>();
         
-        // Récupérer les débiteurs
-        List<ThirdParty> debtors = thirdPartyRepository.findDebtorsByCompany(companyId);
+        // Soldes et pièces ouvertes des tiers à la date d'arrêté
+        List<ThirdParty> thirdParties = thirdPartyRepository.findByCompanyIdAndIsActiveTrue(companyId);
+        ThirdPartySubLedger sousLedger = buildSubLedger(companyId, thirdParties, null, asOfDate);
         
-        // Analyser par tranche d'âge
+        // Analyser par tranche d'âge : montants restants des pièces, débiteurs selon leur pièce la plus ancienne
         Map<String, BigDecimal> receivablesByAge = new HashMap<>();
         Map<String, Integer> countByAge = new HashMap<>();
         
         BigDecimal totalReceivables = BigDecimal.ZERO;
-        int totalDebtors = debtors.size();
+        int totalDebtors = 0;
         
-        for (ThirdParty debtor : debtors) {
-            BigDecimal balance = debtor.getCurrentBalance();
-            totalReceivables = totalReceivables.add(balance);
-            
-            // Simuler l'âge des créances (en production, calculer à partir des écritures)
-            int ageInDays = calculateReceivableAge(debtor);
-            String ageCategory = categorizeAge(ageInDays);
+        for (ThirdParty thirdParty : thirdParties) {
+            ThirdPartySubLedger.Compte compte = sousLedger.compte(thirdParty.getAccountNumber());
+            if (compte == null || compte.getSolde().signum() <= 0) {
+                continue;
+            }
+            totalDebtors++;
+            totalReceivables = totalReceivables.add(compte.getSolde());
             
-            receivablesByAge.merge(ageCategory, balance, BigDecimal::add);
-            countByAge.merge(ageCategory, 1, Integer::sum);
+            compte.parTranche(asOfDate).forEach((tranche, montant) -> {
+                if (montant.signum() != 0) {
+                    receivablesByAge.merge(tranche, montant, BigDecimal::add);
+                }
+            });
+            countByAge.merge(ThirdPartySubLedger.tranche(compte.ageMax(asOfDate)), 1, Integer::sum);
         }
         
         // Calculer les pourcentages
@@ -252,11 +266,13 @@ public class ThirdPartyReportingService {
     /**
      * Générer le Rapport de Recouvrement
      */
+    @Transactional(readOnly = true)
     public Map<String, Object> generateCollectionReport(Long companyId, LocalDate startDate, LocalDate endDate) {
         Map<String, Object> report = new HashMap<>();
         
-        // Récupérer les débiteurs avec des créances anciennes
-        List<ThirdParty> debtors = thirdPartyRepository.findDebtorsByCompany(companyId);
+        // Récupérer les débiteurs avec des créances anciennes (âge de la plus ancienne pièce ouverte)
+        List<ThirdParty> thirdParties = thirdPartyRepository.findByCompanyIdAndIsActiveTrue(companyId);
+        ThirdPartySubLedger sousLedger = buildSubLedger(companyId, thirdParties, null, endDate);
         
         List<Map<String, Object>> overdueAccounts = new ArrayList<>();
         List<Map<String, Object>> riskAccounts = new ArrayList<>();
@@ -264,17 +280,21 @@ public class ThirdPartyReportingService {
         BigDecimal totalOverdue = BigDecimal.ZERO;
         BigDecimal totalAtRisk = BigDecimal.ZERO;
         
-        for (ThirdParty debtor : debtors) {
-            int ageInDays = calculateReceivableAge(debtor);
+        for (ThirdParty debtor : thirdParties) {
+            ThirdPartySubLedger.Compte compte = sousLedger.compte(debtor.getAccountNumber());
+            if (compte == null || compte.getSolde().signum() <= 0) {
+                continue;
+            }
+            int ageInDays = compte.ageMax(endDate);
             
             if (ageInDays > 90) { // Plus de 90 jours
-                Map<String, Object> overdue = createCollectionEntry(debtor, ageInDays, "OVERDUE");
+                Map<String, Object> overdue = createCollectionEntry(debtor, compte.getSolde(), ageInDays, "OVERDUE");
                 overdueAccounts.add(overdue);
-                totalOverdue = totalOverdue.add(debtor.getCurrentBalance());
+                totalOverdue = totalOverdue.add(compte.getSolde());
             } else if (ageInDays > 60) { // Entre 60 et 90 jours
-                Map<String, Object> risk = createCollectionEntry(debtor, ageInDays, "AT_RISK");
+                Map<String, Object> risk = createCollectionEntry(debtor, compte.getSolde(), ageInDays, "AT_RISK");
                 riskAccounts.add(risk);
-                totalAtRisk = totalAtRisk.add(debtor.getCurrentBalance());
+                totalAtRisk = totalAtRisk.add(compte.getSolde());
             }
         }
         
@@ -298,22 +318,116 @@ public class ThirdPartyReportingService {
 
     // Méthodes utilitaires privées
 
-    private boolean isAccountForThirdParty(String accountNumber, String thirdPartyCode) {
-        // Utiliser le numéro de compte du tiers pour la correspondance
-        // Le numéro de compte tiers est un sous-compte de la classe 4
-        return accountNumber.equals(thirdPartyCode);
+    /**
+     * Sous-ledger des tiers donnés jusqu'à la date de fin : un flux par racine de compte de tiers (401, 411...),
+     * les lignes des comptes sans tiers étant ignorées. Une racine couverte par une racine plus courte (compte de
+     * tiers court comme 41) est retirée : chaque compte n'est lu que par un flux, ses lignes restent contiguës.
+     */
+    private ThirdPartySubLedger buildSubLedger(Long companyId, Collection<ThirdParty> thirdParties,
+                                               LocalDate startDate, LocalDate endDate) {
+        Set<String> comptes = new HashSet<>();
+        SortedSet<String> racines = new TreeSet<>();
+        for (ThirdParty thirdParty : thirdParties) {
+            String compte = thirdParty.getAccountNumber();
+            if (compte != null && !compte.isBlank()) {
+                comptes.add(compte);
+                racines.add(compte.substring(0, Math.min(3, compte.length())));
+            }
+        }
+        // Ordre lexicographique : les racines couvertes par une racine suivent immédiatement celle-ci
+        List<String> racinesDisjointes = new ArrayList<>();
+        for (String racine : racines) {
+            if (racinesDisjointes.isEmpty() || !racine.startsWith(racinesDisjointes.get(racinesDisjointes.size() - 1))) {
+                racinesDisjointes.add(racine);
+            }
+        }
+        ThirdPartySubLedger sousLedger = new ThirdPartySubLedger(startDate);
+        for (String racine : racinesDisjointes) {
+            try (Stream<Object[]> lignes = accountEntryRepository.streamValidatedThirdPartyLines(companyId, racine, endDate)) {
+                lignes.filter(ligne -> comptes.contains((String) ligne[0])).forEach(ligne -> ajouter(sousLedger, ligne));
+            }
+        }
+        return sousLedger.terminer();
+    }
+
+    /**
+     * [compte, id, date, sens, montant, référence, libellé, id écriture, n° écriture, code de lettrage]
+     */
+    private static void ajouter(ThirdPartySubLedger sousLedger, Object[] ligne) {
+        sousLedger.ajouter((String) ligne[0], ((Number) ligne[1]).longValue(), (LocalDate) ligne[2],
+            "DEBIT".equals(ligne[3]), (BigDecimal) ligne[4], (String) ligne[5], (String) ligne[6],
+            ligne[7] != null ? ((Number) ligne[7]).longValue() : null, (String) ligne[8], (String) ligne[9]);
     }
 
-    private Map<String, Object> createThirdPartyBalanceEntry(ThirdParty thirdParty, LocalDate asOfDate) {
+    private Map<String, Object> createLedger(ThirdParty thirdParty, ThirdPartySubLedger.Compte compte) {
+        Map<String, Object> ledger = new HashMap<>();
+        List<Map<String, Object>> thirdPartyEntries = new ArrayList<>();
+        List<Map<String, Object>> openItems = new ArrayList<>();
+        if (compte != null) {
+            for (ThirdPartySubLedger.Ligne ligne : compte.getLignes()) {
+                Map<String, Object> entryData = new HashMap<>();
+                entryData.put("date", ligne.date());
+                entryData.put("journalEntryId", ligne.ecritureId());
+                entryData.put("entryNumber", ligne.numeroEcriture());
+                entryData.put("reference", ligne.reference());
+                entryData.put("description", ligne.libelle());
+                entryData.put("accountNumber", compte.getNumero());
+                entryData.put("accountName", thirdParty.getName());
+                entryData.put("debit", ligne.debit());
+                entryData.put("credit", ligne.credit());
+                entryData.put("accountType", ligne.debit().signum() != 0 ? "DEBIT" : "CREDIT");
+                entryData.put("balance", ligne.solde());
+                entryData.put("lettrage", ligne.lettrage());
+                entryData.put("lettrageCode", ligne.codeLettrage());
+                thirdPartyEntries.add(entryData);
+            }
+            for (ThirdPartySubLedger.PieceOuverte piece : compte.getPiecesOuvertes()) {
+                Map<String, Object> item = new HashMap<>();
+                item.put("date", piece.date());
+                item.put("reference", piece.reference());
+                item.put("description", piece.libelle());
+                item.put("amount", piece.montant());
+                item.put("remaining", piece.reste());
+                item.put("partial", piece.isPartielle());
+                openItems.add(item);
+            }
+        }
+        BigDecimal soldePrecedent = compte != null ? compte.getSoldeOuverture() : BigDecimal.ZERO;
+        BigDecimal totalDebit = compte != null ? compte.getTotalDebit() : BigDecimal.ZERO;
+        BigDecimal totalCredit = compte != null ? compte.getTotalCredit() : BigDecimal.ZERO;
+        
+        ledger.put("soldePrecedent", soldePrecedent);
+        ledger.put("totalDebit", totalDebit);
+        ledger.put("totalCredit", totalCredit);
+        ledger.put("soldeFinal", soldePrecedent.add(totalDebit).subtract(totalCredit));
+        ledger.put("entries", thirdPartyEntries);
+        ledger.put("nombreEcritures", thirdPartyEntries.size());
+        ledger.put("openItems", openItems);
+        return ledger;
+    }
+
+    private Map<String, Object> createThirdPartyBalanceEntry(ThirdParty thirdParty, ThirdPartySubLedger.Compte compte,
+                                                             LocalDate asOfDate) {
         Map<String, Object> entry = new HashMap<>();
+        int ageInDays = compte.ageMax(asOfDate);
         entry.put("thirdParty", thirdParty);
-        entry.put("balance", thirdParty.getCurrentBalance());
+        entry.put("balance", compte.getSolde());
         entry.put("asOfDate", asOfDate);
-        entry.put("ageInDays", calculateReceivableAge(thirdParty));
-        entry.put("ageCategory", categorizeAge(calculateReceivableAge(thirdParty)));
+        entry.put("ageInDays", ageInDays);
+        entry.put("ageCategory", ThirdPartySubLedger.tranche(ageInDays));
+        entry.put("agedBalance", compte.parTranche(asOfDate));
+        entry.put("openItems", compte.getPiecesOuvertes().size());
         return entry;
     }
 
+    private static Map<String, BigDecimal> emptyAgeBuckets() {
+        Map<String, BigDecimal> buckets = new LinkedHashMap<>();
+        for (String tranche : ThirdPartySubLedger.TRANCHES) {
+            buckets.put(tranche, BigDecimal.ZERO);
+        }
+        return buckets;
+    }
+
     private List<Map<String, Object>> calculateDueDates(ThirdParty thirdParty, LocalDate startDate, LocalDate endDate) {
         List<Map<String, Object>> dueDates = new ArrayList<>();
         
@@ -334,29 +448,12 @@ public class ThirdPartyReportingService {
         return dueDates;
     }
 
-    private int calculateReceivableAge(ThirdParty thirdParty) {
-        // En production, calculer l'âge réel à partir des écritures
-        // Pour l'instant, simulation basée sur la date de création
-        if (thirdParty.getCreatedAt() != null) {
-            return (int) ChronoUnit.DAYS.between(thirdParty.getCreatedAt().toLocalDate(), LocalDate.now());
-        }
-        return new Random().nextInt(120) + 1; // Simulation 1-120 jours
-    }
-
-    private String categorizeAge(int ageInDays) {
-        if (ageInDays <= 30) return "0-30 jours";
-        if (ageInDays <= 60) return "31-60 jours";
-        if (ageInDays <= 90) return "61-90 jours";
-        if (ageInDays <= 120) return "91-120 jours";
-        return "Plus de 120 jours";
-    }
-
-    private Map<String, Object> createCollectionEntry(ThirdParty thirdParty, int ageInDays, String status) {
+    private Map<String, Object> createCollectionEntry(ThirdParty thirdParty, BigDecimal balance, int ageInDays, String status) {
         Map<String, Object> entry = new HashMap<>();
         entry.put("thirdParty", thirdParty);
-        entry.put("balance", thirdParty.getCurrentBalance());
+        entry.put("balance", balance);
         entry.put("ageInDays", ageInDays);
-        entry.put("ageCategory", categorizeAge(ageInDays));
+        entry.put("ageCategory", ThirdPartySubLedger.tranche(ageInDays));
         entry.put("status", status);
         entry.put("lastContact", thirdParty.getUpdatedAt());
         return entry;
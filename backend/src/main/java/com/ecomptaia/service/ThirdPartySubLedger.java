@@ -0,0 +1,260 @@
+package com.ecomptaia.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Grands livres auxiliaires des tiers et balance âgée, construits en un seul parcours des lignes
+ * des comptes de tiers triées par compte puis par date.
+ *
+ * Les lignes d'un compte arrivent contiguës : le compte est clôturé dès que le suivant commence, ce qui
+ * borne la mémoire de travail aux lignes d'un seul tiers. À la clôture, les lignes portant un même code de
+ * lettrage et dont la somme est nulle sont lettrées ; les autres sont imputées dans l'ordre chronologique
+ * (les règlements soldent les pièces les plus anciennes). Il reste, par tiers, la liste des pièces ouvertes
+ * dont la somme est égale au solde, et qui alimente la balance âgée.
+ *
+ * Les lignes antérieures au début de période entrent dans le solde d'ouverture et le lettrage, sans
+ * figurer dans le grand livre ; sans période (balance âgée seule), aucune ligne n'est conservée.
+ */
+public final class ThirdPartySubLedger {
+
+    public static final String[] TRANCHES = {"0-30 jours", "31-60 jours", "61-90 jours", "91-120 jours", "Plus de 120 jours"};
+
+    public static final String LETTRE = "LETTRE";
+    public static final String PARTIEL = "PARTIEL";
+    public static final String NON_LETTRE = "NON_LETTRE";
+
+    /**
+     * Ligne du grand livre d'un tiers, avec le solde progressif et l'état de lettrage
+     */
+    public record Ligne(long id, LocalDate date, Long ecritureId, String numeroEcriture, String reference, String libelle,
+                        BigDecimal debit, BigDecimal credit, BigDecimal solde, String lettrage, String codeLettrage) {
+    }
+
+    /**
+     * Pièce non soldée : montant restant signé (positif = créance sur le tiers, négatif = dette envers lui)
+     */
+    public record PieceOuverte(long ligneId, LocalDate date, String reference, String libelle, BigDecimal montant,
+                               BigDecimal reste) {
+
+        public boolean isPartielle() {
+            return reste.compareTo(montant) != 0;
+        }
+    }
+
+    /**
+     * Compte d'un tiers après clôture
+     */
+    public static final class Compte {
+
+        private final String numero;
+        private BigDecimal soldeOuverture = BigDecimal.ZERO;
+        private BigDecimal totalDebit = BigDecimal.ZERO;
+        private BigDecimal totalCredit = BigDecimal.ZERO;
+        private BigDecimal solde = BigDecimal.ZERO;
+        private int nombreLignes;
+        private List<Ligne> lignes = List.of();
+        private List<PieceOuverte> piecesOuvertes = List.of();
+
+        private Compte(String numero) {
+            this.numero = numero;
+        }
+
+        public String getNumero() { return numero; }
+        public BigDecimal getSoldeOuverture() { return soldeOuverture; }
+        public BigDecimal getTotalDebit() { return totalDebit; }
+        public BigDecimal getTotalCredit() { return totalCredit; }
+        public BigDecimal getSolde() { return solde; }
+        public int getNombreLignes() { return nombreLignes; }
+        public List<Ligne> getLignes() { return lignes; }
+        public List<PieceOuverte> getPiecesOuvertes() { return piecesOuvertes; }
+
+        /**
+         * Montants restants par tranche d'âge (ancienneté de la pièce à la date d'arrêté), dans l'ordre de TRANCHES
+         */
+        public Map<String, BigDecimal> parTranche(LocalDate dateArrete) {
+            Map<String, BigDecimal> tranches = new LinkedHashMap<>();
+            for (String tranche : TRANCHES) {
+                tranches.put(tranche, BigDecimal.ZERO);
+            }
+            for (PieceOuverte piece : piecesOuvertes) {
+                tranches.merge(tranche(age(piece, dateArrete)), piece.reste(), BigDecimal::add);
+            }
+            return tranches;
+        }
+
+        /**
+         * Ancienneté en jours de la plus ancienne pièce ouverte, 0 si le compte est soldé
+         */
+        public int ageMax(LocalDate dateArrete) {
+            return piecesOuvertes.isEmpty() ? 0 : age(piecesOuvertes.get(0), dateArrete);
+        }
+    }
+
+    // Ligne en cours de parcours
+    private static final class Mouvement {
+        final long id;
+        final LocalDate date;
+        final Long ecritureId;
+        final String numeroEcriture;
+        final String reference;
+        final String libelle;
+        final BigDecimal montant; // signé : débit positif
+        final String codeLettrage;
+        BigDecimal reste;
+        String lettrage = NON_LETTRE;
+
+        Mouvement(long id, LocalDate date, Long ecritureId, String numeroEcriture, String reference, String libelle,
+                  BigDecimal montant, String codeLettrage) {
+            this.id = id;
+            this.date = date;
+            this.ecritureId = ecritureId;
+            this.numeroEcriture = numeroEcriture;
+            this.reference = reference;
+            this.libelle = libelle;
+            this.montant = montant;
+            this.codeLettrage = codeLettrage;
+            this.reste = montant;
+        }
+    }
+
+    private final LocalDate dateDebut;
+    private final Map<String, Compte> comptes = new LinkedHashMap<>();
+    private final List<Mouvement> enCours = new ArrayList<>();
+    private String compteEnCours;
+    private long lignesLues;
+
+    /**
+     * @param dateDebut début de la période des grands livres ; null pour ne conserver que soldes et pièces ouvertes
+     */
+    public ThirdPartySubLedger(LocalDate dateDebut) {
+        this.dateDebut = dateDebut;
+    }
+
+    /**
+     * Ajouter une ligne ; les lignes d'un même compte doivent être contiguës et triées par date
+     */
+    public void ajouter(String compte, long id, LocalDate date, boolean debit, BigDecimal montant, String reference,
+                        String libelle, Long ecritureId, String numeroEcriture, String codeLettrage) {
+        if (!compte.equals(compteEnCours)) {
+            cloturer();
+            if (comptes.containsKey(compte)) {
+                throw new RuntimeException("Lignes du compte " + compte + " non contiguës");
+            }
+            compteEnCours = compte;
+        }
+        lignesLues++;
+        enCours.add(new Mouvement(id, date, ecritureId, numeroEcriture, reference, libelle,
+            debit ? montant : montant.negate(), codeLettrage != null && !codeLettrage.isBlank() ? codeLettrage : null));
+    }
+
+    /**
+     * Clôturer le dernier compte ; à appeler après la dernière ligne
+     */
+    public ThirdPartySubLedger terminer() {
+        cloturer();
+        return this;
+    }
+
+    public Compte compte(String numero) {
+        return comptes.get(numero);
+    }
+
+    public Collection<Compte> comptes() {
+        return comptes.values();
+    }
+
+    public long getLignesLues() {
+        return lignesLues;
+    }
+
+    private void cloturer() {
+        if (compteEnCours == null) {
+            return;
+        }
+        Compte compte = new Compte(compteEnCours);
+        compte.nombreLignes = enCours.size();
+        lettrer(enCours);
+
+        List<Ligne> lignes = dateDebut != null ? new ArrayList<>() : List.of();
+        BigDecimal solde = BigDecimal.ZERO;
+        List<PieceOuverte> pieces = new ArrayList<>();
+        for (Mouvement m : enCours) {
+            solde = solde.add(m.montant);
+            if (dateDebut == null || m.date.isBefore(dateDebut)) {
+                compte.soldeOuverture = compte.soldeOuverture.add(m.montant);
+            } else {
+                BigDecimal debit = m.montant.signum() > 0 ? m.montant : BigDecimal.ZERO;
+                BigDecimal credit = m.montant.signum() < 0 ? m.montant.negate() : BigDecimal.ZERO;
+                compte.totalDebit = compte.totalDebit.add(debit);
+                compte.totalCredit = compte.totalCredit.add(credit);
+                lignes.add(new Ligne(m.id, m.date, m.ecritureId, m.numeroEcriture, m.reference, m.libelle,
+                    debit, credit, solde, m.lettrage, m.codeLettrage));
+            }
+            if (m.reste.signum() != 0) {
+                pieces.add(new PieceOuverte(m.id, m.date, m.reference, m.libelle, m.montant, m.reste));
+            }
+        }
+        compte.solde = solde;
+        compte.lignes = lignes;
+        compte.piecesOuvertes = pieces;
+        comptes.put(compteEnCours, compte);
+        enCours.clear();
+        compteEnCours = null;
+    }
+
+    /**
+     * Lettrage explicite (code commun, somme nulle) puis imputation chronologique des autres lignes
+     */
+    static void lettrer(List<Mouvement> mouvements) {
+        Map<String, BigDecimal> sommes = new HashMap<>();
+        for (Mouvement m : mouvements) {
+            if (m.codeLettrage != null) {
+                sommes.merge(m.codeLettrage, m.montant, BigDecimal::add);
+            }
+        }
+        ArrayDeque<Mouvement> ouverts = new ArrayDeque<>();
+        for (Mouvement m : mouvements) {
+            if (m.codeLettrage != null && sommes.get(m.codeLettrage).signum() == 0) {
+                m.reste = BigDecimal.ZERO;
+                m.lettrage = LETTRE;
+                continue;
+            }
+            // Les pièces ouvertes sont toutes du même sens : une ligne de sens contraire les solde de la plus ancienne à la plus récente
+            while (m.reste.signum() != 0 && !ouverts.isEmpty() && ouverts.peekFirst().reste.signum() != m.reste.signum()) {
+                Mouvement piece = ouverts.peekFirst();
+                BigDecimal impute = piece.reste.abs().min(m.reste.abs());
+                piece.reste = piece.reste.subtract(impute.multiply(BigDecimal.valueOf(piece.reste.signum())));
+                m.reste = m.reste.subtract(impute.multiply(BigDecimal.valueOf(m.reste.signum())));
+                if (piece.reste.signum() == 0) {
+                    piece.lettrage = LETTRE;
+                    ouverts.pollFirst();
+                } else {
+                    piece.lettrage = PARTIEL;
+                }
+            }
+            if (m.reste.signum() == 0) {
+                m.lettrage = LETTRE;
+            } else {
+                if (m.reste.compareTo(m.montant) != 0) {
+                    m.lettrage = PARTIEL;
+                }
+                ouverts.addLast(m);
+            }
+        }
+    }
+
+    static int age(PieceOuverte piece, LocalDate dateArrete) {
+        return (int) Math.max(0, ChronoUnit.DAYS.between(piece.date(), dateArrete));
+    }
+
+    public static String tranche(int ageEnJours) {
+        if (ageEnJours <= 30) return TRANCHES[0];
+        if (ageEnJours <= 60) return TRANCHES[1];
+        if (ageEnJours <= 90) return TRANCHES[2];
+        if (ageEnJours <= 120) return TRANCHES[3];
+        return TRANCHES[4];
+    }
+}
@@ -6,11 +6,14 @@ import com.ecomptaia.entity.Utilisateur;
 import com.ecomptaia.repository.UtilisateurRepository;
 import com.ecomptaia.exception.ResourceNotFoundException;
 import com.ecomptaia.exception.BusinessException;
+import com.ecomptaia.security.JwtAuthenticationCache;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
 
@@ -24,6 +27,9 @@ public class UserService {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired(required = false)
+    private JwtAuthenticationCache authenticationCache;
+
     public Utilisateur createUser(UserRegistrationRequest request) {
         if (utilisateurRepository.findByEmail(request.getEmail()).isPresent()) {
             throw new BusinessException("Un utilisateur avec cet email existe déjà");
@@ -56,7 +62,9 @@ public class UserService {
             user.setEmail(request.getEmail());
         }
 
-        return utilisateurRepository.save(user);
+        Utilisateur enregistre = utilisateurRepository.save(user);
+        invaliderAuthentification(enregistre.getId());
+        return enregistre;
     }
 
     public List<Utilisateur> findAllUsers() {
@@ -68,5 +76,25 @@ public class UserService {
             throw new ResourceNotFoundException("Utilisateur", id);
         }
         utilisateurRepository.deleteById(id);
+        invaliderAuthentification(id);
+    }
+
+    /**
+     * Retirer le principal mis en cache par l'authentification JWT, tout de suite et après le commit
+     * (un chargement concurrent pendant la transaction relirait l'ancien état)
+     */
+    private void invaliderAuthentification(Long id) {
+        if (authenticationCache == null) {
+            return;
+        }
+        authenticationCache.invaliderUtilisateur(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    authenticationCache.invaliderUtilisateur(id);
+                }
+            });
+        }
     }
 }
@@ -1,6 +1,7 @@
 package com.ecomptaia.sycebnl.repository;
 
 import com.ecomptaia.sycebnl.entity.MappingComptesPostes;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -21,8 +22,9 @@ public interface MappingComptesPostesRepository extends JpaRepository<MappingCom
             String paysCode, String standardComptable, MappingComptesPostes.TypeSysteme typeSysteme);
     
     /**
-     * Trouve tous les mappings pour un type d'état financier donné
+     * Trouve tous les mappings pour un type d'état financier donné (patterns chargés dans la même requête)
      */
+    @EntityGraph(attributePaths = "comptesPattern")
     List<MappingComptesPostes> findByPaysCodeAndStandardComptableAndTypeSystemeAndTypeEtatAndActifTrueOrderByOrdreAffichage(
             String paysCode, String standardComptable, MappingComptesPostes.TypeSysteme typeSysteme, 
             MappingComptesPostes.TypeEtat typeEtat);
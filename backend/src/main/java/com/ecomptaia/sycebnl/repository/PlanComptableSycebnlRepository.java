@@ -20,6 +20,11 @@ public interface PlanComptableSycebnlRepository extends JpaRepository<PlanCompta
      */
     Optional<PlanComptableSycebnl> findByNumeroCompteAndActifTrue(String numeroCompte);
     
+    /**
+     * Trouve tous les comptes actifs, triés par numéro
+     */
+    List<PlanComptableSycebnl> findByActifTrueOrderByNumeroCompte();
+    
     /**
      * Trouve tous les comptes d'une classe
      */
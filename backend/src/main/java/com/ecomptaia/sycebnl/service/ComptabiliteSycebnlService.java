@@ -1,34 +1,38 @@
 package com.ecomptaia.sycebnl.service;
 
-import com.ecomptaia.entity.LigneEcriture;
 import com.ecomptaia.repository.LigneEcritureRepository;
+import com.ecomptaia.service.PlanComptableIndex;
+import com.ecomptaia.service.PlanComptableIndexService;
 import com.ecomptaia.sycebnl.entity.PlanComptableSycebnl;
-import com.ecomptaia.sycebnl.repository.PlanComptableSycebnlRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.HashMap;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.Map;
 
 /**
  * Service de comptabilité SYCEBNL pour le calcul des soldes par pattern
  * Permet de calculer les soldes des comptes selon des patterns (ex: "20%", "3%")
+ *
+ * Pour un état complet, les soldes de tous les comptes sont lus en une seule requête agrégée
+ * (calculerSoldesComptes), puis chaque poste est évalué en mémoire sur cette table.
  */
 @Service
 @Transactional(readOnly = true)
 public class ComptabiliteSycebnlService {
     
     private final LigneEcritureRepository ligneEcritureRepository;
-    private final PlanComptableSycebnlRepository planComptableRepository;
+    private final PlanComptableIndexService planComptableIndexService;
     
     @Autowired
     public ComptabiliteSycebnlService(LigneEcritureRepository ligneEcritureRepository,
-                                    PlanComptableSycebnlRepository planComptableRepository) {
+                                    PlanComptableIndexService planComptableIndexService) {
         this.ligneEcritureRepository = ligneEcritureRepository;
-        this.planComptableRepository = planComptableRepository;
+        this.planComptableIndexService = planComptableIndexService;
     }
     
     /**
@@ -40,31 +44,29 @@ public class ComptabiliteSycebnlService {
      */
     public BigDecimal calculerSoldeCompte(String numeroCompte, LocalDate dateArrete) {
         try {
-            // Rechercher toutes les lignes d'écriture pour ce compte
-            List<LigneEcriture> lignes = ligneEcritureRepository.findByCompteNumero(numeroCompte);
-            
-            BigDecimal solde = BigDecimal.ZERO;
-            for (LigneEcriture ligne : lignes) {
-                // Vérifier que l'écriture est antérieure ou égale à la date d'arrêté
-                if (ligne.getEcriture() != null && 
-                    ligne.getEcriture().getDateEcriture() != null &&
-                    !ligne.getEcriture().getDateEcriture().isAfter(dateArrete)) {
-                    
-                    if (ligne.getDebit() != null) {
-                        solde = solde.add(ligne.getDebit());
-                    }
-                    if (ligne.getCredit() != null) {
-                        solde = solde.subtract(ligne.getCredit());
-                    }
-                }
-            }
-            return solde;
+            // Cumul en base des lignes du compte jusqu'à la date d'arrêté
+            BigDecimal solde = ligneEcritureRepository.sumSoldeByCompteNumeroAuDate(numeroCompte, dateArrete);
+            return solde != null ? solde : BigDecimal.ZERO;
         } catch (Exception e) {
             // En cas d'erreur, retourner zéro plutôt que de faire planter l'application
             return BigDecimal.ZERO;
         }
     }
     
+    /**
+     * Calcule les soldes de tous les comptes à une date donnée, en une seule lecture du grand livre
+     * 
+     * @param dateArrete Date d'arrêté
+     * @return Solde (débit - crédit) par numéro de compte
+     */
+    public Map<String, BigDecimal> calculerSoldesComptes(LocalDate dateArrete) {
+        Map<String, BigDecimal> soldes = new HashMap<>();
+        for (Object[] ligne : ligneEcritureRepository.sumSoldesByCompteNumeroAuDate(dateArrete)) {
+            soldes.put((String) ligne[0], ligne[1] != null ? (BigDecimal) ligne[1] : BigDecimal.ZERO);
+        }
+        return soldes;
+    }
+    
     /**
      * Calcule le solde de tous les comptes correspondant à un pattern
      * 
@@ -77,8 +79,9 @@ public class ComptabiliteSycebnlService {
             // Convertir le pattern en pattern SQL LIKE
             String patternLike = convertirPatternEnLike(pattern);
             
-            // Rechercher tous les comptes du plan comptable SYCEBNL qui correspondent au pattern
-            List<PlanComptableSycebnl> comptes = planComptableRepository.findByNumeroCompteLikeAndActifTrue(patternLike);
+            // Rechercher tous les comptes du plan comptable SYCEBNL qui correspondent au pattern (index en mémoire)
+            PlanComptableIndex<PlanComptableSycebnl> planComptable = planComptableIndexService.getIndexSycebnl();
+            List<PlanComptableSycebnl> comptes = planComptable.rechercher(patternLike);
             
             BigDecimal soldeTotal = BigDecimal.ZERO;
             for (PlanComptableSycebnl compte : comptes) {
@@ -92,6 +95,27 @@ public class ComptabiliteSycebnlService {
         }
     }
     
+    /**
+     * Calcule le solde des comptes du plan correspondant à un pattern, à partir des soldes déjà calculés
+     * 
+     * @param soldesComptes Soldes par numéro de compte (calculerSoldesComptes)
+     * @param pattern Pattern de recherche (ex: "20%", "3%", "411%")
+     * @return Solde total des comptes correspondant au pattern
+     */
+    public BigDecimal calculerSoldeParPattern(Map<String, BigDecimal> soldesComptes, String pattern) {
+        PlanComptableIndex<PlanComptableSycebnl> planComptable = planComptableIndexService.getIndexSycebnl();
+        String patternLike = convertirPatternEnLike(pattern);
+        
+        BigDecimal soldeTotal = BigDecimal.ZERO;
+        for (PlanComptableSycebnl compte : planComptable.rechercher(patternLike)) {
+            BigDecimal soldeCompte = soldesComptes.get(compte.getNumeroCompte());
+            if (soldeCompte != null) {
+                soldeTotal = soldeTotal.add(soldeCompte);
+            }
+        }
+        return soldeTotal;
+    }
+    
     /**
      * Calcule le solde de plusieurs patterns
      * 
@@ -125,24 +149,6 @@ public class ComptabiliteSycebnlService {
         return pattern.replace("%", "%");
     }
     
-    /**
-     * Convertit un pattern de compte en regex
-     * 
-     * @param pattern Pattern (ex: "20%", "3%", "411%")
-     * @return Regex correspondante
-     */
-    private String convertirPatternEnRegex(String pattern) {
-        if (pattern == null || pattern.isEmpty()) {
-            return ".*";
-        }
-        
-        // Remplacer % par .* pour matcher n'importe quels caractères
-        String regex = pattern.replace("%", ".*");
-        
-        // Ajouter ^ et $ pour matcher exactement
-        return "^" + regex + "$";
-    }
-    
     /**
      * Vérifie si un numéro de compte correspond à un pattern
      * 
@@ -155,8 +161,8 @@ public class ComptabiliteSycebnlService {
             return false;
         }
         
-        String regex = convertirPatternEnRegex(pattern);
-        return Pattern.matches(regex, numeroCompte);
+        // Comparaison de type LIKE, sans expression régulière
+        return PlanComptableIndex.correspond(numeroCompte, pattern);
     }
     
     /**
@@ -222,6 +228,32 @@ public class ComptabiliteSycebnlService {
         return soldeTotal;
     }
     
+    /**
+     * Calcule le solde d'un poste par patterns, à partir des soldes déjà calculés
+     * 
+     * @param soldesComptes Soldes par numéro de compte (calculerSoldesComptes)
+     * @param patterns Liste des patterns de comptes
+     * @param sensNormal Sens normal du poste
+     * @return Solde total du poste
+     */
+    public BigDecimal calculerSoldePosteParPatterns(Map<String, BigDecimal> soldesComptes, List<String> patterns,
+                                                    String sensNormal) {
+        BigDecimal soldeTotal = BigDecimal.ZERO;
+        
+        for (String pattern : patterns) {
+            BigDecimal soldePattern = calculerSoldeParPattern(soldesComptes, pattern);
+            
+            // Ajuster le signe selon le sens normal
+            if ("CREDITEUR".equals(sensNormal) && soldePattern.compareTo(BigDecimal.ZERO) < 0) {
+                soldePattern = soldePattern.abs();
+            }
+            
+            soldeTotal = soldeTotal.add(soldePattern);
+        }
+        
+        return soldeTotal;
+    }
+    
     /**
      * Vérifie l'équilibre d'un bilan
      * 
@@ -70,7 +70,7 @@ public class EtatsFinanciersSycebnlService {
                         MappingComptesPostes.TypeEtat.valueOf(typeEtat.name()));
         
         // Génération des données de l'état avec mapping automatique
-        Map<String, Object> donneesEtat = genererDonneesEtatAvecMapping(mappings);
+        Map<String, Object> donneesEtat = genererDonneesEtatAvecMapping(mappings, etat.getDateArrete());
         
         try {
             etat.setDonneesJson(objectMapper.writeValueAsString(donneesEtat));
@@ -90,10 +90,12 @@ public class EtatsFinanciersSycebnlService {
     }
     
     /**
-     * Génère les données de l'état avec mapping automatique des comptes
+     * Génère les données de l'état avec mapping automatique des comptes.
+     * Les soldes de tous les comptes sont lus une seule fois, puis chaque poste est évalué en mémoire.
      */
-    private Map<String, Object> genererDonneesEtatAvecMapping(List<MappingComptesPostes> mappings) {
+    private Map<String, Object> genererDonneesEtatAvecMapping(List<MappingComptesPostes> mappings, LocalDate dateArrete) {
         Map<String, Object> donnees = new LinkedHashMap<>();
+        Map<String, BigDecimal> soldesComptes = comptabiliteService.calculerSoldesComptes(dateArrete);
         
         for (MappingComptesPostes mapping : mappings) {
             Map<String, Object> poste = new HashMap<>();
@@ -105,7 +107,7 @@ public class EtatsFinanciersSycebnlService {
             poste.put("ordreAffichage", mapping.getOrdreAffichage());
             
             // Calcul du solde du poste en agrégeant les comptes
-            BigDecimal soldePoste = calculerSoldePoste(mapping);
+            BigDecimal soldePoste = calculerSoldePoste(mapping, soldesComptes);
             poste.put("solde", soldePoste);
             
             // Formatage du montant pour l'affichage
@@ -120,11 +122,11 @@ public class EtatsFinanciersSycebnlService {
     /**
      * Calcule le solde d'un poste en agrégeant les comptes selon les patterns
      */
-    private BigDecimal calculerSoldePoste(MappingComptesPostes mapping) {
+    private BigDecimal calculerSoldePoste(MappingComptesPostes mapping, Map<String, BigDecimal> soldesComptes) {
         // Utilisation du service de comptabilité pour calculer le solde par patterns
         return comptabiliteService.calculerSoldePosteParPatterns(
+                soldesComptes,
                 mapping.getComptesPattern(), 
-                LocalDate.now(), // À adapter selon l'exercice
                 mapping.getSigneNormal().name()
         );
     }
@@ -9,6 +9,7 @@ import com.ecomptaia.sycebnl.entity.PropositionEcritureSycebnl;
 import com.ecomptaia.repository.EcritureComptableRepository;
 import com.ecomptaia.repository.LigneEcritureRepository;
 import com.ecomptaia.repository.FinancialPeriodRepository;
+import com.ecomptaia.service.AccountBalanceService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -30,15 +31,18 @@ public class GenerationEcritureService {
     private final EcritureComptableRepository ecritureRepository;
     private final LigneEcritureRepository ligneRepository;
     private final FinancialPeriodRepository periodRepository;
+    private final AccountBalanceService accountBalanceService;
     
     @Autowired
     public GenerationEcritureService(
             EcritureComptableRepository ecritureRepository,
             LigneEcritureRepository ligneRepository,
-            FinancialPeriodRepository periodRepository) {
+            FinancialPeriodRepository periodRepository,
+            AccountBalanceService accountBalanceService) {
         this.ecritureRepository = ecritureRepository;
         this.ligneRepository = ligneRepository;
         this.periodRepository = periodRepository;
+        this.accountBalanceService = accountBalanceService;
     }
     
     /**
@@ -60,6 +64,9 @@ public class GenerationEcritureService {
                 ligneRepository.save(ligne);
             }
             
+            // Écriture créée validée : ses lignes entrent dans les cumuls de soldes
+            accountBalanceService.comptabiliserLignes(ecriture, lignes);
+            
             // Calculer et mettre Ã  jour les totaux
             ecriture.calculerTotaux();
             ecritureRepository.save(ecriture);
@@ -192,6 +199,11 @@ public class GenerationEcritureService {
             throw new RuntimeException("Les totaux doivent Ãªtre positifs");
         }
         
+        // Alimenter les cumuls de soldes (une seule fois par validation)
+        if (!AccountBalanceService.STATUTS_COMPTABILISES.contains(ecriture.getStatut())) {
+            accountBalanceService.comptabiliserEcriture(ecriture);
+        }
+        
         // Marquer comme validÃ©e
         ecriture.setStatut(EcritureComptable.StatutEcriture.VALIDEE);
         ecritureRepository.save(ecriture);
@@ -201,6 +213,10 @@ public class GenerationEcritureService {
      * Annule une Ã©criture gÃ©nÃ©rÃ©e
      */
     public void annulerEcriture(EcritureComptable ecriture) {
+        // Retirer des cumuls une écriture déjà comptabilisée
+        if (AccountBalanceService.STATUTS_COMPTABILISES.contains(ecriture.getStatut())) {
+            accountBalanceService.extournerEcriture(ecriture);
+        }
         ecriture.setStatut(EcritureComptable.StatutEcriture.ANNULEE);
         ecritureRepository.save(ecriture);
     }
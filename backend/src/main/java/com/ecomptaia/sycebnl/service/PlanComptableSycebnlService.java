@@ -1,5 +1,6 @@
 package com.ecomptaia.sycebnl.service;
 
+import com.ecomptaia.service.PlanComptableIndexService;
 import com.ecomptaia.sycebnl.entity.PlanComptableSycebnl;
 import com.ecomptaia.sycebnl.repository.PlanComptableSycebnlRepository;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,10 +19,13 @@ import java.util.stream.Collectors;
 public class PlanComptableSycebnlService {
     
     private final PlanComptableSycebnlRepository planComptableRepository;
+    private final PlanComptableIndexService planComptableIndexService;
     
     @Autowired
-    public PlanComptableSycebnlService(PlanComptableSycebnlRepository planComptableRepository) {
+    public PlanComptableSycebnlService(PlanComptableSycebnlRepository planComptableRepository,
+                                       PlanComptableIndexService planComptableIndexService) {
         this.planComptableRepository = planComptableRepository;
+        this.planComptableIndexService = planComptableIndexService;
     }
     
     /**
@@ -145,7 +149,9 @@ public class PlanComptableSycebnlService {
             throw new RuntimeException("Un compte avec ce numéro existe déjà : " + compte.getNumeroCompte());
         }
         
-        return planComptableRepository.save(compte);
+        PlanComptableSycebnl compteCree = planComptableRepository.save(compte);
+        planComptableIndexService.invaliderSycebnl();
+        return compteCree;
     }
     
     /**
@@ -172,7 +178,9 @@ public class PlanComptableSycebnlService {
         compteExistant.setDescriptionUtilisation(compteModifie.getDescriptionUtilisation());
         compteExistant.setActif(compteModifie.getActif());
         
-        return planComptableRepository.save(compteExistant);
+        PlanComptableSycebnl compteMisAJour = planComptableRepository.save(compteExistant);
+        planComptableIndexService.invaliderSycebnl();
+        return compteMisAJour;
     }
     
     /**
@@ -185,6 +193,7 @@ public class PlanComptableSycebnlService {
         
         compte.setActif(false);
         planComptableRepository.save(compte);
+        planComptableIndexService.invaliderSycebnl();
     }
     
     /**
@@ -351,5 +360,6 @@ public class PlanComptableSycebnlService {
         
         // Sauvegarde de tous les comptes
         planComptableRepository.saveAll(comptes);
+        planComptableIndexService.invaliderSycebnl();
     }
 }
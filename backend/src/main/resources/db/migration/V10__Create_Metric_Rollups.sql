@@ -0,0 +1,23 @@
+-- =====================================================
+-- MIGRATION V10 : AGRÉGATS DES MÉTRIQUES DE SUPERVISION
+-- Séries agrégées par minute, heure et jour (min/max/moyenne/p95),
+-- écrites par lots depuis le magasin de séries temporelles en mémoire
+-- =====================================================
+
+CREATE TABLE IF NOT EXISTS metric_rollups (
+    id BIGSERIAL PRIMARY KEY,
+    metric_name VARCHAR(255) NOT NULL,
+    entreprise_id BIGINT,
+    category VARCHAR(50) NOT NULL,
+    resolution VARCHAR(10) NOT NULL,
+    bucket_start TIMESTAMP NOT NULL,
+    sample_count BIGINT NOT NULL,
+    min_value DOUBLE PRECISION NOT NULL,
+    max_value DOUBLE PRECISION NOT NULL,
+    avg_value DOUBLE PRECISION NOT NULL,
+    p95_value DOUBLE PRECISION NOT NULL,
+    warning_count BIGINT NOT NULL,
+    critical_count BIGINT NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_metric_rollups_serie ON metric_rollups(metric_name, resolution, bucket_start);
@@ -0,0 +1,28 @@
+-- =====================================================
+-- MIGRATION V11 : LIGNES DE RELEVÉS BANCAIRES
+-- Opérations bancaires à rapprocher des lignes comptables
+-- des comptes de trésorerie (rapprochement automatique)
+-- =====================================================
+
+CREATE TABLE IF NOT EXISTS bank_statement_lines (
+    id BIGSERIAL PRIMARY KEY,
+    company_id BIGINT NOT NULL,
+    bank_account_id BIGINT NOT NULL,
+    bank_reference VARCHAR(100) NOT NULL,
+    transaction_date DATE NOT NULL,
+    value_date DATE,
+    amount NUMERIC(15,2) NOT NULL,
+    currency VARCHAR(3) NOT NULL,
+    description VARCHAR(500),
+    counterparty VARCHAR(255),
+    is_reconciled BOOLEAN NOT NULL DEFAULT FALSE,
+    reconciliation_id BIGINT,
+    reconciliation_reference VARCHAR(100),
+    match_type VARCHAR(20),
+    reconciled_at TIMESTAMP,
+    source_file VARCHAR(255),
+    imported_at TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_bank_statement_lines_compte ON bank_statement_lines(bank_account_id, is_reconciled, transaction_date);
+CREATE UNIQUE INDEX IF NOT EXISTS idx_bank_statement_lines_reference ON bank_statement_lines(bank_account_id, bank_reference);
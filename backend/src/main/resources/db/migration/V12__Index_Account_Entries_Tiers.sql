@@ -0,0 +1,13 @@
+-- =====================================================
+-- MIGRATION V12 : INDEX DES LIGNES PAR COMPTE DE TIERS
+-- Grand livre d'un tiers et balance âgée : accès aux lignes
+-- d'un compte de tiers sans parcourir toute l'entreprise
+-- =====================================================
+
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_name = 'account_entries' AND column_name = 'account_number') THEN
+        CREATE INDEX IF NOT EXISTS idx_account_entries_tiers ON account_entries(company_id, account_number, journal_entry_id);
+    END IF;
+END $$;
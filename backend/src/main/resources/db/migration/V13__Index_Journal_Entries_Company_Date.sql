@@ -0,0 +1,7 @@
+-- =====================================================
+-- MIGRATION V13 : INDEX DES ÉCRITURES PAR ENTREPRISE ET DATE
+-- Déclarations fiscales : lecture des écritures d'une
+-- entreprise sur une période sans parcourir tout son journal
+-- =====================================================
+
+CREATE INDEX IF NOT EXISTS idx_journal_entries_company_date ON journal_entries(company_id, entry_date);
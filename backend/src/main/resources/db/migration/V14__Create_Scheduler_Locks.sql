@@ -0,0 +1,12 @@
+-- =====================================================
+-- MIGRATION V14 : VERROUS DES TÂCHES PLANIFIÉES
+-- Bail daté par tâche : une seule instance du backend exécute
+-- une tâche planifiée partagée (archivage de l'audit...)
+-- =====================================================
+
+CREATE TABLE IF NOT EXISTS scheduler_locks (
+    name VARCHAR(64) PRIMARY KEY,
+    locked_until TIMESTAMP NOT NULL,
+    locked_at TIMESTAMP NOT NULL,
+    locked_by VARCHAR(255) NOT NULL
+);
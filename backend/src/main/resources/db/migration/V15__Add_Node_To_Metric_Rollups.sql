@@ -0,0 +1,11 @@
+-- =====================================================
+-- MIGRATION V15 : INSTANCE DES AGRÉGATS DE MÉTRIQUES
+-- Chaque instance du backend agrège ses propres échantillons :
+-- l'instance fait partie de la clé d'un agrégat (une ligne par
+-- instance, série, résolution et période)
+-- =====================================================
+
+ALTER TABLE metric_rollups ADD COLUMN IF NOT EXISTS node_id VARCHAR(255) NOT NULL DEFAULT 'inconnue';
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_metric_rollups_cle
+    ON metric_rollups(node_id, metric_name, COALESCE(entreprise_id, 0), resolution, bucket_start);
@@ -0,0 +1,22 @@
+-- =====================================================
+-- MIGRATION V7 : CUMULS MENSUELS PAR COMPTE
+-- Soldes maintenus à la validation des écritures
+-- =====================================================
+
+CREATE TABLE account_period_balances (
+    id BIGSERIAL PRIMARY KEY,
+    company_id BIGINT NOT NULL,
+    ledger VARCHAR(20) NOT NULL,
+    account_number VARCHAR(20) NOT NULL,
+    account_name VARCHAR(255),
+    period_year INTEGER NOT NULL,
+    period_month INTEGER NOT NULL,
+    total_debit DECIMAL(19,2) NOT NULL DEFAULT 0,
+    total_credit DECIMAL(19,2) NOT NULL DEFAULT 0,
+    entry_count BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+
+    CONSTRAINT uk_account_period_balance UNIQUE (company_id, ledger, account_number, period_year, period_month)
+);
+
+CREATE INDEX idx_account_period_balance_lookup ON account_period_balances(company_id, ledger, period_year, period_month);
@@ -0,0 +1,16 @@
+-- =====================================================
+-- MIGRATION V8 : COMPTEURS DE NUMÉROS DE PIÈCE
+-- Un compteur par entreprise × journal × mois
+-- =====================================================
+
+CREATE TABLE sequences_pieces (
+    id BIGSERIAL PRIMARY KEY,
+    entreprise_id BIGINT NOT NULL,
+    journal VARCHAR(20) NOT NULL,
+    annee INTEGER NOT NULL,
+    mois INTEGER NOT NULL,
+    dernier_numero BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+
+    CONSTRAINT uk_sequence_piece UNIQUE (entreprise_id, journal, annee, mois)
+);
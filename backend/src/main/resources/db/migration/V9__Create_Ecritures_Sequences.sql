@@ -0,0 +1,20 @@
+-- =====================================================
+-- MIGRATION V9 : SÉQUENCES DES ÉCRITURES COMPTABLES
+-- Identifiants alloués par séquence (pas de 50) pour permettre
+-- l'insertion par lots JDBC des écritures et de leurs lignes
+-- =====================================================
+
+CREATE SEQUENCE IF NOT EXISTS ecritures_comptables_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS lignes_ecritures_seq START WITH 1 INCREMENT BY 50;
+
+-- Repositionner les séquences au-delà des identifiants existants
+-- (Hibernate utilise les identifiants [valeur - 49 ; valeur])
+DO $$
+BEGIN
+    IF to_regclass('ecritures_comptables') IS NOT NULL THEN
+        PERFORM setval('ecritures_comptables_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM ecritures_comptables), false);
+    END IF;
+    IF to_regclass('lignes_ecritures') IS NOT NULL THEN
+        PERFORM setval('lignes_ecritures_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM lignes_ecritures), false);
+    END IF;
+END $$;
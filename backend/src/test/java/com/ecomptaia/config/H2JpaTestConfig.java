@@ -0,0 +1,66 @@
+package com.ecomptaia.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.persistenceunit.PersistenceManagedTypes;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Contexte JPA minimal sur une base H2 en mémoire pour les tests de services sur une vraie base.
+ *
+ * Le schéma est généré depuis toutes les entités sans clés étrangères : un test ne crée que les lignes
+ * qu'il lit, sans les entreprises, exercices, utilisateurs ou comptes référencés. Les insertions sont
+ * groupées comme en production et les statistiques Hibernate sont actives (nombre de requêtes, de lots).
+ * L'URL de la base peut être imposée par la propriété test.h2.url ; à défaut chaque contexte a sa base.
+ * Un test qui déclare un bean PersistenceManagedTypes limite le schéma à ces entités (démarrage plus rapide).
+ *
+ * Chaque test importe cette configuration et déclare ses dépôts (@EnableJpaRepositories) et ses services.
+ */
+@Configuration
+@EnableTransactionManagement
+public class H2JpaTestConfig {
+
+    @Bean
+    public DataSource dataSource(Environment environment) {
+        return new DriverManagerDataSource(environment.getProperty("test.h2.url",
+            "jdbc:h2:mem:test-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1"), "sa", "");
+    }
+
+    @Bean
+    public LocalContainerEntityManagerFactoryBean entityManagerFactory(DataSource dataSource,
+                                                                       ObjectProvider<PersistenceManagedTypes> managedTypes) {
+        LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+        factory.setDataSource(dataSource);
+        PersistenceManagedTypes entites = managedTypes.getIfAvailable();
+        if (entites != null) {
+            factory.setManagedTypes(entites);
+        } else {
+            factory.setPackagesToScan("com.ecomptaia");
+        }
+        factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factory.setJpaPropertyMap(Map.of(
+            "hibernate.hbm2ddl.auto", "create-drop",
+            "hibernate.hbm2ddl.default_constraint_mode", "NO_CONSTRAINT",
+            "hibernate.jdbc.batch_size", "50",
+            "hibernate.order_inserts", "true",
+            "hibernate.generate_statistics", "true"));
+        return factory;
+    }
+
+    @Bean
+    public PlatformTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+        return new JpaTransactionManager(entityManagerFactory);
+    }
+}
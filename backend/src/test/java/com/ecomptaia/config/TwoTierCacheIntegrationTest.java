@@ -0,0 +1,203 @@
+package com.ecomptaia.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test multi-nœuds du cache à deux niveaux : deux contextes Spring indépendants partagent
+ * un L2 (substitut en mémoire de Redis) et un bus d'invalidation (substitut du pub/sub Redis)
+ */
+class TwoTierCacheIntegrationTest {
+
+    private final Map<Long, String> database = new ConcurrentHashMap<>();
+    private final AtomicInteger databaseReads = new AtomicInteger();
+    private final ConcurrentMapCacheManager sharedRemote = new ConcurrentMapCacheManager();
+    private final InMemoryInvalidationBus bus = new InMemoryInvalidationBus();
+
+    private AnnotationConfigApplicationContext nodeA;
+    private AnnotationConfigApplicationContext nodeB;
+
+    @BeforeEach
+    void setUp() {
+        database.put(1L, "411000 Clients");
+        nodeA = startNode(sharedRemote::getCache);
+        nodeB = startNode(sharedRemote::getCache);
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.close();
+        nodeB.close();
+    }
+
+    @Test
+    void testLectureRepartieUneSeuleRequeteBase() {
+        assertEquals("411000 Clients", accounts(nodeA).findName(1L));
+        assertEquals("411000 Clients", accounts(nodeB).findName(1L));
+        assertEquals("411000 Clients", accounts(nodeB).findName(1L));
+
+        // Le nœud B a trouvé la valeur dans le L2 partagé
+        assertEquals(1, databaseReads.get());
+    }
+
+    @Test
+    void testCacheEvictSurUnNoeudInvalideLeL1DesAutres() {
+        accounts(nodeA).findName(1L);
+        accounts(nodeB).findName(1L);
+
+        accounts(nodeA).rename(1L, "411000 Clients ordinaires");
+
+        assertEquals("411000 Clients ordinaires", accounts(nodeB).findName(1L));
+        assertEquals("411000 Clients ordinaires", accounts(nodeA).findName(1L));
+    }
+
+    @Test
+    void testSansInvalidationLeL1ResteraitPerime() {
+        accounts(nodeA).findName(1L);
+        accounts(nodeB).findName(1L);
+
+        bus.paused = true;
+        accounts(nodeA).rename(1L, "411000 Clients douteux");
+        bus.paused = false;
+
+        // Contrôle : sans message d'invalidation, le nœud B sert son L1 périmé
+        assertEquals("411000 Clients", accounts(nodeB).findName(1L));
+    }
+
+    @Test
+    void testClearDiffuseATousLesNoeuds() {
+        accounts(nodeA).findName(1L);
+        accounts(nodeB).findName(1L);
+        database.put(1L, "411100 Clients export");
+
+        nodeA.getBean(CacheManager.class).getCache("accounts").clear();
+
+        assertEquals("411100 Clients export", accounts(nodeB).findName(1L));
+    }
+
+    @Test
+    void testPanneL2DegradeEnL1Seul() {
+        nodeA.close();
+        nodeA = startNode(name -> new FailingCache(name));
+
+        assertEquals("411000 Clients", accounts(nodeA).findName(1L));
+        assertEquals("411000 Clients", accounts(nodeA).findName(1L));
+        assertEquals(1, databaseReads.get());
+    }
+
+    @Test
+    void testCodecMessageInvalidation() {
+        CacheInvalidationBus.Invalidation cle = CacheInvalidationBus.Invalidation.decode(
+            new CacheInvalidationBus.Invalidation("n1", "accounts", "SimpleKey [1|2]").encode());
+        assertEquals("n1", cle.getNodeId());
+        assertEquals("accounts", cle.getCacheName());
+        assertEquals("SimpleKey [1|2]", cle.getKey());
+
+        assertTrue(CacheInvalidationBus.Invalidation.decode(
+            new CacheInvalidationBus.Invalidation("n1", "accounts", null).encode()).isClearAll());
+    }
+
+    private AnnotationConfigApplicationContext startNode(java.util.function.Function<String, Cache> remoteFactory) {
+        CachePolicyProperties policies = new CachePolicyProperties();
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.registerBean(CacheManager.class, () -> new TwoTierCacheManager(List.of("accounts"),
+            name -> CacheConfig.localCache(name, policies), remoteFactory, bus));
+        context.registerBean(AccountDirectory.class, () -> new AccountDirectory(database, databaseReads));
+        context.register(NodeConfig.class);
+        context.refresh();
+        return context;
+    }
+
+    private AccountDirectory accounts(AnnotationConfigApplicationContext node) {
+        return node.getBean(AccountDirectory.class);
+    }
+
+    @Configuration
+    @EnableCaching
+    static class NodeConfig {
+    }
+
+    /**
+     * Service applicatif type : lecture en cache, écriture avec @CacheEvict
+     */
+    static class AccountDirectory {
+        private final Map<Long, String> database;
+        private final AtomicInteger databaseReads;
+
+        AccountDirectory(Map<Long, String> database, AtomicInteger databaseReads) {
+            this.database = database;
+            this.databaseReads = databaseReads;
+        }
+
+        @Cacheable(value = "accounts", key = "#id")
+        public String findName(Long id) {
+            databaseReads.incrementAndGet();
+            return database.get(id);
+        }
+
+        @CacheEvict(value = "accounts", key = "#id")
+        public void rename(Long id, String name) {
+            database.put(id, name);
+        }
+    }
+
+    /**
+     * Substitut du pub/sub Redis : diffusion synchrone du message encodé à tous les abonnés
+     */
+    static class InMemoryInvalidationBus implements CacheInvalidationBus {
+        private final List<Consumer<Invalidation>> listeners = new CopyOnWriteArrayList<>();
+        volatile boolean paused;
+
+        @Override
+        public void publish(String nodeId, String cacheName, String key) {
+            if (paused) {
+                return;
+            }
+            String message = new Invalidation(nodeId, cacheName, key).encode();
+            listeners.forEach(listener -> listener.accept(Invalidation.decode(message)));
+        }
+
+        @Override
+        public void subscribe(Consumer<Invalidation> listener) {
+            listeners.add(listener);
+        }
+    }
+
+    /**
+     * L2 indisponible (Redis arrêté)
+     */
+    static class FailingCache implements Cache {
+        private final String name;
+
+        FailingCache(String name) {
+            this.name = name;
+        }
+
+        @Override public String getName() { return name; }
+        @Override public Object getNativeCache() { return this; }
+        @Override public ValueWrapper get(Object key) { throw new IllegalStateException("Redis indisponible"); }
+        @Override public <T> T get(Object key, Class<T> type) { throw new IllegalStateException("Redis indisponible"); }
+        @Override public <T> T get(Object key, java.util.concurrent.Callable<T> valueLoader) { throw new IllegalStateException("Redis indisponible"); }
+        @Override public void put(Object key, Object value) { throw new IllegalStateException("Redis indisponible"); }
+        @Override public void evict(Object key) { throw new IllegalStateException("Redis indisponible"); }
+        @Override public void clear() { throw new IllegalStateException("Redis indisponible"); }
+    }
+}
@@ -0,0 +1,226 @@
+package com.ecomptaia.security;
+
+import com.ecomptaia.config.RateLimitConfig;
+import com.ecomptaia.entity.Company;
+import com.ecomptaia.entity.CompanySubscription;
+import com.ecomptaia.entity.SubscriptionPlan;
+import com.ecomptaia.repository.CompanySubscriptionRepository;
+import com.ecomptaia.service.MultiTenantService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Limitation de taux multi-nœuds : deux limiteurs indépendants partagent un substitut en mémoire
+ * des compteurs Redis (même sémantique que le script Lua : INCRBY puis expiration à la création, et MGET)
+ */
+class DistributedRateLimiterTest {
+
+    private final InMemoryCounterStore redis = new InMemoryCounterStore();
+    private final AtomicLong horloge = new AtomicLong(1_700_000_000_000L);
+    private RateLimitConfig config;
+    private DistributedRateLimiter noeudA;
+    private DistributedRateLimiter noeudB;
+
+    @BeforeEach
+    void setUp() {
+        config = new RateLimitConfig();
+        config.getDistributed().setEnabled(true);
+        config.getDistributed().setReplicas(2);
+        noeudA = limiteur(redis);
+        noeudB = limiteur(redis);
+    }
+
+    private DistributedRateLimiter limiteur(RateLimitCounterStore store) {
+        DistributedRateLimiter limiteur = new DistributedRateLimiter();
+        ReflectionTestUtils.setField(limiteur, "store", store);
+        ReflectionTestUtils.setField(limiteur, "rateLimitConfig", config);
+        ReflectionTestUtils.setField(limiteur, "horloge", (LongSupplier) horloge::get);
+        return limiteur;
+    }
+
+    @Test
+    void testLimiteAppliqueeAuCluster() {
+        assertEquals(60, consommer(noeudA, "ip:10.0.0.1", 60, 100));
+        noeudA.synchroniser();
+
+        // Le nœud B lit le total partagé à sa première requête et ne dispose plus que du reste
+        assertEquals(40, consommer(noeudB, "ip:10.0.0.1", 100, 100));
+        assertEquals(100, noeudB.getUtilisation("ip:10.0.0.1"));
+        noeudB.synchroniser();
+        // Compteur inchangé sur A : relu seulement une fois l'intervalle de relecture écoulé
+        horloge.addAndGet(config.getDistributed().getRefreshIntervalMs());
+        assertEquals(1, noeudA.synchroniser());
+        assertEquals(0, consommer(noeudA, "ip:10.0.0.1", 10, 100));
+        assertEquals(100, redis.valeur("ip:10.0.0.1"));
+    }
+
+    @Test
+    void testIncrementsEnvoyesParLots() {
+        for (int i = 0; i < 500; i++) {
+            for (int j = 0; j < 3; j++) {
+                assertTrue(noeudA.essayer("ip:10.0." + (i / 256) + "." + (i % 256), 100, 1, 60_000));
+            }
+        }
+        // Une lecture du total partagé par compteur créé, aucun aller-retour ensuite
+        assertEquals(500, redis.appels.get());
+
+        assertEquals(500, noeudA.synchroniser());
+        assertEquals(501, redis.appels.get());
+        assertEquals(3, redis.valeur("ip:10.0.1.0"));
+
+        // Seuls les compteurs modifiés sont envoyés : aucun incrément nul
+        assertTrue(noeudA.essayer("ip:10.0.0.7", 100, 1, 60_000));
+        int envois = redis.incrementsEnvoyes.get();
+        assertEquals(1, noeudA.synchroniser());
+        assertEquals(envois + 1, redis.incrementsEnvoyes.get());
+        assertEquals(0, noeudA.synchroniser());
+        assertEquals(502, redis.appels.get());
+
+        // Fenêtre close : compteurs oubliés, plus rien à synchroniser
+        horloge.addAndGet(60_000);
+        assertEquals(0, noeudA.synchroniser());
+        assertEquals(0, noeudA.getNombreCompteurs());
+    }
+
+    @Test
+    void testRepliLocalSiRedisIndisponible() {
+        assertEquals(10, consommer(noeudA, "entreprise:42", 10, 100));
+        redis.enPanne = true;
+        noeudA.synchroniser();
+        assertFalse(noeudA.isPartage());
+
+        // Limite approchée : 100 / 2 instances pour ce nœud (dont les 10 déjà consommés)
+        assertEquals(40, consommer(noeudA, "entreprise:42", 100, 100));
+
+        // Retour de Redis : les incréments conservés sont envoyés
+        redis.enPanne = false;
+        noeudA.synchroniser();
+        assertTrue(noeudA.isPartage());
+        assertEquals(50, redis.valeur("entreprise:42"));
+        assertEquals(50, consommer(noeudA, "entreprise:42", 100, 100));
+    }
+
+    @Test
+    void testLimiteurDeRequetesSurDeuxNoeuds() {
+        RateLimitingService serviceA = service(noeudA);
+        RateLimitingService serviceB = service(noeudB);
+
+        for (int i = 0; i < 6; i++) {
+            assertTrue(serviceA.verifier(RateLimitingService.Dimension.IP, "10.0.0.1", "/api/ecritures").autorisee());
+        }
+        noeudA.synchroniser();
+
+        int autorisees = 0;
+        RateLimitingService.Decision refus = null;
+        for (int i = 0; i < 10; i++) {
+            RateLimitingService.Decision decision = serviceB.verifier(RateLimitingService.Dimension.IP, "10.0.0.1", "/api/ecritures");
+            if (decision.autorisee()) {
+                autorisees++;
+            } else if (refus == null) {
+                refus = decision;
+            }
+        }
+        assertEquals(4, autorisees);
+        // Refus par la limite du cluster : réinitialisation à la minute suivante
+        assertEquals((horloge.get() / 60_000 + 1) * 60_000, refus.reinitialisation());
+    }
+
+    @Test
+    void testQuotaMensuelDuPlan() {
+        config.getQuotas().put("STARTER", new LinkedHashMap<>(Map.of("API_CALLS", 1_000L)));
+        SubscriptionPlan plan = new SubscriptionPlan();
+        plan.setPlanCode("STARTER");
+        CompanySubscription abonnement = new CompanySubscription();
+        abonnement.setSubscriptionPlan(plan);
+        CompanySubscriptionRepository repository = mock(CompanySubscriptionRepository.class);
+        when(repository.findByCompanyAndStatus(any(), any())).thenReturn(Optional.of(abonnement));
+
+        MultiTenantService service = new MultiTenantService();
+        ReflectionTestUtils.setField(service, "companySubscriptionRepository", repository);
+        ReflectionTestUtils.setField(service, "distributedRateLimiter", noeudA);
+        ReflectionTestUtils.setField(service, "rateLimitConfig", config);
+        Company entreprise = new Company();
+        entreprise.setId(42L);
+        entreprise.setIsActive(true);
+
+        assertTrue(service.checkUsageLimits(entreprise, "api_calls", 600));
+        assertFalse(service.checkUsageLimits(entreprise, "API_CALLS", 500));
+        assertTrue(service.checkUsageLimits(entreprise, "API_CALLS", 400));
+        assertTrue(service.checkUsageLimits(entreprise, "STORAGE", 10_000));
+        entreprise.setIsActive(false);
+        assertFalse(service.checkUsageLimits(entreprise, "STORAGE", 1));
+    }
+
+    private RateLimitingService service(DistributedRateLimiter distribue) {
+        RateLimitingService service = new RateLimitingService();
+        ReflectionTestUtils.setField(service, "requestsPerMinute", 10);
+        ReflectionTestUtils.setField(service, "burstCapacity", 10);
+        ReflectionTestUtils.setField(service, "rateLimitConfig", config);
+        ReflectionTestUtils.setField(service, "distributedRateLimiter", distribue);
+        ReflectionTestUtils.setField(service, "horloge", (LongSupplier) horloge::get);
+        service.init();
+        return service;
+    }
+
+    private static int consommer(DistributedRateLimiter limiteur, String cle, int tentatives, long limite) {
+        int autorisees = 0;
+        for (int i = 0; i < tentatives; i++) {
+            if (limiteur.essayer(cle, limite, 1, 60_000)) {
+                autorisees++;
+            }
+        }
+        return autorisees;
+    }
+
+    /**
+     * Substitut de Redis : compteurs partagés, un appel par lot, panne simulable
+     */
+    static class InMemoryCounterStore implements RateLimitCounterStore {
+        private final Map<String, Long> compteurs = new ConcurrentHashMap<>();
+        private final AtomicInteger appels = new AtomicInteger();
+        private final AtomicInteger incrementsEnvoyes = new AtomicInteger();
+        volatile boolean enPanne;
+
+        @Override
+        public synchronized Map<String, Long> incrementer(Map<String, Long> increments, Map<String, Long> ttlMs) {
+            if (enPanne) {
+                throw new IllegalStateException("Connection refused");
+            }
+            appels.incrementAndGet();
+            incrementsEnvoyes.addAndGet(increments.size());
+            Map<String, Long> totaux = new LinkedHashMap<>();
+            increments.forEach((cle, increment) -> totaux.put(cle, compteurs.merge(cle, increment, Long::sum)));
+            return totaux;
+        }
+
+        @Override
+        public synchronized Map<String, Long> lire(Collection<String> cles) {
+            if (enPanne) {
+                throw new IllegalStateException("Connection refused");
+            }
+            appels.incrementAndGet();
+            Map<String, Long> totaux = new LinkedHashMap<>();
+            cles.forEach(cle -> totaux.put(cle, valeur(cle)));
+            return totaux;
+        }
+
+        long valeur(String cle) {
+            return compteurs.getOrDefault(cle, 0L);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.ecomptaia.security;
+
+import com.ecomptaia.config.CacheInvalidationBus;
+import com.ecomptaia.config.RateLimitConfig;
+import com.ecomptaia.dto.UserUpdateRequest;
+import com.ecomptaia.entity.Utilisateur;
+import com.ecomptaia.repository.UtilisateurRepository;
+import com.ecomptaia.service.UserManagementService;
+import com.ecomptaia.service.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Authentification JWT servie par le cache : une vérification de signature par jeton, un chargement
+ * de principal par TTL, révocation à la déconnexion, invalidation sur modification d'utilisateur ou de rôle,
+ * diffusées aux autres nœuds par le canal d'invalidation ; limite par entreprise du principal authentifié
+ */
+class JwtAuthenticationCacheTest {
+
+    private static final String SECRET = "cle-de-test-e-compta-ia-suffisamment-longue-pour-hs512-0123456789abcdef";
+
+    private JwtTokenProvider tokenProvider;
+    private UserDetailsServiceImpl userDetailsService;
+    private JwtAuthenticationCache cache;
+    private JwtAuthenticationFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        tokenProvider = spy(new JwtTokenProvider());
+        ReflectionTestUtils.setField(tokenProvider, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(tokenProvider, "jwtExpirationInMs", 3_600_000);
+        userDetailsService = spy(new UserDetailsServiceImpl());
+        ReflectionTestUtils.setField(userDetailsService, "userManagementService", new UserManagementService());
+
+        cache = new JwtAuthenticationCache(tokenProvider, 1_000, Duration.ofMinutes(1));
+        filter = new JwtAuthenticationFilter();
+        ReflectionTestUtils.setField(filter, "userDetailsService", userDetailsService);
+        ReflectionTestUtils.setField(filter, "authenticationCache", cache);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void testSignatureVerifieeUneFoisParJeton() throws Exception {
+        String jeton = jeton(2L, 3_600_000);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(2L, authentifier(jeton).getId());
+        }
+
+        verify(tokenProvider, times(1)).parseClaims(jeton);
+        verify(userDetailsService, times(1)).loadUserById(2L);
+        assertNull(authentifier("jeton.invalide.xyz"));
+        assertNull(authentifier(jeton.substring(0, jeton.length() - 2) + "xx"));
+    }
+
+    @Test
+    void testDeconnexionRevoqueLeJeton() throws Exception {
+        String jeton = jeton(1L, 3_600_000);
+        String autre = jeton(1L, 3_500_000);
+        assertNotNull(authentifier(jeton));
+
+        cache.revoquer(jeton);
+
+        assertNull(authentifier(jeton));
+        assertNotNull(authentifier(autre));
+    }
+
+    @Test
+    void testExpirationPlafonneeAuJeton() throws Exception {
+        String jeton = jeton(3L, 1_000);
+        assertEquals(3L, cache.verifier(jeton));
+
+        Thread.sleep(1_100);
+
+        assertNull(cache.verifier(jeton));
+        assertEquals(0, cache.getNombreJetons());
+    }
+
+    @Test
+    void testInvalidationSurModificationUtilisateurEtRole() throws Exception {
+        String jeton = jeton(2L, 3_600_000);
+        authentifier(jeton);
+
+        Utilisateur utilisateur = new Utilisateur();
+        utilisateur.setId(2L);
+        utilisateur.setEmail("user2@company.com");
+        UtilisateurRepository repository = mock(UtilisateurRepository.class);
+        when(repository.findByEmail("user2@company.com")).thenReturn(Optional.of(utilisateur));
+        when(repository.save(utilisateur)).thenReturn(utilisateur);
+        UserService userService = new UserService();
+        ReflectionTestUtils.setField(userService, "utilisateurRepository", repository);
+        ReflectionTestUtils.setField(userService, "authenticationCache", cache);
+        UserUpdateRequest modification = new UserUpdateRequest();
+        modification.setNom("Nouveau nom");
+        userService.updateUserProfile("user2@company.com", modification);
+        authentifier(jeton);
+        verify(userDetailsService, times(2)).loadUserById(2L);
+
+        cache.invaliderTousLesUtilisateurs();
+        authentifier(jeton);
+        verify(userDetailsService, times(3)).loadUserById(2L);
+    }
+
+    @Test
+    void testRevocationEtInvalidationDiffuseesAuxAutresNoeuds() throws Exception {
+        BusEnMemoire bus = new BusEnMemoire();
+        ReflectionTestUtils.setField(cache, "invalidationBus", bus);
+        cache.abonner();
+        JwtAuthenticationCache autreNoeud = new JwtAuthenticationCache(tokenProvider, 1_000, Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(autreNoeud, "invalidationBus", bus);
+        autreNoeud.abonner();
+
+        String jeton = jeton(4L, 3_600_000);
+        assertEquals(4L, autreNoeud.verifier(jeton));
+        UserDetails principal = autreNoeud.principal(4L, userDetailsService::loadUserById);
+        assertSame(principal, autreNoeud.principal(4L, userDetailsService::loadUserById));
+
+        // Déconnexion et modification sur ce nœud : l'autre nœud refuse le jeton et recharge le principal
+        assertNotNull(authentifier(jeton));
+        cache.revoquer(jeton);
+        cache.invaliderUtilisateur(4L);
+
+        assertNull(autreNoeud.verifier(jeton));
+        assertNotSame(principal, autreNoeud.principal(4L, userDetailsService::loadUserById));
+        assertEquals(2, bus.messages);
+    }
+
+    @Test
+    void testGainDeLatence() throws Exception {
+        int iterations = Integer.getInteger("jwt.iterations", 20_000);
+        String jeton = jeton(1L, 3_600_000);
+        UserDetailsServiceImpl chargement = new UserDetailsServiceImpl();
+        ReflectionTestUtils.setField(chargement, "userManagementService", new UserManagementService());
+        JwtTokenProvider provider = new JwtTokenProvider();
+        ReflectionTestUtils.setField(provider, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(provider, "jwtExpirationInMs", 3_600_000);
+        JwtAuthenticationCache mesure = new JwtAuthenticationCache(provider, 1_000, Duration.ofMinutes(1));
+
+        // Chauffe
+        for (int i = 0; i < 2_000; i++) {
+            cheminDirect(provider, chargement, jeton);
+            mesure.principal(mesure.verifier(jeton), chargement::loadUserById);
+        }
+
+        long debut = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            cheminDirect(provider, chargement, jeton);
+        }
+        long direct = System.nanoTime() - debut;
+
+        debut = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            mesure.principal(mesure.verifier(jeton), chargement::loadUserById);
+        }
+        long enCache = System.nanoTime() - debut;
+
+        assertTrue(enCache < direct);
+    }
+
+    @Test
+    void testLimiteEntrepriseDuPrincipalEtNonDeLEnTete() throws Exception {
+        RateLimitConfig config = new RateLimitConfig();
+        config.getTenant().setRequestsPerMinute(60);
+        config.getTenant().setBurstCapacity(3);
+        RateLimitingService limiteur = new RateLimitingService();
+        ReflectionTestUtils.setField(limiteur, "requestsPerMinute", 60);
+        ReflectionTestUtils.setField(limiteur, "burstCapacity", 10);
+        ReflectionTestUtils.setField(limiteur, "rateLimitConfig", config);
+        limiteur.init();
+        ReflectionTestUtils.setField(filter, "rateLimitingService", limiteur);
+
+        // Utilisateurs de l'entreprise 1, chacun annonçant une autre entreprise dans l'en-tête
+        List<Integer> statuts = new ArrayList<>();
+        for (long userId = 1; userId <= 4; userId++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/ecritures");
+            request.addHeader("Authorization", "Bearer " + jeton(userId, 3_600_000));
+            request.addHeader("X-Company-Id", String.valueOf(100 + userId));
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(request, response, new MockFilterChain());
+            statuts.add(response.getStatus());
+        }
+
+        assertEquals(List.of(200, 200, 200, 429), statuts);
+        assertEquals(2, limiteur.verifier(RateLimitingService.Dimension.ENTREPRISE, "101", null).restantes());
+    }
+
+    private UserPrincipal authentifier(String jeton) throws Exception {
+        SecurityContextHolder.clearContext();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/ecritures");
+        request.addHeader("Authorization", "Bearer " + jeton);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null ? (UserPrincipal) authentication.getPrincipal() : null;
+    }
+
+    /**
+     * Ancien chemin du filtre : deux analyses du jeton et un chargement de l'utilisateur
+     */
+    private static UserDetails cheminDirect(JwtTokenProvider provider, UserDetailsServiceImpl chargement, String jeton) {
+        assertTrue(provider.validateToken(jeton));
+        return chargement.loadUserById(provider.getUserIdFromJWT(jeton));
+    }
+
+    private String jeton(Long userId, int dureeMs) {
+        ReflectionTestUtils.setField(tokenProvider, "jwtExpirationInMs", dureeMs);
+        UserPrincipal principal = UserPrincipal.createFromMap(Map.of("userId", userId, "username", "user" + userId,
+            "firstName", "Prénom", "lastName", "Nom", "email", "user" + userId + "@company.com", "role", "USER"));
+        return tokenProvider.generateToken(new UsernamePasswordAuthenticationToken(principal, null));
+    }
+
+    /**
+     * Canal d'invalidation en mémoire : chaque message est remis à tous les abonnés, émetteur compris
+     */
+    static class BusEnMemoire implements CacheInvalidationBus {
+        private final List<Consumer<Invalidation>> abonnes = new ArrayList<>();
+        private int messages;
+
+        @Override
+        public void publish(String nodeId, String cacheName, String key) {
+            messages++;
+            Invalidation invalidation = Invalidation.decode(new Invalidation(nodeId, cacheName, key).encode());
+            abonnes.forEach(abonne -> abonne.accept(invalidation));
+        }
+
+        @Override
+        public void subscribe(Consumer<Invalidation> listener) {
+            abonnes.add(listener);
+        }
+    }
+}
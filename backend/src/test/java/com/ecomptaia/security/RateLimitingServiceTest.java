@@ -0,0 +1,168 @@
+package com.ecomptaia.security;
+
+import com.ecomptaia.config.RateLimitConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Seaux à jetons : remplissage, limites par route et par entreprise, balayage des seaux inactifs,
+ * exactitude et débit sous contention (32 threads)
+ */
+class RateLimitingServiceTest {
+
+    private static final int THREADS = 32;
+
+    private final AtomicLong horloge = new AtomicLong(System.currentTimeMillis());
+    private RateLimitingService service;
+
+    @BeforeEach
+    void setUp() {
+        RateLimitConfig config = new RateLimitConfig();
+        RateLimitConfig.Route auth = new RateLimitConfig.Route();
+        auth.setPattern("/api/auth/**");
+        auth.setRequestsPerMinute(6);
+        auth.setBurstCapacity(2);
+        config.setRoutes(List.of(auth));
+        config.getTenant().setRequestsPerMinute(60);
+        config.getTenant().setBurstCapacity(3);
+        config.setIdleTimeoutMs(60_000);
+        service = service(config, 60, 10);
+    }
+
+    private RateLimitingService service(RateLimitConfig config, int parMinute, int capacite) {
+        RateLimitingService limiteur = new RateLimitingService();
+        ReflectionTestUtils.setField(limiteur, "requestsPerMinute", parMinute);
+        ReflectionTestUtils.setField(limiteur, "burstCapacity", capacite);
+        ReflectionTestUtils.setField(limiteur, "rateLimitConfig", config);
+        ReflectionTestUtils.setField(limiteur, "horloge", (LongSupplier) horloge::get);
+        limiteur.init();
+        return limiteur;
+    }
+
+    @Test
+    void testRafaleEtRemplissage() {
+        for (int i = 9; i >= 0; i--) {
+            RateLimitingService.Decision decision = service.verifier(RateLimitingService.Dimension.IP, "10.0.0.1", "/api/ecritures");
+            assertTrue(decision.autorisee());
+            assertEquals(i, decision.restantes());
+            assertEquals(10, decision.limite());
+        }
+        RateLimitingService.Decision refus = service.verifier(RateLimitingService.Dimension.IP, "10.0.0.1", "/api/ecritures");
+        assertFalse(refus.autorisee());
+        assertEquals(horloge.get() + 1000, refus.reinitialisation(), 1);
+        assertTrue(service.isRequestAllowed("10.0.0.2"));
+
+        // 60/min : un jeton par seconde, jamais au-delà de la capacité
+        horloge.addAndGet(2_500);
+        assertEquals(2, service.getRemainingRequests("10.0.0.1"));
+        assertTrue(service.isRequestAllowed("10.0.0.1"));
+        assertTrue(service.isRequestAllowed("10.0.0.1"));
+        assertFalse(service.isRequestAllowed("10.0.0.1"));
+        horloge.addAndGet(600_000);
+        assertEquals(10, service.getRemainingRequests("10.0.0.1"));
+        assertFalse(service.isRequestAllowed(null));
+    }
+
+    @Test
+    void testLimitesParRouteEtParEntreprise() {
+        assertTrue(service.verifier(RateLimitingService.Dimension.IP, "10.0.0.1", "/api/auth/login").autorisee());
+        assertTrue(service.verifier(RateLimitingService.Dimension.IP, "10.0.0.1", "/api/auth/login").autorisee());
+        RateLimitingService.Decision refus = service.verifier(RateLimitingService.Dimension.IP, "10.0.0.1", "/api/auth/login");
+        assertFalse(refus.autorisee());
+        assertEquals(2, refus.limite());
+        // Seau distinct pour les autres routes
+        assertTrue(service.verifier(RateLimitingService.Dimension.IP, "10.0.0.1", "/api/ecritures").autorisee());
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(service.verifier(RateLimitingService.Dimension.ENTREPRISE, "42", null).autorisee());
+        }
+        assertFalse(service.verifier(RateLimitingService.Dimension.ENTREPRISE, "42", null).autorisee());
+        // Limite utilisateur non configurée
+        assertNull(service.verifier(RateLimitingService.Dimension.UTILISATEUR, "7", null));
+    }
+
+    @Test
+    void testBalayageDesSeauxInactifs() {
+        for (int i = 0; i < 100; i++) {
+            service.isRequestAllowed("10.0.1." + i);
+        }
+        service.isRequestAllowed("10.0.2.1");
+        assertEquals(101, service.getNombreSeaux());
+
+        horloge.addAndGet(30_000);
+        service.purgerSeauxInactifs();
+        assertEquals(101, service.getNombreSeaux());
+
+        horloge.addAndGet(30_000);
+        for (int i = 0; i < 10; i++) {
+            service.isRequestAllowed("10.0.2.1");
+        }
+        service.purgerSeauxInactifs();
+        assertEquals(1, service.getNombreSeaux());
+        assertEquals(0, service.getRemainingRequests("10.0.2.1"));
+    }
+
+    @Test
+    void testExactitudeSousContention() throws Exception {
+        // Horloge figée : exactement « capacité » requêtes autorisées, quel que soit l'entrelacement
+        RateLimitingService limiteur = service(new RateLimitConfig(), 60, 5_000);
+        AtomicLong autorisees = new AtomicLong();
+        executer(THREADS, 1_000, (thread, i) -> {
+            if (limiteur.verifier(RateLimitingService.Dimension.IP, "10.0.0.1", null).autorisee()) {
+                autorisees.incrementAndGet();
+            }
+        });
+        assertEquals(5_000, autorisees.get());
+        assertEquals(0, limiteur.getRemainingRequests("10.0.0.1"));
+    }
+
+    @Test
+    void testDebitSousContention() throws Exception {
+        RateLimitingService limiteur = service(new RateLimitConfig(), 6_000_000, 65_535);
+        ReflectionTestUtils.setField(limiteur, "horloge", (LongSupplier) System::currentTimeMillis);
+        int parThread = Integer.getInteger("ratelimit.iterations", 50_000);
+        // Une clé partagée (contention maximale) et une clé par thread
+        executer(THREADS, parThread, (thread, i) -> {
+            limiteur.verifier(RateLimitingService.Dimension.IP, "10.0.0.1", null);
+            limiteur.verifier(RateLimitingService.Dimension.IP, "10.1.0." + thread, null);
+        });
+        assertEquals(THREADS + 1, limiteur.getNombreSeaux());
+    }
+
+    private interface Action {
+        void executer(int thread, int iteration);
+    }
+
+    private static void executer(int threads, int iterations, Action action) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch depart = new CountDownLatch(1);
+        try {
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                executor.submit(() -> {
+                    depart.await();
+                    for (int i = 0; i < iterations; i++) {
+                        action.executer(thread, i);
+                    }
+                    return null;
+                });
+            }
+            depart.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.ecomptaia.service;
+
+import com.ecomptaia.config.H2JpaTestConfig;
+import com.ecomptaia.entity.AccountEntry;
+import com.ecomptaia.entity.AccountPeriodBalance;
+import com.ecomptaia.entity.JournalEntry;
+import com.ecomptaia.repository.AccountEntryRepository;
+import com.ecomptaia.repository.AccountPeriodBalanceRepository;
+import com.ecomptaia.repository.LigneEcritureRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.orm.jpa.persistenceunit.PersistenceManagedTypes;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/**
+ * Premières validations concurrentes d'un mois sur une vraie base H2 : un seul cumul par compte, aucun mouvement perdu
+ */
+class AccountBalanceConcurrencyTest {
+
+    private static final int THREADS = 32;
+    private static final LocalDate DATE = LocalDate.of(2024, 3, 15);
+
+    private AnnotationConfigApplicationContext context;
+
+    @AfterEach
+    void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Test
+    void testPremieresValidationsConcurrentesDuMois() throws Exception {
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", Map.of(
+            "test.h2.url", "jdbc:h2:mem:cumuls-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=30000")));
+        context.register(JpaConfig.class);
+        context.refresh();
+        AccountBalanceService service = context.getBean(AccountBalanceService.class);
+        when(context.getBean(AccountEntryRepository.class).findByJournalEntryId(anyLong())).thenReturn(List.of(
+            ligne("411000", "DEBIT", "118.00"),
+            ligne("701000", "CREDIT", "100.00"),
+            ligne("443100", "CREDIT", "18.00")));
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch depart = new CountDownLatch(1);
+        List<Future<?>> resultats = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            long id = t + 1;
+            resultats.add(executor.submit(() -> {
+                depart.await();
+                service.postJournalEntry(journalEntry(id));
+                return null;
+            }));
+        }
+        depart.countDown();
+        try {
+            for (Future<?> resultat : resultats) {
+                resultat.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Map<String, AccountPeriodBalance> cumuls = new HashMap<>();
+        for (AccountPeriodBalance cumul : context.getBean(AccountPeriodBalanceRepository.class)
+                .findByCompanyIdAndLedger(1L, AccountBalanceService.LEDGER_JOURNAL)) {
+            assertNull(cumuls.put(cumul.getAccountNumber(), cumul), "Cumul en double : " + cumul.getAccountNumber());
+        }
+        assertEquals(Set.of("411000", "701000", "443100"), cumuls.keySet());
+        assertEquals(0, new BigDecimal("3776.00").compareTo(cumuls.get("411000").getTotalDebit()));
+        assertEquals(0, new BigDecimal("3200.00").compareTo(cumuls.get("701000").getTotalCredit()));
+        assertEquals(THREADS, cumuls.get("443100").getEntryCount());
+    }
+
+    private static JournalEntry journalEntry(long id) {
+        JournalEntry entry = new JournalEntry();
+        entry.setId(id);
+        entry.setCompanyId(1L);
+        entry.setEntryDate(DATE);
+        return entry;
+    }
+
+    private static AccountEntry ligne(String compte, String sens, String montant) {
+        AccountEntry ligne = new AccountEntry();
+        ligne.setAccountNumber(compte);
+        ligne.setAccountName("Compte " + compte);
+        ligne.setAccountType(sens);
+        ligne.setAmount(new BigDecimal(montant));
+        return ligne;
+    }
+
+    @Configuration
+    @Import(H2JpaTestConfig.class)
+    @EnableJpaRepositories(basePackageClasses = AccountPeriodBalanceRepository.class,
+        includeFilters = @ComponentScan.Filter(type = org.springframework.context.annotation.FilterType.ASSIGNABLE_TYPE,
+            classes = AccountPeriodBalanceRepository.class))
+    static class JpaConfig {
+
+        @Bean
+        public PersistenceManagedTypes persistenceManagedTypes() {
+            return PersistenceManagedTypes.of(AccountPeriodBalance.class.getName());
+        }
+
+        @Bean
+        public AccountEntryRepository accountEntryRepository() {
+            return mock(AccountEntryRepository.class);
+        }
+
+        @Bean
+        public LigneEcritureRepository ligneEcritureRepository() {
+            return mock(LigneEcritureRepository.class);
+        }
+
+        @Bean
+        public AccountBalanceService accountBalanceService() {
+            return new AccountBalanceService();
+        }
+    }
+}
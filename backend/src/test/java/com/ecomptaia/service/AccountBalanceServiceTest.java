@@ -0,0 +1,168 @@
+package com.ecomptaia.service;
+
+import com.ecomptaia.entity.AccountEntry;
+import com.ecomptaia.entity.AccountPeriodBalance;
+import com.ecomptaia.entity.JournalEntry;
+import com.ecomptaia.repository.AccountEntryRepository;
+import com.ecomptaia.repository.AccountPeriodBalanceRepository;
+import com.ecomptaia.repository.JournalEntryRepository;
+import com.ecomptaia.repository.LigneEcritureRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests unitaires des cumuls mensuels de soldes
+ */
+@ExtendWith(MockitoExtension.class)
+class AccountBalanceServiceTest {
+
+    @Mock
+    private AccountPeriodBalanceRepository balanceRepository;
+
+    @Mock
+    private LigneEcritureRepository ligneRepository;
+
+    @Mock
+    private AccountEntryRepository accountEntryRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private AccountBalanceService accountBalanceService;
+
+    @Test
+    void testPostJournalEntryIncrementeLeCumulDuMois() {
+        JournalEntry entry = journalEntry(LocalDate.of(2024, 3, 15));
+        when(accountEntryRepository.findByJournalEntryId(7L)).thenReturn(List.of(
+            ligne("411000", "DEBIT", "1180.00"),
+            ligne("701000", "CREDIT", "1000.00"),
+            ligne("443100", "CREDIT", "180.00")));
+        when(balanceRepository.increment(any(), any(), any(), any(), any(), any(), any(), any(), any())).thenReturn(1);
+
+        accountBalanceService.postJournalEntry(entry);
+
+        verify(balanceRepository).increment(eq(1L), eq(AccountBalanceService.LEDGER_JOURNAL), eq("411000"),
+            eq(2024), eq(3), eq(new BigDecimal("1180.00")), eq(new BigDecimal("0")), eq(1L), any());
+        verify(balanceRepository).increment(eq(1L), eq(AccountBalanceService.LEDGER_JOURNAL), eq("701000"),
+            eq(2024), eq(3), eq(new BigDecimal("0")), eq(new BigDecimal("1000.00")), eq(1L), any());
+        verify(balanceRepository, never()).save(any());
+    }
+
+    @Test
+    void testUnpostCreeUnCumulNegatifSiAbsent() {
+        JournalEntry entry = journalEntry(LocalDate.of(2024, 3, 15));
+        when(accountEntryRepository.findByJournalEntryId(7L)).thenReturn(List.of(ligne("411000", "DEBIT", "500.00")));
+        when(balanceRepository.increment(any(), any(), any(), any(), any(), any(), any(), any(), any()))
+            .thenReturn(0).thenReturn(1);
+
+        accountBalanceService.unpostJournalEntry(entry);
+
+        // Cumul créé à zéro, puis incrémenté comme un cumul existant
+        ArgumentCaptor<AccountPeriodBalance> captor = ArgumentCaptor.forClass(AccountPeriodBalance.class);
+        verify(balanceRepository).saveAndFlush(captor.capture());
+        assertEquals(0, BigDecimal.ZERO.compareTo(captor.getValue().getTotalDebit()));
+        assertEquals(0L, captor.getValue().getEntryCount());
+        verify(balanceRepository, times(2)).increment(eq(1L), eq(AccountBalanceService.LEDGER_JOURNAL), eq("411000"),
+            eq(2024), eq(3), eq(new BigDecimal("-500.00")), eq(new BigDecimal("0")), eq(-1L), any());
+    }
+
+    @Test
+    void testSoldeADateCumulsEtMoisPartiel() {
+        List<Object[]> cumuls = new ArrayList<>();
+        cumuls.add(new Object[]{"411000", "Clients", new BigDecimal("1000.00"), new BigDecimal("200.00"), 4L});
+        when(balanceRepository.sumByAccountBeforeMonth(1L, AccountBalanceService.LEDGER_JOURNAL, 2024, 6))
+            .thenReturn(cumuls);
+        List<Object[]> moisEnCours = new ArrayList<>();
+        moisEnCours.add(new Object[]{"411000", "Clients", new BigDecimal("50.00"), new BigDecimal("0.00"), 1L});
+        moisEnCours.add(new Object[]{"521000", "Banque", new BigDecimal("0.00"), new BigDecimal("30.00"), 1L});
+        when(accountEntryRepository.sumValidatedByAccountBetween(1L, LocalDate.of(2024, 6, 1), LocalDate.of(2024, 6, 10)))
+            .thenReturn(moisEnCours);
+
+        Map<String, AccountBalanceService.AccountTotals> soldes = accountBalanceService.getBalancesAsOf(
+            1L, AccountBalanceService.LEDGER_JOURNAL, LocalDate.of(2024, 6, 10));
+
+        assertEquals(0, new BigDecimal("850.00").compareTo(soldes.get("411000").getSolde()));
+        assertEquals(5L, soldes.get("411000").getCount());
+        assertEquals(0, new BigDecimal("-30.00").compareTo(soldes.get("521000").getSolde()));
+    }
+
+    @Test
+    void testVerifySignaleLesEcarts() {
+        List<Object[]> attendus = new ArrayList<>();
+        attendus.add(new Object[]{"411000", "Clients", 2024, 1, new BigDecimal("100.00"), new BigDecimal("0.00"), 1L});
+        attendus.add(new Object[]{"701000", "Ventes", 2024, 1, new BigDecimal("0.00"), new BigDecimal("100.00"), 1L});
+        when(accountEntryRepository.sumValidatedByAccountAndMonth(1L)).thenReturn(attendus);
+
+        AccountPeriodBalance correct = new AccountPeriodBalance(1L, "JOURNAL", "411000", "Clients", 2024, 1);
+        correct.setTotalDebit(new BigDecimal("100.00"));
+        AccountPeriodBalance faux = new AccountPeriodBalance(1L, "JOURNAL", "701000", "Ventes", 2024, 1);
+        faux.setTotalCredit(new BigDecimal("90.00"));
+        when(balanceRepository.findByCompanyIdAndLedger(1L, "JOURNAL")).thenReturn(List.of(correct, faux));
+
+        Map<String, Object> result = accountBalanceService.verify(1L, AccountBalanceService.LEDGER_JOURNAL);
+
+        assertEquals(false, result.get("consistent"));
+        List<?> drifts = (List<?>) result.get("drifts");
+        assertEquals(1, drifts.size());
+        assertEquals("701000", ((Map<?, ?>) drifts.get(0)).get("accountNumber"));
+    }
+
+    @Test
+    void testMiseAJourDuStatutPasseParLesCumuls() {
+        JournalEntryRepository journalEntryRepository = mock(JournalEntryRepository.class);
+        AccountBalanceService cumuls = mock(AccountBalanceService.class);
+        JournalEntryService journalEntryService = new JournalEntryService();
+        ReflectionTestUtils.setField(journalEntryService, "journalEntryRepository", journalEntryRepository);
+        ReflectionTestUtils.setField(journalEntryService, "accountBalanceService", cumuls);
+        JournalEntry entry = journalEntry(LocalDate.of(2024, 3, 15));
+        entry.setStatus("BROUILLON");
+        when(journalEntryRepository.findById(7L)).thenReturn(Optional.of(entry));
+        when(journalEntryRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        JournalEntry validee = journalEntryService.updateEntry(7L, Map.of("status", "VALIDÉ"), 1L);
+
+        assertEquals("VALIDÉ", validee.getStatus());
+        assertTrue(validee.getIsPosted());
+        verify(cumuls).postJournalEntry(entry);
+
+        // Une écriture validée n'est plus modifiable ni supprimable : les cumuls restent exacts
+        assertThrows(RuntimeException.class, () -> journalEntryService.updateEntry(7L, Map.of("description", "X"), 1L));
+        assertThrows(RuntimeException.class, () -> journalEntryService.deleteEntry(7L));
+        verifyNoMoreInteractions(cumuls);
+    }
+
+    private JournalEntry journalEntry(LocalDate date) {
+        JournalEntry entry = new JournalEntry();
+        entry.setId(7L);
+        entry.setCompanyId(1L);
+        entry.setEntryDate(date);
+        return entry;
+    }
+
+    private AccountEntry ligne(String compte, String sens, String montant) {
+        AccountEntry ligne = new AccountEntry();
+        ligne.setAccountNumber(compte);
+        ligne.setAccountName("Compte " + compte);
+        ligne.setAccountType(sens);
+        ligne.setAmount(new BigDecimal(montant));
+        return ligne;
+    }
+}
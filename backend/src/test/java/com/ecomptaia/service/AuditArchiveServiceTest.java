@@ -0,0 +1,293 @@
+package com.ecomptaia.service;
+
+import com.ecomptaia.entity.AuditLog;
+import com.ecomptaia.repository.AuditLogRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Archivage du journal d'audit en segments chaînés sur une base H2 en mémoire : découpage, lecture limitée
+ * aux segments de la période, détection d'altération, reprise après un archivage interrompu, verrou entre instances
+ */
+class AuditArchiveServiceTest {
+
+    private static final AtomicInteger BASES = new AtomicInteger();
+    private static final LocalDateTime ORIGINE = LocalDateTime.of(2022, 1, 1, 8, 0);
+
+    // Hors du répertoire temporaire du système, refusé par le service
+    private Path repertoire;
+
+    private JdbcTemplate jdbcTemplate;
+    private SchedulerLockService verrous;
+    private AuditArchiveService archives;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.createDirectories(Paths.get("target"));
+        repertoire = Files.createTempDirectory(Paths.get("target"), "audit-archive");
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+            "jdbc:h2:mem:archive" + BASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE audit_logs (id BIGINT AUTO_INCREMENT PRIMARY KEY, timestamp TIMESTAMP NOT NULL, "
+            + "user_id BIGINT, username VARCHAR(100), company_id BIGINT, action_type VARCHAR(50) NOT NULL, "
+            + "entity_type VARCHAR(50) NOT NULL, entity_id BIGINT, description VARCHAR(500), ip_address VARCHAR(45), "
+            + "user_agent VARCHAR(500), session_id VARCHAR(100), old_values TEXT, new_values TEXT, status VARCHAR(20), "
+            + "error_message VARCHAR(1000))");
+        // Un événement par jour pendant 1000 jours, puis 20 événements récents
+        List<Object[]> lignes = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            lignes.add(new Object[]{Timestamp.valueOf(ORIGINE.plusDays(i)), (long) (i % 7), "CREATE", "JournalEntry", "Écriture " + i});
+        }
+        for (int i = 0; i < 20; i++) {
+            lignes.add(new Object[]{Timestamp.valueOf(LocalDateTime.now().minusHours(i)), 1L, "LOGIN", "User", "Connexion " + i});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO audit_logs (timestamp, user_id, action_type, entity_type, description, status) "
+            + "VALUES (?, ?, ?, ?, ?, 'SUCCESS')", lignes);
+        jdbcTemplate.execute("CREATE TABLE scheduler_locks (name VARCHAR(64) PRIMARY KEY, locked_until TIMESTAMP NOT NULL, "
+            + "locked_at TIMESTAMP NOT NULL, locked_by VARCHAR(255) NOT NULL)");
+        verrous = verrous("noeud-1");
+
+        archives = nouveauService();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        jdbcTemplate.execute("SHUTDOWN");
+        FileSystemUtils.deleteRecursively(repertoire);
+    }
+
+    private SchedulerLockService verrous(String instance) {
+        SchedulerLockService service = new SchedulerLockService();
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "instance", instance);
+        return service;
+    }
+
+    private AuditArchiveService nouveauService() {
+        AuditArchiveService service = new AuditArchiveService();
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "schedulerLockService", verrous);
+        ReflectionTestUtils.setField(service, "actif", true);
+        ReflectionTestUtils.setField(service, "repertoire", repertoire.toString());
+        ReflectionTestUtils.setField(service, "tailleSegment", 300);
+        service.charger();
+        return service;
+    }
+
+    @Test
+    void testArchivageEnSegmentsChaines() {
+        assertEquals(1000, archives.archiver());
+        assertEquals(20, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM audit_logs", Integer.class));
+        assertEquals(0, archives.archiver());
+
+        List<AuditArchiveService.Segment> segments = archives.getSegments();
+        assertEquals(4, segments.size());
+        assertEquals(AuditArchiveService.GENESE, segments.get(0).hashPrecedent());
+        assertEquals(segments.get(0).hash(), segments.get(1).hashPrecedent());
+        assertEquals(ORIGINE.plusDays(300), segments.get(1).debut());
+        assertEquals(ORIGINE.plusDays(599), segments.get(1).fin());
+        assertEquals(Boolean.TRUE, archives.verifierIntegrite().get("valide"));
+
+        // L'index est relu à l'identique au redémarrage
+        AuditArchiveService redemarre = nouveauService();
+        assertEquals(segments, redemarre.getSegments());
+        assertEquals(1000L, redemarre.verifierIntegrite().get("evenementsArchives"));
+    }
+
+    @Test
+    void testRechercheLimiteeAuxSegmentsDeLaPeriode() {
+        archives.archiver();
+
+        List<AuditLog> mars = archives.rechercher(ORIGINE.plusDays(400), ORIGINE.plusDays(430).minusSeconds(1));
+
+        assertEquals(30, mars.size());
+        assertEquals("Écriture 429", mars.get(0).getDescription());
+        assertEquals(AuditLog.ActionType.CREATE, mars.get(0).getActionType());
+        assertEquals(1, archives.getNombreSegmentsLus());
+        assertFalse(archives.couvre(LocalDateTime.now().minusDays(1), LocalDateTime.now()));
+
+        // Période à cheval sur deux segments
+        assertEquals(20, archives.rechercher(ORIGINE.plusDays(590), ORIGINE.plusDays(609)).size());
+        assertEquals(3, archives.getNombreSegmentsLus());
+    }
+
+    @Test
+    void testAlterationDetectee() throws Exception {
+        archives.archiver();
+        Path fichier = repertoire.resolve(archives.getSegments().get(2).fichier());
+        fichier.toFile().setWritable(true);
+        byte[] contenu = Files.readAllBytes(fichier);
+        contenu[contenu.length / 2] ^= 0x01;
+        Files.write(fichier, contenu);
+
+        // Les segments intacts restent lisibles ; celui qui a été modifié est refusé
+        assertEquals(10, archives.rechercher(ORIGINE.plusDays(10), ORIGINE.plusDays(19)).size());
+        RuntimeException erreur = assertThrows(RuntimeException.class,
+            () -> archives.rechercher(ORIGINE.plusDays(610), ORIGINE.plusDays(620)));
+        assertTrue(erreur.getMessage().contains("Segment d'archive d'audit 3"));
+        Map<String, Object> rapport = archives.verifierIntegrite();
+        assertEquals(Boolean.FALSE, rapport.get("valide"));
+        assertEquals(List.of("Segment 3 : contenu modifié"), rapport.get("erreurs"));
+
+        // Réécrire une ligne d'index (nombre d'événements) rompt la chaîne
+        Path index = repertoire.resolve(AuditArchiveService.INDEX);
+        String lignes = Files.readString(index).replaceFirst("\"nombre\":300", "\"nombre\":299");
+        Files.writeString(index, lignes, StandardOpenOption.TRUNCATE_EXISTING);
+        AuditArchiveService relu = nouveauService();
+        assertThrows(RuntimeException.class, () -> relu.rechercher(ORIGINE.plusDays(10), ORIGINE.plusDays(19)));
+        assertTrue(relu.verifierIntegrite().get("erreurs").toString().contains("Segment 1 : chaînage rompu"));
+    }
+
+    @Test
+    void testSuppressionRepriseApresInterruption() {
+        archives.archiver(ORIGINE.plusDays(500));
+        // Lignes réinsérées comme si la suppression du dernier segment n'avait pas eu lieu
+        jdbcTemplate.update("INSERT INTO audit_logs (id, timestamp, action_type, entity_type, description) "
+            + "VALUES (450, ?, 'CREATE', 'JournalEntry', 'Écriture 449')", Timestamp.valueOf(ORIGINE.plusDays(449)));
+
+        assertEquals(500, archives.archiver());
+
+        assertEquals(20, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM audit_logs", Integer.class));
+        assertEquals(1, archives.rechercher(ORIGINE.plusDays(449), ORIGINE.plusDays(449)).size());
+        assertEquals(Boolean.TRUE, archives.verifierIntegrite().get("valide"));
+    }
+
+    @Test
+    void testLigneValideeTardivementArchiveeSansPerte() {
+        archives.archiver(ORIGINE.plusDays(500));
+        // Transaction validée après l'archivage avec un identifiant compris dans un segment déjà écrit
+        jdbcTemplate.update("INSERT INTO audit_logs (id, timestamp, action_type, entity_type, description) "
+            + "VALUES (150, ?, 'CREATE', 'JournalEntry', 'Tardive')", Timestamp.valueOf(ORIGINE.plusDays(149)));
+
+        assertEquals(501, archives.archiver());
+
+        assertEquals(20, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM audit_logs", Integer.class));
+        assertEquals(2, archives.rechercher(ORIGINE.plusDays(149), ORIGINE.plusDays(149)).size());
+        assertEquals(1001L, archives.verifierIntegrite().get("evenementsArchives"));
+    }
+
+    @Test
+    void testUneSeuleInstanceArchive() {
+        // Une autre instance tient le verrou : rien n'est archivé ici
+        assertTrue(verrous("noeud-2").acquerir(AuditArchiveService.VERROU, Duration.ofMinutes(5)));
+        assertEquals(0, archives.archiver());
+        assertEquals(1020, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM audit_logs", Integer.class));
+
+        // Verrou libéré : la seconde instance archive et reprend l'index écrit par la première
+        verrous("noeud-2").liberer(AuditArchiveService.VERROU);
+        AuditArchiveService autre = nouveauService();
+        ReflectionTestUtils.setField(autre, "schedulerLockService", verrous("noeud-2"));
+        assertEquals(500, autre.archiver(ORIGINE.plusDays(500)));
+        assertEquals(500, archives.archiver());
+        assertEquals(4, archives.getSegments().size());
+        assertEquals(Boolean.TRUE, archives.verifierIntegrite().get("valide"));
+    }
+
+    @Test
+    void testIndexRechargeParLesAutresInstances() {
+        // Instance démarrée avant l'archivage, sur le même répertoire partagé
+        AuditArchiveService lecteur = nouveauService();
+        assertFalse(lecteur.couvre(ORIGINE, ORIGINE.plusDays(10)));
+
+        archives.archiver();
+
+        assertTrue(lecteur.couvre(ORIGINE, ORIGINE.plusDays(10)));
+        assertEquals(4, lecteur.getSegments().size());
+        assertEquals(11, lecteur.rechercher(ORIGINE, ORIGINE.plusDays(10)).size());
+        assertEquals(1000L, lecteur.getStatistiques().get("evenementsArchives"));
+    }
+
+    @Test
+    void testSegmentsEcartesParLeurSommaire() {
+        archives.archiver();
+        AuditLogRepository repository = mock(AuditLogRepository.class);
+        AuditService auditService = new AuditService();
+        ReflectionTestUtils.setField(auditService, "auditLogRepository", repository);
+        ReflectionTestUtils.setField(auditService, "auditArchiveService", archives);
+
+        // Ni l'utilisateur 99, ni l'entreprise 1, ni les connexions ne figurent dans les archives
+        assertTrue(auditService.getAuditLogsByUser(99L).isEmpty());
+        assertTrue(auditService.getAuditLogsByCompany(1L).isEmpty());
+        assertTrue(auditService.getAuditLogsByActionType(AuditLog.ActionType.LOGIN).isEmpty());
+        assertTrue(auditService.getAuditLogsByEntity("User", 1L).isEmpty());
+        assertTrue(auditService.getSecurityEvents(ORIGINE).isEmpty());
+        assertEquals(0, archives.getNombreSegmentsLus());
+
+        assertEquals(1000, auditService.getAuditLogsByActionType(AuditLog.ActionType.CREATE).size());
+        assertEquals(4, archives.getNombreSegmentsLus());
+        assertEquals(List.of(0L, 1L, 2L, 3L, 4L, 5L, 6L), archives.getSegments().get(0).sommaire().utilisateurs());
+    }
+
+    @Test
+    void testDesactiveParDefautEtRepertoireTemporaireRefuse() {
+        AuditArchiveService service = new AuditArchiveService();
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        service.charger();
+        assertEquals(0, service.archiver());
+
+        ReflectionTestUtils.setField(service, "actif", true);
+        assertThrows(RuntimeException.class, service::charger);
+        ReflectionTestUtils.setField(service, "repertoire", System.getProperty("java.io.tmpdir") + "/archives-audit");
+        assertThrows(RuntimeException.class, service::charger);
+    }
+
+    @Test
+    void testRecherchesParCritereFusionnentLesArchives() {
+        archives.archiver();
+        AuditLogRepository repository = mock(AuditLogRepository.class);
+        when(repository.findByUserIdOrderByTimestampDesc(3L)).thenReturn(List.of());
+        AuditService auditService = new AuditService();
+        ReflectionTestUtils.setField(auditService, "auditLogRepository", repository);
+        ReflectionTestUtils.setField(auditService, "auditArchiveService", archives);
+
+        // Un événement sur sept pour l'utilisateur 3, tous archivés
+        List<AuditLog> logs = auditService.getAuditLogsByUser(3L);
+        assertEquals(143, logs.size());
+        assertTrue(logs.stream().allMatch(log -> log.getUserId() == 3L));
+        assertEquals("Écriture 997", logs.get(0).getDescription());
+
+        Map<String, Object> rapport = auditService.generateCompleteAuditReport(ORIGINE.plusDays(990));
+        assertEquals(List.of("JournalEntry"), ((List<?>) rapport.get("entityTypeStats")).stream()
+            .map(ligne -> ((Object[]) ligne)[0]).toList());
+        assertEquals(10L, ((Object[]) ((List<?>) rapport.get("entityTypeStats")).get(0))[1]);
+    }
+
+    @Test
+    void testPeriodeFusionneArchivesEtTableCourante() {
+        archives.archiver();
+        AuditLog recent = new AuditLog(AuditLog.ActionType.LOGIN, "User", "Connexion");
+        recent.setId(5000L);
+        recent.setTimestamp(ORIGINE.plusDays(999).plusHours(1));
+        AuditLogRepository repository = mock(AuditLogRepository.class);
+        when(repository.findByTimestampBetweenOrderByTimestampDesc(any(), any())).thenReturn(List.of(recent));
+        AuditService auditService = new AuditService();
+        ReflectionTestUtils.setField(auditService, "auditLogRepository", repository);
+        ReflectionTestUtils.setField(auditService, "auditArchiveService", archives);
+
+        List<AuditLog> logs = auditService.getAuditLogsByPeriod(ORIGINE.plusDays(995), ORIGINE.plusDays(1000));
+
+        assertEquals(6, logs.size());
+        assertEquals(5000L, logs.get(0).getId());
+        assertEquals("Écriture 999", logs.get(1).getDescription());
+        assertEquals(1, archives.getNombreSegmentsLus());
+    }
+}
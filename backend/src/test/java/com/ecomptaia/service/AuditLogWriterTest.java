@@ -0,0 +1,229 @@
+package com.ecomptaia.service;
+
+import com.ecomptaia.entity.AuditLog;
+import com.ecomptaia.repository.AuditLogRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Écriture asynchrone du journal d'audit sur une base H2 en mémoire : lots JDBC, contre-pression,
+ * débordement sur disque et rejeu, vidage à l'arrêt
+ */
+class AuditLogWriterTest {
+
+    private static final AtomicInteger BASES = new AtomicInteger();
+
+    @TempDir
+    Path repertoire;
+
+    private JdbcTemplate jdbcTemplate;
+    private AuditLogRepository auditLogRepository;
+    private AuditLogWriter writer;
+    private AuditService auditService;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+            "jdbc:h2:mem:audit" + BASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE audit_logs (id BIGINT AUTO_INCREMENT PRIMARY KEY, timestamp TIMESTAMP NOT NULL, "
+            + "user_id BIGINT, username VARCHAR(100), company_id BIGINT, action_type VARCHAR(50) NOT NULL, "
+            + "entity_type VARCHAR(50) NOT NULL, entity_id BIGINT, description VARCHAR(500), ip_address VARCHAR(45), "
+            + "user_agent VARCHAR(500), session_id VARCHAR(100), old_values TEXT, new_values TEXT, status VARCHAR(20), "
+            + "error_message VARCHAR(1000))");
+
+        writer = new AuditLogWriter();
+        ReflectionTestUtils.setField(writer, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(writer, "fichierDebordement", repertoire.resolve("audit-overflow.jsonl").toString());
+
+        auditLogRepository = mock(AuditLogRepository.class);
+        auditService = new AuditService();
+        ReflectionTestUtils.setField(auditService, "auditLogRepository", auditLogRepository);
+        ReflectionTestUtils.setField(auditService, "auditLogWriter", writer);
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.arreter();
+        RequestContextHolder.resetRequestAttributes();
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    void testEcritureParLotsSansSessionHttp() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("X-Forwarded-For", "10.1.2.3, 10.0.0.1");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        AuditLog logRequete = auditService.logAction(AuditLog.ActionType.UPDATE, "Company", 7L, "Modification",
+            1L, "admin", Map.of("nom", "Ancien"), Map.of("nom", "Nouveau"));
+        assertNull(request.getSession(false));
+        RequestContextHolder.resetRequestAttributes();
+
+        writer.demarrer();
+        int threads = 4;
+        int parThread = 2_500;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> taches = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long userId = t;
+            taches.add(pool.submit(() -> {
+                for (int i = 0; i < parThread; i++) {
+                    auditService.logAction(AuditLog.ActionType.CREATE, "JournalEntry", (long) i, "Création", userId, "user", 42L);
+                }
+            }));
+        }
+        for (Future<?> tache : taches) {
+            tache.get();
+        }
+        pool.shutdown();
+        auditService.logFailedAction(AuditLog.ActionType.LOGIN, "User", "Connexion", "Mot de passe invalide", 3L, "user3");
+        writer.arreter();
+
+        int total = threads * parThread + 2;
+        assertEquals(total, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM audit_logs", Integer.class));
+        assertEquals(threads * parThread, jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM audit_logs WHERE company_id = 42 AND action_type = 'CREATE'", Integer.class));
+        assertEquals("10.1.2.3", jdbcTemplate.queryForObject(
+            "SELECT ip_address FROM audit_logs WHERE entity_type = 'Company'", String.class));
+        assertEquals("{\"nom\":\"Nouveau\"}", jdbcTemplate.queryForObject(
+            "SELECT new_values FROM audit_logs WHERE entity_type = 'Company'", String.class));
+        assertEquals("Mot de passe invalide", jdbcTemplate.queryForObject(
+            "SELECT error_message FROM audit_logs WHERE status = 'FAILED'", String.class));
+        assertNull(logRequete.getId());
+        verifyNoInteractions(auditLogRepository);
+
+        Map<String, Object> stats = writer.getStatistiques();
+        assertEquals((long) total, stats.get("evenementsEcrits"));
+        assertTrue((Long) stats.get("lotsEcrits") < total / 10);
+        assertEquals(0, writer.getNombreDebordes());
+    }
+
+    @Test
+    void testContrePressionPuisDebordementSurDisque() {
+        ReflectionTestUtils.setField(writer, "capacite", 10);
+        ReflectionTestUtils.setField(writer, "attenteMaxMs", 1L);
+
+        for (int i = 0; i < 25; i++) {
+            assertTrue(writer.soumettre(new AuditLog(AuditLog.ActionType.EXPORT, "Report", "Export " + i)));
+        }
+
+        assertEquals(10, writer.getProfondeurFile());
+        assertEquals(15, writer.getNombreDebordes());
+        assertEquals(0, writer.getNombrePerdus());
+        assertEquals(10, writer.vider());
+        assertEquals(15, writer.rejouerDebordement());
+        assertEquals(25, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM audit_logs", Integer.class));
+        assertEquals(false, writer.getStatistiques().get("debordementEnAttente"));
+    }
+
+    @Test
+    void testLotRefuseConserveEtRejoue() throws Exception {
+        jdbcTemplate.execute("ALTER TABLE audit_logs RENAME TO audit_logs_maintenance");
+        for (int i = 0; i < 5; i++) {
+            writer.soumettre(new AuditLog(AuditLog.ActionType.DELETE, "Document", "Suppression " + i));
+        }
+
+        assertEquals(5, writer.vider());
+        assertEquals(5, writer.getNombreDebordes());
+        assertEquals(0, writer.rejouerDebordement());
+        assertEquals(5, Files.readAllLines(repertoire.resolve("audit-overflow.jsonl.replay")).size());
+
+        jdbcTemplate.execute("ALTER TABLE audit_logs_maintenance RENAME TO audit_logs");
+        assertEquals(5, writer.rejouerDebordement());
+        assertEquals(5, jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM audit_logs WHERE action_type = 'DELETE' AND status = 'SUCCESS'", Integer.class));
+        assertFalse(Files.exists(repertoire.resolve("audit-overflow.jsonl.replay")));
+    }
+
+    @Test
+    void testBaseInjoignableNeCompteAucuneTentative() throws Exception {
+        ReflectionTestUtils.setField(writer, "tentativesMax", 2);
+        jdbcTemplate.execute("ALTER TABLE audit_logs RENAME TO audit_logs_maintenance");
+        for (int i = 0; i < 3; i++) {
+            writer.soumettre(new AuditLog(AuditLog.ActionType.EXPORT, "Report", "Export " + i));
+        }
+        writer.vider();
+        jdbcTemplate.execute("ALTER TABLE audit_logs_maintenance RENAME TO audit_logs");
+
+        // Serveur injoignable : aucune transaction ne peut être ouverte, bien plus de passes que tentativesMax
+        ReflectionTestUtils.setField(writer, "jdbcTemplate", new JdbcTemplate(new DriverManagerDataSource(
+            "jdbc:h2:tcp://127.0.0.1:1/injoignable", "sa", "")));
+        ReflectionTestUtils.setField(writer, "transactionLot", null);
+        for (int passe = 0; passe < 5; passe++) {
+            assertEquals(0, writer.rejouerDebordement());
+        }
+        assertFalse(Files.exists(repertoire.resolve("audit-overflow.jsonl.dead")));
+        assertEquals(0, writer.getNombreRejetes());
+        assertEquals(3, Files.readAllLines(repertoire.resolve("audit-overflow.jsonl.replay")).size());
+
+        // Base revenue : tous les événements sont rejoués
+        ReflectionTestUtils.setField(writer, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(writer, "transactionLot", null);
+        assertEquals(3, writer.rejouerDebordement());
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM audit_logs", Integer.class));
+    }
+
+    @Test
+    void testLigneEmpoisonneeEcarteeApresPlusieursTentatives() throws Exception {
+        ReflectionTestUtils.setField(writer, "tentativesMax", 2);
+        for (int i = 0; i < 3; i++) {
+            writer.soumettre(new AuditLog(AuditLog.ActionType.EXPORT, "Report", "Export " + i));
+        }
+        jdbcTemplate.execute("ALTER TABLE audit_logs RENAME TO audit_logs_maintenance");
+        writer.vider();
+        jdbcTemplate.execute("ALTER TABLE audit_logs_maintenance RENAME TO audit_logs");
+
+        // Ligne illisible, ligne vide et description trop longue pour la colonne, avant des lignes valides
+        Path fichier = repertoire.resolve("audit-overflow.jsonl");
+        List<String> lignes = new ArrayList<>(Files.readAllLines(fichier));
+        String empoisonnee = lignes.get(0).replace("\"Export 0\"", "\"" + "x".repeat(600) + "\"");
+        lignes.set(0, lignes.get(1));
+        lignes.set(1, "{pas du json");
+        lignes.add(2, "");
+        lignes.add(3, empoisonnee);
+        Files.write(fichier, lignes);
+
+        // Première passe : la ligne valide qui précède est rejouée, la ligne refusée bloque la suite
+        assertEquals(1, writer.rejouerDebordement());
+        assertEquals(List.of("", empoisonnee, lignes.get(4)),
+            Files.readAllLines(repertoire.resolve("audit-overflow.jsonl.replay")));
+
+        // Seconde passe : refusée une deuxième fois, elle est écartée et la suite est rejouée
+        assertEquals(1, writer.rejouerDebordement());
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM audit_logs", Integer.class));
+        assertEquals(List.of("{pas du json", empoisonnee), Files.readAllLines(repertoire.resolve("audit-overflow.jsonl.dead")));
+        assertEquals(2, writer.getNombreRejetes());
+        assertFalse(Files.exists(repertoire.resolve("audit-overflow.jsonl.replay")));
+    }
+
+    @Test
+    void testEnregistrementImmediatSansEcritureAsynchrone() {
+        ReflectionTestUtils.setField(writer, "actif", false);
+        when(auditLogRepository.save(any(AuditLog.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        auditService.logAction(AuditLog.ActionType.APPROVE, "Invoice", 3L, "Validation", 1L, "admin", 42L);
+
+        verify(auditLogRepository, times(1)).save(argThat(log -> Long.valueOf(42L).equals(log.getCompanyId())));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM audit_logs", Integer.class));
+    }
+}
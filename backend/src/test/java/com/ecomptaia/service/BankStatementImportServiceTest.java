@@ -0,0 +1,225 @@
+package com.ecomptaia.service;
+
+import com.ecomptaia.entity.BankAccount;
+import com.ecomptaia.repository.BankAccountRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Import de relevés bancaires : lecture en flux des formats CSV, MT940 et CAMT.053, dédoublonnage par
+ * référence bancaire, insertion par lots et réimportation sans effet
+ */
+class BankStatementImportServiceTest {
+
+    private static final AtomicInteger BASES = new AtomicInteger();
+
+    @TempDir
+    Path repertoire;
+
+    private JdbcTemplate jdbcTemplate;
+    private BankStatementImportService service;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+            "jdbc:h2:mem:releves" + BASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE bank_statement_lines (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+            + "company_id BIGINT NOT NULL, bank_account_id BIGINT NOT NULL, bank_reference VARCHAR(100) NOT NULL, "
+            + "transaction_date DATE NOT NULL, value_date DATE, amount DECIMAL(15,2) NOT NULL, currency VARCHAR(3) NOT NULL, "
+            + "description VARCHAR(500), counterparty VARCHAR(255), is_reconciled BOOLEAN NOT NULL, "
+            + "reconciliation_id BIGINT, reconciliation_reference VARCHAR(100), match_type VARCHAR(20), "
+            + "reconciled_at TIMESTAMP, source_file VARCHAR(255), imported_at TIMESTAMP)");
+        jdbcTemplate.execute("CREATE UNIQUE INDEX idx_reference ON bank_statement_lines (bank_account_id, bank_reference)");
+
+        BankAccount compte = new BankAccount();
+        compte.setId(3L);
+        compte.setCompanyId(1L);
+        compte.setCurrency("XOF");
+        BankAccountRepository bankAccountRepository = mock(BankAccountRepository.class);
+        when(bankAccountRepository.findById(3L)).thenReturn(Optional.of(compte));
+
+        service = new BankStatementImportService();
+        ReflectionTestUtils.setField(service, "bankAccountRepository", bankAccountRepository);
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "transactionManager", new DataSourceTransactionManager(dataSource));
+        ReflectionTestUtils.setField(service, "repertoire", repertoire.toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    void testLectureDesTroisFormats() throws IOException {
+        String csv = "Date opération;Libellé;Débit;Crédit;Référence\n"
+            + "05/03/2024;\"VIR SARL NDIAYE; FA-12\";;1 250,50;B001\n"
+            + "06/03/2024;PRLV SENELEC;35 000,00;;\n"
+            + "date fausse;X;1,00;;B003\n";
+        List<BankStatementStreamReader.Operation> operations = lire(csv, BankStatementStreamReader.FORMAT_CSV);
+        assertEquals(2, operations.size());
+        assertEquals(new BigDecimal("1250.50"), operations.get(0).montant());
+        assertEquals("VIR SARL NDIAYE; FA-12", operations.get(0).libelle());
+        assertEquals("B001", operations.get(0).reference());
+        assertEquals(new BigDecimal("-35000.00"), operations.get(1).montant());
+        assertNull(operations.get(1).reference());
+        assertEquals("XOF", operations.get(1).devise());
+
+        String mt940 = "{1:F01BICAAAAAXXXX0000000000}{2:I940BICBBBBBXXXXN}{4:\n"
+            + ":20:STMT240331\n:25:SN012010100100123456789\n:28C:00031/001\n:60F:C240329EUR1000,00\n"
+            + ":61:2404010401C1250,00NTRFNONREF//B4A0201XY\n:86:VIR RECU CLIENT DUPONT\nFACTURE FA-2024-0042\n"
+            + ":61:2312310102D80,5NCHKCHQ0001234\n:86:CHEQUE 1234\n"
+            + ":61:240402RC10,00NMSCNONREF\n"
+            + ":61:2404XXC5,00NTRF\n"
+            + ":62F:C240402EUR2159,50\n-}\n";
+        operations = lire(mt940, BankStatementStreamReader.FORMAT_MT940);
+        assertEquals(3, operations.size());
+        assertEquals("B4A0201XY", operations.get(0).reference());
+        assertEquals(new BigDecimal("1250.00"), operations.get(0).montant());
+        assertEquals("EUR", operations.get(0).devise());
+        assertEquals("VIR RECU CLIENT DUPONT FACTURE FA-2024-0042", operations.get(0).libelle());
+        // Date comptable en janvier pour une date de valeur en décembre
+        assertEquals(LocalDate.of(2024, 1, 2), operations.get(1).dateOperation());
+        assertEquals(LocalDate.of(2023, 12, 31), operations.get(1).dateValeur());
+        assertEquals(new BigDecimal("-80.5"), operations.get(1).montant());
+        assertEquals("CHQ0001234", operations.get(1).reference());
+        // Extourne d'un crédit, sans référence
+        assertEquals(new BigDecimal("-10.00"), operations.get(2).montant());
+        assertNull(operations.get(2).reference());
+
+        String camt = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<Document xmlns=\"urn:iso:std:iso:20022:tech:xsd:camt.053.001.08\"><BkToCstmrStmt><Stmt>"
+            + "<Acct><Id><IBAN>CI93CI0080111301134291200589</IBAN></Id><Ccy>XOF</Ccy></Acct>"
+            + "<Bal><Amt Ccy=\"XOF\">500000</Amt><CdtDbtInd>CRDT</CdtDbtInd></Bal>"
+            + "<Ntry><Amt Ccy=\"XOF\">150000</Amt><CdtDbtInd>CRDT</CdtDbtInd><Sts><Cd>BOOK</Cd></Sts>"
+            + "<BookgDt><Dt>2024-03-05</Dt></BookgDt><ValDt><Dt>2024-03-06</Dt></ValDt><AcctSvcrRef>CAMT-001</AcctSvcrRef>"
+            + "<NtryDtls><TxDtls><Refs><EndToEndId>E2E-1</EndToEndId></Refs><AmtDtls><TxAmt><Amt Ccy=\"XOF\">150000</Amt></TxAmt></AmtDtls>"
+            + "<RltdPties><Dbtr><Pty><Nm>SARL NDIAYE</Nm></Pty></Dbtr></RltdPties>"
+            + "<RmtInf><Ustrd>FACTURE FA-12</Ustrd><Ustrd>FACTURE FA-13</Ustrd></RmtInf></TxDtls></NtryDtls></Ntry>"
+            + "<Ntry><Amt Ccy=\"XOF\">20000</Amt><CdtDbtInd>DBIT</CdtDbtInd>"
+            + "<BookgDt><DtTm>2024-03-07T10:15:00</DtTm></BookgDt>"
+            + "<NtryDtls><TxDtls><Refs><EndToEndId>NOTPROVIDED</EndToEndId><AcctSvcrRef>TX-9</AcctSvcrRef></Refs>"
+            + "<RltdPties><Cdtr><Nm>SENELEC</Nm></Cdtr></RltdPties></TxDtls></NtryDtls>"
+            + "<AddtlNtryInf>PRLV SENELEC</AddtlNtryInf></Ntry>"
+            + "<Ntry><CdtDbtInd>DBIT</CdtDbtInd><BookgDt><Dt>2024-03-08</Dt></BookgDt></Ntry>"
+            + "</Stmt></BkToCstmrStmt></Document>";
+        operations = lire(camt, BankStatementStreamReader.FORMAT_CAMT053);
+        assertEquals(2, operations.size());
+        assertEquals("CAMT-001", operations.get(0).reference());
+        assertEquals(new BigDecimal("150000"), operations.get(0).montant());
+        assertEquals(LocalDate.of(2024, 3, 6), operations.get(0).dateValeur());
+        assertEquals("FACTURE FA-12 FACTURE FA-13", operations.get(0).libelle());
+        assertEquals("SARL NDIAYE", operations.get(0).contrepartie());
+        assertEquals("TX-9", operations.get(1).reference());
+        assertEquals(new BigDecimal("-20000"), operations.get(1).montant());
+        assertEquals(LocalDate.of(2024, 3, 7), operations.get(1).dateOperation());
+        assertEquals("PRLV SENELEC", operations.get(1).libelle());
+        assertEquals("SENELEC", operations.get(1).contrepartie());
+
+        for (String[] cas : new String[][] {{csv, "csv"}, {mt940, "mt940"}, {camt, "camt053"}}) {
+            assertEquals(cas[1], BankStatementStreamReader.detecterFormat(
+                new BufferedInputStream(new ByteArrayInputStream(cas[0].getBytes(StandardCharsets.UTF_8)))));
+        }
+    }
+
+    @Test
+    void testImportEnMasseEtReimportation() throws IOException {
+        int operations = 200_000;
+        Path fichier = repertoire.resolve("releve-2024.csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(fichier)) {
+            writer.write("date;libelle;montant;reference;devise\n");
+            LocalDate date = LocalDate.of(2024, 1, 1);
+            for (int i = 0; i < operations; i++) {
+                // Une opération sur 100 sans référence, dont des paires strictement identiques
+                String reference = i % 100 == 0 ? "" : "REF" + i;
+                String libelle = i % 100 == 0 ? "FRAIS TENUE DE COMPTE" : "VIR " + i;
+                writer.write(date.plusDays(i % 365) + ";" + libelle + ";" + (i % 2 == 0 ? "" : "-") + (i % 100_000) + ".25;"
+                    + reference + ";XOF\n");
+            }
+            // Opération répétée dans le fichier
+            writer.write("2024-06-01;VIR 7;-7.25;REF7;XOF\n");
+        }
+        // Opération déjà importée par un autre fichier
+        jdbcTemplate.update("INSERT INTO bank_statement_lines (company_id, bank_account_id, bank_reference, transaction_date, "
+            + "amount, currency, is_reconciled) VALUES (1, 3, 'REF1', DATE '2024-01-02', -1.25, 'XOF', FALSE)");
+
+        Map<String, Object> resultat = service.importer("releve-2024.csv", null, 3L);
+
+        assertEquals("TERMINE", resultat.get("statut"));
+        assertEquals("csv", resultat.get("format"));
+        assertEquals((long) operations + 1, resultat.get("lignesLues"));
+        assertEquals((long) operations - 1, resultat.get("lignesImportees"));
+        assertEquals(2L, resultat.get("doublons"));
+        assertEquals(100, resultat.get("pourcentage"));
+        assertEquals(Files.size(fichier), resultat.get("octetsLus"));
+        assertEquals(operations, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM bank_statement_lines", Integer.class));
+        assertEquals(operations / 100, jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM bank_statement_lines WHERE bank_reference LIKE 'SR-%'", Integer.class));
+
+        // Réimportation du même fichier : rien de plus
+        Map<String, Object> relance = service.importer("releve-2024.csv", "csv", 3L);
+        assertEquals(0L, relance.get("lignesImportees"));
+        assertEquals((long) operations + 1, relance.get("doublons"));
+        assertEquals(operations, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM bank_statement_lines", Integer.class));
+
+        assertThrows(RuntimeException.class, () -> service.importer("../autre.csv", null, 3L));
+    }
+
+    @Test
+    void testLotEnConflitReprisLigneALigne() throws IOException {
+        Files.writeString(repertoire.resolve("releve.mt940"), ":20:STMT\n:60F:C240101XOF0,\n"
+            + ":61:240102C100,NTRFNONREF//R1\n:61:240103C200,NTRFNONREF//R2\n:61:240104C300,NTRFNONREF//R3\n-\n");
+        Map<String, Object> premier = service.importer("releve.mt940", null, 3L);
+        assertEquals(3L, premier.get("lignesImportees"));
+        // Import concurrent : R2 est inséré sans être vu par l'index, le lot [R1, R2] est repris ligne à ligne
+        jdbcTemplate.update("DELETE FROM bank_statement_lines WHERE bank_reference IN ('R1', 'R3')");
+        JdbcTemplate sansIndex = spy(jdbcTemplate);
+        doNothing().when(sansIndex).query(startsWith("SELECT bank_reference"), any(RowCallbackHandler.class), eq(3L));
+        ReflectionTestUtils.setField(service, "jdbcTemplate", sansIndex);
+        ReflectionTestUtils.setField(service, "tailleLot", 2);
+        Map<String, Object> reprise = service.importer("releve.mt940", "mt940", 3L);
+        assertEquals(2L, reprise.get("lignesImportees"));
+        assertEquals(1L, reprise.get("doublons"));
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM bank_statement_lines", Integer.class));
+    }
+
+    private List<BankStatementStreamReader.Operation> lire(String contenu, String format) throws IOException {
+        List<BankStatementStreamReader.Operation> operations = new ArrayList<>();
+        try (BankStatementStreamReader reader = BankStatementStreamReader.create(format,
+                new ByteArrayInputStream(contenu.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8, "XOF")) {
+            BankStatementStreamReader.Operation operation;
+            while ((operation = reader.suivante()) != null) {
+                operations.add(operation);
+            }
+            assertEquals(1, reader.getRejets());
+        }
+        return operations;
+    }
+}
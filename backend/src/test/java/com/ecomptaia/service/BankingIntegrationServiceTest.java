@@ -0,0 +1,73 @@
+package com.ecomptaia.service;
+
+import com.ecomptaia.entity.JournalEntry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Import des opérations d'une API bancaire : numéro d'écriture déterministe par compte, y compris pour
+ * les opérations sans référence bancaire
+ */
+class BankingIntegrationServiceTest {
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void testOperationsSansReferenceNumeroteesParCompte() {
+        RestTemplate restTemplate = mock(RestTemplate.class);
+        JournalEntryService journalEntryService = mock(JournalEntryService.class);
+        BankingIntegrationService service = new BankingIntegrationService();
+        ReflectionTestUtils.setField(service, "restTemplate", restTemplate);
+        ReflectionTestUtils.setField(service, "journalEntryService", journalEntryService);
+        List<Map<String, Object>> transactions = new ArrayList<>();
+        transactions.add(operation("VIR-001"));
+        // Deux frais identiques sans référence : deux opérations distinctes
+        transactions.add(operation(null));
+        transactions.add(operation(""));
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.GET), any(), eq(Map.class)))
+            .thenReturn((ResponseEntity) ResponseEntity.ok(Map.of("transactions", transactions)));
+
+        LocalDate debut = LocalDate.of(2024, 3, 1);
+        assertEquals(3, service.importBankStatements("BNP", "FR761", debut, debut.plusDays(30), 1L).get("importedTransactions"));
+        service.importBankStatements("BNP", "FR761", debut, debut.plusDays(30), 1L);
+        service.importBankStatements("SG", "FR762", debut, debut.plusDays(30), 1L);
+
+        ArgumentCaptor<JournalEntry> ecritures = ArgumentCaptor.forClass(JournalEntry.class);
+        verify(journalEntryService, times(9)).createJournalEntry(ecritures.capture(), any());
+        List<JournalEntry> saisies = ecritures.getAllValues();
+        assertEquals("VIR-001", saisies.get(0).getReference());
+        assertTrue(saisies.get(1).getReference().startsWith("SR-"));
+        assertNotEquals(saisies.get(1).getReference(), saisies.get(2).getReference());
+        for (int i = 0; i < 3; i++) {
+            assertTrue(saisies.get(i).getEntryNumber().startsWith("BANK-"));
+            assertTrue(saisies.get(i).getEntryNumber().length() <= 50);
+            // Réimport du même compte : mêmes numéros ; autre compte : numéros distincts
+            assertEquals(saisies.get(i).getEntryNumber(), saisies.get(i + 3).getEntryNumber());
+            assertNotEquals(saisies.get(i).getEntryNumber(), saisies.get(i + 6).getEntryNumber());
+        }
+        assertEquals(3, saisies.subList(0, 3).stream().map(JournalEntry::getEntryNumber).distinct().count());
+    }
+
+    private static Map<String, Object> operation(String reference) {
+        Map<String, Object> operation = new HashMap<>();
+        operation.put("reference", reference);
+        operation.put("date", "2024-03-05");
+        operation.put("description", reference != null && !reference.isEmpty() ? "Virement client" : "Frais tenue de compte");
+        operation.put("currency", "XAF");
+        operation.put("amount", "2500.00");
+        return operation;
+    }
+}
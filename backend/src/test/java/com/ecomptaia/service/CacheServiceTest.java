@@ -0,0 +1,88 @@
+package com.ecomptaia.service;
+
+import com.ecomptaia.config.CacheConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests du cache borné : TTL par cache, TTL par entrée, taille maximale et statistiques
+ */
+class CacheServiceTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private CacheService cacheService;
+
+    @BeforeEach
+    void setUp() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.registerCustomCache("reports",
+            CacheConfig.caffeineBuilder(Duration.ofMinutes(15), 100).ticker(now::get).executor(Runnable::run).build());
+        cacheManager.registerCustomCache("notifications",
+            CacheConfig.caffeineBuilder(Duration.ofSeconds(30), 3).ticker(now::get).executor(Runnable::run).build());
+
+        cacheService = new CacheService();
+        ReflectionTestUtils.setField(cacheService, "cacheManager", cacheManager);
+    }
+
+    @Test
+    void testTtlDuCacheAppliqueParDefaut() {
+        cacheService.put("reports", "bilan", "contenu");
+
+        avancer(Duration.ofMinutes(14));
+        assertEquals("contenu", cacheService.get("reports", "bilan", String.class));
+
+        avancer(Duration.ofMinutes(2));
+        assertNull(cacheService.get("reports", "bilan", String.class));
+    }
+
+    @Test
+    void testTtlParEntreeRespecte() {
+        cacheService.put("reports", "court", "a", Duration.ofSeconds(10));
+        cacheService.put("reports", "long", "b");
+
+        assertTrue(cacheService.getTTL("reports", "court").compareTo(Duration.ofSeconds(10)) <= 0);
+
+        avancer(Duration.ofSeconds(11));
+        assertNull(cacheService.get("reports", "court", String.class));
+        assertEquals("b", cacheService.get("reports", "long", String.class));
+    }
+
+    @Test
+    void testSetTtlEtRetourAuTtlDuCache() {
+        cacheService.put("reports", "cle", "valeur");
+        cacheService.setTTL("reports", "cle", Duration.ofSeconds(5));
+        assertEquals(Duration.ofSeconds(5), cacheService.getTTL("reports", "cle"));
+
+        cacheService.removeTTL("reports", "cle");
+        assertEquals(Duration.ofMinutes(15), cacheService.getTTL("reports", "cle"));
+    }
+
+    @Test
+    void testTailleMaximaleEtStatistiques() {
+        for (int i = 0; i < 10; i++) {
+            cacheService.put("notifications", "n" + i, i);
+        }
+        cacheService.cleanup();
+        cacheService.get("notifications", "n9", Integer.class);
+        cacheService.get("notifications", "absente", Integer.class);
+
+        Map<String, Object> stats = cacheService.getCacheStats("notifications");
+        assertTrue((Long) stats.get("keyCount") <= 3);
+        assertTrue((Long) stats.get("evictionCount") >= 7);
+        assertEquals(3L, stats.get("maximumSize"));
+        assertEquals(1L, stats.get("missCount"));
+    }
+
+    private void avancer(Duration duree) {
+        now.addAndGet(duree.toNanos());
+    }
+}
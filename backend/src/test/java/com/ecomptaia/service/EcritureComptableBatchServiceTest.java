@@ -0,0 +1,199 @@
+package com.ecomptaia.service;
+
+import com.ecomptaia.accounting.entity.Account;
+import com.ecomptaia.config.H2JpaTestConfig;
+import com.ecomptaia.entity.Company;
+import com.ecomptaia.entity.EcritureComptable;
+import com.ecomptaia.entity.FinancialPeriod;
+import com.ecomptaia.entity.LigneEcriture;
+import com.ecomptaia.repository.EcritureComptableRepository;
+import com.ecomptaia.repository.SequencePieceRepository;
+import com.ecomptaia.security.entity.User;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Création d'écritures en masse sur une vraie base H2 : débit, insertions groupées
+ * et erreurs rapportées par écriture
+ */
+class EcritureComptableBatchServiceTest {
+
+    private static AnnotationConfigApplicationContext context;
+
+    private EcritureComptableBatchService batchService;
+    private Statistics statistics;
+
+    @BeforeAll
+    static void demarrer() {
+        context = new AnnotationConfigApplicationContext(JpaConfig.class);
+    }
+
+    @AfterAll
+    static void arreter() {
+        context.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        JdbcTemplate jdbc = new JdbcTemplate(context.getBean(DataSource.class));
+        jdbc.execute("DELETE FROM lignes_ecritures");
+        jdbc.execute("DELETE FROM ecritures_comptables");
+        jdbc.execute("DELETE FROM sequences_pieces");
+        batchService = context.getBean(EcritureComptableBatchService.class);
+        statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void testDixMilleLignesParSecondeAvecInsertionsGroupees() {
+        // Préchauffage (JIT, séquences)
+        batchService.createEcrituresEnMasse(genererEcritures(5_000, 9L));
+        statistics.clear();
+
+        int nombreEcritures = 10_000;
+        List<EcritureComptable> ecritures = genererEcritures(nombreEcritures, 1L);
+        Map<String, Object> resultat = batchService.createEcrituresEnMasse(ecritures);
+
+        long lignes = 4L * nombreEcritures;
+        assertEquals(nombreEcritures, resultat.get("ecrituresCreees"));
+        assertEquals(0, resultat.get("ecrituresRejetees"));
+        assertEquals(lignes, resultat.get("lignesCreees"));
+        assertEquals(lignes, statistics.getEntityStatistics(LigneEcriture.class.getName()).getInsertCount());
+
+        // Insertions groupées par 50 : le nombre d'ordres préparés ne suit pas le nombre de lignes
+        assertTrue(statistics.getPrepareStatementCount() < lignes / 10,
+            "Ordres SQL préparés : " + statistics.getPrepareStatementCount());
+
+        long lignesParSeconde = (Long) resultat.get("lignesParSeconde");
+        // Seuil de débit vérifié sur un poste multi-cœurs (sur un seul cœur, JIT et GC partagent le CPU)
+        if (Runtime.getRuntime().availableProcessors() >= 2) {
+            assertTrue(lignesParSeconde >= 10_000, "Débit insuffisant : " + lignesParSeconde + " lignes/s");
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testErreursRapporteesParEcritureSansTrouDeNumerotation() {
+        List<EcritureComptable> ecritures = genererEcritures(10, 1L);
+        // Déséquilibrée : rejetée au contrôle en mémoire
+        ecritures.get(2).getLignes().get(0).setDebit(new BigDecimal("1.00"));
+        // Numéro en double dans le lot
+        ecritures.get(4).setNumeroPiece("IMPORT-1");
+        ecritures.get(5).setNumeroPiece("IMPORT-1");
+        // Rejetée par la base (libellé de compte obligatoire) : le lot est rejoué écriture par écriture
+        ecritures.get(7).getLignes().get(1).setCompteLibelle(null);
+
+        Map<String, Object> resultat = batchService.createEcrituresEnMasse(ecritures);
+
+        assertEquals(7, resultat.get("ecrituresCreees"));
+        assertEquals(3, resultat.get("ecrituresRejetees"));
+        List<Map<String, Object>> erreurs = (List<Map<String, Object>>) resultat.get("erreurs");
+        assertEquals(List.of(2, 5, 7), erreurs.stream().map(erreur -> erreur.get("index")).toList());
+        assertTrue(erreurs.get(0).get("message").toString().contains("équilibrée"));
+        assertTrue(erreurs.get(1).get("message").toString().contains("IMPORT-1"));
+        assertNull(ecritures.get(7).getId());
+
+        // Numérotation sans trou malgré le rollback du lot : 6 numéros automatiques, de 1 à 6
+        EcritureComptableRepository repository = context.getBean(EcritureComptableRepository.class);
+        assertTrue(repository.findByNumeroPiece("ECR-1-NORMALE-202403-00006").isPresent());
+        assertFalse(repository.findByNumeroPiece("ECR-1-NORMALE-202403-00007").isPresent());
+        assertTrue(repository.findByNumeroPiece("IMPORT-1").isPresent());
+
+        // Numéro déjà présent en base
+        List<EcritureComptable> doublon = genererEcritures(1, 1L);
+        doublon.get(0).setNumeroPiece("IMPORT-1");
+        Map<String, Object> second = batchService.createEcrituresEnMasse(doublon);
+        assertEquals(1, second.get("ecrituresRejetees"));
+    }
+
+    private List<EcritureComptable> genererEcritures(int nombre, Long entrepriseId) {
+        Company entreprise = new Company();
+        entreprise.setId(entrepriseId);
+        FinancialPeriod exercice = new FinancialPeriod();
+        exercice.setId(1L);
+        User utilisateur = new User();
+        utilisateur.setId(1L);
+        Account banque = compte(1L);
+        Account client = compte(2L);
+
+        List<EcritureComptable> ecritures = new ArrayList<>(nombre);
+        for (int i = 0; i < nombre; i++) {
+            EcritureComptable ecriture = new EcritureComptable();
+            ecriture.setEntreprise(entreprise);
+            ecriture.setExercice(exercice);
+            ecriture.setUtilisateur(utilisateur);
+            ecriture.setDateEcriture(LocalDate.of(2024, 3, 1 + i % 28));
+            ecriture.setDatePiece(ecriture.getDateEcriture());
+            ecriture.setLibelle("Relevé bancaire " + i);
+            ecriture.setTypeEcriture(EcritureComptable.TypeEcriture.NORMALE);
+            ecriture.setSource(EcritureComptable.SourceEcriture.IMPORTEE);
+            ecriture.setDevise("XOF");
+
+            List<LigneEcriture> lignes = new ArrayList<>();
+            lignes.add(ligne(banque, "521000", new BigDecimal("1000.00"), null));
+            lignes.add(ligne(client, "411000", null, new BigDecimal("600.00")));
+            lignes.add(ligne(client, "411000", null, new BigDecimal("300.00")));
+            lignes.add(ligne(client, "411000", null, new BigDecimal("100.00")));
+            ecriture.setLignes(lignes);
+            ecritures.add(ecriture);
+        }
+        return ecritures;
+    }
+
+    private Account compte(Long id) {
+        Account compte = new Account();
+        compte.setId(id);
+        return compte;
+    }
+
+    private LigneEcriture ligne(Account compte, String numero, BigDecimal debit, BigDecimal credit) {
+        LigneEcriture ligne = new LigneEcriture();
+        ligne.setCompte(compte);
+        ligne.setCompteNumero(numero);
+        ligne.setCompteLibelle("Compte " + numero);
+        ligne.setLibelleLigne("Import");
+        ligne.setDebit(debit);
+        ligne.setCredit(credit);
+        return ligne;
+    }
+
+    @Configuration
+    @Import(H2JpaTestConfig.class)
+    @EnableJpaRepositories(basePackageClasses = EcritureComptableRepository.class,
+        includeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE,
+            classes = {EcritureComptableRepository.class, SequencePieceRepository.class}))
+    static class JpaConfig {
+
+        @Bean
+        public NumerotationPieceService numerotationPieceService() {
+            return new NumerotationPieceService();
+        }
+
+        @Bean
+        public EcritureComptableBatchService ecritureComptableBatchService() {
+            return new EcritureComptableBatchService();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.ecomptaia.service;
+
+import com.ecomptaia.entity.Currency;
+import com.ecomptaia.entity.ExchangeRate;
+import com.ecomptaia.repository.ExchangeRateRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Photographie des taux de change : matrice datée, inverses, triangulation, rafraîchissement
+ * par une source locale et conversions sans accès à la base
+ */
+class ExchangeRateSnapshotStoreTest {
+
+    private static final LocalDate JOUR_1 = LocalDate.now().minusDays(10);
+    private static final LocalDate JOUR_2 = LocalDate.now().minusDays(5);
+
+    private ExchangeRateRepository repository;
+    private CurrencyService currencyService;
+    private ExchangeRateSnapshotStore store;
+    private ExchangeRateService exchangeRateService;
+    private final List<ExchangeRate> enBase = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(ExchangeRateRepository.class);
+        currencyService = mock(CurrencyService.class);
+        when(currencyService.getAllActiveCurrencies()).thenReturn(List.of(
+            new Currency("EUR", "Euro", "€", new BigDecimal("1.0000"), "Union Européenne"),
+            new Currency("XOF", "Franc CFA", "FCFA", new BigDecimal("655.9570"), "Afrique de l'Ouest"),
+            new Currency("USD", "Dollar US", "$", new BigDecimal("1.0850"), "États-Unis")));
+        enBase.add(new ExchangeRate("EUR", "USD", new BigDecimal("1.10"), JOUR_1));
+        enBase.add(new ExchangeRate("USD", "GBP", new BigDecimal("0.80"), JOUR_1));
+        enBase.add(new ExchangeRate("EUR", "USD", new BigDecimal("1.20"), JOUR_2));
+        when(repository.findByDateGreaterThanEqualAndIsActiveTrue(any())).thenAnswer(invocation -> new ArrayList<>(enBase));
+        when(repository.findByFromCurrencyAndToCurrencyAndDate(any(), any(), any())).thenReturn(Optional.empty());
+        when(repository.save(any())).thenAnswer(invocation -> {
+            enBase.add(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+
+        store = new ExchangeRateSnapshotStore();
+        ReflectionTestUtils.setField(store, "exchangeRateRepository", repository);
+        ReflectionTestUtils.setField(store, "currencyService", currencyService);
+        ReflectionTestUtils.setField(store, "baseCurrency", "EUR");
+        ReflectionTestUtils.setField(store, "historyDays", 400);
+
+        exchangeRateService = new ExchangeRateService();
+        ReflectionTestUtils.setField(exchangeRateService, "snapshotStore", store);
+    }
+
+    @Test
+    void testTauxDatesInversesEtTriangules() {
+        ExchangeRateMatrix matrix = store.getMatrix();
+
+        // Référentiel (devises) avant la première cotation, puis dernière cotation connue à la date
+        assertEquals(1.085, matrix.rate("EUR", "USD", JOUR_1.minusDays(1)), 1e-9);
+        assertEquals(1.10, matrix.rate("EUR", "USD", JOUR_1), 1e-9);
+        assertEquals(1.10, matrix.rate("EUR", "USD", JOUR_2.minusDays(1)), 1e-9);
+        assertEquals(1.20, matrix.rate("EUR", "USD", LocalDate.now()), 1e-9);
+        assertEquals(1.20, matrix.rate("EUR", "USD"), 1e-9);
+
+        // Inverse et triangulation
+        assertEquals(1 / 1.20, matrix.rate("USD", "EUR", LocalDate.now()), 1e-9);
+        assertEquals(1.20 * 0.80, matrix.rate("EUR", "GBP", LocalDate.now()), 1e-9);
+        assertEquals(655.957 / 1.20, matrix.rate("USD", "XOF", LocalDate.now()), 1e-6);
+
+        assertTrue(Double.isNaN(matrix.rate("EUR", "JPY", LocalDate.now())));
+        assertTrue(Double.isNaN(matrix.rate("eur", "USD", LocalDate.now())));
+        assertEquals(2, matrix.getNombreDates());
+    }
+
+    @Test
+    void testConversionsSansEntreeSortie() {
+        store.getMatrix();
+        clearInvocations(repository, currencyService);
+
+        assertEquals(new BigDecimal("120.00"), exchangeRateService.convertCurrency(new BigDecimal("100"), "EUR", "USD"));
+        assertEquals(new BigDecimal("110.00"),
+            exchangeRateService.convertCurrency(new BigDecimal("100"), "EUR", "USD", JOUR_1));
+        assertEquals(BigDecimal.ONE, exchangeRateService.getExchangeRate("EUR", "JPY"));
+        assertEquals(new BigDecimal("100"), exchangeRateService.convertCurrency(new BigDecimal("100"), "EUR", "JPY"));
+
+        verifyNoInteractions(repository, currencyService);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRafraichissementParSourceLocale() {
+        ExchangeRateMatrix avant = store.getMatrix();
+        ExchangeRateProvider stub = new ExchangeRateProvider() {
+            @Override
+            public String getName() {
+                return "stub";
+            }
+
+            @Override
+            public Map<String, BigDecimal> fetchLatestRates(String baseCurrency) {
+                return Map.of("USD", new BigDecimal("1.30"), "JPY", new BigDecimal("160"),
+                    "EUR", BigDecimal.ONE, "IDR", new BigDecimal("17500"));
+            }
+        };
+        ReflectionTestUtils.setField(store, "providers", List.of(stub));
+
+        exchangeRateService.refreshExchangeRates();
+
+        // Nouvelle photographie substituée ; l'ancienne reste cohérente pour ses lecteurs
+        ExchangeRateMatrix apres = store.getMatrix();
+        assertNotSame(avant, apres);
+        assertEquals(1.20, avant.rate("EUR", "USD"), 1e-9);
+        assertEquals(1.30, apres.rate("EUR", "USD", LocalDate.now()), 1e-9);
+        assertEquals(160 / 1.30, apres.rate("USD", "JPY", LocalDate.now()), 1e-9);
+
+        // Taux hors capacité de la colonne non enregistrés
+        verify(repository, times(2)).save(any());
+        Map<String, Double> rates = (Map<String, Double>) exchangeRateService.getExchangeRates("EUR").get("rates");
+        assertEquals(1.30, rates.get("USD"), 1e-9);
+        assertFalse(rates.containsKey("IDR"));
+    }
+
+    @Test
+    void testSourceEnEchecConserveLaPhotographie() {
+        ExchangeRateProvider enPanne = new ExchangeRateProvider() {
+            @Override
+            public String getName() {
+                return "panne";
+            }
+
+            @Override
+            public Map<String, BigDecimal> fetchLatestRates(String baseCurrency) {
+                throw new IllegalStateException("Connexion refusée");
+            }
+        };
+        ReflectionTestUtils.setField(store, "providers", List.of(enPanne));
+
+        store.refresh();
+
+        assertEquals(1.20, store.getMatrix().rate("EUR", "USD"), 1e-9);
+        verify(repository, never()).save(any());
+    }
+}
@@ -0,0 +1,110 @@
+package com.ecomptaia.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests de l'export en flux du grand livre
+ */
+class GeneralLedgerStreamWriterTest {
+
+    private static final String HEAP_MAX = "-Xmx48m";
+
+    @Test
+    void testCsvRegroupeParCompteAvecSoldeCourant() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GeneralLedgerStreamWriter writer = GeneralLedgerStreamWriter.create("csv", out,
+                Map.of("411000", new BigDecimal("100.00")), "GRAND LIVRE")) {
+            writer.writeLine("411000", "Clients", LocalDate.of(2024, 1, 5), "VE-1", "VENTES", "Facture 1", "DEBIT", new BigDecimal("50.00"));
+            writer.writeLine("411000", "Clients", LocalDate.of(2024, 1, 9), "BQ-1", "BANQUE", "Règlement; client", "CREDIT", new BigDecimal("30.00"));
+            writer.writeLine("701000", "Ventes", LocalDate.of(2024, 1, 5), "VE-1", "VENTES", "Facture 1", "CREDIT", new BigDecimal("50.00"));
+        }
+
+        String[] lignes = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(8, lignes.length);
+        assertEquals("411000;Clients;;;;Report à nouveau;;;100.00", lignes[1]);
+        assertEquals("411000;;05/01/2024;VE-1;VENTES;Facture 1;50.00;0;150.00", lignes[2]);
+        assertEquals("411000;;09/01/2024;BQ-1;BANQUE;\"Règlement; client\";0;30.00;120.00", lignes[3]);
+        assertEquals("411000;Clients;;;;Total compte;50.00;30.00;120.00", lignes[4]);
+        assertEquals("701000;Ventes;;;;Total compte;0;50.00;-50.00", lignes[7]);
+    }
+
+    @Test
+    void testNdjsonUneLigneParObjet() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GeneralLedgerStreamWriter writer = GeneralLedgerStreamWriter.create("ndjson", out, Map.of(), "GRAND LIVRE")) {
+            writer.writeLine("521000", "Banque", LocalDate.of(2024, 2, 1), "BQ-2", "BANQUE", "Dépôt", "DEBIT", new BigDecimal("10.00"));
+            assertEquals(1, writer.getLineCount());
+        }
+
+        String[] lignes = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lignes.length);
+        assertTrue(lignes[0].startsWith("{\"type\":\"line\",\"accountNumber\":\"521000\""));
+        assertTrue(lignes[1].contains("\"closingBalance\":10.00"));
+    }
+
+    @Test
+    void testFormatInconnuRefuse() {
+        assertThrows(IllegalArgumentException.class,
+            () -> GeneralLedgerStreamWriter.create("xls", new ByteArrayOutputStream(), Map.of(), "GRAND LIVRE"));
+    }
+
+    /**
+     * 2 millions de lignes exportées dans une JVM limitée à 48 Mo : le tas ne doit pas croître avec le volume
+     */
+    @Test
+    void testExportDeuxMillionsDeLignesTasLimite() throws Exception {
+        exporterDansJvmLimitee("ndjson", 2_000_000);
+        exporterDansJvmLimitee("csv", 2_000_000);
+        exporterDansJvmLimitee("pdf", 50_000);
+    }
+
+    private void exporterDansJvmLimitee(String format, int lignes) throws Exception {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<String> command = new ArrayList<>(List.of(java, HEAP_MAX, "-XX:+UseSerialGC",
+            "-cp", System.getProperty("java.class.path"), ExportLimite.class.getName(), format, String.valueOf(lignes)));
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String sortie = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertTrue(process.waitFor(10, TimeUnit.MINUTES), "Export " + format + " trop long");
+        assertEquals(0, process.exitValue(), "Export " + format + " en échec sous " + HEAP_MAX + " : " + sortie);
+    }
+
+    /**
+     * Point d'entrée de la JVM fille : génère les lignes à la volée et les écrit dans un flux qui ne retient rien
+     */
+    public static class ExportLimite {
+        public static void main(String[] args) throws IOException {
+            String format = args[0];
+            int lignes = Integer.parseInt(args[1]);
+            OutputStream out = OutputStream.nullOutputStream();
+            long count;
+            try (GeneralLedgerStreamWriter writer = GeneralLedgerStreamWriter.create(format, out, Map.of(), "GRAND LIVRE")) {
+                LocalDate date = LocalDate.of(2024, 1, 1);
+                BigDecimal montant = new BigDecimal("125.50");
+                for (int i = 0; i < lignes; i++) {
+                    String compte = String.valueOf(401000 + i / 10_000);
+                    writer.writeLine(compte, "Compte " + compte, date.plusDays(i % 365), "PC-" + i, "ACHATS",
+                        "Ligne " + i, i % 2 == 0 ? "DEBIT" : "CREDIT", montant);
+                }
+                count = writer.getLineCount();
+            }
+            // Code retour non nul si des lignes manquent : la JVM parente ne lit que le statut
+            if (count != lignes) {
+                System.exit(2);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.ecomptaia.service;
+
+import com.ecomptaia.entity.AccountEntry;
+import com.ecomptaia.repository.AccountEntryRepository;
+import com.ecomptaia.repository.JournalEntryRepository;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Non-régression : la lecture du grand livre fait un nombre constant de requêtes,
+ * quel que soit le volume d'écritures de la période
+ */
+@ExtendWith(MockitoExtension.class)
+class LedgerReadQueryCountTest {
+
+    private static final LocalDate DEBUT = LocalDate.of(2024, 1, 1);
+    private static final LocalDate FIN = LocalDate.of(2024, 12, 31);
+
+    @Mock
+    private AccountEntryRepository accountEntryRepository;
+
+    @Mock
+    private JournalEntryRepository journalEntryRepository;
+
+    @Mock
+    private AccountBalanceService accountBalanceService;
+
+    @Mock
+    private OHADAMappingService ohadaMappingService;
+
+    @InjectMocks
+    private ReportingService reportingService;
+
+    @InjectMocks
+    private OHADAReportingService ohadaReportingService;
+
+    @ParameterizedTest
+    @ValueSource(ints = {10, 5000})
+    void testGrandLivreRequetesConstantes(int nombreEcritures) {
+        List<AccountEntry> lignes = genererLignes(nombreEcritures);
+        when(journalEntryRepository.countValidatedEntriesByDateRange(1L, DEBUT, FIN)).thenReturn((long) nombreEcritures);
+        when(accountEntryRepository.findValidatedLinesByDateRange(1L, DEBUT, FIN)).thenReturn(lignes);
+
+        Map<String, Object> ledger = reportingService.generateGeneralLedger(1L, DEBUT, FIN);
+        Map<String, Object> ledgerOhada = ohadaReportingService.generateGeneralLedgerOHADA(1L, DEBUT, FIN);
+
+        assertEquals((long) nombreEcritures, ledger.get("totalEntries"));
+        assertEquals(2, ledger.get("totalAccounts"));
+        assertEquals(2, ledgerOhada.get("totalAccounts"));
+        verify(journalEntryRepository, times(2)).countValidatedEntriesByDateRange(1L, DEBUT, FIN);
+        verify(accountEntryRepository, times(2)).findValidatedLinesByDateRange(1L, DEBUT, FIN);
+        verify(accountEntryRepository, never()).findByJournalEntryId(anyLong());
+        verifyNoMoreInteractions(accountEntryRepository, journalEntryRepository);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {10, 5000})
+    void testCompteDeResultatRequeteUnique(int nombreEcritures) {
+        when(accountEntryRepository.findValidatedLinesByDateRange(1L, DEBUT, FIN)).thenReturn(genererLignes(nombreEcritures));
+
+        Map<String, Object> incomeStatement = reportingService.generateIncomeStatement(1L, DEBUT, FIN);
+
+        assertEquals(0, BigDecimal.valueOf(100L * nombreEcritures).compareTo((BigDecimal) incomeStatement.get("totalProduits")));
+        verify(accountEntryRepository, times(1)).findValidatedLinesByDateRange(1L, DEBUT, FIN);
+        verifyNoMoreInteractions(accountEntryRepository, journalEntryRepository);
+    }
+
+    private List<AccountEntry> genererLignes(int nombreEcritures) {
+        List<AccountEntry> lignes = new ArrayList<>();
+        for (long i = 1; i <= nombreEcritures; i++) {
+            lignes.add(ligne(i, "411000", "Clients", "DEBIT"));
+        }
+        for (long i = 1; i <= nombreEcritures; i++) {
+            lignes.add(ligne(i, "701000", "Ventes", "CREDIT"));
+        }
+        return lignes;
+    }
+
+    private AccountEntry ligne(Long journalEntryId, String compte, String libelle, String sens) {
+        AccountEntry ligne = new AccountEntry();
+        ligne.setJournalEntryId(journalEntryId);
+        ligne.setAccountNumber(compte);
+        ligne.setAccountName(libelle);
+        ligne.setAccountType(sens);
+        ligne.setAmount(new BigDecimal("100.00"));
+        return ligne;
+    }
+}
@@ -0,0 +1,263 @@
+package com.ecomptaia.service;
+
+import com.ecomptaia.entity.Metric;
+import com.ecomptaia.entity.MetricRollup;
+import com.ecomptaia.repository.MetricRepository;
+import com.ecomptaia.repository.MetricRollupRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Séries temporelles des métriques : agrégats exacts par minute et par heure, alertes en mémoire,
+ * écriture des agrégats par lots et rapport relu depuis la base après redémarrage
+ */
+class MetricTimeSeriesStoreTest {
+
+    private static final AtomicInteger BASES = new AtomicInteger();
+    private static final LocalDateTime ORIGINE = LocalDateTime.of(2024, 3, 1, 0, 0);
+
+    private final AtomicLong horloge = new AtomicLong(ORIGINE.toInstant(ZoneOffset.UTC).toEpochMilli());
+    private JdbcTemplate jdbcTemplate;
+    private MetricRollupRepository rollupRepository;
+    private MetricTimeSeriesStore store;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+            "jdbc:h2:mem:metrics" + BASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE metric_rollups (id BIGINT AUTO_INCREMENT PRIMARY KEY, node_id VARCHAR(255) NOT NULL, "
+            + "metric_name VARCHAR(255) NOT NULL, entreprise_id BIGINT, category VARCHAR(50) NOT NULL, resolution VARCHAR(10) NOT NULL, "
+            + "bucket_start TIMESTAMP NOT NULL, sample_count BIGINT NOT NULL, min_value DOUBLE NOT NULL, max_value DOUBLE NOT NULL, "
+            + "avg_value DOUBLE NOT NULL, p95_value DOUBLE NOT NULL, warning_count BIGINT NOT NULL, critical_count BIGINT NOT NULL, "
+            + "UNIQUE (node_id, metric_name, entreprise_id, resolution, bucket_start))");
+        rollupRepository = mock(MetricRollupRepository.class);
+        when(rollupRepository.findByResolutionAndPeriod(any(), any(), any())).thenAnswer(invocation -> jdbcTemplate.query(
+            "SELECT * FROM metric_rollups WHERE resolution = ? AND bucket_start >= ? AND bucket_start < ? ORDER BY bucket_start",
+            new BeanPropertyRowMapper<>(MetricRollup.class),
+            invocation.getArgument(0, MetricRollup.Resolution.class).name(),
+            Timestamp.valueOf(invocation.getArgument(1, LocalDateTime.class)),
+            Timestamp.valueOf(invocation.getArgument(2, LocalDateTime.class))));
+        store = nouveauStore();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    private MetricTimeSeriesStore nouveauStore() {
+        return nouveauStore("noeud-1");
+    }
+
+    private MetricTimeSeriesStore nouveauStore(String instance) {
+        MetricTimeSeriesStore nouveau = new MetricTimeSeriesStore();
+        ReflectionTestUtils.setField(nouveau, "instance", instance);
+        ReflectionTestUtils.setField(nouveau, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(nouveau, "metricRollupRepository", rollupRepository);
+        ReflectionTestUtils.setField(nouveau, "horloge", (LongSupplier) horloge::get);
+        ReflectionTestUtils.setField(nouveau, "zone", ZoneOffset.UTC);
+        return nouveau;
+    }
+
+    /**
+     * Un échantillon CPU toutes les 10 secondes pendant 2 h 10 ; valeur = rang de l'échantillon modulo 100
+     */
+    private List<Double> alimenter() {
+        List<Double> valeurs = new ArrayList<>();
+        for (int i = 0; i < 6 * 130; i++) {
+            double valeur = i % 100;
+            Metric metric = new Metric("cpu.usage", Metric.MetricType.GAUGE, valeur, Metric.MetricCategory.CPU, "system");
+            metric.setTimestamp(ORIGINE.plusSeconds(10L * i));
+            metric.setUnit("%");
+            metric.setThresholdWarning(80.0);
+            metric.setThresholdCritical(95.0);
+            store.enregistrer(metric);
+            valeurs.add(valeur);
+        }
+        horloge.set(ORIGINE.plusMinutes(130).toInstant(ZoneOffset.UTC).toEpochMilli());
+        return valeurs;
+    }
+
+    @Test
+    void testAgregatsExactsParMinuteEtParHeure() {
+        List<Double> valeurs = alimenter();
+
+        assertEquals(130 + 2, store.compacter());
+        assertEquals(0, store.compacter());
+
+        Map<MetricTimeSeriesStore.Cle, List<MetricRollup>> minutes = store.agregats(null, MetricRollup.Resolution.MINUTE,
+            ORIGINE, ORIGINE.plusMinutes(130));
+        List<MetricRollup> cpu = minutes.get(new MetricTimeSeriesStore.Cle("cpu.usage", null));
+        assertEquals(130, cpu.size());
+        MetricRollup minute17 = cpu.get(17);
+        assertEquals(ORIGINE.plusMinutes(17), minute17.getBucketStart());
+        assertEquals(6, minute17.getSampleCount());
+        assertEquals(2.0, minute17.getMinValue());
+        assertEquals(7.0, minute17.getMaxValue());
+        assertEquals(4.5, minute17.getAvgValue(), 1e-9);
+
+        List<MetricRollup> heures = store.agregats(null, MetricRollup.Resolution.HOUR, ORIGINE, ORIGINE.plusHours(3))
+            .get(new MetricTimeSeriesStore.Cle("cpu.usage", null));
+        assertEquals(2, heures.size());
+        double[] premiereHeure = valeurs.subList(0, 360).stream().mapToDouble(Double::doubleValue).sorted().toArray();
+        assertEquals(360, heures.get(0).getSampleCount());
+        assertEquals(premiereHeure[(int) Math.ceil(0.95 * 360) - 1], heures.get(0).getP95Value());
+        assertEquals(Arrays.stream(premiereHeure).filter(v -> v >= 95).count(), heures.get(0).getCriticalCount());
+        assertEquals(Arrays.stream(premiereHeure).filter(v -> v >= 80 && v < 95).count(), heures.get(0).getWarningCount());
+        assertTrue(store.agregats(null, MetricRollup.Resolution.DAY, ORIGINE, ORIGINE.plusDays(1)).isEmpty());
+    }
+
+    @Test
+    void testAlertesEvalueesEnMemoire() {
+        MetricRepository metricRepository = mock(MetricRepository.class);
+        MonitoringService monitoringService = service(metricRepository, store);
+        horloge.set(System.currentTimeMillis());
+        ReflectionTestUtils.setField(store, "zone", java.time.ZoneId.systemDefault());
+
+        monitoringService.collectSystemMetrics();
+        assertEquals(9, store.getNombreSeries());
+        // Seules les métriques à seuils passées hors de l'état normal sont écrites, une fois
+        verify(metricRepository, atMost(4)).save(any(Metric.class));
+
+        Metric critique = new Metric("memory.usage.percent", Metric.MetricType.GAUGE, 97.0, Metric.MetricCategory.MEMORY, "system");
+        critique.setStatus(Metric.MetricStatus.CRITICAL);
+        store.enregistrer(critique);
+        clearInvocations(metricRepository);
+
+        monitoringService.checkAlerts();
+        assertTrue(store.alertes().stream().anyMatch(a -> "memory.usage.percent".equals(a.get("metricName"))
+            && a.get("status") == Metric.MetricStatus.CRITICAL));
+        verifyNoInteractions(metricRepository);
+
+        // Échantillon trop ancien : plus d'alerte
+        horloge.addAndGet(600_000);
+        assertTrue(store.alertes().isEmpty());
+    }
+
+    @Test
+    void testAgregatsEcritsParLotsEtRapportApresRedemarrage() {
+        alimenter();
+        store.compacter();
+
+        assertEquals(132, store.persister());
+        assertEquals(0, store.getNombreAPersister());
+        assertEquals(132, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM metric_rollups", Integer.class));
+
+        MetricRepository metricRepository = mock(MetricRepository.class);
+        Map<String, Object> enMemoire = service(metricRepository, store)
+            .generatePerformanceReport(1L, ORIGINE, ORIGINE.plusHours(2));
+        // Redémarrage : plus rien en mémoire, les agrégats sont relus en base
+        Map<String, Object> apresRedemarrage = service(metricRepository, nouveauStore())
+            .generatePerformanceReport(1L, ORIGINE, ORIGINE.plusHours(2));
+
+        for (Map<String, Object> report : List.of(enMemoire, apresRedemarrage)) {
+            assertEquals("MINUTE", report.get("resolution"));
+            assertEquals(720L, report.get("totalMetrics"));
+            assertEquals(720L, ((Map<?, ?>) report.get("categoryStats")).get("CPU"));
+            Map<?, ?> cpu = (Map<?, ?>) ((Map<?, ?>) report.get("series")).get("cpu.usage");
+            assertEquals(99.0, cpu.get("max"));
+            assertEquals(0.0, cpu.get("min"));
+        }
+        assertEquals(enMemoire.get("statusStats"), apresRedemarrage.get("statusStats"));
+        verify(metricRepository, never()).findByTimestampBetweenAndEntrepriseIdOrderByTimestampDesc(any(), any(), any());
+    }
+
+    @Test
+    void testAgregatsDeChaqueInstanceDistinctsEtCombines() {
+        alimenter();
+        store.compacter();
+        assertEquals(132, store.persister());
+        // Seconde instance recevant les mêmes échantillons sur les mêmes périodes
+        MetricTimeSeriesStore premiere = store;
+        store = nouveauStore("noeud-2");
+        alimenter();
+        store.compacter();
+        assertEquals(132, store.persister());
+
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(DISTINCT node_id) FROM metric_rollups", Integer.class));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM metric_rollups WHERE resolution = 'MINUTE' "
+            + "AND bucket_start = ?", Integer.class, Timestamp.valueOf(ORIGINE.plusMinutes(17))));
+        // Fenêtre en mémoire de la première instance complétée par les lignes de la seconde
+        List<MetricRollup> premiereMinute = premiere.agregats(null, MetricRollup.Resolution.MINUTE, ORIGINE,
+            ORIGINE.plusMinutes(1)).get(new MetricTimeSeriesStore.Cle("cpu.usage", null));
+        assertEquals(1, premiereMinute.size());
+        assertEquals(12, premiereMinute.get(0).getSampleCount());
+
+        // Instance redémarrée : les agrégats des deux instances sont combinés
+        Map<String, Object> report = service(mock(MetricRepository.class), nouveauStore("noeud-3"))
+            .generatePerformanceReport(1L, ORIGINE, ORIGINE.plusHours(2));
+        assertEquals(1440L, report.get("totalMetrics"));
+    }
+
+    @Test
+    void testLignesDesAutresInstancesDansLaFenetreEnMemoire() {
+        alimenter();
+        store.compacter();
+        // Agrégats d'une autre instance sur des minutes couvertes par la fenêtre en mémoire de celle-ci
+        for (int minute : new int[]{17, 18}) {
+            jdbcTemplate.update("INSERT INTO metric_rollups (node_id, metric_name, entreprise_id, category, resolution, "
+                + "bucket_start, sample_count, min_value, max_value, avg_value, p95_value, warning_count, critical_count) "
+                + "VALUES ('noeud-2', 'cpu.usage', NULL, 'CPU', 'MINUTE', ?, 2, 0, 99, 49.5, 99, 0, 1)",
+                Timestamp.valueOf(ORIGINE.plusMinutes(minute)));
+        }
+        // Ligne de cette instance déjà présente en mémoire : non comptée deux fois
+        jdbcTemplate.update("INSERT INTO metric_rollups (node_id, metric_name, entreprise_id, category, resolution, "
+            + "bucket_start, sample_count, min_value, max_value, avg_value, p95_value, warning_count, critical_count) "
+            + "VALUES ('noeud-1', 'cpu.usage', NULL, 'CPU', 'MINUTE', ?, 6, 2, 7, 4.5, 7, 0, 0)",
+            Timestamp.valueOf(ORIGINE.plusMinutes(17)));
+
+        List<MetricRollup> cpu = store.agregats(null, MetricRollup.Resolution.MINUTE, ORIGINE.plusMinutes(17),
+            ORIGINE.plusMinutes(20)).get(new MetricTimeSeriesStore.Cle("cpu.usage", null));
+
+        assertEquals(3, cpu.size());
+        MetricRollup minute17 = cpu.get(0);
+        assertEquals(8, minute17.getSampleCount());
+        assertEquals(0.0, minute17.getMinValue());
+        assertEquals(99.0, minute17.getMaxValue());
+        assertEquals((4.5 * 6 + 49.5 * 2) / 8, minute17.getAvgValue(), 1e-9);
+        assertEquals(1, minute17.getCriticalCount());
+        assertEquals(8, cpu.get(1).getSampleCount());
+        assertEquals(6, cpu.get(2).getSampleCount());
+    }
+
+    @Test
+    void testEcritureReporteeSiBaseIndisponible() {
+        alimenter();
+        store.compacter();
+        jdbcTemplate.execute("ALTER TABLE metric_rollups RENAME TO metric_rollups_maintenance");
+
+        assertEquals(0, store.persister());
+        assertEquals(132, store.getNombreAPersister());
+
+        jdbcTemplate.execute("ALTER TABLE metric_rollups_maintenance RENAME TO metric_rollups");
+        assertEquals(132, store.persister());
+    }
+
+    private static MonitoringService service(MetricRepository metricRepository, MetricTimeSeriesStore store) {
+        MonitoringService service = new MonitoringService();
+        ReflectionTestUtils.setField(service, "metricRepository", metricRepository);
+        ReflectionTestUtils.setField(service, "metricRollupRepository", mock(MetricRollupRepository.class));
+        ReflectionTestUtils.setField(service, "timeSeriesStore", store);
+        return service;
+    }
+}
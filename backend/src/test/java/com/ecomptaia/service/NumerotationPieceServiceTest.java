@@ -0,0 +1,160 @@
+package com.ecomptaia.service;
+
+import com.ecomptaia.entity.SequencePiece;
+import com.ecomptaia.config.H2JpaTestConfig;
+import com.ecomptaia.repository.SequencePieceRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.orm.jpa.persistenceunit.PersistenceManagedTypes;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Attribution concurrente des numéros de pièce sur une vraie base H2 (64 threads)
+ */
+class NumerotationPieceServiceTest {
+
+    private static final int THREADS = 64;
+    private static final int PAR_THREAD = 25;
+    private static final LocalDate DATE = LocalDate.of(2024, 3, 15);
+
+    private AnnotationConfigApplicationContext context;
+
+    @AfterEach
+    void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Test
+    void testSansTrouEtSansDoublonSous64Threads() throws Exception {
+        NumerotationPieceService service = demarrer("");
+
+        List<String> numeros = attribuerEnParallele(service, 1L, "NORMALE");
+
+        assertEquals(THREADS * PAR_THREAD, new HashSet<>(numeros).size(), "Numéros en double");
+        Set<Long> attendus = new HashSet<>();
+        for (long i = 1; i <= THREADS * PAR_THREAD; i++) {
+            attendus.add(i);
+        }
+        assertEquals(attendus, sequences(numeros), "Séquence avec trous");
+        assertEquals(THREADS * PAR_THREAD, service.getDernierNumero(1L, "NORMALE", 2024, 3));
+    }
+
+    @Test
+    void testCompteursIndependantsParEntrepriseJournalEtMois() {
+        NumerotationPieceService service = demarrer("");
+
+        assertEquals("ECR-1-NORMALE-202403-00001", service.attribuerNumeroPiece(1L, "NORMALE", DATE));
+        assertEquals("ECR-2-NORMALE-202403-00001", service.attribuerNumeroPiece(2L, "NORMALE", DATE));
+        assertEquals("ECR-1-OUVERTURE-202403-00001", service.attribuerNumeroPiece(1L, "OUVERTURE", DATE));
+        assertEquals("ECR-1-NORMALE-202404-00001", service.attribuerNumeroPiece(1L, "NORMALE", DATE.plusMonths(1)));
+        assertEquals("ECR-1-NORMALE-202403-00002", service.attribuerNumeroPiece(1L, "NORMALE", DATE));
+    }
+
+    @Test
+    void testRollbackRendLeNumero() {
+        NumerotationPieceService service = demarrer("");
+        TransactionTemplate transaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        service.attribuerNumeroPiece(1L, "NORMALE", DATE);
+        assertThrows(IllegalStateException.class, () -> transaction.executeWithoutResult(status -> {
+            service.attribuerNumeroPiece(1L, "NORMALE", DATE);
+            throw new IllegalStateException("Écriture déséquilibrée");
+        }));
+
+        assertEquals("ECR-1-NORMALE-202403-00002", service.attribuerNumeroPiece(1L, "NORMALE", DATE));
+    }
+
+    @Test
+    void testModeParBlocsSansDoublonSous64Threads() throws Exception {
+        NumerotationPieceService service = demarrer("CLOTURE");
+
+        List<String> numeros = attribuerEnParallele(service, 1L, "CLOTURE");
+
+        assertEquals(THREADS * PAR_THREAD, new HashSet<>(numeros).size(), "Numéros en double");
+        // Blocs de 50 : le compteur avance par bloc entier
+        assertEquals(0, service.getDernierNumero(1L, "CLOTURE", 2024, 3) % 50);
+        assertTrue(service.isParBlocs("cloture"));
+        assertFalse(service.isParBlocs("NORMALE"));
+    }
+
+    private List<String> attribuerEnParallele(NumerotationPieceService service, Long entrepriseId, String journal)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch depart = new CountDownLatch(1);
+        List<Future<List<String>>> resultats = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            resultats.add(executor.submit(() -> {
+                depart.await();
+                List<String> numeros = new ArrayList<>();
+                for (int i = 0; i < PAR_THREAD; i++) {
+                    numeros.add(service.attribuerNumeroPiece(entrepriseId, journal, DATE));
+                }
+                return numeros;
+            }));
+        }
+        depart.countDown();
+
+        List<String> numeros = new ArrayList<>();
+        try {
+            for (Future<List<String>> resultat : resultats) {
+                numeros.addAll(resultat.get(2, TimeUnit.MINUTES));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return numeros;
+    }
+
+    private Set<Long> sequences(List<String> numeros) {
+        Set<Long> sequences = new HashSet<>();
+        for (String numero : numeros) {
+            sequences.add(Long.parseLong(numero.substring(numero.lastIndexOf('-') + 1)));
+        }
+        return sequences;
+    }
+
+    private NumerotationPieceService demarrer(String journauxParBlocs) {
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", Map.of(
+            "app.ecritures.numerotation.journaux-par-blocs", journauxParBlocs,
+            "app.ecritures.numerotation.taille-bloc", "50",
+            "test.h2.url", "jdbc:h2:mem:numerotation-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=30000")));
+        context.register(JpaConfig.class);
+        context.refresh();
+        return context.getBean(NumerotationPieceService.class);
+    }
+
+    @Configuration
+    @Import(H2JpaTestConfig.class)
+    @EnableJpaRepositories(basePackageClasses = SequencePieceRepository.class,
+        includeFilters = @ComponentScan.Filter(type = org.springframework.context.annotation.FilterType.ASSIGNABLE_TYPE,
+            classes = SequencePieceRepository.class))
+    static class JpaConfig {
+
+        @Bean
+        public PersistenceManagedTypes persistenceManagedTypes() {
+            return PersistenceManagedTypes.of(SequencePiece.class.getName());
+        }
+
+        @Bean
+        public NumerotationPieceService numerotationPieceService() {
+            return new NumerotationPieceService();
+        }
+    }
+}
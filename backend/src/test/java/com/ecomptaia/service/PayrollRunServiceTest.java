@@ -0,0 +1,157 @@
+package com.ecomptaia.service;
+
+import com.ecomptaia.entity.Company;
+import com.ecomptaia.entity.Employee;
+import com.ecomptaia.entity.Payroll;
+import com.ecomptaia.repository.CompanyRepository;
+import com.ecomptaia.repository.EmployeeRepository;
+import com.ecomptaia.repository.PayrollRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Campagne de paie mensuelle : 5 000 salariés calculés en parallèle avec les règles du pays,
+ * insertion par lots, relance idempotente et reprise après un lot en échec
+ */
+class PayrollRunServiceTest {
+
+    private static final AtomicInteger BASES = new AtomicInteger();
+    private static final int SALARIES = 5_000;
+
+    private JdbcTemplate jdbcTemplate;
+    private EmployeeRepository employeeRepository;
+    private TaxAndSocialService taxAndSocialService;
+    private PayrollRunService service;
+    private Company entreprise;
+    private List<Employee> employes;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+            "jdbc:h2:mem:paie" + BASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1;NON_KEYWORDS=MONTH,YEAR", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE payrolls (id BIGINT AUTO_INCREMENT PRIMARY KEY, payroll_code VARCHAR(255) NOT NULL UNIQUE, "
+            + "employee_id BIGINT NOT NULL, company_id BIGINT NOT NULL, entreprise_id BIGINT NOT NULL, month INT NOT NULL, "
+            + "year INT NOT NULL, pay_period VARCHAR(20) NOT NULL, pay_date DATE NOT NULL, period_start_date DATE NOT NULL, "
+            + "period_end_date DATE NOT NULL, base_salary DECIMAL(15,2), gross_salary DECIMAL(15,2), income_tax DECIMAL(15,2), "
+            + "social_security_tax DECIMAL(15,2), social_charges DECIMAL(15,2), net_salary DECIMAL(15,2), status VARCHAR(20), "
+            + "currency VARCHAR(3) NOT NULL, payroll_status VARCHAR(20) NOT NULL, created_at TIMESTAMP, updated_at TIMESTAMP)");
+
+        entreprise = new Company("Sahel Distribution", "CM", "XAF");
+        entreprise.setId(1L);
+        employes = new ArrayList<>();
+        for (long i = 1; i <= SALARIES; i++) {
+            Employee employee = new Employee();
+            employee.setId(i);
+            employee.setCompanyId(1L);
+            employee.setEntrepriseId(1L);
+            employee.setBaseSalary(BigDecimal.valueOf(150_000 + (i % 40) * 25_000));
+            employee.setSalaryCurrency("XAF");
+            employee.setContractType(Employee.ContractType.values()[(int) (i % Employee.ContractType.values().length)]);
+            employee.setHireDate(LocalDate.of(2020, 1, 1));
+            employes.add(employee);
+        }
+        employes.get(9).setBaseSalary(null);
+        employes.get(19).setTerminationDate(LocalDate.of(2024, 2, 15));
+        employes.get(29).setHireDate(LocalDate.of(2024, 4, 1));
+
+        employeeRepository = mock(EmployeeRepository.class);
+        when(employeeRepository.findByCompanyIdAndIsActiveTrue(1L)).thenReturn(employes);
+        PayrollRepository payrollRepository = mock(PayrollRepository.class);
+        when(payrollRepository.findEmployeeIdsByCompanyAndPeriod(anyLong(), anyInt(), anyInt())).thenAnswer(i ->
+            jdbcTemplate.queryForList("SELECT employee_id FROM payrolls WHERE company_id = ? AND year = ? AND month = ?",
+                Long.class, i.getArgument(0), i.getArgument(1), i.getArgument(2)));
+        CompanyRepository companyRepository = mock(CompanyRepository.class);
+        when(companyRepository.findById(1L)).thenReturn(Optional.of(entreprise));
+        taxAndSocialService = spy(new TaxAndSocialService());
+
+        service = new PayrollRunService();
+        ReflectionTestUtils.setField(service, "employeeRepository", employeeRepository);
+        ReflectionTestUtils.setField(service, "payrollRepository", payrollRepository);
+        ReflectionTestUtils.setField(service, "companyRepository", companyRepository);
+        ReflectionTestUtils.setField(service, "taxAndSocialService", taxAndSocialService);
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "transactionManager", new DataSourceTransactionManager(dataSource));
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    void testCampagneParalleleAvecReglesDuPays() {
+        Map<String, Object> resultat = service.executer(1L, 2024, 3);
+
+        assertEquals("CAMEROUN", resultat.get("pays"));
+        assertEquals(SALARIES - 3, resultat.get("bulletinsCrees"));
+        assertEquals(2, resultat.get("horsPeriode"));
+        assertEquals(1, ((List<?>) resultat.get("anomalies")).size());
+        assertEquals("PARTIELLE", resultat.get("statut"));
+        assertEquals(SALARIES - 3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM payrolls", Integer.class));
+        // Règles fiscales évaluées une fois par couple (salaire brut, type de contrat)
+        int baremes = ((Number) resultat.get("baremesDistincts")).intValue();
+        assertTrue(baremes <= 40 * Employee.ContractType.values().length);
+        verify(taxAndSocialService, times(baremes)).calculateSalaryTaxes(eq("CAMEROUN"), any(), any(), any(), eq(false), eq(0));
+
+        // Parité avec le calcul unitaire et les règles de TaxAndSocialService
+        Employee employee = employes.get(1234);
+        Map<String, Object> ligne = jdbcTemplate.queryForMap(
+            "SELECT * FROM payrolls WHERE payroll_code = ?", PayrollRunService.code(1L, YearMonth.of(2024, 3), employee.getId()));
+        Payroll unitaire = service.calculerBulletin(employee, entreprise, YearMonth.of(2024, 3));
+        assertEquals(0, unitaire.getNetSalary().compareTo((BigDecimal) ligne.get("NET_SALARY")));
+        assertEquals(0, unitaire.getIncomeTax().compareTo((BigDecimal) ligne.get("INCOME_TAX")));
+        BigDecimal impot = (BigDecimal) ((Map<?, ?>) new TaxAndSocialService().calculateSalaryTaxes("CAMEROUN",
+            employee.getBaseSalary().setScale(2), employee.getContractType().name(), LocalDate.of(2024, 3, 31), false, 0)
+            .get("taxCalculation")).get("taxAmount");
+        assertEquals(0, impot.setScale(2, RoundingMode.HALF_UP).compareTo(unitaire.getIncomeTax()));
+        assertEquals(0, unitaire.getGrossSalary().subtract(unitaire.getIncomeTax()).subtract(unitaire.getSocialCharges())
+            .compareTo(unitaire.getNetSalary()));
+
+        // Relance : rien de plus n'est créé
+        Map<String, Object> relance = service.executer(1L, 2024, 3);
+        assertEquals(0, relance.get("bulletinsCrees"));
+        assertEquals(SALARIES - 3, relance.get("dejaCalcules"));
+        assertEquals(SALARIES - 3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM payrolls", Integer.class));
+    }
+
+    @Test
+    void testRepriseApresLotEnEchec() {
+        employes.get(9).setBaseSalary(BigDecimal.valueOf(200_000));
+        // Un bulletin inséré par ailleurs (autre nœud) avec le code du salarié 2 600 : son lot est rejeté
+        jdbcTemplate.update("INSERT INTO payrolls (payroll_code, employee_id, company_id, entreprise_id, month, year, "
+            + "pay_period, pay_date, period_start_date, period_end_date, currency, payroll_status) "
+            + "VALUES (?, 0, 99, 99, 3, 2024, 'MONTHLY', DATE '2024-03-31', DATE '2024-03-01', DATE '2024-03-31', 'XAF', 'DRAFT')",
+            PayrollRunService.code(1L, YearMonth.of(2024, 3), 2_600L));
+
+        Map<String, Object> interrompue = service.executer(1L, 2024, 3);
+        assertEquals("PARTIELLE", interrompue.get("statut"));
+        assertEquals(SALARIES - 2 - 500, interrompue.get("bulletinsCrees"));
+
+        jdbcTemplate.update("DELETE FROM payrolls WHERE company_id = 99");
+        Map<String, Object> reprise = service.executer(1L, 2024, 3);
+        assertEquals("TERMINEE", reprise.get("statut"));
+        assertEquals(500, reprise.get("bulletinsCrees"));
+        assertEquals(SALARIES - 2, jdbcTemplate.queryForObject(
+            "SELECT COUNT(DISTINCT employee_id) FROM payrolls WHERE company_id = 1", Integer.class));
+    }
+}
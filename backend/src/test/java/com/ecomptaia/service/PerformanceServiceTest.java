@@ -0,0 +1,177 @@
+package com.ecomptaia.service;
+
+import com.ecomptaia.config.RequestLatencyFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Histogrammes de latence : précision des centiles, enregistrement concurrent sans perte,
+ * fenêtre glissante, export Micrometer et mesure automatique par le filtre HTTP
+ */
+class PerformanceServiceTest {
+
+    private final AtomicLong horloge = new AtomicLong(1_700_000_000_000L);
+    private SimpleMeterRegistry registry;
+    private PerformanceService service;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        service = new PerformanceService();
+        ReflectionTestUtils.setField(service, "meterRegistry", registry);
+        ReflectionTestUtils.setField(service, "horloge", (LongSupplier) horloge::get);
+    }
+
+    @Test
+    void testCentilesAvecErreurRelativeBornee() {
+        Random random = new Random(42);
+        long[] valeurs = new long[200_000];
+        for (int i = 0; i < valeurs.length; i++) {
+            // Distribution log-normale : médiane ~ 20 ms, longue traîne
+            valeurs[i] = (long) Math.exp(Math.log(20_000) + random.nextGaussian());
+            service.enregistrer("GET /api/ecritures", "7", valeurs[i] * 1_000, false);
+        }
+        Arrays.sort(valeurs);
+
+        LatencyHistogram.Instantane instantane = service.getInstantane("GET /api/ecritures");
+        assertEquals(valeurs.length, instantane.getNombre());
+        assertEquals(valeurs[valeurs.length - 1], instantane.getMax());
+        for (double q : new double[] {0.5, 0.95, 0.99, 0.999}) {
+            long exact = valeurs[(int) Math.ceil(q * valeurs.length) - 1];
+            long estime = instantane.centile(q);
+            assertTrue(estime >= exact && estime <= exact + exact / LatencyHistogram.SOUS_SEAUX,
+                "q=" + q + " exact=" + exact + " estimé=" + estime);
+        }
+        // Sous 64 µs les seaux sont exacts
+        for (long v = 0; v < 64; v++) {
+            assertEquals(v, LatencyHistogram.borneSuperieure(LatencyHistogram.index(v)));
+        }
+        assertEquals(valeurs.length, service.getInstantaneEntreprise("7").getNombre());
+    }
+
+    @Test
+    void testEnregistrementConcurrentSansPerte() throws Exception {
+        int threads = 4;
+        int parThread = 50_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch depart = new CountDownLatch(1);
+        try {
+            Future<?>[] taches = new Future<?>[threads];
+            for (int t = 0; t < threads; t++) {
+                int decalage = t;
+                taches[t] = executor.submit(() -> {
+                    depart.await();
+                    for (int i = 0; i < parThread; i++) {
+                        service.enregistrer("POST /api/paie", null, (i % 1000 + decalage) * 1_000L, i % 100 == 0);
+                    }
+                    return null;
+                });
+            }
+            depart.countDown();
+            for (Future<?> tache : taches) {
+                tache.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Map<?, ?> stats = (Map<?, ?>) service.getEndpointStats().get("POST /api/paie");
+        assertEquals((long) threads * parThread, stats.get("requestCount"));
+        assertEquals((long) threads * parThread / 100, stats.get("errorCount"));
+        assertEquals((long) threads * parThread, stats.get("windowCount"));
+    }
+
+    @Test
+    void testFenetreGlissante() {
+        service.recordRequest("GET /api/rapports");
+        service.recordResponseTime("GET /api/rapports", 250);
+        horloge.addAndGet(30_000);
+        service.recordRequest("GET /api/rapports");
+        service.recordResponseTime("GET /api/rapports", 50);
+
+        assertEquals(2, service.getInstantane("GET /api/rapports").getNombre());
+        assertEquals(250_000, service.getInstantane("GET /api/rapports").getMax());
+
+        // La première mesure sort de la fenêtre de 60 s, la seconde y reste
+        horloge.addAndGet(40_000);
+        LatencyHistogram.Instantane instantane = service.getInstantane("GET /api/rapports");
+        assertEquals(1, instantane.getNombre());
+        assertEquals(50_000, instantane.getMax());
+
+        horloge.addAndGet(60_000);
+        Map<?, ?> stats = (Map<?, ?>) service.getEndpointStats().get("GET /api/rapports");
+        assertEquals(0L, stats.get("windowCount"));
+        assertEquals(2L, stats.get("requestCount"));
+        assertFalse(stats.containsKey("p99ResponseTime"));
+    }
+
+    @Test
+    void testExportMicrometerEtPlafondDeSeries() {
+        ReflectionTestUtils.setField(service, "maxSeries", 2);
+        for (int i = 1; i <= 100; i++) {
+            service.enregistrer("GET /api/comptes", "1", i * 1_000_000L, i > 98);
+        }
+        service.enregistrer("GET /api/tiers", "2", 1_000_000L, false);
+        service.enregistrer("GET /api/journaux", "3", 1_000_000L, false);
+
+        assertEquals(99.0, registry.get("http.endpoint.latency").tag("endpoint", "GET /api/comptes")
+            .tag("quantile", "0.99").gauge().value(), 99.0 / LatencyHistogram.SOUS_SEAUX);
+        assertEquals(100.0, registry.get("http.endpoint.requests").tag("endpoint", "GET /api/comptes")
+            .functionCounter().count());
+        assertEquals(2.0, registry.get("http.endpoint.errors").tag("endpoint", "GET /api/comptes")
+            .functionCounter().count());
+        assertEquals(100.0, registry.get("http.tenant.requests").tag("entreprise", "1").functionCounter().count());
+        // Au-delà de deux séries, les nouvelles clés sont regroupées
+        assertNull(service.getInstantane("GET /api/journaux"));
+        assertEquals(1, service.getInstantane(PerformanceService.AUTRES).getNombre());
+        assertEquals(1, service.getInstantaneEntreprise(PerformanceService.AUTRES).getNombre());
+
+        service.resetMetrics();
+        assertTrue(registry.find("http.endpoint.latency").gauges().isEmpty());
+        assertTrue(service.getEndpointStats().isEmpty());
+    }
+
+    @Test
+    void testFiltreMesureChaqueRequete() throws Exception {
+        RequestLatencyFilter filtre = new RequestLatencyFilter();
+        ReflectionTestUtils.setField(filtre, "performanceService", service);
+
+        MockHttpServletRequest routee = new MockHttpServletRequest("GET", "/api/ecritures/42");
+        routee.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/ecritures/{id}");
+        routee.addHeader("X-Company-Id", "9");
+        filtre.doFilter(routee, new MockHttpServletResponse(), new MockFilterChain());
+
+        MockHttpServletRequest nonRoutee = new MockHttpServletRequest("DELETE",
+            "/api/tiers/123/pieces/3f2504e0-4f89-11d3-9a0c-0305e82c3301");
+        MockHttpServletResponse erreur = new MockHttpServletResponse();
+        erreur.setStatus(503);
+        filtre.doFilter(nonRoutee, erreur, new MockFilterChain());
+
+        filtre.doFilter(new MockHttpServletRequest("GET", "/actuator/prometheus"), new MockHttpServletResponse(),
+            new MockFilterChain());
+
+        Map<String, Object> stats = service.getEndpointStats();
+        assertEquals(2, stats.size());
+        assertEquals(1L, ((Map<?, ?>) stats.get("GET /api/ecritures/{id}")).get("requestCount"));
+        assertEquals(1L, ((Map<?, ?>) stats.get("DELETE /api/tiers/{id}/pieces/{id}")).get("errorCount"));
+        assertEquals(1, service.getInstantaneEntreprise("9").getNombre());
+    }
+}
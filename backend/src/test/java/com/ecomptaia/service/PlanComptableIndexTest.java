@@ -0,0 +1,80 @@
+package com.ecomptaia.service;
+
+import com.ecomptaia.model.ohada.BilanSYSCOHADA;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Recherches par racine et par motif dans l'index du plan de comptes
+ */
+class PlanComptableIndexTest {
+
+    private final PlanComptableIndex<String> index = PlanComptableIndex.of(
+        List.of("601100", "411000", "4111", "41", "401000", "4431", "44311", "701000", "6", "411900", "412000"),
+        numero -> numero);
+
+    @Test
+    void testRechercheParRacine() {
+        assertEquals(List.of("411000", "4111", "411900"), index.parRacine("411"));
+        assertEquals(List.of("41", "411000", "4111", "411900", "412000"), index.parRacine("41"));
+        assertEquals(List.of("6", "601100"), index.parRacine("6"));
+        assertTrue(index.parRacine("9").isEmpty());
+        assertEquals(index.taille(), index.parRacine("").size());
+    }
+
+    @Test
+    void testRechercheParMotif() {
+        assertEquals("411000", index.premier("411%"));
+        assertEquals("4431", index.premier("4431%"));
+        assertEquals(List.of("4431", "44311"), index.rechercher("4431%"));
+        assertEquals(List.of("401000"), index.rechercher("401000"));
+        assertEquals(List.of("411000", "412000"), index.rechercher("41_000"));
+        assertEquals(List.of("411900"), index.rechercher("4%9%"));
+        assertNull(index.premier("512%"));
+    }
+
+    @Test
+    void testCorrespondanceSansExpressionReguliere() {
+        assertTrue(PlanComptableIndex.correspond("411000", "411%"));
+        assertTrue(PlanComptableIndex.correspond("411", "411%"));
+        assertTrue(PlanComptableIndex.correspond("601100", "6%"));
+        assertTrue(PlanComptableIndex.correspond("601100", "%1_0"));
+        assertFalse(PlanComptableIndex.correspond("401000", "411%"));
+        assertFalse(PlanComptableIndex.correspond("4110", "411"));
+        assertFalse(PlanComptableIndex.correspond(null, "411%"));
+    }
+
+    @Test
+    void testPostesOhadaParRacine() {
+        Map<String, BigDecimal> soldes = new LinkedHashMap<>();
+        soldes.put("411000", new BigDecimal("1000"));
+        soldes.put("416100", new BigDecimal("200"));
+        soldes.put("401000", new BigDecimal("-300"));
+        soldes.put("521000", new BigDecimal("50"));
+
+        BilanSYSCOHADA bilan = new OHADAMappingService().genererBilanOHADA(soldes);
+
+        // BI (clients) : racines 411, 416, 418
+        assertEquals(0, new BigDecimal("1200").compareTo(bilan.getActifCirculant().get("BI").getValeurExerciceCourant()));
+    }
+
+    @Test
+    void testIndexSurGrandPlan() {
+        List<String> numeros = new ArrayList<>();
+        for (int i = 100_000; i < 200_000; i++) {
+            numeros.add(String.valueOf(i));
+        }
+        PlanComptableIndex<String> grand = PlanComptableIndex.of(numeros, numero -> numero);
+
+        assertEquals(1_000, grand.parRacine("123").size());
+        assertEquals("123000", grand.premier("123%"));
+        assertEquals(10, grand.rechercher("1234_0").size());
+    }
+}
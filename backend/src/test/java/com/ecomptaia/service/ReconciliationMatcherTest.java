@@ -0,0 +1,244 @@
+package com.ecomptaia.service;
+
+import com.ecomptaia.entity.Reconciliation;
+import com.ecomptaia.repository.AccountEntryRepository;
+import com.ecomptaia.repository.BankStatementLineRepository;
+import com.ecomptaia.repository.ReconciliationRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/**
+ * Rapprochement bancaire automatique : passes d'appariement, précision et rappel sur un jeu synthétique
+ * de 10 000 lignes bancaires pour 20 000 lignes comptables (100 000 pour 200 000 avec -Dbenchmark=true),
+ * et marquage en masse des lignes appariées
+ */
+class ReconciliationMatcherTest {
+
+    private static final LocalDate ORIGINE = LocalDate.of(2024, 1, 1);
+
+    @Test
+    void testPassesEtDepartage() {
+        ReconciliationMatcher matcher = new ReconciliationMatcher(ReconciliationMatcher.Parametres.defaut());
+        // Même montant : la ligne du jour l'emporte sur celle de la veille, même si cette dernière est ajoutée avant
+        matcher.ajouterLigneBancaire(1, new BigDecimal("150.00"), ORIGINE.plusDays(10), "PRLV EDF");
+        matcher.ajouterLigneComptable(10, new BigDecimal("150.00"), ORIGINE.plusDays(9), null, "Facture EDF");
+        matcher.ajouterLigneComptable(11, new BigDecimal("150.00"), ORIGINE.plusDays(10), null, "Facture EDF");
+        // Deux candidats à un jour d'écart : le libellé départage
+        matcher.ajouterLigneBancaire(2, new BigDecimal("-80.00"), ORIGINE.plusDays(20), "CB STATION TOTAL");
+        matcher.ajouterLigneComptable(20, new BigDecimal("-80.00"), ORIGINE.plusDays(21), null, "Fournitures bureau");
+        matcher.ajouterLigneComptable(21, new BigDecimal("-80.00"), ORIGINE.plusDays(19), null, "Carburant station Total");
+        // Trois semaines d'écart : seule la référence citée permet l'appariement
+        matcher.ajouterLigneBancaire(3, new BigDecimal("1200.00"), ORIGINE.plusDays(60), "VIR CLIENT FA-2024-0042");
+        matcher.ajouterLigneComptable(30, new BigDecimal("1200.00"), ORIGINE.plusDays(39), "FA-2024-0042", "Client Dupont");
+        // Règlement groupé de trois factures
+        matcher.ajouterLigneBancaire(4, new BigDecimal("735.50"), ORIGINE.plusDays(90), "VIR SARL NDIAYE FA51 FA52 FA53");
+        matcher.ajouterLigneComptable(40, new BigDecimal("100.00"), ORIGINE.plusDays(85), "FA51", "Client Ndiaye");
+        matcher.ajouterLigneComptable(41, new BigDecimal("335.50"), ORIGINE.plusDays(86), "FA52", "Client Ndiaye");
+        matcher.ajouterLigneComptable(42, new BigDecimal("300.00"), ORIGINE.plusDays(88), "FA53", "Client Ndiaye");
+        matcher.ajouterLigneComptable(43, new BigDecimal("435.50"), ORIGINE.plusDays(95), "FA99", "Autre client");
+        // Sans contrepartie
+        matcher.ajouterLigneBancaire(5, new BigDecimal("-9.99"), ORIGINE.plusDays(5), "FRAIS");
+
+        Map<Long, ReconciliationMatcher.Appariement> parLigne = new HashMap<>();
+        for (ReconciliationMatcher.Appariement a : matcher.apparier()) {
+            parLigne.put(a.ligneBancaireId(), a);
+        }
+
+        assertEquals(ReconciliationMatcher.Passe.EXACT, parLigne.get(1L).passe());
+        assertArrayEquals(new long[] {11}, parLigne.get(1L).lignesComptablesIds());
+        assertEquals(ReconciliationMatcher.Passe.TOLERANCE, parLigne.get(2L).passe());
+        assertArrayEquals(new long[] {21}, parLigne.get(2L).lignesComptablesIds());
+        assertEquals(ReconciliationMatcher.Passe.REFERENCE, parLigne.get(3L).passe());
+        assertArrayEquals(new long[] {30}, parLigne.get(3L).lignesComptablesIds());
+        assertEquals(ReconciliationMatcher.Passe.COMBINAISON, parLigne.get(4L).passe());
+        long[] combinaison = parLigne.get(4L).lignesComptablesIds().clone();
+        Arrays.sort(combinaison);
+        assertArrayEquals(new long[] {40, 41, 42}, combinaison);
+        assertEquals(1.0, parLigne.get(4L).confiance());
+        assertFalse(parLigne.containsKey(5L));
+    }
+
+    @Test
+    void testPrecisionEtRappelSurJeuSynthetique() {
+        Resultat resultat = apparierJeuSynthetique(10_000, 20_000);
+
+        assertTrue(resultat.precision() >= 0.99, "précision " + resultat.precision());
+        assertTrue(resultat.rappel() >= 0.97, "rappel " + resultat.rappel());
+    }
+
+    /**
+     * Mesure à pleine échelle, hors de la suite par défaut (durée dépendante de la machine) :
+     * mvn test -Dtest=ReconciliationMatcherTest -Dbenchmark=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void testPrecisionRappelEtDureeSurCentMilleLignes() {
+        Resultat resultat = apparierJeuSynthetique(100_000, 200_000);
+
+        assertTrue(resultat.precision() >= 0.99, "précision " + resultat.precision());
+        assertTrue(resultat.rappel() >= 0.97, "rappel " + resultat.rappel());
+        assertTrue(resultat.dureeMs() < 30_000, "durée " + resultat.dureeMs() + " ms");
+    }
+
+    private record Resultat(double precision, double rappel, long dureeMs) {
+    }
+
+    /**
+     * Jeu synthétique : même date, décalage de date, référence de facture, règlement groupé, lignes sans contrepartie,
+     * complété par des écritures diverses jusqu'au nombre de lignes comptables demandé
+     */
+    private static Resultat apparierJeuSynthetique(int lignesBancaires, int lignesComptables) {
+        Random random = new Random(2024);
+        ReconciliationMatcher matcher = new ReconciliationMatcher(ReconciliationMatcher.Parametres.defaut());
+        Map<Long, Set<Long>> attendu = new HashMap<>();
+        long idComptable = 0;
+
+        for (long b = 0; b < lignesBancaires; b++) {
+            int categorie = (int) (b % 100);
+            int jour = random.nextInt(365);
+            long centimes = (1_000 + (long) (random.nextDouble() * 50_000_000)) * (random.nextInt(10) < 6 ? 1 : -1);
+            BigDecimal montant = BigDecimal.valueOf(centimes, 2);
+            String facture = "FA" + b;
+            if (categorie < 70) {
+                // Même date
+                matcher.ajouterLigneBancaire(b, montant, ORIGINE.plusDays(jour), "OPERATION " + random.nextInt(1000));
+                matcher.ajouterLigneComptable(idComptable, montant, ORIGINE.plusDays(jour), "P" + idComptable, "Piece");
+                attendu.put(b, Set.of(idComptable++));
+            } else if (categorie < 85) {
+                // Décalage de 1 à 3 jours
+                int decalage = (1 + random.nextInt(3)) * (random.nextBoolean() ? 1 : -1);
+                matcher.ajouterLigneBancaire(b, montant, ORIGINE.plusDays(jour), "OPERATION " + random.nextInt(1000));
+                matcher.ajouterLigneComptable(idComptable, montant, ORIGINE.plusDays(jour + decalage), "P" + idComptable, "Piece");
+                attendu.put(b, Set.of(idComptable++));
+            } else if (categorie < 92) {
+                // Encaissement tardif identifié par le numéro de facture
+                matcher.ajouterLigneBancaire(b, montant, ORIGINE.plusDays(jour), "VIR RECU " + facture);
+                matcher.ajouterLigneComptable(idComptable, montant, ORIGINE.plusDays(jour - 5 - random.nextInt(20)),
+                    facture, "Client");
+                attendu.put(b, Set.of(idComptable++));
+            } else if (categorie < 97) {
+                // Règlement groupé de 2 à 4 factures
+                int parts = 2 + random.nextInt(3);
+                StringBuilder libelle = new StringBuilder("VIR GROUPE");
+                Set<Long> ids = new HashSet<>();
+                long reste = Math.abs(centimes);
+                for (int k = 0; k < parts; k++) {
+                    long part = k == parts - 1 ? reste : reste / (parts - k) + random.nextInt(1000) - 500;
+                    reste -= part;
+                    String reference = facture + "X" + k;
+                    libelle.append(' ').append(reference);
+                    matcher.ajouterLigneComptable(idComptable, BigDecimal.valueOf(part * Long.signum(centimes), 2),
+                        ORIGINE.plusDays(jour - random.nextInt(6)), reference, "Client");
+                    ids.add(idComptable++);
+                }
+                matcher.ajouterLigneBancaire(b, montant, ORIGINE.plusDays(jour), libelle.toString());
+                attendu.put(b, ids);
+            } else {
+                // Sans contrepartie comptable
+                matcher.ajouterLigneBancaire(b, montant, ORIGINE.plusDays(jour), "FRAIS " + random.nextInt(1000));
+            }
+        }
+        while (idComptable < lignesComptables) {
+            long centimes = (1_000 + (long) (random.nextDouble() * 50_000_000)) * (random.nextBoolean() ? 1 : -1);
+            matcher.ajouterLigneComptable(idComptable, BigDecimal.valueOf(centimes, 2),
+                ORIGINE.plusDays(random.nextInt(365)), "N" + idComptable, "Ecriture diverse");
+            idComptable++;
+        }
+
+        long debut = System.nanoTime();
+        List<ReconciliationMatcher.Appariement> appariements = matcher.apparier();
+        long dureeMs = (System.nanoTime() - debut) / 1_000_000;
+
+        int justes = 0;
+        Set<Long> comptablesUtilisees = new HashSet<>();
+        for (ReconciliationMatcher.Appariement a : appariements) {
+            Set<Long> ids = new HashSet<>();
+            for (long id : a.lignesComptablesIds()) {
+                ids.add(id);
+                assertTrue(comptablesUtilisees.add(id), "Ligne comptable appariée deux fois : " + id);
+            }
+            if (ids.equals(attendu.get(a.ligneBancaireId()))) {
+                justes++;
+            }
+        }
+        return new Resultat((double) justes / appariements.size(), (double) justes / attendu.size(), dureeMs);
+    }
+
+    @Test
+    void testAutoReconcileMarqueLesLignesEnMasse() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+            "jdbc:h2:mem:rapprochement;DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE bank_statement_lines (id BIGINT PRIMARY KEY, is_reconciled BOOLEAN, "
+            + "reconciliation_id BIGINT, reconciliation_reference VARCHAR(100), match_type VARCHAR(20), reconciled_at TIMESTAMP)");
+        jdbcTemplate.execute("CREATE TABLE account_entries (id BIGINT PRIMARY KEY, is_reconciled BOOLEAN, "
+            + "reconciliation_reference VARCHAR(255), reconciled_at TIMESTAMP, updated_at TIMESTAMP)");
+        try {
+            for (long id = 1; id <= 3; id++) {
+                jdbcTemplate.update("INSERT INTO bank_statement_lines (id, is_reconciled) VALUES (?, FALSE)", id);
+            }
+            for (long id = 10; id <= 14; id++) {
+                jdbcTemplate.update("INSERT INTO account_entries (id, is_reconciled) VALUES (?, FALSE)", id);
+            }
+
+            Reconciliation reconciliation = new Reconciliation();
+            reconciliation.setId(7L);
+            reconciliation.setCompanyId(1L);
+            reconciliation.setBankAccountId(3L);
+            reconciliation.setReconciliationNumber("REC-20240331-0001");
+            ReconciliationRepository reconciliationRepository = mock(ReconciliationRepository.class);
+            when(reconciliationRepository.findById(7L)).thenReturn(Optional.of(reconciliation));
+            BankStatementLineRepository bankRepository = mock(BankStatementLineRepository.class);
+            when(bankRepository.streamUnreconciled(anyLong(), any(), any())).thenReturn(Stream.of(
+                new Object[] {1L, new BigDecimal("500.00"), ORIGINE, "B1", "VIR CLIENT", null},
+                new Object[] {2L, new BigDecimal("-120.00"), ORIGINE.plusDays(2), "B2", "CB", null},
+                new Object[] {3L, new BigDecimal("-999.00"), ORIGINE, "B3", "FRAIS", null}));
+            AccountEntryRepository accountEntryRepository = mock(AccountEntryRepository.class);
+            when(accountEntryRepository.streamUnreconciledLinesByDateRange(anyLong(), any(), any())).thenReturn(Stream.of(
+                new Object[] {10L, "5211", "DEBIT", new BigDecimal("500.00"), ORIGINE, null, "P10", "Encaissement"},
+                new Object[] {11L, "5211", "CREDIT", new BigDecimal("70.00"), ORIGINE.plusDays(1), "F1", null, "Achat"},
+                new Object[] {12L, "5211", "CREDIT", new BigDecimal("50.00"), ORIGINE.plusDays(2), "F2", null, "Achat"},
+                // Contrepartie (compte de tiers) : ignorée
+                new Object[] {13L, "411", "CREDIT", new BigDecimal("500.00"), ORIGINE, null, "P10", "Encaissement"},
+                new Object[] {14L, "5211", "DEBIT", new BigDecimal("42.00"), ORIGINE, null, "P14", "Divers"}));
+
+            ReconciliationService service = new ReconciliationService();
+            ReflectionTestUtils.setField(service, "reconciliationRepository", reconciliationRepository);
+            ReflectionTestUtils.setField(service, "bankStatementLineRepository", bankRepository);
+            ReflectionTestUtils.setField(service, "accountEntryRepository", accountEntryRepository);
+            ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+
+            Map<String, Object> result = service.autoReconcile(7L);
+
+            assertEquals(3, result.get("totalEntries"));
+            assertEquals(4, result.get("bookEntries"));
+            assertEquals(2, result.get("reconciledEntries"));
+            assertEquals(3, result.get("reconciledBookEntries"));
+            assertEquals(List.of(10L, 11L, 12L), jdbcTemplate.queryForList(
+                "SELECT id FROM account_entries WHERE is_reconciled ORDER BY id", Long.class));
+            assertEquals("REC-20240331-0001-2", jdbcTemplate.queryForObject(
+                "SELECT reconciliation_reference FROM account_entries WHERE id = 12", String.class));
+            assertEquals("COMBINAISON", jdbcTemplate.queryForObject(
+                "SELECT match_type FROM bank_statement_lines WHERE id = 2", String.class));
+            assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM bank_statement_lines WHERE NOT is_reconciled", Integer.class));
+            assertEquals(2, reconciliation.getReconciledTransactions());
+            assertEquals(0, new BigDecimal("999.00").compareTo(reconciliation.getTotalUnreconciledAmount()));
+            verify(reconciliationRepository).save(reconciliation);
+        } finally {
+            jdbcTemplate.execute("SHUTDOWN");
+        }
+    }
+}
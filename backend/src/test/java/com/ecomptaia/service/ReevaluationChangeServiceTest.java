@@ -0,0 +1,229 @@
+package com.ecomptaia.service;
+
+import com.ecomptaia.accounting.entity.Account;
+import com.ecomptaia.entity.Company;
+import com.ecomptaia.entity.EcritureComptable;
+import com.ecomptaia.entity.ExchangeRate;
+import com.ecomptaia.entity.FinancialPeriod;
+import com.ecomptaia.entity.LigneEcriture;
+import com.ecomptaia.repository.EcritureComptableRepository;
+import com.ecomptaia.repository.FinancialPeriodRepository;
+import com.ecomptaia.repository.LigneEcritureRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Réévaluation de clôture : cumul par compte × tiers × devise, écarts 476/477, contre-passation,
+ * et traitement parallèle d'un grand nombre d'entreprises (taille réglable par
+ * -Dreevaluation.entreprises et -Dreevaluation.lignes)
+ */
+class ReevaluationChangeServiceTest {
+
+    private static final LocalDate CLOTURE = LocalDate.of(2024, 12, 31);
+
+    private LigneEcritureRepository ligneRepository;
+    private FinancialPeriodRepository periodRepository;
+    private EcritureComptableBatchService batchService;
+    private EcritureComptableRepository ecritureRepository;
+    private ReevaluationChangeService service;
+    private final Map<Long, List<Object[]>> lignesParEntreprise = new HashMap<>();
+    private final List<EcritureComptable> postees = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setUp() {
+        ligneRepository = mock(LigneEcritureRepository.class);
+        periodRepository = mock(FinancialPeriodRepository.class);
+        batchService = mock(EcritureComptableBatchService.class);
+        ecritureRepository = mock(EcritureComptableRepository.class);
+        PlanComptableIndexService indexService = mock(PlanComptableIndexService.class);
+        ExchangeRateSnapshotStore store = mock(ExchangeRateSnapshotStore.class);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+        // EUR/XOF fixe ; USD coté 1.10 puis 1.20 au 31/12
+        when(store.getMatrix()).thenReturn(ExchangeRateMatrix.of(
+            List.of(new ExchangeRate("EUR", "XOF", new BigDecimal("655.957"), null),
+                new ExchangeRate("EUR", "USD", new BigDecimal("1.10"), null)),
+            List.of(new ExchangeRate("EUR", "USD", new BigDecimal("1.20"), CLOTURE)), "test"));
+        when(indexService.getIndex(any())).thenReturn(PlanComptableIndex.of(
+            List.of(compte(476L, "476000"), compte(477L, "477000"), compte(411L, "411000")), Account::getAccountNumber));
+        when(periodRepository.findPeriodByDate(anyLong(), any())).thenReturn(Optional.of(new FinancialPeriod()));
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(ligneRepository.streamLignesEnDeviseAuDate(anyLong(), any(), any(), any())).thenAnswer(invocation ->
+            lignesParEntreprise.getOrDefault(invocation.<Long>getArgument(0), List.of()).stream());
+        when(batchService.createEcrituresEnMasse(any())).thenAnswer(invocation -> {
+            List<EcritureComptable> ecritures = invocation.getArgument(0);
+            postees.addAll(ecritures);
+            Map<String, Object> resultat = new HashMap<>();
+            resultat.put("ecrituresCreees", ecritures.size());
+            resultat.put("ecrituresRejetees", 0);
+            resultat.put("erreurs", List.of());
+            return resultat;
+        });
+
+        service = new ReevaluationChangeService();
+        ReflectionTestUtils.setField(service, "ligneRepository", ligneRepository);
+        ReflectionTestUtils.setField(service, "periodRepository", periodRepository);
+        ReflectionTestUtils.setField(service, "planComptableIndexService", indexService);
+        ReflectionTestUtils.setField(service, "exchangeRateStore", store);
+        ReflectionTestUtils.setField(service, "batchService", batchService);
+        ReflectionTestUtils.setField(service, "ecritureRepository", ecritureRepository);
+        ReflectionTestUtils.setField(service, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(service, "racinesComptes", new String[]{"40", "41", "46", "47"});
+        ReflectionTestUtils.setField(service, "parallelisme", 4);
+    }
+
+    @Test
+    void testEcartsDeConversionEtContrepassation() {
+        lignesParEntreprise.put(1L, List.of(
+            // Client 7 : facture 1 000 USD à 600, règlement partiel 400 USD à 600 → 600 USD ouverts
+            ligne(411L, "411000", 7L, "USD", "1000", "0", "600", CLOTURE.minusMonths(2)),
+            ligne(411L, "411000", 7L, "USD", "0", "400", "600", CLOTURE.minusMonths(1)),
+            // Fournisseur 8 : 500 USD sans taux, valorisés au cours du jour (655.957 / 1.10)
+            ligne(401L, "401000", 8L, "USD", "0", "500", null, CLOTURE.minusMonths(3)),
+            // Client 9 soldé, compte de banque et compte d'écart ignorés
+            ligne(411L, "411000", 9L, "USD", "100", "0", "600", CLOTURE.minusMonths(2)),
+            ligne(411L, "411000", 9L, "USD", "0", "100", "550", CLOTURE.minusMonths(1)),
+            ligne(521L, "521000", null, "USD", "9000", "0", "600", CLOTURE.minusMonths(1)),
+            ligne(476L, "476000", null, "USD", "10", "0", "600", CLOTURE.minusMonths(1))));
+
+        Map<String, Object> resultat = service.reevaluer(List.of(entreprise(1L)), CLOTURE, 5L, true);
+
+        double tauxCloture = 655.957 / 1.20;
+        BigDecimal perteClient = BigDecimal.valueOf(600 * 600 - 600 * tauxCloture).setScale(2, RoundingMode.HALF_UP);
+        BigDecimal gainFournisseur = BigDecimal.valueOf(500 * (655.957 / 1.10) - 500 * tauxCloture)
+            .setScale(2, RoundingMode.HALF_UP);
+
+        assertEquals(4, postees.size());
+        EcritureComptable fournisseur = postees.get(0);
+        assertEquals("401000", fournisseur.getLignes().get(0).getCompteNumero());
+        assertEquals(0, gainFournisseur.compareTo(fournisseur.getLignes().get(0).getDebit()));
+        assertEquals("477000", fournisseur.getLignes().get(1).getCompteNumero());
+        assertEquals(0, gainFournisseur.compareTo(fournisseur.getLignes().get(1).getCredit()));
+
+        EcritureComptable client = postees.get(1);
+        assertEquals(EcritureComptable.TypeEcriture.CLOTURE, client.getTypeEcriture());
+        assertEquals("XOF", client.getDevise());
+        assertEquals(7L, client.getLignes().get(0).getTiers().getId());
+        assertEquals(0, perteClient.compareTo(client.getLignes().get(0).getCredit()));
+        assertEquals("476000", client.getLignes().get(1).getCompteNumero());
+        assertEquals(0, perteClient.compareTo(client.getLignes().get(1).getDebit()));
+
+        // Contre-passation au 1er janvier, sens inversés
+        EcritureComptable contrepassation = postees.get(3);
+        assertEquals(CLOTURE.plusDays(1), contrepassation.getDateEcriture());
+        assertEquals(0, perteClient.compareTo(contrepassation.getLignes().get(0).getDebit()));
+        assertEquals(0, perteClient.compareTo(contrepassation.getLignes().get(1).getCredit()));
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> detail = ((List<Map<String, Object>>) resultat.get("details")).get(0);
+        assertEquals(5L, detail.get("lignesAnalysees"));
+        assertEquals(2, detail.get("positionsReevaluees"));
+        assertEquals(0, perteClient.compareTo((BigDecimal) detail.get("perteLatente")));
+        assertEquals(0, gainFournisseur.compareTo((BigDecimal) detail.get("gainLatent")));
+        for (EcritureComptable ecriture : postees) {
+            BigDecimal debit = ecriture.getLignes().stream().map(LigneEcriture::getDebit).reduce(BigDecimal.ZERO, BigDecimal::add);
+            BigDecimal credit = ecriture.getLignes().stream().map(LigneEcriture::getCredit).reduce(BigDecimal.ZERO, BigDecimal::add);
+            assertEquals(0, debit.compareTo(credit));
+        }
+    }
+
+    @Test
+    void testSecondeReevaluationDeLaMemeClotureIgnoree() {
+        lignesParEntreprise.put(1L, List.<Object[]>of(ligne(411L, "411000", 7L, "USD", "1000", "0", "600", CLOTURE)));
+        service.reevaluer(List.of(entreprise(1L)), CLOTURE, 5L, false);
+        assertEquals(1, postees.size());
+
+        // Écritures REEVAL-2024-12-31 désormais présentes : la relance ne crée rien
+        when(ecritureRepository.existsByEntrepriseIdAndReferenceAndStatutNot(1L, "REEVAL-" + CLOTURE,
+            EcritureComptable.StatutEcriture.ANNULEE)).thenReturn(true);
+        Map<String, Object> relance = service.reevaluer(List.of(entreprise(1L)), CLOTURE, 5L, false);
+
+        assertEquals(1, postees.size());
+        assertEquals(0L, relance.get("ecrituresCreees"));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> detail = ((List<Map<String, Object>>) relance.get("details")).get(0);
+        assertEquals(true, detail.get("dejaReevaluee"));
+        verify(batchService, times(1)).createEcrituresEnMasse(any());
+    }
+
+    @Test
+    void testCompteEcartAbsentRapporteSansBloquerLesAutres() {
+        PlanComptableIndexService sansEcart = mock(PlanComptableIndexService.class);
+        when(sansEcart.getIndex(argThat(e -> e != null && e.getId() == 2L)))
+            .thenReturn(PlanComptableIndex.of(List.of(compte(411L, "411000")), Account::getAccountNumber));
+        when(sansEcart.getIndex(argThat(e -> e != null && e.getId() == 1L))).thenReturn(PlanComptableIndex.of(
+            List.of(compte(476L, "476000"), compte(477L, "477000")), Account::getAccountNumber));
+        ReflectionTestUtils.setField(service, "planComptableIndexService", sansEcart);
+        lignesParEntreprise.put(1L, List.<Object[]>of(ligne(411L, "411000", 7L, "USD", "1000", "0", "600", CLOTURE)));
+        lignesParEntreprise.put(2L, List.<Object[]>of(ligne(411L, "411000", 7L, "USD", "1000", "0", "600", CLOTURE)));
+
+        Map<String, Object> resultat = service.reevaluer(List.of(entreprise(1L), entreprise(2L)), CLOTURE, 5L, false);
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> details = (List<Map<String, Object>>) resultat.get("details");
+        assertEquals(1, details.get(0).get("ecrituresCreees"));
+        assertTrue(((String) details.get(1).get("erreur")).contains("476"));
+        assertEquals(1L, resultat.get("ecrituresCreees"));
+    }
+
+    @Test
+    void testReevaluationDeNombreusesEntreprises() {
+        int entreprises = Integer.getInteger("reevaluation.entreprises", 20);
+        int lignes = Integer.getInteger("reevaluation.lignes", 5_000);
+        AtomicLong lues = new AtomicLong();
+        when(ligneRepository.streamLignesEnDeviseAuDate(anyLong(), any(), any(), any())).thenAnswer(invocation ->
+            IntStream.range(0, lignes).mapToObj(i -> {
+                lues.incrementAndGet();
+                boolean client = i % 2 == 0;
+                return ligne(client ? 411L : 401L, client ? "411000" : "401000", (long) (i % 200),
+                    i % 3 == 0 ? "EUR" : "USD", client ? "100" : "0", client ? "0" : "80", i % 5 == 0 ? null : "600",
+                    CLOTURE.minusDays(i % 300));
+            }));
+        List<Company> liste = Stream.iterate(1L, id -> id + 1).limit(entreprises).map(this::entreprise).toList();
+
+        Map<String, Object> resultat = service.reevaluer(liste, CLOTURE, 5L, true);
+
+        assertEquals((long) entreprises * lignes, lues.get());
+        assertEquals((long) entreprises * lignes, resultat.get("lignesAnalysees"));
+        // 200 tiers × 2 devises par entreprise, sauf les positions EUR sans taux (tiers multiples de 5),
+        // valorisées au cours fixe donc sans écart ; écriture + contre-passation
+        assertEquals((long) entreprises * (400 - 40) * 2, resultat.get("ecrituresCreees"));
+        verify(batchService, times(entreprises)).createEcrituresEnMasse(any());
+    }
+
+    private Company entreprise(Long id) {
+        Company entreprise = new Company();
+        entreprise.setId(id);
+        entreprise.setCurrency("XOF");
+        return entreprise;
+    }
+
+    private static Account compte(Long id, String numero) {
+        Account compte = new Account();
+        compte.setId(id);
+        compte.setAccountNumber(numero);
+        compte.setName("Compte " + numero);
+        return compte;
+    }
+
+    private static Object[] ligne(Long compteId, String numero, Long tiersId, String devise, String debit, String credit,
+                                  String taux, LocalDate date) {
+        return new Object[]{compteId, numero, "Compte " + numero, tiersId, devise, new BigDecimal(debit),
+            new BigDecimal(credit), taux != null ? new BigDecimal(taux) : null, date};
+    }
+}
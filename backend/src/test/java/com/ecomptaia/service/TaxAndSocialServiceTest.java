@@ -0,0 +1,144 @@
+package com.ecomptaia.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Règles fiscales compilées : parité exacte (valeur et échelle) avec les résultats des anciens calculs codés
+ * par pays, versions par date d'effet, rechargement d'un fichier externe, et débit des évaluations
+ */
+class TaxAndSocialServiceTest {
+
+    private static final LocalDate DATE = LocalDate.of(2025, 1, 31);
+
+    private final TaxAndSocialService service = new TaxAndSocialService();
+
+    @Test
+    void reproduitLesResultatsDeReferenceDeTousLesPays() throws Exception {
+        // nature;pays;montant;paramètre;statut;résultats, relevés avant le passage aux règles compilées
+        int cas = 0;
+        try (BufferedReader lecteur = new BufferedReader(new InputStreamReader(
+                getClass().getResourceAsStream("/fiscalite/golden-tax-and-social.csv"), StandardCharsets.UTF_8))) {
+            String ligne;
+            while ((ligne = lecteur.readLine()) != null) {
+                if (ligne.startsWith("#")) {
+                    continue;
+                }
+                String[] c = ligne.split(";", -1);
+                BigDecimal montant = new BigDecimal(c[2]);
+                List<String> attendu = Arrays.asList(c).subList(4, c.length);
+                List<String> obtenu = switch (c[0]) {
+                    case "IMPOT" -> {
+                        int enfants = Integer.parseInt(c[3]);
+                        yield resultat(service.calculateSalaryTaxes(c[1], montant, "CDI", DATE, enfants > 0, enfants),
+                            "taxCalculation", "taxableIncome", "taxAmount", "netSalary", "taxRate");
+                    }
+                    case "SOCIAL" -> resultat(service.calculateSocialCharges(c[1], montant, "CDI", DATE, "COMMERCE"),
+                        "socialCalculation", "employerCharges", "employeeCharges", "totalCharges", "netSalary", "totalCost");
+                    default -> resultat(service.calculateVAT(c[1], montant, c[3].isEmpty() ? null : c[3], DATE, "COMMERCE"),
+                        "vatCalculation", "vatRate", "vatAmount", "totalWithVAT");
+                };
+                assertEquals(attendu, obtenu, ligne);
+                cas++;
+            }
+        }
+        assertTrue(cas > 2500, "cas de référence : " + cas);
+    }
+
+    @Test
+    void appliqueLaVersionEnVigueurEtRechargeUnFichierExterne(@TempDir Path repertoire) throws Exception {
+        String regles = """
+            # barème relevé au 1er juillet 2025
+            IMPOT;TESTLAND;2024-01-01;;1000:0:0.10|*:100:0.20;;
+            IMPOT;TESTLAND;2025-07-01;;1000:0:0.10|*:100:0.30;CREDIT:10;
+            SOCIAL;*;2024-01-01;0.20;0.10
+            TVA;*;2024-01-01;*=0.18
+            """;
+        TaxRuleEngine moteur = TaxRuleEngine.compiler(new BufferedReader(new StringReader(regles)), "test");
+        assertEquals(4, moteur.getNombreRegles());
+        BigDecimal brut = new BigDecimal("2000");
+        assertEquals(0, new BigDecimal("300").compareTo(moteur.impot("testland", DATE).calculer(brut, false, 0).montant()));
+        assertEquals(0, new BigDecimal("400").compareTo(moteur.impot("TESTLAND", LocalDate.of(2025, 7, 1)).calculer(brut, false, 0).montant()));
+        assertEquals(0, new BigDecimal("380").compareTo(moteur.impot("TESTLAND", LocalDate.of(2026, 1, 1)).calculer(brut, true, 2).montant()));
+        // Avant la première date d'effet, la plus ancienne version s'applique
+        assertEquals(0, new BigDecimal("300").compareTo(moteur.impot("TESTLAND", LocalDate.of(2020, 1, 1)).calculer(brut, false, 0).montant()));
+        // Pas de règle d'impôt par défaut
+        assertThrows(RuntimeException.class, () -> moteur.impot("AILLEURS", DATE));
+
+        RuntimeException erreur = assertThrows(RuntimeException.class, () -> TaxRuleEngine.compiler(
+            new BufferedReader(new StringReader("TVA;*;2024-01-01;*=0.18\nIMPOT;X;2024-01-01;;1000:0:0.10|2000:100:0.20;;\n")), "test"));
+        assertTrue(erreur.getMessage().contains("ligne 2"), erreur.getMessage());
+
+        // Fichier externe : les nouveaux taux s'appliquent après rechargement, un fichier invalide laisse les règles en place
+        assertEquals("SUCCESS", service.calculateSalaryTaxes("TESTLAND", brut, "CDI", DATE, false, 0).get("status"));
+        Path fichier = repertoire.resolve("regles-fiscales.csv");
+        Files.writeString(fichier, regles);
+        ReflectionTestUtils.setField(service, "fichierRegles", "file:" + fichier);
+        Map<String, Object> rechargement = service.reloadTaxRules();
+        assertEquals("SUCCESS", rechargement.get("status"));
+        assertEquals(4, rechargement.get("rulesCount"));
+        assertEquals(new BigDecimal("0.18"), ((Map<?, ?>) service.calculateVAT("FRANCE", BigDecimal.ONE, "STANDARD", DATE, null)
+            .get("vatCalculation")).get("vatAmount"));
+        assertEquals("ERROR", service.calculateSalaryTaxes("FRANCE", brut, "CDI", DATE, false, 0).get("status"));
+
+        Files.writeString(fichier, "IMPOT;FRANCE;2024-01-01;;*:0:abc;;\n");
+        assertEquals("ERROR", service.reloadTaxRules().get("status"));
+        assertEquals("SUCCESS", service.calculateSalaryTaxes("TESTLAND", brut, "CDI", DATE, false, 0).get("status"));
+    }
+
+    @Test
+    void evalueUnMillionDeBulletins() {
+        String[] pays = {"FRANCE", "CAMEROUN", "SENEGAL", "BENIN", "GABON", "USA", "CANADA", "ALLEMAGNE", "INCONNU"};
+        BigDecimal[] bruts = new BigDecimal[1000];
+        Random aleatoire = new Random(7);
+        for (int i = 0; i < bruts.length; i++) {
+            bruts[i] = BigDecimal.valueOf(100_000 + aleatoire.nextInt(5_000_000), 2);
+        }
+        TaxRuleEngine moteur = service.getTaxRules();
+
+        BigDecimal controle = BigDecimal.ZERO;
+        for (int tour = 0; tour < 2; tour++) {
+            // Premier tour de chauffe, second mesuré
+            int evaluations = tour == 0 ? 200_000 : 1_000_000;
+            long debut = System.nanoTime();
+            BigDecimal total = BigDecimal.ZERO;
+            for (int i = 0; i < evaluations; i++) {
+                String p = pays[i % pays.length];
+                BigDecimal brut = bruts[i % bruts.length];
+                TaxRuleEngine.Impot impot = moteur.impot(p, DATE).calculer(brut, (i & 1) == 0, i % 4);
+                TaxRuleEngine.Charges charges = moteur.social(p, DATE).calculer(brut);
+                total = total.add(impot.montant()).add(charges.salarie());
+            }
+            long moteurNs = System.nanoTime() - debut;
+            if (tour == 1) {
+                assertTrue(moteurNs / evaluations < 20_000, "évaluation trop lente : " + moteurNs / evaluations + " ns");
+            }
+            controle = total;
+        }
+        assertTrue(controle.signum() > 0);
+    }
+
+    private static List<String> resultat(Map<String, Object> result, String calcul, String... cles) {
+        List<String> valeurs = new ArrayList<>();
+        valeurs.add(String.valueOf(result.get("status")));
+        if (result.get(calcul) instanceof Map<?, ?> details) {
+            for (String cle : cles) {
+                valeurs.add(String.valueOf(details.get(cle)));
+            }
+        }
+        return valeurs;
+    }
+}
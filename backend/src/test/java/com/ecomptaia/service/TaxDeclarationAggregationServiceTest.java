@@ -0,0 +1,219 @@
+package com.ecomptaia.service;
+
+import com.ecomptaia.entity.Company;
+import com.ecomptaia.repository.AccountEntryRepository;
+import com.ecomptaia.repository.CompanyRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Déclarations agrégées depuis le grand livre : rubriques SYSCOHADA d'un trimestre, mois clos servis par le cache
+ * et relus après une écriture tardive, données de déclaration générées, lot parallèle de 300 entreprises
+ */
+class TaxDeclarationAggregationServiceTest {
+
+    private static final YearMonth JANVIER = YearMonth.of(2024, 1);
+    private static final YearMonth MARS = YearMonth.of(2024, 3);
+
+    private AccountEntryRepository accountEntryRepository;
+    private CompanyRepository companyRepository;
+    private TaxDeclarationAggregationService service;
+    private final AtomicInteger requetes = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        accountEntryRepository = mock(AccountEntryRepository.class);
+        companyRepository = mock(CompanyRepository.class);
+        service = new TaxDeclarationAggregationService();
+        ReflectionTestUtils.setField(service, "accountEntryRepository", accountEntryRepository);
+        ReflectionTestUtils.setField(service, "companyRepository", companyRepository);
+        ReflectionTestUtils.setField(service, "cacheManager", new ConcurrentMapCacheManager(TaxDeclarationAggregationService.CACHE));
+
+        // Cumuls par compte et par mois, filtrés sur la plage demandée comme le fait la requête groupée
+        when(accountEntryRepository.sumValidatedTaxAccountsByMonth(anyLong(), any(), any())).thenAnswer(invocation -> {
+            requetes.incrementAndGet();
+            Long companyId = invocation.getArgument(0);
+            LocalDate debut = invocation.getArgument(1);
+            LocalDate fin = invocation.getArgument(2);
+            if (companyId == 13L) {
+                throw new RuntimeException("Connexion perdue");
+            }
+            List<Object[]> lignes = new ArrayList<>();
+            for (Object[] ligne : mouvements()) {
+                LocalDate jour = LocalDate.of((Integer) ligne[1], (Integer) ligne[2], 1);
+                if (!jour.isBefore(debut.withDayOfMonth(1)) && !jour.isAfter(fin)) {
+                    lignes.add(ligne);
+                }
+            }
+            return lignes;
+        });
+    }
+
+    @Test
+    void agregeLesRubriquesFiscalesEtSocialesDuTrimestre() {
+        Map<String, Object> declaration = service.agreger(1L, JANVIER, MARS);
+
+        assertEquals(new BigDecimal("1480000.00"), declaration.get("revenue"));
+        assertEquals(new BigDecimal("284900.00"), declaration.get("vatCollected"));
+        assertEquals(new BigDecimal("30000.00"), declaration.get("vatDeductibleFixedAssets"));
+        assertEquals(new BigDecimal("260000.00"), declaration.get("vatDeductibleGoodsAndServices"));
+        assertEquals(new BigDecimal("290000.00"), declaration.get("vatDeductible"));
+        assertEquals(new BigDecimal("-5100.00"), declaration.get("vatNet"));
+        assertEquals(new BigDecimal("0.00"), declaration.get("vatPayable"));
+        assertEquals(new BigDecimal("5100.00"), declaration.get("vatCredit"));
+        assertEquals(new BigDecimal("25000.00"), declaration.get("withholdingTax"));
+        assertEquals(Map.of("4472", new BigDecimal("25000.00")), declaration.get("withholdingByAccount"));
+        assertEquals(new BigDecimal("400000.00"), declaration.get("socialBase"));
+        assertEquals(new BigDecimal("70000.00"), declaration.get("employerSocialCharges"));
+        assertEquals(new BigDecimal("90000.00"), declaration.get("socialContributions"));
+        assertEquals(Map.of("debit", new BigDecimal("3850.00"), "credit", new BigDecimal("288750.00")),
+            ((Map<?, ?>) declaration.get("byAccountClass")).get("443x"));
+        assertEquals(Map.of("debit", new BigDecimal("290000.00"), "credit", new BigDecimal("0.00")),
+            ((Map<?, ?>) declaration.get("byAccountClass")).get("445x"));
+        assertEquals(13L, declaration.get("linesCount"));
+
+        List<?> mensuel = (List<?>) declaration.get("monthly");
+        assertEquals(3, mensuel.size());
+        assertEquals(new BigDecimal("92400.00"), ((Map<?, ?>) mensuel.get(1)).get("vatCollected"));
+        assertEquals(new BigDecimal("0.00"), ((Map<?, ?>) mensuel.get(2)).get("vatCollected"));
+        assertThrows(RuntimeException.class, () -> service.agreger(1L, MARS, JANVIER));
+    }
+
+    @Test
+    void sertLesMoisClosDuCacheEtRelitUnMoisInvalide() {
+        Map<String, Object> premiere = service.agreger(1L, JANVIER, MARS);
+        assertEquals(3, premiere.get("queriedMonths"));
+        assertEquals(1, requetes.get());
+
+        Map<String, Object> seconde = service.agreger(1L, JANVIER, MARS);
+        assertEquals(3, seconde.get("cachedMonths"));
+        assertEquals(1, requetes.get());
+        assertEquals(premiere.get("vatNet"), seconde.get("vatNet"));
+
+        // Écriture tardive en février : seul ce mois est relu
+        service.invaliderMois(1L, LocalDate.of(2024, 2, 20));
+        Map<String, Object> apres = service.agreger(1L, JANVIER, MARS);
+        assertEquals(2, apres.get("cachedMonths"));
+        assertEquals(1, apres.get("queriedMonths"));
+        verify(accountEntryRepository).sumValidatedTaxAccountsByMonth(1L, LocalDate.of(2024, 2, 1), LocalDate.of(2024, 2, 29));
+
+        // Le mois en cours reçoit encore des écritures : jamais mis en cache
+        service.agreger(1L, YearMonth.now());
+        service.agreger(1L, YearMonth.now());
+        assertEquals(4, requetes.get());
+    }
+
+    @Test
+    void ignoreLesCumulsLusPendantUneInvalidationDUneAutreInstance() {
+        // Deux instances partageant le même cache (L2)
+        ConcurrentMapCacheManager partage = new ConcurrentMapCacheManager(TaxDeclarationAggregationService.CACHE);
+        ReflectionTestUtils.setField(service, "cacheManager", partage);
+        TaxDeclarationAggregationService autre = new TaxDeclarationAggregationService();
+        ReflectionTestUtils.setField(autre, "cacheManager", partage);
+
+        // Écriture tardive de février validée sur l'autre instance pendant la lecture : rien n'est mis en cache
+        doAnswer(invocation -> {
+            requetes.incrementAndGet();
+            autre.invaliderMois(2L, LocalDate.of(2024, 2, 20));
+            return List.of();
+        }).when(accountEntryRepository).sumValidatedTaxAccountsByMonth(eq(2L), any(), any());
+        service.agreger(2L, YearMonth.of(2024, 2));
+        assertEquals(1, service.agreger(2L, YearMonth.of(2024, 2)).get("queriedMonths"));
+
+        // Cumuls lus avant une invalidation et réécrits après elle : ignorés car lus sous une ancienne version
+        service.agreger(1L, JANVIER);
+        Object lus = partage.getCache(TaxDeclarationAggregationService.CACHE).get("1|" + JANVIER).get();
+        autre.invaliderMois(1L, LocalDate.of(2024, 1, 31));
+        partage.getCache(TaxDeclarationAggregationService.CACHE).put("1|" + JANVIER, lus);
+        int avant = requetes.get();
+        assertEquals(1, service.agreger(1L, JANVIER).get("queriedMonths"));
+        assertEquals(avant + 1, requetes.get());
+        assertEquals(1, service.agreger(1L, JANVIER).get("cachedMonths"));
+    }
+
+    @Test
+    void genereLaDeclarationDepuisLeGrandLivre() {
+        TaxAndSocialService taxAndSocialService = new TaxAndSocialService();
+        ReflectionTestUtils.setField(taxAndSocialService, "taxDeclarationAggregationService", service);
+
+        Map<String, Object> result = taxAndSocialService.generateTaxDeclaration("CAMEROUN", "TVA", JANVIER, 1L, null);
+
+        assertEquals("SUCCESS", result.get("status"));
+        Map<?, ?> donnees = (Map<?, ?>) result.get("financialData");
+        assertEquals(new BigDecimal("192500.00"), donnees.get("vatCollected"));
+        assertEquals(new BigDecimal("90000.00"), donnees.get("vatDeductible"));
+        assertEquals(new BigDecimal("102500.00"), donnees.get("vatPayable"));
+
+        // Des données fournies par l'appelant ne sont pas remplacées
+        Map<String, Object> fournies = Map.of("vatCollected", BigDecimal.TEN);
+        assertSame(fournies, taxAndSocialService.generateTaxDeclaration("CAMEROUN", "TVA", JANVIER, 1L, fournies)
+            .get("financialData"));
+    }
+
+    @Test
+    void prepareLesDeclarationsDeTroisCentsEntreprisesEnParallele() {
+        List<Company> entreprises = new ArrayList<>();
+        for (long id = 1; id <= 300; id++) {
+            Company company = new Company("Entreprise " + id, "CM", "XAF");
+            company.setId(id);
+            entreprises.add(company);
+        }
+        when(companyRepository.findByIsActiveTrue()).thenReturn(entreprises);
+
+        Map<String, Object> lot = service.agregerEntreprises(JANVIER, MARS);
+
+        assertEquals(300, lot.get("entreprises"));
+        assertEquals("PARTIEL", lot.get("statut"));
+        List<?> anomalies = (List<?>) lot.get("anomalies");
+        assertEquals(1, anomalies.size());
+        assertEquals(13L, ((Map<?, ?>) anomalies.get(0)).get("companyId"));
+        List<?> declarations = (List<?>) lot.get("declarations");
+        assertEquals(299, declarations.size());
+        for (Object declaration : declarations) {
+            assertEquals(new BigDecimal("-5100.00"), ((Map<?, ?>) declaration).get("vatNet"));
+        }
+        assertEquals(300, requetes.get());
+
+        // Second passage : trimestre clos entièrement servi par le cache, seule l'entreprise en échec est relue
+        Map<String, Object> relance = service.agregerEntreprises(JANVIER, MARS);
+        assertEquals(301, requetes.get());
+        assertEquals(299, ((List<?>) relance.get("declarations")).size());
+    }
+
+    // Janvier : ventes, TVA facturée et récupérable, retenue, salaires ; février : avoir et achats importants ; mars : rien
+    private static List<Object[]> mouvements() {
+        List<Object[]> lignes = new ArrayList<>();
+        lignes.add(ligne("701100", 1, "0", "1000000"));
+        lignes.add(ligne("443100", 1, "0", "192500"));
+        lignes.add(ligne("445100", 1, "30000", "0"));
+        lignes.add(ligne("445200", 1, "60000", "0"));
+        lignes.add(ligne("447200", 1, "0", "25000"));
+        lignes.add(ligne("661100", 1, "400000", "0"));
+        lignes.add(ligne("664100", 1, "70000", "0"));
+        lignes.add(ligne("431000", 1, "0", "90000"));
+        lignes.add(ligne("701100", 2, "20000", "500000"));
+        lignes.add(ligne("443100", 2, "3850", "96250"));
+        lignes.add(ligne("445200", 2, "200000", "0"));
+        return lignes;
+    }
+
+    private static Object[] ligne(String compte, int mois, String debit, String credit) {
+        // Deux lignes pour les comptes mouvementés au débit et au crédit, une sinon
+        long nombre = debit.equals("0") || credit.equals("0") ? 1L : 2L;
+        return new Object[]{compte, 2024, mois, new BigDecimal(debit), new BigDecimal(credit), nombre};
+    }
+}
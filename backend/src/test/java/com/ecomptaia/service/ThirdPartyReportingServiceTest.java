@@ -0,0 +1,214 @@
+package com.ecomptaia.service;
+
+import com.ecomptaia.entity.ThirdParty;
+import com.ecomptaia.repository.AccountEntryRepository;
+import com.ecomptaia.repository.ThirdPartyRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Grands livres des tiers et balance âgée : lettrage, imputation des règlements sur les pièces les plus
+ * anciennes, tranches d'âge, et grands livres de 10 000 clients construits en un parcours par racine
+ */
+class ThirdPartyReportingServiceTest {
+
+    private static final int CLIENTS = 10_000;
+
+    // [compte, id, date, sens, montant, référence, libellé, id écriture, n° écriture, code de lettrage]
+    private final List<Object[]> lignes = new ArrayList<>();
+    private final List<ThirdParty> tiers = new ArrayList<>();
+    private AccountEntryRepository accountEntryRepository;
+    private ThirdPartyReportingService service;
+    private long prochainId;
+
+    @BeforeEach
+    void setUp() {
+        accountEntryRepository = mock(AccountEntryRepository.class);
+        when(accountEntryRepository.streamValidatedThirdPartyLines(eq(1L), anyString(), any())).thenAnswer(i -> {
+            String racine = i.getArgument(1);
+            LocalDate fin = i.getArgument(2);
+            return lignes.stream().filter(l -> ((String) l[0]).startsWith(racine) && !((LocalDate) l[2]).isAfter(fin))
+                .sorted(Comparator.comparing((Object[] l) -> (String) l[0]).thenComparing(l -> (LocalDate) l[2])
+                    .thenComparing(l -> (Long) l[1]));
+        });
+        when(accountEntryRepository.streamValidatedLinesByAccount(eq(1L), anyString(), any())).thenAnswer(i -> {
+            String compte = i.getArgument(1);
+            LocalDate fin = i.getArgument(2);
+            return lignes.stream().filter(l -> l[0].equals(compte) && !((LocalDate) l[2]).isAfter(fin))
+                .sorted(Comparator.comparing((Object[] l) -> (LocalDate) l[2]).thenComparing(l -> (Long) l[1]));
+        });
+        ThirdPartyRepository thirdPartyRepository = mock(ThirdPartyRepository.class);
+        when(thirdPartyRepository.findByCompanyIdAndIsActiveTrue(1L)).thenReturn(tiers);
+        when(thirdPartyRepository.findById(anyLong())).thenAnswer(i ->
+            tiers.stream().filter(t -> t.getId().equals(i.getArgument(0))).findFirst());
+
+        service = new ThirdPartyReportingService();
+        ReflectionTestUtils.setField(service, "thirdPartyRepository", thirdPartyRepository);
+        ReflectionTestUtils.setField(service, "accountEntryRepository", accountEntryRepository);
+
+        // Client : factures de 1 000, 500 et 300, règlement de 1 200 imputé sur les deux premières,
+        // facture et règlement de 250 lettrés explicitement
+        tiers("C1", "41100001", "CLIENT");
+        ligne("41100001", LocalDate.of(2024, 1, 10), true, "1000.00", "FA-1", null);
+        ligne("41100001", LocalDate.of(2024, 2, 20), true, "500.00", "FA-2", null);
+        ligne("41100001", LocalDate.of(2024, 3, 1), false, "1200.00", "REG-1", null);
+        ligne("41100001", LocalDate.of(2024, 3, 15), true, "300.00", "FA-3", null);
+        ligne("41100001", LocalDate.of(2024, 4, 1), true, "250.00", "FA-4", "A1");
+        ligne("41100001", LocalDate.of(2024, 4, 5), false, "250.00", "REG-2", "A1");
+        // Fournisseur créditeur
+        tiers("F1", "40100001", "FOURNISSEUR");
+        ligne("40100001", LocalDate.of(2023, 12, 1), false, "800.00", "FF-1", null);
+        ligne("40100001", LocalDate.of(2024, 4, 10), false, "200.00", "FF-2", null);
+        // Compte collectif sans tiers : ignoré
+        ligne("41100000", LocalDate.of(2024, 1, 5), true, "99999.00", "OD", null);
+    }
+
+    @Test
+    void testGrandLivreLettrageEtBalanceAgee() {
+        Map<String, Object> ledger = service.generateThirdPartyLedger(1L, 1L, LocalDate.of(2024, 3, 1), LocalDate.of(2024, 4, 30));
+
+        assertEquals(new BigDecimal("1500.00"), ledger.get("soldePrecedent"));
+        assertEquals(new BigDecimal("550.00"), ledger.get("totalDebit"));
+        assertEquals(new BigDecimal("1450.00"), ledger.get("totalCredit"));
+        assertEquals(new BigDecimal("600.00"), ledger.get("soldeFinal"));
+        List<Map<String, Object>> entries = entries(ledger);
+        assertEquals(4, entries.size());
+        assertEquals(ThirdPartySubLedger.LETTRE, entries.get(0).get("lettrage"));
+        assertEquals(new BigDecimal("300.00"), entries.get(0).get("balance"));
+        assertEquals(ThirdPartySubLedger.NON_LETTRE, entries.get(1).get("lettrage"));
+        assertEquals("A1", entries.get(2).get("lettrageCode"));
+        assertEquals(ThirdPartySubLedger.LETTRE, entries.get(3).get("lettrage"));
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> openItems = (List<Map<String, Object>>) ledger.get("openItems");
+        assertEquals(2, openItems.size());
+        assertEquals("FA-2", openItems.get(0).get("reference"));
+        assertEquals(new BigDecimal("300.00"), openItems.get(0).get("remaining"));
+        assertEquals(true, openItems.get(0).get("partial"));
+        verify(accountEntryRepository, never()).streamValidatedThirdPartyLines(any(), any(), any());
+
+        Map<String, Object> balance = service.generateThirdPartyBalance(1L, LocalDate.of(2024, 4, 30));
+        assertEquals(new BigDecimal("600.00"), balance.get("totalReceivables"));
+        assertEquals(new BigDecimal("1000.00"), balance.get("totalPayables"));
+        @SuppressWarnings("unchecked")
+        Map<String, BigDecimal> parAge = (Map<String, BigDecimal>) balance.get("receivablesByAge");
+        // FA-2 (20/02, 70 jours) pour 300, FA-3 (15/03, 46 jours) pour 300
+        assertEquals(new BigDecimal("300.00"), parAge.get("61-90 jours"));
+        assertEquals(new BigDecimal("300.00"), parAge.get("31-60 jours"));
+        @SuppressWarnings("unchecked")
+        Map<String, BigDecimal> dettes = (Map<String, BigDecimal>) balance.get("payablesByAge");
+        assertEquals(new BigDecimal("800.00"), dettes.get("Plus de 120 jours"));
+        assertEquals(new BigDecimal("200.00"), dettes.get("0-30 jours"));
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> debiteurs = (List<Map<String, Object>>) balance.get("debtors");
+        assertEquals(70, debiteurs.get(0).get("ageInDays"));
+
+        Map<String, Object> recouvrement = service.generateCollectionReport(1L, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 5, 15));
+        assertEquals(1, recouvrement.get("riskCount"));
+        assertEquals(new BigDecimal("600.00"), recouvrement.get("totalAtRisk"));
+    }
+
+    @Test
+    void testGrandsLivresDeTousLesClientsEnUnParcours() {
+        Random random = new Random(42);
+        for (int i = 2; i < CLIENTS; i++) {
+            String compte = String.format("411%05d", i);
+            tiers("C" + i, compte, "CLIENT");
+            for (int mois = 1; mois <= 12; mois++) {
+                BigDecimal facture = BigDecimal.valueOf(10_000 + random.nextInt(90_000), 2);
+                ligne(compte, LocalDate.of(2024, mois, 5), true, facture.toPlainString(), "FA-" + i + "-" + mois, null);
+                if (random.nextInt(4) > 0) {
+                    BigDecimal reglement = facture.multiply(BigDecimal.valueOf(random.nextInt(11), 1)).setScale(2, RoundingMode.DOWN);
+                    ligne(compte, LocalDate.of(2024, mois, 25), false, reglement.toPlainString(), "REG-" + i + "-" + mois, null);
+                }
+            }
+        }
+
+        Map<String, Object> tous = service.generateThirdPartyLedgers(1L, LocalDate.of(2024, 7, 1), LocalDate.of(2024, 12, 31));
+        assertEquals(CLIENTS, tous.get("totalThirdParties"));
+        // Un flux par racine (401, 411), aucun accès par tiers
+        verify(accountEntryRepository, times(2)).streamValidatedThirdPartyLines(eq(1L), anyString(), any());
+        verify(accountEntryRepository, never()).streamValidatedLinesByAccount(any(), any(), any());
+
+        // Parité avec le grand livre d'un tiers seul
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> ledgers = (List<Map<String, Object>>) tous.get("ledgers");
+        for (int i : new int[] {2, 777, 5_000, CLIENTS - 1}) {
+            Map<String, Object> groupe = ledgers.stream()
+                .filter(l -> l.get("accountNumber").equals(String.format("411%05d", i))).findFirst().orElseThrow();
+            Map<String, Object> seul = service.generateThirdPartyLedger(1L, (long) i, LocalDate.of(2024, 7, 1), LocalDate.of(2024, 12, 31));
+            for (String cle : new String[] {"soldePrecedent", "totalDebit", "totalCredit", "soldeFinal", "entries", "openItems"}) {
+                assertEquals(seul.get(cle), groupe.get(cle), cle);
+            }
+        }
+
+        Map<String, Object> balance = service.generateThirdPartyBalance(1L, LocalDate.of(2024, 12, 31));
+        @SuppressWarnings("unchecked")
+        Map<String, BigDecimal> parAge = (Map<String, BigDecimal>) balance.get("receivablesByAge");
+        assertEquals(0, ((BigDecimal) balance.get("totalReceivables"))
+            .compareTo(parAge.values().stream().reduce(BigDecimal.ZERO, BigDecimal::add)));
+        BigDecimal soldes = BigDecimal.ZERO;
+        for (Object[] l : lignes) {
+            if (((String) l[0]).startsWith("411") && !"41100000".equals(l[0])) {
+                soldes = "DEBIT".equals(l[3]) ? soldes.add((BigDecimal) l[4]) : soldes.subtract((BigDecimal) l[4]);
+            }
+        }
+        // Règlements au plus égaux aux factures : aucun client créditeur
+        assertEquals(0, soldes.compareTo((BigDecimal) balance.get("totalReceivables")));
+
+        Map<String, Object> analyse = service.generateReceivablesAnalysis(1L, LocalDate.of(2024, 12, 31));
+        assertEquals(balance.get("totalDebtors"), analyse.get("totalDebtors"));
+        assertEquals(balance.get("totalReceivables"), analyse.get("totalReceivables"));
+    }
+
+    @Test
+    void testCompteDeTiersCourtCouvrantUneRacine() {
+        // Compte de tiers de deux chiffres : sa racine (41) couvre celle des comptes 411...
+        tiers("C2", "41", "CLIENT");
+        ligne("41", LocalDate.of(2024, 2, 1), true, "700.00", "FA-41", null);
+        ligne("41", LocalDate.of(2024, 5, 1), false, "100.00", "REG-41", null);
+
+        Map<String, Object> tous = service.generateThirdPartyLedgers(1L, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31));
+
+        assertEquals(3, tous.get("totalThirdParties"));
+        verify(accountEntryRepository).streamValidatedThirdPartyLines(eq(1L), eq("41"), any());
+        verify(accountEntryRepository, never()).streamValidatedThirdPartyLines(eq(1L), eq("411"), any());
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> ledgers = (List<Map<String, Object>>) tous.get("ledgers");
+        Map<String, Object> court = ledgers.stream().filter(l -> l.get("accountNumber").equals("41")).findFirst().orElseThrow();
+        assertEquals(new BigDecimal("600.00"), court.get("soldeFinal"));
+        Map<String, Object> client = ledgers.stream().filter(l -> l.get("accountNumber").equals("41100001")).findFirst().orElseThrow();
+        assertEquals(new BigDecimal("600.00"), client.get("soldeFinal"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> entries(Map<String, Object> ledger) {
+        return (List<Map<String, Object>>) ledger.get("entries");
+    }
+
+    private void tiers(String code, String compte, String type) {
+        ThirdParty thirdParty = new ThirdParty();
+        thirdParty.setId(code.equals("C1") ? 1L : code.equals("F1") ? 10_001L : Long.parseLong(code.substring(1)));
+        thirdParty.setCode(code);
+        thirdParty.setAccountNumber(compte);
+        thirdParty.setName("Tiers " + code);
+        thirdParty.setType(type);
+        thirdParty.setCompanyId(1L);
+        tiers.add(thirdParty);
+    }
+
+    private void ligne(String compte, LocalDate date, boolean debit, String montant, String reference, String lettrage) {
+        long id = ++prochainId;
+        lignes.add(new Object[] {compte, id, date, debit ? "DEBIT" : "CREDIT", new BigDecimal(montant), reference,
+            "Ligne " + reference, id, "ECR-" + id, lettrage});
+    }
+}
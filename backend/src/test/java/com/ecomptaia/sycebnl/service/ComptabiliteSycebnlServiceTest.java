@@ -0,0 +1,177 @@
+package com.ecomptaia.sycebnl.service;
+
+import com.ecomptaia.accounting.entity.Account;
+import com.ecomptaia.config.H2JpaTestConfig;
+import com.ecomptaia.entity.Company;
+import com.ecomptaia.entity.EcritureComptable;
+import com.ecomptaia.entity.FinancialPeriod;
+import com.ecomptaia.entity.LigneEcriture;
+import com.ecomptaia.repository.AccountRepository;
+import com.ecomptaia.repository.EcritureComptableRepository;
+import com.ecomptaia.repository.LigneEcritureRepository;
+import com.ecomptaia.security.entity.User;
+import com.ecomptaia.service.PlanComptableIndexService;
+import com.ecomptaia.sycebnl.entity.PlanComptableSycebnl;
+import com.ecomptaia.sycebnl.repository.PlanComptableSycebnlRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * États SYCEBNL : soldes de tous les comptes lus en une requête, postes évalués en mémoire
+ */
+class ComptabiliteSycebnlServiceTest {
+
+    private static final LocalDate ARRETE = LocalDate.of(2024, 12, 31);
+
+    private static AnnotationConfigApplicationContext context;
+    private static ComptabiliteSycebnlService service;
+
+    @BeforeAll
+    static void demarrer() {
+        context = new AnnotationConfigApplicationContext(JpaConfig.class);
+        service = context.getBean(ComptabiliteSycebnlService.class);
+
+        context.getBean(PlanComptableSycebnlRepository.class).saveAll(List.of(
+            compte("521", PlanComptableSycebnl.SensNormalCompte.DEBITEUR),
+            compte("4111", PlanComptableSycebnl.SensNormalCompte.DEBITEUR),
+            compte("4112", PlanComptableSycebnl.SensNormalCompte.DEBITEUR),
+            compte("7061", PlanComptableSycebnl.SensNormalCompte.CREDITEUR),
+            compte("7062", PlanComptableSycebnl.SensNormalCompte.CREDITEUR)));
+
+        List<EcritureComptable> ecritures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String client = i % 2 == 0 ? "4111" : "4112";
+            ecritures.add(ecriture(LocalDate.of(2024, 1 + i % 12, 10), client, "7061", new BigDecimal("100.00")));
+            ecritures.add(ecriture(LocalDate.of(2024, 1 + i % 12, 20), "521", client, new BigDecimal("40.00")));
+        }
+        // Postérieure à l'arrêté : exclue
+        ecritures.add(ecriture(LocalDate.of(2025, 1, 5), "521", "7062", new BigDecimal("999.00")));
+        context.getBean(EcritureComptableRepository.class).saveAll(ecritures);
+    }
+
+    @AfterAll
+    static void arreter() {
+        context.close();
+    }
+
+    @Test
+    void testSoldesLusEnUneSeuleRequete() {
+        Statistics statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        Map<String, BigDecimal> soldes = service.calculerSoldesComptes(ARRETE);
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, new BigDecimal("8000.00").compareTo(soldes.get("521")));
+        assertEquals(0, new BigDecimal("6000.00").compareTo(soldes.get("4111")));
+        assertEquals(0, new BigDecimal("-20000.00").compareTo(soldes.get("7061")));
+        assertNull(soldes.get("7062"));
+    }
+
+    @Test
+    void testPostesIdentiquesAuCalculParCompte() {
+        Map<String, BigDecimal> soldes = service.calculerSoldesComptes(ARRETE);
+
+        for (List<String> patterns : List.of(List.of("411%"), List.of("52%", "411%"), List.of("7%"), List.of("4111"))) {
+            for (String sens : List.of("DEBITEUR", "CREDITEUR")) {
+                BigDecimal attendu = service.calculerSoldePosteParPatterns(patterns, ARRETE, sens);
+                BigDecimal calcule = service.calculerSoldePosteParPatterns(soldes, patterns, sens);
+                assertEquals(0, attendu.compareTo(calcule), patterns + " " + sens);
+            }
+        }
+        assertEquals(0, new BigDecimal("12000.00").compareTo(service.calculerSoldeParPattern(soldes, "411%")));
+        assertEquals(0, new BigDecimal("6000.00").compareTo(service.calculerSoldeCompte("4111", ARRETE)));
+    }
+
+    private static PlanComptableSycebnl compte(String numero, PlanComptableSycebnl.SensNormalCompte sens) {
+        return PlanComptableSycebnl.builder()
+                .numeroCompte(numero)
+                .intituleCompte("Compte " + numero)
+                .classeCompte(PlanComptableSycebnl.ClasseCompte.CLASSE_4)
+                .typeCompte(PlanComptableSycebnl.TypeCompte.COMPTE)
+                .niveau(2)
+                .sensNormal(sens)
+                .build();
+    }
+
+    private static EcritureComptable ecriture(LocalDate date, String compteDebit, String compteCredit, BigDecimal montant) {
+        Company entreprise = new Company();
+        entreprise.setId(1L);
+        FinancialPeriod exercice = new FinancialPeriod();
+        exercice.setId(1L);
+        User utilisateur = new User();
+        utilisateur.setId(1L);
+
+        EcritureComptable ecriture = new EcritureComptable();
+        ecriture.setNumeroPiece("SYC-" + System.nanoTime());
+        ecriture.setEntreprise(entreprise);
+        ecriture.setExercice(exercice);
+        ecriture.setUtilisateur(utilisateur);
+        ecriture.setDateEcriture(date);
+        ecriture.setDatePiece(date);
+        ecriture.setLibelle("Cotisation");
+        ecriture.setTypeEcriture(EcritureComptable.TypeEcriture.NORMALE);
+        ecriture.setSource(EcritureComptable.SourceEcriture.MANUELLE);
+        ecriture.setDevise("XOF");
+        ecriture.setLignes(new ArrayList<>(List.of(
+            ligne(ecriture, compteDebit, montant, null, 1),
+            ligne(ecriture, compteCredit, null, montant, 2))));
+        ecriture.calculerTotaux();
+        return ecriture;
+    }
+
+    private static LigneEcriture ligne(EcritureComptable ecriture, String numero, BigDecimal debit, BigDecimal credit,
+                                       int ordre) {
+        Account compte = new Account();
+        compte.setId(1L);
+        LigneEcriture ligne = new LigneEcriture();
+        ligne.setEcriture(ecriture);
+        ligne.setCompte(compte);
+        ligne.setCompteNumero(numero);
+        ligne.setCompteLibelle("Compte " + numero);
+        ligne.setLibelleLigne("Cotisation");
+        ligne.setDebit(debit);
+        ligne.setCredit(credit);
+        ligne.setOrdre(ordre);
+        return ligne;
+    }
+
+    @Configuration
+    @Import(H2JpaTestConfig.class)
+    @EnableJpaRepositories(basePackages = "com.ecomptaia",
+        includeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = {
+            EcritureComptableRepository.class, LigneEcritureRepository.class, AccountRepository.class,
+            PlanComptableSycebnlRepository.class}))
+    static class JpaConfig {
+
+        @Bean
+        public PlanComptableIndexService planComptableIndexService() {
+            return new PlanComptableIndexService();
+        }
+
+        @Bean
+        public ComptabiliteSycebnlService comptabiliteSycebnlService(LigneEcritureRepository ligneEcritureRepository,
+                                                                     PlanComptableIndexService planComptableIndexService) {
+            return new ComptabiliteSycebnlService(ligneEcritureRepository, planComptableIndexService);
+        }
+    }
+}